@@ -0,0 +1,81 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+
+/**
+ * Sends a {@link TrafficRecord} through a filter integration, as an
+ * in-process stand-in of its container would: the filter is called on the
+ * calling thread, which plays the container thread, and a request which
+ * passes the filter is handed to an application stand-in which reads the
+ * whole entity.
+ *
+ * @author tyru
+ *
+ */
+interface FilterDriver {
+
+	/** Buffer of {@link #drain(InputStream)}, which is not counted as allocation of a request */
+	ThreadLocal<byte[]> DRAIN_BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+	/**
+	 * @param record
+	 * @return status which the stand-in responded, completed when the
+	 *         response is complete
+	 */
+	CompletableFuture<Integer> send(TrafficRecord record);
+
+	/**
+	 * @param name
+	 *            one of "servlet", "servlet-async", "jaxrs" and "spring"
+	 * @param hyperSchema
+	 * @param container
+	 *            threads of the container stand-in, which run asynchronous
+	 *            callbacks of "servlet-async"
+	 * @return FilterDriver
+	 * @throws IllegalArgumentException
+	 *             if name is unknown
+	 */
+	static FilterDriver of(String name, HyperSchema hyperSchema, ExecutorService container) {
+		switch (name) {
+		case "servlet":
+			return new ServletFilterDriver(hyperSchema, null);
+		case "servlet-async":
+			return new ServletFilterDriver(hyperSchema, container);
+		case "jaxrs":
+			return new JaxrsFilterDriver(hyperSchema);
+		case "spring":
+			return new SpringFilterDriver(hyperSchema);
+		default:
+			throw new IllegalArgumentException("Unknown filter: " + name);
+		}
+	}
+
+	/**
+	 * Sets a private field, as a container injects {@code @Inject} or
+	 * {@code @Autowired} fields.
+	 */
+	static void inject(Object target, Class<?> declaring, String name, Object value) {
+		try {
+			Field field = declaring.getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(target, value);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot inject " + declaring.getName() + "#" + name, e);
+		}
+	}
+
+	/**
+	 * Reads in to the end, as an application reads the entity.
+	 */
+	static void drain(InputStream in) throws IOException {
+		byte[] buffer = DRAIN_BUFFER.get();
+		while (in.read(buffer) >= 0) {
+		}
+	}
+}
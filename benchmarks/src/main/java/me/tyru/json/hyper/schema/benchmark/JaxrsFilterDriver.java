@@ -0,0 +1,106 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.filter.AbstractJaxrsJSONValidationFilter;
+
+/**
+ * Sends records through {@link AbstractJaxrsJSONValidationFilter}. The
+ * request context is a dynamic proxy (see {@link MockRequests}) which keeps
+ * the entity stream set by the filter and the response it aborts with.
+ * Media types and responses are made by the JAX-RS runtime on the class
+ * path, as a container does.
+ *
+ * @author tyru
+ *
+ */
+final class JaxrsFilterDriver implements FilterDriver {
+
+	private final AbstractJaxrsJSONValidationFilter filter;
+
+	JaxrsFilterDriver(HyperSchema hyperSchema) {
+		this.filter = new AbstractJaxrsJSONValidationFilter() {
+		};
+		FilterDriver.inject(filter, AbstractJaxrsJSONValidationFilter.class, "hyperSchema", hyperSchema);
+	}
+
+	@Override
+	public CompletableFuture<Integer> send(TrafficRecord record) {
+		InputStream[] entity = { new ByteArrayInputStream(record.body) };
+		Response[] aborted = new Response[1];
+		URI uri = URI.create(record.href);
+		MediaType mediaType = MediaType.valueOf(record.contentType);
+		UriInfo uriInfo = MockRequests.proxy(UriInfo.class, (proxy, m, args) -> {
+			switch (m.getName()) {
+			case "getRequestUri":
+				return uri;
+			case "getPath":
+				return record.path;
+			case "getQueryParameters":
+				return queryParameters(record);
+			default:
+				return MockRequests.defaultValue(m.getReturnType());
+			}
+		});
+		ContainerRequestContext context = MockRequests.proxy(ContainerRequestContext.class, (proxy, m, args) -> {
+			switch (m.getName()) {
+			case "getMethod":
+				return record.method;
+			case "getMediaType":
+				return mediaType;
+			case "getHeaderString":
+				return "Content-Type".equalsIgnoreCase((String) args[0]) ? record.contentType : null;
+			case "getUriInfo":
+				return uriInfo;
+			case "getLength":
+				return record.body.length;
+			case "hasEntity":
+				return record.body.length > 0;
+			case "getEntityStream":
+				return entity[0];
+			case "setEntityStream":
+				entity[0] = (InputStream) args[0];
+				return null;
+			case "abortWith":
+				aborted[0] = (Response) args[0];
+				return null;
+			default:
+				return MockRequests.defaultValue(m.getReturnType());
+			}
+		});
+		try {
+			filter.filter(context);
+			if (aborted[0] != null) {
+				return CompletableFuture.completedFuture(aborted[0].getStatus());
+			}
+			FilterDriver.drain(entity[0]);
+			return CompletableFuture.completedFuture(Response.Status.OK.getStatusCode());
+		} catch (IOException | RuntimeException e) {
+			CompletableFuture<Integer> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	private static MultivaluedMap<String, String> queryParameters(TrafficRecord record) {
+		MultivaluedHashMap<String, String> parameters = new MultivaluedHashMap<>();
+		for (Map.Entry<String, String[]> entry : record.parameters.entrySet()) {
+			parameters.put(entry.getKey(), Arrays.asList(entry.getValue()));
+		}
+		return parameters;
+	}
+}
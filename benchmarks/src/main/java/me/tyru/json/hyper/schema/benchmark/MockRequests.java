@@ -0,0 +1,158 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.Collections;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.UriInfo;
+
+import org.springframework.http.HttpHeaders;
+
+import me.tyru.json.hyper.schema.request.SpringJSONRequest;
+
+/**
+ * Request objects of each framework without a container. Servlet and JAX-RS
+ * requests are dynamic proxies which answer only what the adapters ask, and
+ * return a new entity stream at each call so that a mock can be read any
+ * number of times.
+ *
+ * @author tyru
+ *
+ */
+final class MockRequests {
+
+	private MockRequests() {
+	}
+
+	static HttpServletRequest servlet(String method, String href, byte[] entity) {
+		return proxy(HttpServletRequest.class, (proxy, m, args) -> {
+			switch (m.getName()) {
+			case "getMethod":
+				return method;
+			case "getRequestURI":
+				return href;
+			case "getContentType":
+				return "application/json; charset=UTF-8";
+			case "getCharacterEncoding":
+				return "UTF-8";
+			case "getContentLength":
+				return entity.length;
+			case "getContentLengthLong":
+				return (long) entity.length;
+			case "getInputStream":
+				return new ByteArrayServletInputStream(entity);
+			case "getParameterMap":
+				return Collections.emptyMap();
+			default:
+				return defaultValue(m.getReturnType());
+			}
+		});
+	}
+
+	static ContainerRequestContext jaxrs(String method, String href, byte[] entity) {
+		URI uri = URI.create(href);
+		UriInfo uriInfo = proxy(UriInfo.class, (proxy, m, args) -> {
+			switch (m.getName()) {
+			case "getRequestUri":
+				return uri;
+			case "getQueryParameters":
+				return new MultivaluedHashMap<String, String>();
+			default:
+				return defaultValue(m.getReturnType());
+			}
+		});
+		MediaType mediaType = new MediaType("application", "json");
+		return proxy(ContainerRequestContext.class, (proxy, m, args) -> {
+			switch (m.getName()) {
+			case "getMethod":
+				return method;
+			case "getMediaType":
+				return mediaType;
+			case "getUriInfo":
+				return uriInfo;
+			case "getLength":
+				return entity.length;
+			case "getEntityStream":
+				return new ByteArrayInputStream(entity);
+			default:
+				// setEntityStream() is ignored
+				return defaultValue(m.getReturnType());
+			}
+		});
+	}
+
+	static SpringJSONRequest spring(String method, String href, byte[] entity) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(org.springframework.http.MediaType.valueOf("application/json; charset=UTF-8"));
+		return SpringJSONRequest.of(method, URI.create(href), headers, entity, entity.length);
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> T proxy(Class<T> cls, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(cls.getClassLoader(), new Class<?>[] { cls }, (proxy, m, args) -> {
+			if (m.getDeclaringClass() == Object.class) {
+				switch (m.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					return cls.getSimpleName() + " mock";
+				}
+			}
+			return handler.invoke(proxy, m, args);
+		});
+	}
+
+	static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) {
+			return false;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	private static final class ByteArrayServletInputStream extends ServletInputStream {
+		private final ByteArrayInputStream in;
+
+		ByteArrayServletInputStream(byte[] bytes) {
+			this.in = new ByteArrayInputStream(bytes);
+		}
+
+		@Override
+		public int read() {
+			return in.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			return in.read(b, off, len);
+		}
+
+		@Override
+		public boolean isFinished() {
+			return in.available() == 0;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
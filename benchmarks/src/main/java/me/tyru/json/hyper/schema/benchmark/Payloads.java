@@ -0,0 +1,73 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+
+/**
+ * Hyper schema and request entities shared by benchmarks.
+ *
+ * @author tyru
+ *
+ */
+final class Payloads {
+
+	static final String HREF = "/items";
+
+	/** Schema of {@code POST /items}, whose entity is an array of items */
+	static final String SCHEMA = "{\"type\": \"object\", \"required\": [\"items\"], \"properties\": {"
+			+ "\"items\": {\"type\": \"array\", \"items\": {\"type\": \"object\", \"required\": [\"id\", \"name\"],"
+			+ " \"properties\": {"
+			+ "  \"id\": {\"type\": \"integer\", \"minimum\": 0},"
+			+ "  \"name\": {\"type\": \"string\", \"maxLength\": 64},"
+			+ "  \"tags\": {\"type\": \"array\", \"items\": {\"type\": \"string\"}}"
+			+ "}}}}}";
+
+	private Payloads() {
+	}
+
+	/**
+	 * @param compileSchemas
+	 * @param streamingValidation
+	 * @return HyperSchema of {@code POST /items}
+	 */
+	static HyperSchema hyperSchema(boolean compileSchemas, boolean streamingValidation) {
+		JSONObject json = new JSONObject().put("links", new JSONArray().put(new JSONObject()
+				.put("rel", "create").put("method", "POST").put("href", HREF).put("schema", new JSONObject(SCHEMA))));
+		return HyperSchemaBuilder.hyperSchema(json).compileSchemas(compileSchemas)
+				.streamingValidation(streamingValidation).build();
+	}
+
+	/**
+	 * @param size
+	 *            the least number of bytes of the entity
+	 * @param valid
+	 *            if false, the last item violates the schema, so that
+	 *            validation walks the whole entity before it fails
+	 * @return JSON text of an entity
+	 */
+	static String entity(int size, boolean valid) {
+		StringBuilder sb = new StringBuilder(size + 64).append("{\"items\": [");
+		int i = 0;
+		do {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append("{\"id\": ").append(i).append(", \"name\": \"item-").append(i)
+					.append("\", \"tags\": [\"a\", \"b\"]}");
+			i++;
+		} while (sb.length() + 2 < size);
+		if (!valid) {
+			sb.append(", {\"id\": -1, \"name\": \"invalid\"}");
+		}
+		return sb.append("]}").toString();
+	}
+
+	static byte[] bytes(String entity) {
+		return entity.getBytes(StandardCharsets.UTF_8);
+	}
+}
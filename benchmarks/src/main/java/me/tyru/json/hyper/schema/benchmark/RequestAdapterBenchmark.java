@@ -0,0 +1,82 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.request.JaxrsJSONRequest;
+import me.tyru.json.hyper.schema.request.ServletJSONRequest;
+import me.tyru.json.hyper.schema.request.SpringJSONRequest;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * {@link HyperSchema#check(me.tyru.json.hyper.schema.request.JSONRequest)}
+ * through each {@link me.tyru.json.hyper.schema.request.JSONRequest}
+ * adapter with mocked requests (see {@link MockRequests}), including
+ * buffering and decoding of the entity.
+ *
+ * @author tyru
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestAdapterBenchmark {
+
+	@Param({ "servlet", "jaxrs", "spring" })
+	public String adapter;
+
+	/** Bytes of the entity */
+	@Param({ "100", "10000", "1000000" })
+	public int size;
+
+	@Param({ "true", "false" })
+	public boolean valid;
+
+	private HyperSchema hyperSchema;
+	private HttpServletRequest servletRequest;
+	private ContainerRequestContext jaxrsRequest;
+	private SpringJSONRequest springRequest;
+
+	@Setup
+	public void setup() {
+		hyperSchema = Payloads.hyperSchema(true, false);
+		byte[] entity = Payloads.bytes(Payloads.entity(size, valid));
+		servletRequest = MockRequests.servlet("POST", Payloads.HREF, entity);
+		jaxrsRequest = MockRequests.jaxrs("POST", Payloads.HREF, entity);
+		springRequest = MockRequests.spring("POST", Payloads.HREF, entity);
+	}
+
+	@Benchmark
+	public ValidationResult check() {
+		switch (adapter) {
+		case "servlet":
+			try (ServletJSONRequest req = ServletJSONRequest.of(servletRequest)) {
+				return hyperSchema.check(req);
+			}
+		case "jaxrs":
+			return hyperSchema.check(JaxrsJSONRequest.of(jaxrsRequest));
+		case "spring":
+			return hyperSchema.check(springRequest);
+		default:
+			throw new IllegalStateException("Unknown adapter: " + adapter);
+		}
+	}
+}
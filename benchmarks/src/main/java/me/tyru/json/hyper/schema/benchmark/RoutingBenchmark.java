@@ -0,0 +1,94 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.json.schema.Schema;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.RouteMatch;
+
+/**
+ * Route lookup of {@link HyperSchema#matchOrNull(CharSequence, CharSequence, String)}
+ * and {@link HyperSchema#route(String, String)} by the number of links. Half
+ * of the links have a template variable, and the others are literal.
+ *
+ * @author tyru
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int links;
+
+	/** Size of {@link HyperSchemaBuilder#matchCacheSize(int)}, 0 to disable */
+	@Param({ "0" })
+	public int matchCacheSize;
+
+	private HyperSchema hyperSchema;
+	private String firstHref;
+	private String lastHref;
+	private String literalHref;
+
+	@Setup
+	public void setup() {
+		JSONArray array = new JSONArray();
+		for (int i = 0; i < links; i++) {
+			String href = i % 2 == 0 ? "/api/v1/resources" + i + "/{id}" : "/api/v1/resources" + i;
+			array.put(new JSONObject().put("rel", "self").put("method", "GET").put("href", href).put("schema",
+					new JSONObject()));
+		}
+		// Schemas are not used, so do not load them
+		hyperSchema = HyperSchemaBuilder.hyperSchema(new JSONObject().put("links", array)).lazySchemas(true)
+				.matchCacheSize(matchCacheSize).build();
+		firstHref = "/api/v1/resources0/42";
+		lastHref = "/api/v1/resources" + (links - 2) + "/42";
+		literalHref = "/api/v1/resources" + (links - 1);
+	}
+
+	@Benchmark
+	public Schema matchFirst() {
+		return hyperSchema.matchOrNull("GET", firstHref, HyperSchema.DEFAULT_ENC_TYPE);
+	}
+
+	@Benchmark
+	public Schema matchLast() {
+		return hyperSchema.matchOrNull("GET", lastHref, HyperSchema.DEFAULT_ENC_TYPE);
+	}
+
+	@Benchmark
+	public Schema matchLiteral() {
+		return hyperSchema.matchOrNull("GET", literalHref, HyperSchema.DEFAULT_ENC_TYPE);
+	}
+
+	@Benchmark
+	public Schema matchMiss() {
+		return hyperSchema.matchOrNull("GET", "/api/v2/unknown/42", HyperSchema.DEFAULT_ENC_TYPE);
+	}
+
+	/** Lookup with path variables */
+	@Benchmark
+	public Optional<RouteMatch> routeLast() {
+		return hyperSchema.route("GET", lastHref);
+	}
+}
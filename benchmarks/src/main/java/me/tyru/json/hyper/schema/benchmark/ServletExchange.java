@@ -0,0 +1,244 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A request and its response in a Servlet container stand-in. The request
+ * and the response are dynamic proxies (see {@link MockRequests}) which
+ * keep the state a filter changes: attributes, the status, and the
+ * asynchronous mode.
+ *
+ * In the asynchronous mode, the read listener and
+ * {@link AsyncContext#dispatch()} run on the container threads, as a
+ * container does after the filter returns.
+ *
+ * @author tyru
+ *
+ */
+final class ServletExchange {
+
+	final HttpServletRequest request;
+	final HttpServletResponse response;
+	/** Completed with the status when the response is complete */
+	final CompletableFuture<Integer> done = new CompletableFuture<>();
+
+	private final TrafficRecord record;
+	private final Executor container;
+	private final Consumer<ServletExchange> dispatcher;
+	private final EntityInputStream in;
+	private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+	private volatile DispatcherType dispatcherType = DispatcherType.REQUEST;
+	private volatile boolean asyncStarted;
+	/** Incremented by each {@link HttpServletRequest#startAsync()} */
+	private volatile int asyncCycles;
+	private volatile int status = HttpServletResponse.SC_OK;
+	private PrintWriter writer;
+
+	/**
+	 * @param record
+	 * @param container
+	 *            threads of the container, or null if the request does not
+	 *            support asynchronous processing
+	 * @param dispatcher
+	 *            called on a container thread by {@link AsyncContext#dispatch()}
+	 */
+	ServletExchange(TrafficRecord record, Executor container, Consumer<ServletExchange> dispatcher) {
+		this.record = record;
+		this.container = container;
+		this.dispatcher = dispatcher;
+		this.in = new EntityInputStream(record.body);
+		this.request = MockRequests.proxy(HttpServletRequest.class, (proxy, m, args) -> {
+			switch (m.getName()) {
+			case "getMethod":
+				return record.method;
+			case "getRequestURI":
+				return record.path;
+			case "getQueryString":
+				return record.query;
+			case "getParameterMap":
+				return record.parameters;
+			case "getContentType":
+				return record.contentType;
+			case "getCharacterEncoding":
+				return record.charset;
+			case "getHeader":
+				return "Content-Type".equalsIgnoreCase((String) args[0]) ? record.contentType : null;
+			case "getContentLength":
+				return record.body.length;
+			case "getContentLengthLong":
+				return (long) record.body.length;
+			case "getInputStream":
+				return in;
+			case "getAttribute":
+				return attributes.get(args[0]);
+			case "setAttribute":
+				if (args[1] == null) {
+					attributes.remove(args[0]);
+				} else {
+					attributes.put((String) args[0], args[1]);
+				}
+				return null;
+			case "removeAttribute":
+				attributes.remove(args[0]);
+				return null;
+			case "getAttributeNames":
+				return Collections.enumeration(attributes.keySet());
+			case "getDispatcherType":
+				return dispatcherType;
+			case "isAsyncSupported":
+				return container != null;
+			case "isAsyncStarted":
+				return asyncStarted;
+			case "startAsync":
+				return startAsync();
+			default:
+				return MockRequests.defaultValue(m.getReturnType());
+			}
+		});
+		this.response = MockRequests.proxy(HttpServletResponse.class, (proxy, m, args) -> {
+			switch (m.getName()) {
+			case "setStatus":
+			case "sendError":
+				status = (Integer) args[0];
+				return null;
+			case "getStatus":
+				return status;
+			case "getWriter":
+				return writer();
+			default:
+				return MockRequests.defaultValue(m.getReturnType());
+			}
+		});
+	}
+
+	/**
+	 * @return the number of times asynchronous mode was started, to be
+	 *         passed to {@link #returned(int)}
+	 */
+	int asyncCycles() {
+		return asyncCycles;
+	}
+
+	/**
+	 * Completes the response when the filter returned, unless it started
+	 * asynchronous mode. The dispatch may run before the filter returns, so
+	 * the mode is not checked by {@link HttpServletRequest#isAsyncStarted()}.
+	 *
+	 * @param asyncCycles
+	 *            {@link #asyncCycles()} before the filter was called
+	 */
+	void returned(int asyncCycles) {
+		if (this.asyncCycles == asyncCycles) {
+			done.complete(status);
+		}
+	}
+
+	void fail(Throwable error) {
+		done.completeExceptionally(error);
+	}
+
+	@Override
+	public String toString() {
+		return record.toString();
+	}
+
+	private synchronized PrintWriter writer() {
+		if (writer == null) {
+			writer = new PrintWriter(new StringWriter());
+		}
+		return writer;
+	}
+
+	private AsyncContext startAsync() {
+		if (container == null) {
+			throw new IllegalStateException("Asynchronous processing is not supported");
+		}
+		asyncStarted = true;
+		asyncCycles++;
+		return MockRequests.proxy(AsyncContext.class, (proxy, m, args) -> {
+			switch (m.getName()) {
+			case "getRequest":
+				return request;
+			case "getResponse":
+				return response;
+			case "hasOriginalRequestAndResponse":
+				return true;
+			case "dispatch":
+				asyncStarted = false;
+				dispatcherType = DispatcherType.ASYNC;
+				container.execute(() -> dispatcher.accept(this));
+				return null;
+			case "complete":
+				asyncStarted = false;
+				done.complete(status);
+				return null;
+			default:
+				return MockRequests.defaultValue(m.getReturnType());
+			}
+		});
+	}
+
+	/**
+	 * Entity of the request, whose read listener is called on a container
+	 * thread with the whole entity available.
+	 */
+	private final class EntityInputStream extends ServletInputStream {
+		private final ByteArrayInputStream bytes;
+
+		EntityInputStream(byte[] body) {
+			this.bytes = new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public int read() {
+			return bytes.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			return bytes.read(b, off, len);
+		}
+
+		@Override
+		public boolean isFinished() {
+			return bytes.available() == 0;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener listener) {
+			if (!asyncStarted) {
+				throw new IllegalStateException("The request is not in asynchronous mode");
+			}
+			container.execute(() -> {
+				try {
+					listener.onDataAvailable();
+					if (isFinished()) {
+						listener.onAllDataRead();
+					}
+				} catch (Throwable t) {
+					listener.onError(t);
+				}
+			});
+		}
+	}
+}
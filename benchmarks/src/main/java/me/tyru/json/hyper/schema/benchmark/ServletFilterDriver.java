@@ -0,0 +1,60 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.filter.AbstractServletJSONValidationFilter;
+
+/**
+ * Sends records through {@link AbstractServletJSONValidationFilter}. If
+ * the container threads are given, requests support asynchronous processing,
+ * so the entity is read by the read listener and the request is dispatched
+ * again; otherwise the entity is read by blocking I/O.
+ *
+ * @author tyru
+ *
+ */
+final class ServletFilterDriver implements FilterDriver {
+
+	private final AbstractServletJSONValidationFilter filter;
+	private final Executor container;
+	private final FilterChain application = (req, res) -> FilterDriver.drain(req.getInputStream());
+
+	/**
+	 * @param hyperSchema
+	 * @param container
+	 *            threads of the container, or null to read entities by
+	 *            blocking I/O
+	 */
+	ServletFilterDriver(HyperSchema hyperSchema, Executor container) {
+		this.filter = new AbstractServletJSONValidationFilter() {
+			@Override
+			protected HyperSchema getHyperSchema() {
+				return hyperSchema;
+			}
+		};
+		this.container = container;
+	}
+
+	@Override
+	public CompletableFuture<Integer> send(TrafficRecord record) {
+		ServletExchange exchange = new ServletExchange(record, container, this::doFilter);
+		doFilter(exchange);
+		return exchange.done;
+	}
+
+	private void doFilter(ServletExchange exchange) {
+		int asyncCycles = exchange.asyncCycles();
+		try {
+			filter.doFilter(exchange.request, exchange.response, application);
+			exchange.returned(asyncCycles);
+		} catch (IOException | ServletException | RuntimeException e) {
+			exchange.fail(e);
+		}
+	}
+}
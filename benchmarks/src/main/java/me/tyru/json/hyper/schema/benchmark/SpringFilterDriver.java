@@ -0,0 +1,107 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+import org.everit.json.schema.ValidationException;
+import org.json.JSONException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.exception.ValidationUnavailableException;
+import me.tyru.json.hyper.schema.filter.AbstractSpringJSONValidationFilter;
+
+/**
+ * Sends records through {@link AbstractSpringJSONValidationFilter}, as
+ * Spring MVC calls the advice: a request which has an entity is read by
+ * {@code beforeBodyRead} and the application reads the message it returns,
+ * and a request which has none is validated by the {@code @InitBinder}
+ * method. Exceptions are mapped to the status an application would map
+ * them to: 400 Bad Request for an invalid or malformed request, and 503
+ * Service Unavailable for {@link ValidationUnavailableException}.
+ *
+ * @author tyru
+ *
+ */
+final class SpringFilterDriver implements FilterDriver {
+
+	private final AbstractSpringJSONValidationFilter advice;
+	private final Method initBinder;
+
+	SpringFilterDriver(HyperSchema hyperSchema) {
+		this.advice = new AbstractSpringJSONValidationFilter() {
+		};
+		FilterDriver.inject(advice, AbstractSpringJSONValidationFilter.class, "hyperSchema", hyperSchema);
+		try {
+			this.initBinder = AbstractSpringJSONValidationFilter.class.getDeclaredMethod("initBinder",
+					WebDataBinder.class, ServletWebRequest.class);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("No @InitBinder method", e);
+		}
+		this.initBinder.setAccessible(true);
+	}
+
+	@Override
+	public CompletableFuture<Integer> send(TrafficRecord record) {
+		ServletExchange exchange = new ServletExchange(record, null, null);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(exchange.request));
+		try {
+			if (record.body.length > 0) {
+				HttpHeaders headers = new HttpHeaders();
+				headers.set(HttpHeaders.CONTENT_TYPE, record.contentType);
+				headers.setContentLength(record.body.length);
+				InputStream body = exchange.request.getInputStream();
+				HttpInputMessage message = advice.beforeBodyRead(new HttpInputMessage() {
+					@Override
+					public InputStream getBody() {
+						return body;
+					}
+
+					@Override
+					public HttpHeaders getHeaders() {
+						return headers;
+					}
+				}, null, Object.class, null);
+				FilterDriver.drain(message.getBody());
+			} else {
+				initBinder(exchange);
+			}
+			return CompletableFuture.completedFuture(HttpStatus.OK.value());
+		} catch (ValidationException | JSONException | IllegalArgumentException e) {
+			return CompletableFuture.completedFuture(HttpStatus.BAD_REQUEST.value());
+		} catch (ValidationUnavailableException e) {
+			return CompletableFuture.completedFuture(HttpStatus.SERVICE_UNAVAILABLE.value());
+		} catch (IOException | RuntimeException e) {
+			CompletableFuture<Integer> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		} finally {
+			RequestContextHolder.resetRequestAttributes();
+		}
+	}
+
+	private void initBinder(ServletExchange exchange) throws IOException {
+		try {
+			initBinder.invoke(advice, new WebDataBinder(null), new ServletWebRequest(exchange.request));
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
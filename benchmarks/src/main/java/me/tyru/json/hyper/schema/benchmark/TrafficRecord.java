@@ -0,0 +1,124 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+
+/**
+ * A recorded request to replay by {@link TrafficReplay}.
+ *
+ * In NDJSON, a record is a line of JSON object like
+ * {@code {"method": "POST", "href": "/users?dry=true", "contentType": "application/json", "body": {...}}}.
+ * "contentType" is optional, and is {@code application/json} by default.
+ * "body" is optional: a string is the entity as it is, e.g. a malformed JSON
+ * text which was captured, and any other value is sent as its JSON text.
+ * Lines of {@link me.tyru.json.hyper.schema.batch.BatchRecord} are accepted
+ * as well, i.e. "encType" and "document" are read if "contentType" and
+ * "body" are absent.
+ *
+ * @author tyru
+ *
+ */
+final class TrafficRecord {
+	final String method;
+	/** href including the query */
+	final String href;
+	/** href without the query */
+	final String path;
+	/** null if href has no query */
+	final String query;
+	/** Decoded query parameters */
+	final Map<String, String[]> parameters;
+	final String contentType;
+	/** null if contentType has no charset */
+	final String charset;
+	final byte[] body;
+
+	private TrafficRecord(String method, String href, String contentType, byte[] body) {
+		this.method = method;
+		this.href = href;
+		int question = href.indexOf('?');
+		this.path = question < 0 ? href : href.substring(0, question);
+		this.query = question < 0 ? null : href.substring(question + 1);
+		this.parameters = parseQuery(query);
+		this.contentType = contentType;
+		this.charset = charsetOf(contentType);
+		this.body = body;
+	}
+
+	/**
+	 * @param line
+	 *            NDJSON line of a record
+	 * @return TrafficRecord
+	 * @throws org.json.JSONException
+	 *             if line is not a record
+	 */
+	static TrafficRecord parse(String line) {
+		JSONObject obj = new JSONObject(line);
+		String contentType = obj.has("contentType") ? obj.getString("contentType")
+				: obj.optString("encType", HyperSchema.DEFAULT_ENC_TYPE);
+		Object body = obj.has("body") ? obj.get("body") : obj.opt("document");
+		byte[] bytes;
+		if (body == null || body == JSONObject.NULL) {
+			bytes = new byte[0];
+		} else if (body instanceof String) {
+			bytes = ((String) body).getBytes(StandardCharsets.UTF_8);
+		} else {
+			bytes = JSONObject.valueToString(body).getBytes(StandardCharsets.UTF_8);
+		}
+		return new TrafficRecord(obj.getString("method"), obj.getString("href"), contentType, bytes);
+	}
+
+	private static Map<String, String[]> parseQuery(String query) {
+		if (query == null || query.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, List<String>> values = new LinkedHashMap<>();
+		for (String pair : query.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+			int eq = pair.indexOf('=');
+			String name = decode(eq < 0 ? pair : pair.substring(0, eq));
+			String value = eq < 0 ? "" : decode(pair.substring(eq + 1));
+			values.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+		}
+		Map<String, String[]> parameters = new LinkedHashMap<>();
+		for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+			parameters.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+		}
+		return Collections.unmodifiableMap(parameters);
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String charsetOf(String contentType) {
+		for (String param : contentType.split(";")) {
+			int eq = param.indexOf('=');
+			if (eq >= 0 && param.substring(0, eq).trim().equalsIgnoreCase("charset")) {
+				return param.substring(eq + 1).trim().replace("\"", "");
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + href + " (" + contentType + ")";
+	}
+}
@@ -0,0 +1,411 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+
+/**
+ * Replays recorded traffic (NDJSON of {@link TrafficRecord}) through each
+ * filter integration against an in-process container stand-in (see
+ * {@link FilterDriver}), and reports throughput, latency percentiles,
+ * allocation and GC statistics of each filter. Unlike the JMH benchmarks,
+ * this includes buffering and copying of entities by the filters under
+ * concurrency. e.g.
+ * {@code java -cp target/benchmarks.jar me.tyru.json.hyper.schema.benchmark.TrafficReplay --schema schema.json --traffic traffic.ndjson --concurrency 32}
+ *
+ * Clients are a closed loop: each of the concurrent clients sends the next
+ * record when the response of the previous one is complete, and records are
+ * replayed in a cycle until the number of requests is sent. Latencies are
+ * kept exactly, so percentiles are not approximated.
+ *
+ * @author tyru
+ *
+ */
+public final class TrafficReplay {
+
+	private static final List<String> FILTERS = Arrays.asList("servlet", "servlet-async", "jaxrs", "spring");
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	private static final String USAGE = "Usage: TrafficReplay --schema <file or directory> --traffic <ndjson>"
+			+ " [--filter " + String.join(",", FILTERS) + "] [--concurrency <n>] [--requests <n>]"
+			+ " [--warmup <n>] [--result <json>]";
+
+	private Path schema;
+	private Path traffic;
+	private List<String> filters = FILTERS;
+	private int concurrency = Runtime.getRuntime().availableProcessors();
+	/** 0 to replay the traffic once */
+	private int requests;
+	/** -1 to warm up by as many requests as measured */
+	private int warmup = -1;
+	private Path result;
+
+	/** Threads of the clients and the container, whose allocation is counted */
+	private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+	private TrafficReplay() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		TrafficReplay replay;
+		try {
+			replay = parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		if (replay == null) {
+			System.out.println(USAGE);
+			return;
+		}
+		replay.run();
+	}
+
+	private static TrafficReplay parse(String[] args) {
+		TrafficReplay replay = new TrafficReplay();
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (option.equals("-h") || option.equals("--help")) {
+				return null;
+			}
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException("No value of " + option);
+			}
+			String value = args[++i];
+			switch (option) {
+			case "--schema":
+				replay.schema = Paths.get(value);
+				break;
+			case "--traffic":
+				replay.traffic = Paths.get(value);
+				break;
+			case "--filter":
+				replay.filters = Arrays.asList(value.split(","));
+				for (String filter : replay.filters) {
+					if (!FILTERS.contains(filter)) {
+						throw new IllegalArgumentException("Unknown filter: " + filter);
+					}
+				}
+				break;
+			case "--concurrency":
+				replay.concurrency = number(option, value, 1);
+				break;
+			case "--requests":
+				replay.requests = number(option, value, 1);
+				break;
+			case "--warmup":
+				replay.warmup = number(option, value, 0);
+				break;
+			case "--result":
+				replay.result = Paths.get(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + option);
+			}
+		}
+		if (replay.schema == null || replay.traffic == null) {
+			throw new IllegalArgumentException("--schema and --traffic are required");
+		}
+		return replay;
+	}
+
+	private static int number(String option, String value, int min) {
+		int n;
+		try {
+			n = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(option + " must be a number: " + value);
+		}
+		if (n < min) {
+			throw new IllegalArgumentException(option + " must be at least " + min + ": " + value);
+		}
+		return n;
+	}
+
+	private void run() throws IOException, InterruptedException {
+		HyperSchema hyperSchema = (Files.isDirectory(schema) ? HyperSchemaBuilder.hyperSchemaDirectory(schema)
+				: HyperSchemaBuilder.hyperSchemaFiles(Collections.singletonList(schema))).build();
+		List<TrafficRecord> records = read(traffic);
+		if (records.isEmpty()) {
+			throw new IllegalArgumentException("No records in " + traffic);
+		}
+		int measured = requests > 0 ? requests : records.size();
+		int warmups = warmup >= 0 ? warmup : measured;
+		System.out.printf("%d records, %d requests (%d warmup) per filter, concurrency %d, %s %s%n",
+				records.size(), measured, warmups, concurrency, System.getProperty("java.vm.name"),
+				System.getProperty("java.version"));
+
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency, threadFactory("replay-client"));
+		ExecutorService container = Executors.newFixedThreadPool(concurrency, threadFactory("replay-container"));
+		JSONArray results = new JSONArray();
+		try {
+			for (String filter : filters) {
+				FilterDriver driver = FilterDriver.of(filter, hyperSchema, container);
+				replay(driver, records, warmups, clients);
+				JSONObject report = measure(filter, driver, records, measured, clients);
+				print(report);
+				results.put(report);
+			}
+		} finally {
+			clients.shutdownNow();
+			container.shutdownNow();
+		}
+		if (result != null) {
+			Files.write(result, results.toString(2).getBytes(StandardCharsets.UTF_8));
+			System.out.println("Results are written to " + result);
+		}
+	}
+
+	private static List<TrafficRecord> read(Path file) throws IOException {
+		List<TrafficRecord> records = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				try {
+					records.add(TrafficRecord.parse(line));
+				} catch (JSONException e) {
+					throw new IllegalArgumentException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		return records;
+	}
+
+	private ThreadFactory threadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			threads.add(thread);
+			return thread;
+		};
+	}
+
+	private JSONObject measure(String filter, FilterDriver driver, List<TrafficRecord> records, int count,
+			ExecutorService clients) throws InterruptedException {
+		Map<String, long[]> gcBefore = gcStats();
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		Replay replay = replay(driver, records, count, clients);
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBytes() - allocatedBefore;
+		Map<String, long[]> gcAfter = gcStats();
+
+		JSONObject report = new JSONObject();
+		report.put("filter", filter);
+		report.put("requests", count);
+		report.put("concurrency", concurrency);
+		report.put("seconds", elapsed / 1e9);
+		report.put("throughput", count / (elapsed / 1e9));
+		JSONObject statuses = new JSONObject();
+		for (Map.Entry<String, Long> entry : replay.statuses().entrySet()) {
+			statuses.put(entry.getKey(), entry.getValue());
+		}
+		report.put("statuses", statuses);
+
+		long[] latencies = replay.latencies;
+		Arrays.sort(latencies);
+		JSONObject latency = new JSONObject();
+		latency.put("mean", Arrays.stream(latencies).average().orElse(0) / 1e3);
+		for (double percentile : PERCENTILES) {
+			int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+			latency.put("p" + (percentile == (long) percentile ? String.valueOf((long) percentile)
+					: String.valueOf(percentile)), latencies[Math.max(index, 0)] / 1e3);
+		}
+		latency.put("max", latencies[latencies.length - 1] / 1e3);
+		report.put("latencyMicros", latency);
+
+		if (allocated >= 0) {
+			report.put("allocatedBytes", allocated);
+			report.put("allocatedBytesPerRequest", allocated / count);
+		}
+		JSONArray gc = new JSONArray();
+		long gcMillis = 0;
+		for (Map.Entry<String, long[]> entry : gcAfter.entrySet()) {
+			long[] before = gcBefore.getOrDefault(entry.getKey(), new long[2]);
+			long millis = entry.getValue()[1] - before[1];
+			gc.put(new JSONObject().put("name", entry.getKey()).put("count", entry.getValue()[0] - before[0])
+					.put("millis", millis));
+			gcMillis += millis;
+		}
+		report.put("gc", gc);
+		report.put("gcTimeRatio", gcMillis / (elapsed / 1e6));
+		if (replay.error.get() != null) {
+			System.err.println(filter + ": the first error of " + replay.errors.sum() + " errors:");
+			replay.error.get().printStackTrace();
+		}
+		return report;
+	}
+
+	private static void print(JSONObject report) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%s: %d requests in %.2f s, %.0f req/s%n", report.getString("filter"),
+				report.getInt("requests"), report.getDouble("seconds"), report.getDouble("throughput")));
+		sb.append("  status:");
+		JSONObject statuses = report.getJSONObject("statuses");
+		for (String status : new TreeSet<>(statuses.keySet())) {
+			sb.append(' ').append(status).append('=').append(statuses.getLong(status));
+		}
+		JSONObject latency = report.getJSONObject("latencyMicros");
+		sb.append(String.format("%n  latency (us): mean %.1f, p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+				latency.getDouble("mean"), latency.getDouble("p50"), latency.getDouble("p90"),
+				latency.getDouble("p99"), latency.getDouble("p99.9"), latency.getDouble("max")));
+		if (report.has("allocatedBytes")) {
+			sb.append(String.format("  allocated: %.1f MB, %d B/request%n", report.getLong("allocatedBytes") / 1e6,
+					report.getLong("allocatedBytesPerRequest")));
+		}
+		sb.append("  gc:");
+		JSONArray gc = report.getJSONArray("gc");
+		for (int i = 0; i < gc.length(); i++) {
+			JSONObject collector = gc.getJSONObject(i);
+			sb.append(String.format(" %s %d collections %d ms;", collector.getString("name"),
+					collector.getLong("count"), collector.getLong("millis")));
+		}
+		sb.append(String.format(" %.1f%% of wall time%n", report.getDouble("gcTimeRatio") * 100));
+		System.out.print(sb);
+	}
+
+	/**
+	 * Sends count requests from the concurrent clients.
+	 */
+	private Replay replay(FilterDriver driver, List<TrafficRecord> records, int count, ExecutorService clients)
+			throws InterruptedException {
+		Replay replay = new Replay(count);
+		List<Callable<long[]>> tasks = new ArrayList<>();
+		for (int i = 0; i < concurrency; i++) {
+			tasks.add(() -> replay.client(driver, records));
+		}
+		long[] latencies = new long[count];
+		int n = 0;
+		for (Future<long[]> future : clients.invokeAll(tasks)) {
+			long[] client;
+			try {
+				client = future.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+			System.arraycopy(client, 0, latencies, n, client.length);
+			n += client.length;
+		}
+		replay.latencies = latencies;
+		return replay;
+	}
+
+	/**
+	 * @return the bytes allocated by the threads of the clients and the
+	 *         container so far, or -1 if the JVM does not count them
+	 */
+	private long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long total = 0;
+		synchronized (threads) {
+			for (Thread thread : threads) {
+				total += Math.max(((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(thread.getId()), 0);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return count and milliseconds of collections of each collector
+	 */
+	private static Map<String, long[]> gcStats() {
+		Map<String, long[]> stats = new LinkedHashMap<>();
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			stats.put(bean.getName(), new long[] { bean.getCollectionCount(), bean.getCollectionTime() });
+		}
+		return stats;
+	}
+
+	/** A run of requests */
+	private static final class Replay {
+		private final int count;
+		private final AtomicLong next = new AtomicLong();
+		private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+		private final LongAdder errors = new LongAdder();
+		private final AtomicReference<Throwable> error = new AtomicReference<>();
+		/** Nanoseconds of each request */
+		private long[] latencies;
+
+		Replay(int count) {
+			this.count = count;
+		}
+
+		/**
+		 * @return nanoseconds of the requests sent by this client
+		 */
+		long[] client(FilterDriver driver, List<TrafficRecord> records) throws InterruptedException {
+			long[] latencies = new long[16];
+			int n = 0;
+			long index;
+			while ((index = next.getAndIncrement()) < count) {
+				TrafficRecord record = records.get((int) (index % records.size()));
+				long start = System.nanoTime();
+				String status;
+				try {
+					status = String.valueOf(driver.send(record).get());
+				} catch (ExecutionException e) {
+					status = "error";
+					errors.increment();
+					error.compareAndSet(null, new IllegalStateException(record.toString(), e.getCause()));
+				}
+				long elapsed = System.nanoTime() - start;
+				if (n == latencies.length) {
+					latencies = Arrays.copyOf(latencies, n * 2);
+				}
+				latencies[n++] = elapsed;
+				statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+			}
+			return Arrays.copyOf(latencies, n);
+		}
+
+		Map<String, Long> statuses() {
+			Map<String, Long> sums = new TreeMap<>();
+			for (Map.Entry<String, LongAdder> entry : statuses.entrySet()) {
+				sums.put(entry.getKey(), entry.getValue().sum());
+			}
+			return sums;
+		}
+	}
+}
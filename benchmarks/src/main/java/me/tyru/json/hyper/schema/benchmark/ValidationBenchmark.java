@@ -0,0 +1,101 @@
+package me.tyru.json.hyper.schema.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.everit.json.schema.ValidationException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * Parsing and validation of an entity by its size, for valid and invalid
+ * entities. An invalid entity fails at its last item.
+ *
+ * @author tyru
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+	/** Bytes of the entity, from 100 B to 10 MB */
+	@Param({ "100", "10000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "true", "false" })
+	public boolean valid;
+
+	/** {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#compileSchemas(boolean)} */
+	@Param({ "true" })
+	public boolean compileSchemas;
+
+	private HyperSchema hyperSchema;
+	private HyperSchema streamingHyperSchema;
+	private String entity;
+	private JSONObject parsed;
+
+	@Setup
+	public void setup() {
+		hyperSchema = Payloads.hyperSchema(compileSchemas, false);
+		streamingHyperSchema = Payloads.hyperSchema(compileSchemas, true);
+		entity = Payloads.entity(size, valid);
+		parsed = new JSONObject(entity);
+	}
+
+	/** Parsing only, the baseline of the others */
+	@Benchmark
+	public JSONObject parse() {
+		return new JSONObject(entity);
+	}
+
+	/** Validation of a parsed entity */
+	@Benchmark
+	public ValidationResult check() {
+		return hyperSchema.check("POST", Payloads.HREF, HyperSchema.DEFAULT_ENC_TYPE, parsed);
+	}
+
+	@Benchmark
+	public ValidationResult parseAndCheck() {
+		return hyperSchema.check("POST", Payloads.HREF, HyperSchema.DEFAULT_ENC_TYPE, new JSONObject(entity));
+	}
+
+	/** Validation by everit-org/json-schema, which throws at a violation */
+	@Benchmark
+	public Object parseAndValidate() {
+		try {
+			hyperSchema.validate("POST", Payloads.HREF, HyperSchema.DEFAULT_ENC_TYPE, new JSONObject(entity));
+			return null;
+		} catch (ValidationException e) {
+			return e;
+		}
+	}
+
+	/** Validation while parsing, without building JSONObject */
+	@Benchmark
+	public Object validateStreaming() {
+		try {
+			streamingHyperSchema.validate("POST", Payloads.HREF, HyperSchema.DEFAULT_ENC_TYPE,
+					new StringReader(entity));
+			return null;
+		} catch (ValidationException e) {
+			return e;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package me.tyru.json.hyper.schema;
+
+/**
+ * A snapshot of the statistics of a cache.
+ *
+ * @author tyru
+ *
+ */
+public final class CacheStats {
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long size;
+
+	CacheStats(long hitCount, long missCount, long evictionCount, long size) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return the number of entries evicted because the cache was full, or
+	 *         because they expired
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return the number of entries at the time of the snapshot
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return hitCount / (hitCount + missCount), or 1.0 if no request
+	 */
+	public double getHitRate() {
+		long total = hitCount + missCount;
+		return total == 0 ? 1.0 : (double) hitCount / total;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats [hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+				+ ", size=" + size + "]";
+	}
+}
@@ -0,0 +1,107 @@
+package me.tyru.json.hyper.schema;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 128-bit hash of bytes by SipHash-2-4 (128-bit output). It is keyed, so a
+ * client which does not know the key cannot make two entities of the same
+ * hash on purpose.
+ *
+ * @author tyru
+ *
+ */
+final class ContentHash {
+
+	private final long h1;
+	private final long h2;
+	private final int length;
+
+	private ContentHash(long h1, long h2, int length) {
+		this.h1 = h1;
+		this.h2 = h2;
+		this.length = length;
+	}
+
+	/**
+	 * @param bytes
+	 *            bytes from its position to its limit, which are not
+	 *            consumed
+	 * @param k0
+	 *            the first half of the 128-bit key
+	 * @param k1
+	 *            the second half of the 128-bit key
+	 * @return ContentHash
+	 */
+	static ContentHash of(ByteBuffer bytes, long k0, long k1) {
+		ByteBuffer buf = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+		int length = buf.remaining();
+		long[] v = { k0 ^ 0x736f6d6570736575L, k1 ^ 0x646f72616e646f6dL ^ 0xee, k0 ^ 0x6c7967656e657261L,
+				k1 ^ 0x7465646279746573L };
+		int i = 0;
+		for (int end = length & ~7; i < end; i += 8) {
+			compress(v, buf.getLong(i));
+		}
+		long last = (long) length << 56;
+		for (int j = length - 1; j >= i; j--) {
+			last |= (buf.get(j) & 0xffL) << (8 * (j - i));
+		}
+		compress(v, last);
+		v[2] ^= 0xee;
+		rounds(v, 4);
+		long h1 = v[0] ^ v[1] ^ v[2] ^ v[3];
+		v[1] ^= 0xdd;
+		rounds(v, 4);
+		long h2 = v[0] ^ v[1] ^ v[2] ^ v[3];
+		return new ContentHash(h1, h2, length);
+	}
+
+	private static void compress(long[] v, long m) {
+		v[3] ^= m;
+		rounds(v, 2);
+		v[0] ^= m;
+	}
+
+	private static void rounds(long[] v, int n) {
+		long v0 = v[0];
+		long v1 = v[1];
+		long v2 = v[2];
+		long v3 = v[3];
+		for (int i = 0; i < n; i++) {
+			v0 += v1;
+			v1 = Long.rotateLeft(v1, 13) ^ v0;
+			v0 = Long.rotateLeft(v0, 32);
+			v2 += v3;
+			v3 = Long.rotateLeft(v3, 16) ^ v2;
+			v0 += v3;
+			v3 = Long.rotateLeft(v3, 21) ^ v0;
+			v2 += v1;
+			v1 = Long.rotateLeft(v1, 17) ^ v2;
+			v2 = Long.rotateLeft(v2, 32);
+		}
+		v[0] = v0;
+		v[1] = v1;
+		v[2] = v2;
+		v[3] = v3;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) h1;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ContentHash))
+			return false;
+		ContentHash other = (ContentHash) obj;
+		return h1 == other.h1 && h2 == other.h2 && length == other.length;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%016x%016x", h1, h2);
+	}
+}
@@ -0,0 +1,66 @@
+package me.tyru.json.hyper.schema;
+
+/**
+ * A snapshot of the statistics of schemas which are equal in structure and
+ * loaded once.
+ *
+ * @author tyru
+ *
+ */
+public final class DeduplicationStats {
+	private final long schemaCount;
+	private final long distinctSchemaCount;
+	private final long subSchemaCount;
+	private final long distinctSubSchemaCount;
+
+	DeduplicationStats(long schemaCount, long distinctSchemaCount, long subSchemaCount, long distinctSubSchemaCount) {
+		this.schemaCount = schemaCount;
+		this.distinctSchemaCount = distinctSchemaCount;
+		this.subSchemaCount = subSchemaCount;
+		this.distinctSubSchemaCount = distinctSubSchemaCount;
+	}
+
+	/**
+	 * @return the number of schemas of links loaded so far
+	 */
+	public long getSchemaCount() {
+		return schemaCount;
+	}
+
+	/**
+	 * @return the number of schemas of links which are loaded into distinct
+	 *         Schema
+	 */
+	public long getDistinctSchemaCount() {
+		return distinctSchemaCount;
+	}
+
+	/**
+	 * @return the number of interned sub-schemas in the schemas loaded so far
+	 */
+	public long getSubSchemaCount() {
+		return subSchemaCount;
+	}
+
+	/**
+	 * @return the number of interned sub-schemas which are loaded into
+	 *         distinct Schema
+	 */
+	public long getDistinctSubSchemaCount() {
+		return distinctSubSchemaCount;
+	}
+
+	/**
+	 * @return the number of schemas and sub-schemas which were not loaded
+	 *         since an equal one was loaded
+	 */
+	public long getDeduplicatedCount() {
+		return schemaCount - distinctSchemaCount + subSchemaCount - distinctSubSchemaCount;
+	}
+
+	@Override
+	public String toString() {
+		return "DeduplicationStats [schemaCount=" + schemaCount + ", distinctSchemaCount=" + distinctSchemaCount
+				+ ", subSchemaCount=" + subSchemaCount + ", distinctSubSchemaCount=" + distinctSubSchemaCount + "]";
+	}
+}
@@ -0,0 +1,82 @@
+package me.tyru.json.hyper.schema;
+
+import java.util.Arrays;
+
+import me.tyru.json.hyper.schema.media.MediaType;
+
+/**
+ * Media type negotiation index of the routes which share the same method and
+ * href. A requested media type is resolved in the following order:
+ *
+ * <ol>
+ * <li>a route whose encType equals the requested media type</li>
+ * <li>a route whose encType equals the structured syntax of the requested
+ * media type (e.g. a route of {@code application/json} serves
+ * {@code application/vnd.x+json})</li>
+ * <li>the first route whose encType is a wildcard including the requested
+ * media type (e.g. {@code application/*+json})</li>
+ * </ol>
+ *
+ * @author tyru
+ *
+ */
+final class EncTypeIndex {
+	private MediaType[] encTypes = new MediaType[0];
+	private Route[] routes = new Route[0];
+	private boolean hasWildcard;
+
+	/**
+	 * This must be called only while compiling a route table.
+	 *
+	 * @param encType
+	 * @param route
+	 */
+	void add(MediaType encType, Route route) {
+		encTypes = Arrays.copyOf(encTypes, encTypes.length + 1);
+		routes = Arrays.copyOf(routes, routes.length + 1);
+		encTypes[encTypes.length - 1] = encType;
+		routes[routes.length - 1] = route;
+		hasWildcard |= encType.isWildcard();
+	}
+
+	/**
+	 * @param requested
+	 * @return Route, or null
+	 */
+	Route get(MediaType requested) {
+		if (requested == null) {
+			return null;
+		}
+		Route route = getExactly(requested);
+		if (route != null) {
+			return route;
+		}
+		if (requested.getStructuredSyntax() != null) {
+			route = getExactly(requested.getStructuredSyntax());
+			if (route != null) {
+				return route;
+			}
+		}
+		if (hasWildcard) {
+			for (int i = 0; i < encTypes.length; i++) {
+				if (encTypes[i].includes(requested)) {
+					return routes[i];
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param mediaType
+	 * @return the route of exactly mediaType, or null
+	 */
+	Route getExactly(MediaType mediaType) {
+		for (int i = 0; i < encTypes.length; i++) {
+			if (encTypes[i].equals(mediaType)) {
+				return routes[i];
+			}
+		}
+		return null;
+	}
+}
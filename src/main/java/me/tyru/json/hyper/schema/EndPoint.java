@@ -17,19 +17,24 @@ import java.util.Objects;
  *
  */
 public class EndPoint {
-	private String method;
-	private String href;
-	private String encType;
+	private final String method;
+	private final String href;
+	private final String encType;
+	/** EndPoint is used as a key of maps. Compute it only once. */
+	private final int hash;
 
-	private EndPoint() {
+	private EndPoint(String method, String href, String encType) {
+		this.method = method;
+		this.href = href;
+		this.encType = encType;
+		this.hash = computeHashCode();
 	}
 
 	public static EndPoint of(String method, String href, String encType) {
-		EndPoint obj = new EndPoint();
-		obj.method = Objects.requireNonNull(method, "method must not be null");
-		obj.href = Objects.requireNonNull(href, "href must not be null");
-		obj.encType = Objects.requireNonNull(encType, "encType must not be null");
-		return obj;
+		return new EndPoint(
+				Objects.requireNonNull(method, "method must not be null"),
+				Objects.requireNonNull(href, "href must not be null"),
+				Objects.requireNonNull(encType, "encType must not be null"));
 	}
 
 	public String getMethod() {
@@ -43,8 +48,13 @@ public class EndPoint {
 	public String getEncType() {
 		return encType;
 	}
+
 	@Override
 	public int hashCode() {
+		return hash;
+	}
+
+	private int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((encType == null) ? 0 : encType.hashCode());
@@ -62,6 +72,8 @@ public class EndPoint {
 		if (getClass() != obj.getClass())
 			return false;
 		EndPoint other = (EndPoint) obj;
+		if (hash != other.hash)
+			return false;
 		if (encType == null) {
 			if (other.encType != null)
 				return false;
@@ -79,4 +91,9 @@ public class EndPoint {
 			return false;
 		return true;
 	}
+
+	@Override
+	public String toString() {
+		return method + " " + href + " (" + encType + ")";
+	}
 }
\ No newline at end of file
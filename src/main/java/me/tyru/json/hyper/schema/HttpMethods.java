@@ -0,0 +1,41 @@
+package me.tyru.json.hyper.schema;
+
+/**
+ * Interns HTTP methods to small ordinals without hashing nor allocation.
+ *
+ * @author tyru
+ *
+ */
+final class HttpMethods {
+	static final String[] STANDARD = { "GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OPTIONS", "TRACE",
+			"CONNECT" };
+
+	private HttpMethods() {
+	}
+
+	/**
+	 * @param method
+	 * @return the index of {@link #STANDARD}, or -1 if method is not a
+	 *         standard method (it is case-sensitive, as RFC 7231 says)
+	 */
+	static int ordinalOf(CharSequence method) {
+		switch (method.length()) {
+		case 3:
+			return is(method, 0) ? 0 : is(method, 2) ? 2 : -1;
+		case 4:
+			return is(method, 1) ? 1 : is(method, 5) ? 5 : -1;
+		case 5:
+			return is(method, 3) ? 3 : is(method, 7) ? 7 : -1;
+		case 6:
+			return is(method, 4) ? 4 : -1;
+		case 7:
+			return is(method, 6) ? 6 : is(method, 8) ? 8 : -1;
+		default:
+			return -1;
+		}
+	}
+
+	private static boolean is(CharSequence method, int ordinal) {
+		return LiteralTable.regionEquals(STANDARD[ordinal], method, 0, method.length());
+	}
+}
@@ -1,32 +1,68 @@
 package me.tyru.json.hyper.schema;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.container.ContainerRequestContext;
 
 import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
 import org.json.JSONObject;
 
+import me.tyru.json.hyper.schema.compile.CompiledSchema;
+import me.tyru.json.hyper.schema.concurrent.ValidationExecutor;
+import me.tyru.json.hyper.schema.media.ContentType;
+import me.tyru.json.hyper.schema.media.MediaType;
+import me.tyru.json.hyper.schema.metrics.Phase;
+import me.tyru.json.hyper.schema.metrics.ValidationListener;
 import me.tyru.json.hyper.schema.request.JSONRequest;
 import me.tyru.json.hyper.schema.request.JaxrsJSONRequest;
 import me.tyru.json.hyper.schema.request.ServletJSONRequest;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+import me.tyru.json.hyper.schema.stream.StreamingValidator;
 
 public class HyperSchema {
 
 	public static final String DEFAULT_ENC_TYPE = "application/json";
+	public static final String DEFAULT_CHARSET = "UTF-8";
 	private static final Set<String> ALLOW_ENTITY_METHODS = Collections
 			.unmodifiableSet(new HashSet<>(Arrays.asList("POST", "PUT", "PATCH")));
 
-	private final Map<EndPoint, Schema> routes;
+	private final Map<EndPoint, LinkSchema> routes;
+	private final Router router;
 	private final boolean validateMediaType;
+	/** null if disabled */
+	private final MatchCache matchCache;
+	/** null if disabled */
+	private final ResultCache resultCache;
+	private final boolean streamingValidation;
+	/** Router of targetSchema of links */
+	private final Router responseRouter;
+	private final double responseSampleRate;
+	/** null if validateAsync() validates in the caller thread */
+	private final ValidationExecutor validationExecutor;
+	private final long validationTimeoutMillis;
+	/** Loader of schemas of routes */
+	private final SchemaResolver resolver;
+	private final ValidationListener listener;
+	/** false if listener is {@link ValidationListener#NOOP}, which skips reading the clock */
+	private final boolean listening;
 
 	/**
 	 * NOTE: This constructor is not intended to be used by user (You!) because
@@ -34,14 +70,111 @@ public class HyperSchema {
 	 * create HyperSchema object.
 	 *
 	 * @param routes
+	 * @param router
+	 *            compiled {@code routes}
 	 * @param doValidation
+	 * @param matchCache
+	 *            cache of match results, or null
+	 * @param resultCache
+	 *            cache of validation results, or null
+	 * @param streamingValidation
+	 *            validate request entities by {@link StreamingValidator}
+	 * @param responseRouter
+	 *            compiled targetSchema of links
+	 * @param responseSampleRate
+	 *            fraction of responses to validate
+	 * @param validationExecutor
+	 *            executor of {@link #validateAsync(JSONRequest)}, or null
+	 * @param validationTimeoutMillis
+	 *            time budget of {@link #validateAsync(JSONRequest)}, or 0
+	 * @param resolver
+	 *            loader of schemas of routes
+	 * @param listener
+	 *            listener of validations
 	 * @return HyperSchema
 	 */
 	// TODO: Create annotation to make compilation error when
 	// being used by a code outside this package.
-	HyperSchema(Map<EndPoint, Schema> routes, boolean validateMediaType) {
+	HyperSchema(Map<EndPoint, LinkSchema> routes, Router router, boolean validateMediaType, MatchCache matchCache,
+			ResultCache resultCache, boolean streamingValidation, Router responseRouter, double responseSampleRate,
+			ValidationExecutor validationExecutor, long validationTimeoutMillis, SchemaResolver resolver,
+			ValidationListener listener) {
 		this.routes = Objects.requireNonNull(routes, "routes must not be null");
+		this.router = Objects.requireNonNull(router, "router must not be null");
 		this.validateMediaType = Objects.requireNonNull(validateMediaType, "validateMediaType must not be null");
+		this.matchCache = matchCache;
+		this.resultCache = resultCache;
+		this.streamingValidation = streamingValidation;
+		this.responseRouter = Objects.requireNonNull(responseRouter, "responseRouter must not be null");
+		this.responseSampleRate = responseSampleRate;
+		this.validationExecutor = validationExecutor;
+		this.validationTimeoutMillis = validationTimeoutMillis;
+		this.resolver = Objects.requireNonNull(resolver, "resolver must not be null");
+		this.listener = Objects.requireNonNull(listener, "listener must not be null");
+		this.listening = listener != ValidationListener.NOOP;
+	}
+
+	/**
+	 * @param routes
+	 *            routes of schema
+	 * @param responseRoutes
+	 *            routes of targetSchema
+	 * @return HyperSchema of given routes and the options of this. The caches
+	 *         and their statistics are shared.
+	 */
+	HyperSchema withRoutes(Map<EndPoint, LinkSchema> routes, Map<EndPoint, LinkSchema> responseRoutes) {
+		return withRoutes(routes, responseRoutes, resolver);
+	}
+
+	/**
+	 * @param routes
+	 *            routes of schema
+	 * @param responseRoutes
+	 *            routes of targetSchema
+	 * @param resolver
+	 *            loader of schemas of routes
+	 * @return HyperSchema of given routes and the options of this. The caches
+	 *         and their statistics are shared.
+	 */
+	HyperSchema withRoutes(Map<EndPoint, LinkSchema> routes, Map<EndPoint, LinkSchema> responseRoutes,
+			SchemaResolver resolver) {
+		HyperSchema hyperSchema = new HyperSchema(routes, Router.compile(routes), validateMediaType, matchCache,
+				resultCache, streamingValidation, Router.compile(responseRoutes), responseSampleRate,
+				validationExecutor, validationTimeoutMillis, resolver, listener);
+		if (matchCache != null) {
+			// Entries of the old router never hit again
+			matchCache.invalidateAll();
+		}
+		if (resultCache != null) {
+			// Entries of the old routes never hit again
+			resultCache.invalidateAll();
+		}
+		return hyperSchema;
+	}
+
+	/**
+	 * @return loader of schemas of routes
+	 */
+	SchemaResolver getResolver() {
+		return resolver;
+	}
+
+	/**
+	 * @return routes of schema in definition order
+	 */
+	Map<EndPoint, LinkSchema> getRoutes() {
+		return Collections.unmodifiableMap(routes);
+	}
+
+	/**
+	 * @return routes of targetSchema in definition order
+	 */
+	Map<EndPoint, LinkSchema> getResponseRoutes() {
+		Map<EndPoint, LinkSchema> responseRoutes = new LinkedHashMap<>();
+		for (Route route : responseRouter.getRoutes()) {
+			responseRoutes.put(route.getEndPoint(), route.getLinkSchema());
+		}
+		return Collections.unmodifiableMap(responseRoutes);
 	}
 
 	/**
@@ -62,7 +195,13 @@ public class HyperSchema {
 
 	/**
 	 * If a given URI path matches schema's route definitions, returns non-null
-	 * Optional schema object. Otherwise, returns null Optional object.
+	 * Optional schema object. Otherwise, returns null Optional object. href of
+	 * a link definition may be a URI template like {@code /users/{id}}.
+	 *
+	 * encType is negotiated with encType of link definitions: e.g.
+	 * {@code application/vnd.x+json} matches a link of
+	 * {@code application/json} or {@code application/*+json} unless a link of
+	 * {@code application/vnd.x+json} itself exists.
 	 *
 	 * @param method
 	 *            HTTP method
@@ -71,8 +210,191 @@ public class HyperSchema {
 	 * @return Optional<Schema>
 	 */
 	public Optional<Schema> match(String method, String href, String encType) {
-		EndPoint endPoint = EndPoint.of(method, href, encType);
-		return Optional.ofNullable(routes.get(endPoint));
+		Objects.requireNonNull(method, "method must not be null");
+		Objects.requireNonNull(href, "href must not be null");
+		Objects.requireNonNull(encType, "encType must not be null");
+		Route route = findRoute(method, href, toMediaType(encType));
+		return route != null ? Optional.of(route.getSchema()) : Optional.empty();
+	}
+
+	/**
+	 * Same as {@code matchOrNull(method, href, 0, href.length(), encType)}.
+	 *
+	 * @see {@link HyperSchema#matchOrNull(CharSequence, CharSequence, int, int, String)}
+	 * @param method
+	 *            HTTP method
+	 * @param href
+	 *            URI path
+	 * @param encType
+	 * @return Schema, or null
+	 */
+	public Schema matchOrNull(CharSequence method, CharSequence href, String encType) {
+		Objects.requireNonNull(href, "href must not be null");
+		Objects.requireNonNull(encType, "encType must not be null");
+		return findSchema(method, href, 0, href.length(), toMediaType(encType));
+	}
+
+	/**
+	 * Allocation-free version of
+	 * {@link HyperSchema#match(String, String, String)} for the hot path. URI
+	 * path is given as a region of {@code href}, so a caller can pass e.g. a
+	 * request line buffer without creating a substring. This returns null
+	 * instead of empty Optional if no route matches.
+	 *
+	 * @param method
+	 *            HTTP method
+	 * @param href
+	 *            a sequence which contains URI path
+	 * @param offset
+	 *            the start index of URI path in href
+	 * @param length
+	 *            the length of URI path
+	 * @param encType
+	 * @return Schema, or null
+	 */
+	public Schema matchOrNull(CharSequence method, CharSequence href, int offset, int length, String encType) {
+		Objects.requireNonNull(encType, "encType must not be null");
+		return findSchema(method, href, offset, length, toMediaType(encType));
+	}
+
+	/**
+	 * Same as
+	 * {@link HyperSchema#matchOrNull(CharSequence, CharSequence, int, int, String)}
+	 * but takes a parsed media type.
+	 *
+	 * @param method
+	 *            HTTP method
+	 * @param href
+	 *            a sequence which contains URI path
+	 * @param offset
+	 *            the start index of URI path in href
+	 * @param length
+	 *            the length of URI path
+	 * @param encType
+	 * @return Schema, or null
+	 */
+	public Schema matchOrNull(CharSequence method, CharSequence href, int offset, int length, MediaType encType) {
+		Objects.requireNonNull(encType, "encType must not be null");
+		return findSchema(method, href, offset, length, encType);
+	}
+
+	/**
+	 * Finds a route through the match cache if it is enabled.
+	 *
+	 * @param encType
+	 *            null never matches
+	 */
+	private Route findRoute(String method, String href, MediaType encType) {
+		if (matchCache == null || encType == null) {
+			return findRoute(method, href, 0, href.length(), encType);
+		}
+		RouteMatch match = matchCache.get(router, method, href, encType);
+		return match != null ? match.getRoute() : null;
+	}
+
+	/**
+	 * @param encType
+	 *            null never matches
+	 */
+	private Schema findSchema(CharSequence method, CharSequence href, int offset, int length, MediaType encType) {
+		Route route = findRoute(method, href, offset, length, encType);
+		return route != null ? route.getSchema() : null;
+	}
+
+	/**
+	 * @param encType
+	 *            null never matches
+	 */
+	private Route findRoute(CharSequence method, CharSequence href, int offset, int length, MediaType encType) {
+		Objects.requireNonNull(method, "method must not be null");
+		Objects.requireNonNull(href, "href must not be null");
+		if (offset < 0 || length < 0 || offset + length > href.length()) {
+			throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length);
+		}
+		if (encType == null) {
+			return null;
+		}
+		return router.find(method, href, offset, length, encType);
+	}
+
+	/**
+	 * Same as {@code route(method, href, DEFAULT_ENC_TYPE)}.
+	 *
+	 * @see {@link HyperSchema#route(String, String, String)}
+	 * @param method
+	 *            HTTP method
+	 * @param href
+	 *            URI path
+	 * @return Optional<RouteMatch>
+	 */
+	public Optional<RouteMatch> route(String method, String href) {
+		return route(method, href, DEFAULT_ENC_TYPE);
+	}
+
+	/**
+	 * Like {@link HyperSchema#match(String, String, String)}, but also returns
+	 * the matched link definition and the values of its template variables.
+	 *
+	 * @param method
+	 *            HTTP method
+	 * @param href
+	 *            URI path
+	 * @return Optional<RouteMatch>
+	 */
+	public Optional<RouteMatch> route(String method, String href, String encType) {
+		Objects.requireNonNull(method, "method must not be null");
+		Objects.requireNonNull(href, "href must not be null");
+		Objects.requireNonNull(encType, "encType must not be null");
+		MediaType mediaType = toMediaType(encType);
+		if (mediaType == null) {
+			return Optional.empty();
+		}
+		if (matchCache != null) {
+			return Optional.ofNullable(matchCache.get(router, method, href, mediaType));
+		}
+		return Optional.ofNullable(router.lookup(method, href, mediaType));
+	}
+
+	/**
+	 * Returns statistics of the cache of match results. The cache is enabled
+	 * by {@link HyperSchemaBuilder#matchCacheSize(int)}.
+	 *
+	 * @return Optional<CacheStats>, or empty Optional if the cache is disabled
+	 */
+	public Optional<CacheStats> getMatchCacheStats() {
+		return matchCache != null ? Optional.of(matchCache.stats()) : Optional.empty();
+	}
+
+	/**
+	 * Returns statistics of the cache of validation results. The cache is
+	 * enabled by {@link HyperSchemaBuilder#resultCache(int, long, java.util.concurrent.TimeUnit)}.
+	 *
+	 * @return Optional<CacheStats>, or empty Optional if the cache is disabled
+	 */
+	public Optional<CacheStats> getResultCacheStats() {
+		return resultCache != null ? Optional.of(resultCache.stats()) : Optional.empty();
+	}
+
+	/**
+	 * Returns statistics of schemas of links which are equal in structure and
+	 * loaded once. If {@link HyperSchemaBuilder#lazySchemas(boolean)} is set,
+	 * they grow as schemas are loaded.
+	 *
+	 * @return DeduplicationStats
+	 */
+	public DeduplicationStats getDeduplicationStats() {
+		return resolver.stats();
+	}
+
+	/**
+	 * Content-Type values are cached by {@link ContentType#parse(String)}, so
+	 * this does not parse a known value again.
+	 *
+	 * @return MediaType, or null if encType is malformed (never matches)
+	 */
+	private static MediaType toMediaType(String encType) {
+		ContentType contentType = ContentType.parse(encType);
+		return contentType != null ? contentType.getMediaType() : null;
 	}
 
 	/**
@@ -105,18 +427,42 @@ public class HyperSchema {
 	}
 
 	/**
-	 * JAX-RS support. This is same as {@code validate(context, "UTF-8")}.
+	 * Streaming version of
+	 * {@link HyperSchema#validate(String, String, String, JSONObject)}. JSON
+	 * text is validated while it is read from {@code entity} by
+	 * {@link StreamingValidator}, and stops at the first violation. Empty
+	 * entity is not validated.
+	 *
+	 * @param method
+	 * @param href
+	 * @param encType
+	 * @param entity
+	 *            JSON object text
+	 * @throws UncheckedIOException
+	 */
+	public void validate(String method, String href, String encType, Reader entity) {
+		Objects.requireNonNull(entity, "entity must not be null");
+		Optional<Schema> schema = match(method, href, encType);
+		if (schema.isPresent()) {
+			validateStream(schema.get(), entity);
+		}
+	}
+
+	/**
+	 * JAX-RS support. This is same as {@code validate(context, charset)}
+	 * where charset is charset parameter of Content-Type, or "UTF-8" if it
+	 * is not specified.
 	 *
 	 * @see {@link HyperSchema#validate(ContainerRequestContext, String)}
 	 * @param context
 	 * @throws UncheckedIOException
 	 */
 	public void validate(ContainerRequestContext context) {
-		validate(JaxrsJSONRequest.of(context), "UTF-8");
+		validate(JaxrsJSONRequest.of(context));
 	}
 
 	/**
-	 * JAX-RS support. This is same as {@code validate(context, "UTF-8")}.
+	 * JAX-RS support.
 	 *
 	 * @param context
 	 * @throws UncheckedIOException
@@ -127,14 +473,17 @@ public class HyperSchema {
 
 	/**
 	 * HttpServletRequest support. This is same as
-	 * {@code validate(request, "UTF-8")}.
+	 * {@code validate(request, charset)} where charset is charset parameter
+	 * of Content-Type, or "UTF-8" if it is not specified.
 	 *
 	 * @see {@link HyperSchema#validate(HttpServletRequest, String)}
 	 * @param request
 	 * @throws UncheckedIOException
 	 */
 	public void validate(HttpServletRequest request) {
-		validate(ServletJSONRequest.of(request), "UTF-8");
+		try (ServletJSONRequest req = ServletJSONRequest.of(request)) {
+			validate(req);
+		}
 	}
 
 	/**
@@ -144,18 +493,23 @@ public class HyperSchema {
 	 * @throws UncheckedIOException
 	 */
 	public void validate(HttpServletRequest request, String charset) {
-		validate(ServletJSONRequest.of(request), charset);
+		try (ServletJSONRequest req = ServletJSONRequest.of(request)) {
+			validate(req, charset);
+		}
 	}
 
 	/**
 	 * Validate JSONRequest type's value which may be defined by user by
-	 * implementing JSONRequest interface.
+	 * implementing JSONRequest interface. The entity is decoded by
+	 * {@link JSONRequest#getCharset()}, or "UTF-8" if it returns null.
 	 *
 	 * @param request
 	 * @throws UncheckedIOException
 	 */
 	public void validate(JSONRequest req) {
-		validate(req, "UTF-8");
+		Objects.requireNonNull(req, "request");
+		String charset = req.getCharset();
+		validate(req, charset != null ? charset : DEFAULT_CHARSET);
 	}
 
 	/**
@@ -169,17 +523,311 @@ public class HyperSchema {
 	public void validate(JSONRequest req, String charset) {
 		Objects.requireNonNull(req, "request");
 		Objects.requireNonNull(charset, "charset");
-		Objects.requireNonNull(req.getEncType(), "req.getEncType()");
-
-		if (!"application/json".equals(req.getEncType())) {
-			// Throw or skip
-			if (validateMediaType) {
-				throw new IllegalArgumentException("Query media type is not 'application/json'.");
-			} else {
-				return;
+		MediaType mediaType = Objects.requireNonNull(req.getMediaType(), "req.getMediaType()");
+		if (acceptsMediaType(mediaType)) {
+			validateEntity(req, mediaType, charset);
+		}
+	}
+
+	/**
+	 * Exception-free version of
+	 * {@link HyperSchema#validate(String, String, String, JSONObject)}. This
+	 * stops at the first violation.
+	 *
+	 * @param method
+	 * @param href
+	 * @param encType
+	 * @param jsonObject
+	 * @return ValidationResult
+	 */
+	public ValidationResult check(String method, String href, String encType, JSONObject jsonObject) {
+		return check(method, href, encType, jsonObject, 1);
+	}
+
+	/**
+	 * Exception-free version of
+	 * {@link HyperSchema#validate(String, String, String, JSONObject)}. If
+	 * {@link HyperSchemaBuilder#compileSchemas(boolean)} is set, a valid
+	 * object is checked without allocation by the compiled schema of the
+	 * link. Otherwise the violations which the schema throws are recorded.
+	 *
+	 * @param method
+	 * @param href
+	 * @param encType
+	 * @param jsonObject
+	 * @param maxErrors
+	 *            the maximum number of violations to record (1 means
+	 *            fail-fast)
+	 * @return ValidationResult, which is valid if no link matches
+	 */
+	public ValidationResult check(String method, String href, String encType, JSONObject jsonObject,
+			int maxErrors) {
+		Objects.requireNonNull(method, "method must not be null");
+		Objects.requireNonNull(href, "href must not be null");
+		Objects.requireNonNull(encType, "encType must not be null");
+		Objects.requireNonNull(jsonObject, "jsonObject must not be null");
+		Route route = matchRoute(method, href, toMediaType(encType));
+		return route != null ? checkSubject(route, jsonObject, maxErrors) : ValidationResult.valid();
+	}
+
+	/**
+	 * JAX-RS support of {@link HyperSchema#check(JSONRequest)}.
+	 *
+	 * @param context
+	 * @return ValidationResult
+	 * @throws UncheckedIOException
+	 */
+	public ValidationResult check(ContainerRequestContext context) {
+		return check(JaxrsJSONRequest.of(context));
+	}
+
+	/**
+	 * HttpServletRequest support of {@link HyperSchema#check(JSONRequest)}.
+	 *
+	 * @param request
+	 * @return ValidationResult
+	 * @throws UncheckedIOException
+	 */
+	public ValidationResult check(HttpServletRequest request) {
+		try (ServletJSONRequest req = ServletJSONRequest.of(request)) {
+			return check(req);
+		}
+	}
+
+	/**
+	 * Same as {@code check(req, 1)}, which stops at the first violation.
+	 *
+	 * @see {@link HyperSchema#check(JSONRequest, int)}
+	 * @param req
+	 * @return ValidationResult
+	 * @throws UncheckedIOException
+	 */
+	public ValidationResult check(JSONRequest req) {
+		return check(req, 1);
+	}
+
+	/**
+	 * Exception-free version of {@link HyperSchema#validate(JSONRequest)}.
+	 * Violations are returned instead of being thrown as
+	 * {@link org.everit.json.schema.ValidationException}, and their messages
+	 * are rendered only when requested. The entity is decoded by
+	 * {@link JSONRequest#getCharset()}, or "UTF-8" if it returns null.
+	 *
+	 * NOTE: A malformed entity still throws
+	 * {@link org.json.JSONException}, and a media type which is not JSON
+	 * throws IllegalArgumentException if
+	 * {@link HyperSchemaBuilder#validateMediaType(boolean)} is set.
+	 *
+	 * If {@link HyperSchemaBuilder#resultCache(int, long, java.util.concurrent.TimeUnit)}
+	 * is set, the result of an entity which was checked before is returned
+	 * without parsing it. The listener gets only the result of such a hit.
+	 * The entity is hashed in place, so req must keep its buffer until this
+	 * returns; a result of validation which was abandoned (e.g. timed out)
+	 * is not cached.
+	 *
+	 * If {@link HyperSchemaBuilder#streamingValidation(boolean)} is set, an
+	 * entity of POST, PUT and PATCH is validated while it is parsed, and the
+	 * result has only the first violation.
+	 *
+	 * @param req
+	 * @param maxErrors
+	 *            the maximum number of violations to record (1 means
+	 *            fail-fast)
+	 * @return ValidationResult
+	 * @throws UncheckedIOException
+	 */
+	public ValidationResult check(JSONRequest req, int maxErrors) {
+		Objects.requireNonNull(req, "request");
+		if (maxErrors <= 0) {
+			throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+		}
+		return check(req, maxErrors, () -> false);
+	}
+
+	/**
+	 * @param abandoned
+	 *            true if nobody waits for the result any longer (e.g. it
+	 *            timed out), which is then not cached
+	 */
+	private ValidationResult check(JSONRequest req, int maxErrors, BooleanSupplier abandoned) {
+		String charset = req.getCharset() != null ? req.getCharset() : DEFAULT_CHARSET;
+		MediaType mediaType = Objects.requireNonNull(req.getMediaType(), "req.getMediaType()");
+		if (!acceptsMediaType(mediaType)) {
+			return ValidationResult.valid();
+		}
+		Route route = matchRoute(req.getMethod(), req.getHref(), mediaType);
+		if (route == null) {
+			return ValidationResult.valid();
+		}
+		if (resultCache != null && ALLOW_ENTITY_METHODS.contains(req.getMethod())) {
+			ByteBuffer entity = req.getEntityBytesWithKeepingStream();
+			if (entity != null) {
+				ResultCache.Key key = resultCache.keyOf(route, entity, charset, maxErrors);
+				ValidationResult result = resultCache.get(key);
+				if (result != null) {
+					if (listening) {
+						listener.onResult(route.getEndPoint(), result.isValid());
+					}
+					return result;
+				}
+				result = checkEntity(route, req, charset, maxErrors);
+				if (!abandoned.getAsBoolean()) {
+					resultCache.put(key, result);
+				}
+				return result;
 			}
 		}
-		validateEntity(req, charset);
+		return checkEntity(route, req, charset, maxErrors);
+	}
+
+	private ValidationResult checkEntity(Route route, JSONRequest req, String charset, int maxErrors) {
+		if (streamingValidation && ALLOW_ENTITY_METHODS.contains(req.getMethod())) {
+			Reader reader = req.getEntityReaderWithKeepingStream(charset);
+			return reader != null ? checkStream(route, reader) : ValidationResult.valid();
+		}
+		JSONObject subject = subjectOf(route, req, charset);
+		return subject != null ? checkSubject(route, subject, maxErrors) : ValidationResult.valid();
+	}
+
+	/**
+	 * {@link #findRoute(String, String, MediaType)} which reports the match
+	 * phase to the listener.
+	 */
+	private Route matchRoute(String method, String href, MediaType encType) {
+		long start = startTime();
+		Route route = findRoute(method, href, encType);
+		record(route != null ? route.getEndPoint() : null, Phase.MATCH, start);
+		return route;
+	}
+
+	private ValidationResult checkSubject(Route route, JSONObject subject, int maxErrors) {
+		long start = startTime();
+		ValidationResult result = checkValue(route.getSchema(), subject, maxErrors);
+		if (listening) {
+			record(route.getEndPoint(), Phase.VALIDATE, start);
+			listener.onResult(route.getEndPoint(), result.isValid());
+		}
+		return result;
+	}
+
+	/**
+	 * Validates an entity by {@link StreamingValidator}, whose first
+	 * violation is returned instead of being thrown.
+	 *
+	 * @throws UncheckedIOException
+	 */
+	private ValidationResult checkStream(Route route, Reader entity) {
+		long start = startTime();
+		Schema schema = route.getSchema();
+		ValidationResult result;
+		try {
+			// Reading and parsing are not separable from validation
+			validateStream(schema, entity);
+			result = ValidationResult.valid();
+		} catch (ValidationException e) {
+			result = ValidationResult.builder(schema, 1).addAll(e).build();
+		}
+		if (listening) {
+			record(route.getEndPoint(), Phase.VALIDATE, start);
+			listener.onResult(route.getEndPoint(), result.isValid());
+		}
+		return result;
+	}
+
+	/**
+	 * @return the result of the compiled checks if schema is compiled (see
+	 *         {@link HyperSchemaBuilder#compileSchemas(boolean)}), otherwise
+	 *         the violations which schema throws
+	 */
+	private static ValidationResult checkValue(Schema schema, Object subject, int maxErrors) {
+		if (schema instanceof CompiledSchema) {
+			return ((CompiledSchema) schema).check(subject, maxErrors);
+		}
+		try {
+			schema.validate(subject);
+			return ValidationResult.valid();
+		} catch (ValidationException e) {
+			return ValidationResult.builder(schema, maxErrors).addAll(e).build();
+		}
+	}
+
+	/**
+	 * @return the current time to be passed to
+	 *         {@link #record(EndPoint, Phase, long)}, or 0 if no listener
+	 *         needs it
+	 */
+	private long startTime() {
+		return listening ? System.nanoTime() : 0;
+	}
+
+	private void record(EndPoint endPoint, Phase phase, long start) {
+		if (listening) {
+			listener.onPhase(endPoint, phase, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Same as {@code validateAsync(req, 1)}, which stops at the first
+	 * violation.
+	 *
+	 * @see {@link HyperSchema#validateAsync(JSONRequest, int)}
+	 * @param req
+	 * @return future of ValidationResult
+	 */
+	public CompletableFuture<ValidationResult> validateAsync(JSONRequest req) {
+		return validateAsync(req, 1);
+	}
+
+	/**
+	 * Runs {@link HyperSchema#check(JSONRequest, int)} on the executor set by
+	 * {@link HyperSchemaBuilder#validationExecutor(ValidationExecutor)}, so
+	 * that a large entity does not hold the caller thread. Without the
+	 * executor, this validates in the caller thread.
+	 *
+	 * The result is {@link ValidationResult.Status#REJECTED} if too many
+	 * validations are pending, and {@link ValidationResult.Status#TIMED_OUT}
+	 * if validation does not finish within
+	 * {@link HyperSchemaBuilder#validationTimeout(long, java.util.concurrent.TimeUnit)}.
+	 * The future completes exceptionally with what
+	 * {@link HyperSchema#check(JSONRequest, int)} throws.
+	 *
+	 * @param req
+	 * @param maxErrors
+	 *            the maximum number of violations to record (1 means
+	 *            fail-fast)
+	 * @return future of ValidationResult
+	 */
+	public CompletableFuture<ValidationResult> validateAsync(JSONRequest req, int maxErrors) {
+		Objects.requireNonNull(req, "request");
+		if (maxErrors <= 0) {
+			throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+		}
+		if (validationExecutor != null) {
+			return validationExecutor.submit(abandoned -> check(req, maxErrors, abandoned), validationTimeoutMillis);
+		}
+		CompletableFuture<ValidationResult> future = new CompletableFuture<>();
+		try {
+			future.complete(check(req, maxErrors, () -> false));
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * @return false if the media type is not JSON and is skipped
+	 * @throws IllegalArgumentException
+	 *             if the media type is not JSON and validateMediaType is set
+	 */
+	private boolean acceptsMediaType(MediaType mediaType) {
+		if (mediaType.isJson()) {
+			return true;
+		}
+		// Throw or skip
+		if (validateMediaType) {
+			throw new IllegalArgumentException("Query media type is not 'application/json' nor '+json'.");
+		}
+		return false;
 	}
 
 	/**
@@ -192,28 +840,171 @@ public class HyperSchema {
 	 * the body."
 	 *
 	 * @param context
+	 * @param encType
 	 * @param charset
 	 * @throws UncheckedIOException
 	 */
-	private void validateEntity(JSONRequest req, String charset) {
+	private void validateEntity(JSONRequest req, MediaType encType, String charset) {
 		String method = req.getMethod();
 		String href = req.getHref();
-		String encType = req.getEncType();
-		if (ALLOW_ENTITY_METHODS.contains(method)) {
-			String json = req.getEntityWithKeepingStream(charset);
-			if (json == null || json.isEmpty()) {
-				// TODO: Must above methods contain entity?
-				return;
+		Route route = matchRoute(method, href, encType);
+		if (route == null) {
+			return;
+		}
+		Schema schema = route.getSchema();
+		if (ALLOW_ENTITY_METHODS.contains(method) && streamingValidation) {
+			Reader entity = req.getEntityReaderWithKeepingStream(charset);
+			if (entity != null) {
+				// Reading and parsing are not separable from validation
+				validateSubject(route, () -> validateStream(schema, entity));
 			}
-			validate(method, href, encType, new JSONObject(json));
-		} else {
-			// TODO
-			// This has two problems:
-			// 1. Duplicate keys
-			// 2. It will throw ValidatorException when the property type in
-			// hyper schema is NOT "string" (because query parameters are
-			// string).
-			validate(method, href, encType, new JSONObject(req.getQueryParameters()));
+			return;
+		}
+		JSONObject subject = subjectOf(route, req, charset);
+		if (subject != null) {
+			validateSubject(route, () -> schema.validate(subject));
+		}
+	}
+
+	/**
+	 * Runs validation which throws ValidationException, and reports it to
+	 * the listener.
+	 */
+	private void validateSubject(Route route, Runnable validation) {
+		if (!listening) {
+			validation.run();
+			return;
+		}
+		long start = startTime();
+		boolean valid = false;
+		try {
+			validation.run();
+			valid = true;
+		} finally {
+			record(route.getEndPoint(), Phase.VALIDATE, start);
+			listener.onResult(route.getEndPoint(), valid);
+		}
+	}
+
+	/**
+	 * Loads the schemas of links which are not used yet, so that the first
+	 * requests of them do not pay for it. This is effective with
+	 * {@link HyperSchemaBuilder#lazySchemas(boolean)}, which defers loading
+	 * schemas from build to their first match, e.g.
+	 * {@code hyperSchema.precompile(ForkJoinPool.commonPool())} after build.
+	 * Requests are served meanwhile, and a schema which a request has already
+	 * loaded is not loaded again.
+	 *
+	 * @param executor
+	 *            executor of loading in background
+	 * @return future which completes when all schemas are loaded, or
+	 *         completes exceptionally if a schema is invalid
+	 */
+	public CompletableFuture<Void> precompile(Executor executor) {
+		Objects.requireNonNull(executor, "executor must not be null");
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (Router r : new Router[] { router, responseRouter }) {
+			for (Route route : r.getRoutes()) {
+				if (!route.getLinkSchema().isLoaded()) {
+					futures.add(CompletableFuture.runAsync(route::getSchema, executor));
+				}
+			}
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 * Decides whether to validate the response of given request. This
+	 * returns true for {@link HyperSchemaBuilder#responseSampleRate(double)}
+	 * of the responses of each link which has targetSchema, so that a caller
+	 * buffers only the sampled responses.
+	 *
+	 * @param method
+	 *            HTTP method of the request
+	 * @param href
+	 *            URI path of the request
+	 * @return true if the response should be validated by
+	 *         {@link HyperSchema#checkResponse(String, String, Object, int)}
+	 */
+	public boolean sampleResponse(String method, String href) {
+		Objects.requireNonNull(method, "method must not be null");
+		Objects.requireNonNull(href, "href must not be null");
+		if (responseSampleRate <= 0) {
+			return false;
+		}
+		Route route = responseRouter.find(method, href, 0, href.length(), MediaType.APPLICATION_JSON);
+		return route != null && route.sample(responseSampleRate);
+	}
+
+	/**
+	 * Validates a response entity against targetSchema of the link which
+	 * matches given request.
+	 *
+	 * @param method
+	 *            HTTP method of the request
+	 * @param href
+	 *            URI path of the request
+	 * @param entity
+	 *            JSON value of the response (e.g. JSONObject, JSONArray)
+	 * @param maxErrors
+	 *            the maximum number of violations to record (1 means
+	 *            fail-fast)
+	 * @return ValidationResult, which is valid if no link has targetSchema
+	 */
+	public ValidationResult checkResponse(String method, String href, Object entity, int maxErrors) {
+		Objects.requireNonNull(method, "method must not be null");
+		Objects.requireNonNull(href, "href must not be null");
+		Route route = responseRouter.find(method, href, 0, href.length(), MediaType.APPLICATION_JSON);
+		return route != null ? checkValue(route.getSchema(), entity, maxErrors) : ValidationResult.valid();
+	}
+
+	/**
+	 * @return the entity, or query parameters for a method without entity.
+	 *         null if the entity is empty.
+	 * @throws UncheckedIOException
+	 */
+	private JSONObject subjectOf(Route route, JSONRequest req, String charset) {
+		EndPoint endPoint = route.getEndPoint();
+		long start = startTime();
+		try {
+			if (ALLOW_ENTITY_METHODS.contains(req.getMethod())) {
+				String json = req.getEntityWithKeepingStream(charset);
+				if (listening) {
+					record(endPoint, Phase.BUFFER, start);
+					listener.onEntity(endPoint, json != null ? json.length() : 0);
+					start = startTime();
+				}
+				if (json == null || json.isEmpty()) {
+					// TODO: Must above methods contain entity?
+					return null;
+				}
+				JSONObject subject = new JSONObject(json);
+				record(endPoint, Phase.PARSE, start);
+				return subject;
+			}
+			// Query parameters are strings. Convert them to the types of
+			// properties, and repeated keys to arrays.
+			JSONObject subject = route.getQueryCoercer().coerce(req.getQueryParameters());
+			record(endPoint, Phase.PARSE, start);
+			return subject;
+		} catch (RuntimeException e) {
+			if (listening) {
+				listener.onError(endPoint, e);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @param schema
+	 * @param entity
+	 * @throws UncheckedIOException
+	 */
+	private static void validateStream(Schema schema, Reader entity) {
+		try {
+			StreamingValidator.validate(schema, entity);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 }
@@ -2,22 +2,57 @@ package me.tyru.json.hyper.schema;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import org.everit.json.schema.Schema;
-import org.everit.json.schema.loader.SchemaLoader;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import me.tyru.json.hyper.schema.compile.SchemaCompiler;
+import me.tyru.json.hyper.schema.concurrent.ValidationExecutor;
 import me.tyru.json.hyper.schema.exception.DuplicateLinkDefinitionException;
+import me.tyru.json.hyper.schema.media.MediaType;
+import me.tyru.json.hyper.schema.metrics.ValidationListener;
+import me.tyru.json.hyper.schema.metrics.ValidationMetrics;
+import me.tyru.json.hyper.schema.stream.StreamingValidator;
 
 public class HyperSchemaBuilder {
 
+	private static final Logger LOGGER = Logger.getLogger(HyperSchemaBuilder.class.getName());
+
 	private JSONObject hyperSchema;
+	private List<Path> files;
+	private Path directory;
 	private boolean validateMediaType = false;
+	private int matchCacheSize = 0;
+	private int resultCacheSize = 0;
+	private long resultCacheTtlNanos = 0;
+	private boolean streamingValidation = false;
+	private boolean compileSchemas = false;
+	private boolean lazySchemas = false;
+	private double responseSampleRate = 0;
+	private ValidationExecutor validationExecutor = null;
+	private long validationTimeoutMillis = 0;
+	private ValidationListener validationListener = ValidationListener.NOOP;
 
 	private HyperSchemaBuilder() {
 	}
@@ -35,6 +70,47 @@ public class HyperSchemaBuilder {
 		return builder;
 	}
 
+	/**
+	 * A start point of builder chains. Sets files of JSON hyper schema, which
+	 * are merged into one hyper schema by {@link #build()}. Links of an
+	 * earlier file have priority over later ones. NOTE: This method is static
+	 * method.
+	 *
+	 * @param files
+	 *            UTF-8 files of JSON hyper schema
+	 * @return HyperSchemaBuilder
+	 */
+	public static HyperSchemaBuilder hyperSchemaFiles(Collection<Path> files) {
+		Objects.requireNonNull(files, "files must not be null");
+		HyperSchemaBuilder builder = new HyperSchemaBuilder();
+		builder.files = new ArrayList<>(files);
+		for (Path file : builder.files) {
+			Objects.requireNonNull(file, "file must not be null");
+		}
+		return builder;
+	}
+
+	/**
+	 * A start point of builder chains. Sets the files named {@code *.json}
+	 * under the directory, including subdirectories, in the order of their
+	 * paths (see {@link #hyperSchemaFiles(Collection)}). The directory is
+	 * listed by each {@link #build()}. NOTE: This method is static method.
+	 *
+	 * @param directory
+	 * @return HyperSchemaBuilder
+	 * @throws IOException
+	 *             if the directory is not a directory
+	 */
+	public static HyperSchemaBuilder hyperSchemaDirectory(Path directory) throws IOException {
+		Objects.requireNonNull(directory, "directory must not be null");
+		if (!Files.isDirectory(directory)) {
+			throw new NotDirectoryException(directory.toString());
+		}
+		HyperSchemaBuilder builder = new HyperSchemaBuilder();
+		builder.directory = directory;
+		return builder;
+	}
+
 	/**
 	 * This creates {@link HyperSchema} instance from given filename.
 	 * Given filename is passed to {@link Class#getResourceAsStream(String)}.
@@ -61,41 +137,463 @@ public class HyperSchemaBuilder {
 		return this;
 	}
 
+	/**
+	 * Enables the cache of match results, which maps (method, concrete path,
+	 * encType) to the matched link and its template variables. This is
+	 * effective when a small set of concrete paths makes up most requests.
+	 * Default is 0 (disabled).
+	 *
+	 * @param matchCacheSize
+	 *            the maximum number of cached paths, or 0 to disable
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder matchCacheSize(int matchCacheSize) {
+		if (matchCacheSize < 0) {
+			throw new IllegalArgumentException("matchCacheSize must not be negative: " + matchCacheSize);
+		}
+		this.matchCacheSize = matchCacheSize;
+		return this;
+	}
+
+	/**
+	 * Enables the cache of results of
+	 * {@link HyperSchema#check(me.tyru.json.hyper.schema.request.JSONRequest, int)},
+	 * which maps the link and a 128-bit hash of the raw entity to the result.
+	 * A request whose entity is byte-identical to a cached one (e.g. a retry)
+	 * skips parsing and validation. This is effective when clients send the
+	 * same entities repeatedly. Default is 0 (disabled).
+	 *
+	 * Only entities which
+	 * {@link me.tyru.json.hyper.schema.request.JSONRequest#getEntityBytesWithKeepingStream()}
+	 * returns are cached, and a malformed entity is never cached. The cache is
+	 * cleared when the route table changes.
+	 *
+	 * @param maxSize
+	 *            the maximum number of cached results, or 0 to disable
+	 * @param ttl
+	 *            time to live of a result, or 0 to keep it until evicted
+	 * @param unit
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder resultCache(int maxSize, long ttl, TimeUnit unit) {
+		Objects.requireNonNull(unit, "unit must not be null");
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+		}
+		if (ttl < 0) {
+			throw new IllegalArgumentException("ttl must not be negative: " + ttl);
+		}
+		this.resultCacheSize = maxSize;
+		this.resultCacheTtlNanos = ttl > 0 ? Math.max(1, unit.toNanos(ttl)) : 0;
+		return this;
+	}
+
+	/**
+	 * If this flag is set to true, request entities are validated while they
+	 * are parsed, without building a String and a JSONObject of the whole
+	 * entity (see {@link StreamingValidator}). Validation stops at the first
+	 * violation instead of collecting all violations. Default is false.
+	 *
+	 * @param streamingValidation
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder streamingValidation(boolean streamingValidation) {
+		this.streamingValidation = streamingValidation;
+		return this;
+	}
+
+	/**
+	 * If this flag is set to true, the schema of each link is compiled by
+	 * {@link SchemaCompiler} when building. Compiled schemas are validated by
+	 * specialized checks instead of walking the schema objects of
+	 * everit-org/json-schema, and report the same violations. Default is
+	 * false.
+	 *
+	 * @param compileSchemas
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder compileSchemas(boolean compileSchemas) {
+		this.compileSchemas = compileSchemas;
+		return this;
+	}
+
+	/**
+	 * If this flag is set to true, only the structure of links is validated
+	 * when building, and the schema of each link is loaded (and compiled if
+	 * {@link #compileSchemas(boolean)} is set) on its first match. This
+	 * reduces the time of startup and the memory of links which are never
+	 * requested. An invalid schema throws
+	 * {@link org.everit.json.schema.SchemaException} on its first match
+	 * instead of build. Use {@link HyperSchema#precompile(java.util.concurrent.Executor)}
+	 * to load schemas in background after build. Default is false.
+	 *
+	 * @param lazySchemas
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder lazySchemas(boolean lazySchemas) {
+		this.lazySchemas = lazySchemas;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of responses which are validated against targetSchema
+	 * of links (see {@link HyperSchema#sampleResponse(String, String)}). The
+	 * fraction applies to each link, so every link is validated even if it
+	 * has little traffic. Default is 0 (disabled).
+	 *
+	 * @param responseSampleRate
+	 *            from 0 (none) to 1 (all responses)
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder responseSampleRate(double responseSampleRate) {
+		if (!(responseSampleRate >= 0 && responseSampleRate <= 1)) {
+			throw new IllegalArgumentException("responseSampleRate must be from 0 to 1: " + responseSampleRate);
+		}
+		this.responseSampleRate = responseSampleRate;
+		return this;
+	}
+
+	/**
+	 * Sets the executor of
+	 * {@link HyperSchema#validateAsync(me.tyru.json.hyper.schema.request.JSONRequest)},
+	 * e.g. {@code ValidationExecutor.create(parallelism, queueLimit)}. An
+	 * executor may be shared by several HyperSchema objects. Default is null,
+	 * which validates in the caller thread.
+	 *
+	 * @param validationExecutor
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder validationExecutor(ValidationExecutor validationExecutor) {
+		this.validationExecutor = validationExecutor;
+		return this;
+	}
+
+	/**
+	 * Sets the listener of validations, e.g. {@link ValidationMetrics} to
+	 * record counters and latencies of each link. Default is
+	 * {@link ValidationListener#NOOP}, with which validation does not even
+	 * read the clock.
+	 *
+	 * @param validationListener
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder validationListener(ValidationListener validationListener) {
+		this.validationListener = Objects.requireNonNull(validationListener, "validationListener must not be null");
+		return this;
+	}
+
+	/**
+	 * Sets the time budget of each
+	 * {@link HyperSchema#validateAsync(me.tyru.json.hyper.schema.request.JSONRequest)}
+	 * from its call. This has no effect without
+	 * {@link #validationExecutor(ValidationExecutor)}. Default is 0 (no
+	 * budget).
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return HyperSchemaBuilder
+	 */
+	public HyperSchemaBuilder validationTimeout(long timeout, TimeUnit unit) {
+		Objects.requireNonNull(unit, "unit must not be null");
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout must not be negative: " + timeout);
+		}
+		this.validationTimeoutMillis = timeout > 0 ? Math.max(1, unit.toMillis(timeout)) : 0;
+		return this;
+	}
+
 	/**
 	 * Construct {@link HyperSchema} object from a JSONObject of JSON Hyper
-	 * Schema.
+	 * Schema. href of each link is compiled into a router, so it may be a URI
+	 * template like {@code /users/{id}/orders}.
+	 *
+	 * When the builder has several files, they are parsed in parallel, and
+	 * their links are merged into one route table in the order of files. The
+	 * schemas of links are loaded (and compiled) in parallel, unless
+	 * {@link #lazySchemas(boolean)} is set.
 	 *
-	 * @param hyperSchema
-	 *            JSONObject of JSON Hyper Schema
 	 * @return HyperSchema
+	 * @throws IllegalArgumentException
+	 *             if the hyper schema is malformed
+	 * @throws org.everit.json.schema.SchemaException
+	 *             if the schema of a link is invalid, unless
+	 *             {@link #lazySchemas(boolean)} is set
+	 * @throws DuplicateLinkDefinitionException
+	 *             if links of the same method, href and encType are defined,
+	 *             even in different files
+	 * @throws UncheckedIOException
+	 *             if a file cannot be read
 	 */
 	public HyperSchema build() {
-		Objects.requireNonNull(hyperSchema, "hyperSchema must not be null");
-		requireKey(hyperSchema, "links", JSONArray.class, "/links");
-		Map<EndPoint, Schema> routes = new HashMap<>();
-		JSONArray links = hyperSchema.getJSONArray("links");
+		// Keep definition order which decides the priority of URI templates
+		Map<EndPoint, LinkSchema> routes = new LinkedHashMap<>();
+		// Responses are looked up by method and href only
+		Map<EndPoint, LinkSchema> responseRoutes = new LinkedHashMap<>();
+		SchemaResolver resolver = addLinks(routes, responseRoutes);
+		LOGGER.fine(() -> "Built hyper schema: " + resolver.stats());
+		return newHyperSchema(routes, responseRoutes, resolver);
+	}
+
+	/**
+	 * @param routes
+	 *            schemas of links
+	 * @param responseRoutes
+	 *            targetSchemas of links
+	 * @param resolver
+	 *            loader of the schemas
+	 * @return HyperSchema of the routes with the options of this builder
+	 */
+	HyperSchema newHyperSchema(Map<EndPoint, LinkSchema> routes, Map<EndPoint, LinkSchema> responseRoutes,
+			SchemaResolver resolver) {
+		MatchCache matchCache = matchCacheSize > 0 ? new MatchCache(matchCacheSize) : null;
+		ResultCache resultCache = resultCacheSize > 0 ? new ResultCache(resultCacheSize, resultCacheTtlNanos) : null;
+		return new HyperSchema(routes, Router.compile(routes), validateMediaType, matchCache, resultCache,
+				streamingValidation, Router.compile(responseRoutes), responseSampleRate, validationExecutor,
+				validationTimeoutMillis, resolver, validationListener);
+	}
+
+	/**
+	 * Builds {@link ReloadableHyperSchema}, whose route table can be changed
+	 * while it is used. The options of this builder are copied, so changing
+	 * this builder later does not affect it.
+	 *
+	 * @see {@link #build()}
+	 * @return ReloadableHyperSchema
+	 */
+	public ReloadableHyperSchema buildReloadable() {
+		HyperSchemaBuilder copy = new HyperSchemaBuilder();
+		copy.hyperSchema = hyperSchema;
+		copy.files = files;
+		copy.directory = directory;
+		copy.validateMediaType = validateMediaType;
+		copy.matchCacheSize = matchCacheSize;
+		copy.resultCacheSize = resultCacheSize;
+		copy.resultCacheTtlNanos = resultCacheTtlNanos;
+		copy.streamingValidation = streamingValidation;
+		copy.compileSchemas = compileSchemas;
+		copy.lazySchemas = lazySchemas;
+		copy.responseSampleRate = responseSampleRate;
+		copy.validationExecutor = validationExecutor;
+		copy.validationTimeoutMillis = validationTimeoutMillis;
+		copy.validationListener = validationListener;
+		Map<EndPoint, LinkSchema> routes = new LinkedHashMap<>();
+		Map<EndPoint, LinkSchema> responseRoutes = new LinkedHashMap<>();
+		SchemaResolver resolver = copy.addLinks(routes, responseRoutes);
+		return new ReloadableHyperSchema(copy, copy.newHyperSchema(routes, responseRoutes, resolver));
+	}
+
+	/**
+	 * Reads the hyper schema again, and adds its links to routes with the
+	 * options of this builder.
+	 *
+	 * @param routes
+	 *            routes of schema
+	 * @param responseRoutes
+	 *            routes of targetSchema
+	 * @return SchemaResolver which shares definitions among the links
+	 * @see {@link #build()}
+	 */
+	SchemaResolver addLinks(Map<EndPoint, LinkSchema> routes, Map<EndPoint, LinkSchema> responseRoutes) {
+		SchemaResolver resolver = new SchemaResolver(compileSchemas);
+		addLinks(documents(resolver), routes, responseRoutes, resolver);
+		return resolver;
+	}
+
+	/**
+	 * Adds the links of given hyper schema to routes with the options of this
+	 * builder.
+	 *
+	 * @param hyperSchema
+	 * @param routes
+	 *            routes of schema
+	 * @param responseRoutes
+	 *            routes of targetSchema
+	 * @param resolver
+	 *            resolver of the hyper schema which routes are built by
+	 * @throws IllegalArgumentException
+	 *             if the hyper schema is malformed
+	 * @throws DuplicateLinkDefinitionException
+	 *             if a link of schema is already in routes
+	 */
+	void addLinks(JSONObject hyperSchema, Map<EndPoint, LinkSchema> routes,
+			Map<EndPoint, LinkSchema> responseRoutes, SchemaResolver resolver) {
+		addLinks(Collections.singletonList(new Document("", SchemaResolver.ROOT, hyperSchema)), routes,
+				responseRoutes, resolver);
+	}
+
+	private void addLinks(List<Document> documents, Map<EndPoint, LinkSchema> routes,
+			Map<EndPoint, LinkSchema> responseRoutes, SchemaResolver resolver) {
+		// Checked in definition order, so that the reported duplicate does
+		// not depend on the order of parallel loading
+		List<LinkDefinition> definitions = new ArrayList<>();
+		Map<EndPoint, String> requestPointers = new HashMap<>();
+		Map<EndPoint, String> responsePointers = new HashMap<>();
+		for (EndPoint endPoint : routes.keySet()) {
+			requestPointers.put(shapeOf(endPoint), "an existing link");
+		}
+		for (EndPoint endPoint : responseRoutes.keySet()) {
+			responsePointers.put(shapeOf(endPoint), "an existing link");
+		}
+		for (Document document : documents) {
+			collectLinks(document, definitions, requestPointers, responsePointers);
+		}
+		List<LinkSchema> schemas;
+		if (lazySchemas) {
+			schemas = definitions.stream()
+					.map(definition -> LinkSchema.lazy(definition.schema, definition.base, resolver))
+					.collect(Collectors.toList());
+		} else {
+			// Loading schemas dominates the time of build, and each one is
+			// independent of the others except for shared definitions
+			schemas = definitions.parallelStream()
+					.map(definition -> LinkSchema.loaded(resolver.load(definition.schema, definition.base)))
+					.collect(Collectors.toList());
+		}
+		for (int i = 0; i < definitions.size(); i++) {
+			LinkDefinition definition = definitions.get(i);
+			(definition.response ? responseRoutes : routes).put(definition.endPoint, schemas.get(i));
+		}
+	}
+
+	/**
+	 * @return files which the hyper schema is read from, or null if it is
+	 *         given as JSONObject or directory
+	 */
+	List<Path> getFiles() {
+		return files;
+	}
+
+	/**
+	 * @return directory which the hyper schema is read from, or null if it is
+	 *         not given as directory
+	 */
+	Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the hyper schema, or the parsed files. They are registered to
+	 *         resolver so that $ref to them does not read the files again.
+	 * @throws UncheckedIOException
+	 */
+	private List<Document> documents(SchemaResolver resolver) {
+		List<Document> documents;
+		if (hyperSchema != null) {
+			documents = Collections.singletonList(new Document("", SchemaResolver.ROOT, hyperSchema));
+		} else {
+			List<Path> paths = directory != null ? listFiles(directory) : files;
+			Objects.requireNonNull(paths, "hyperSchema must not be null");
+			documents = paths.parallelStream().map(HyperSchemaBuilder::parse).collect(Collectors.toList());
+		}
+		for (Document document : documents) {
+			resolver.addDocument(document.base, document.json);
+		}
+		return documents;
+	}
+
+	/**
+	 * @return files named {@code *.json} under the directory in the order of
+	 *         their paths
+	 * @throws UncheckedIOException
+	 */
+	private static List<Path> listFiles(Path directory) {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			return paths.filter(path -> path.getFileName().toString().endsWith(".json") && Files.isRegularFile(path))
+					.sorted()
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Document parse(Path file) {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return new Document(file + "#", file.toUri(), new JSONObject(new JSONTokener(reader)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (JSONException e) {
+			throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static void collectLinks(Document document, List<LinkDefinition> definitions,
+			Map<EndPoint, String> requestPointers, Map<EndPoint, String> responsePointers) {
+		String prefix = document.name;
+		requireKey(document.json, "links", JSONArray.class, prefix + "/links");
+		JSONArray links = document.json.getJSONArray("links");
 		for (int i = 0; i < links.length(); i++) {
+			String pointer = prefix + "/links/" + i;
 			Object obj = links.get(i);
-			requireClassIs(obj, JSONObject.class, "/links/" + i);
+			requireClassIs(obj, JSONObject.class, pointer);
 			JSONObject linkDef = (JSONObject) obj;
 			// Required by JSON Hyper-Schema spec
-			requireKey(linkDef, "href", String.class, "/links/" + i + "/href");
-			requireKey(linkDef, "rel", String.class, "/links/" + i + "/rel");
+			requireKey(linkDef, "href", String.class, pointer + "/href");
+			requireKey(linkDef, "rel", String.class, pointer + "/rel");
 			String href = linkDef.getString("href");
 			if (linkDef.has("method") && linkDef.has("schema")) {
-				requireClassIs(linkDef.get("method"), String.class, "/links/" + i + "/method");
-				requireClassIs(linkDef.get("schema"), JSONObject.class, "/links/" + i + "/schema");
+				requireClassIs(linkDef.get("method"), String.class, pointer + "/method");
+				requireClassIs(linkDef.get("schema"), JSONObject.class, pointer + "/schema");
 				String encType = linkDef.has("encType") && linkDef.get("encType") instanceof String
 						? linkDef.getString("encType") : HyperSchema.DEFAULT_ENC_TYPE;
+				// Normalize case and parameters so that duplicates can be detected
+				encType = MediaType.valueOf(encType).toString();
 				EndPoint endPoint = EndPoint.of(linkDef.getString("method"), href, encType);
-				if (!routes.containsKey(endPoint)) {
-					routes.put(endPoint, SchemaLoader.load(linkDef.getJSONObject("schema")));
-				} else {
-					throw new DuplicateLinkDefinitionException("Duplicate key: " + endPoint.toString());
+				String defined = requestPointers.putIfAbsent(shapeOf(endPoint), pointer);
+				if (defined != null) {
+					throw new DuplicateLinkDefinitionException(
+							"Duplicate key: " + endPoint.toString() + " at " + pointer + ", defined at " + defined);
+				}
+				definitions.add(new LinkDefinition(endPoint, linkDef.getJSONObject("schema"), document.base, false));
+			}
+			if (linkDef.has("method") && linkDef.has("targetSchema")) {
+				requireClassIs(linkDef.get("method"), String.class, pointer + "/method");
+				requireClassIs(linkDef.get("targetSchema"), JSONObject.class, pointer + "/targetSchema");
+				EndPoint endPoint = EndPoint.of(linkDef.getString("method"), href, HyperSchema.DEFAULT_ENC_TYPE);
+				// Links which differ only in encType share the first targetSchema
+				if (responsePointers.putIfAbsent(shapeOf(endPoint), pointer) == null) {
+					definitions.add(new LinkDefinition(endPoint, linkDef.getJSONObject("targetSchema"), document.base,
+							true));
 				}
 			}
 		}
-		return new HyperSchema(routes, validateMediaType);
+	}
+
+	/** A parsed hyper schema, and the prefix of JSON pointers in it */
+	private static final class Document {
+		final String name;
+		/** URI which $ref is resolved against */
+		final URI base;
+		final JSONObject json;
+
+		Document(String name, URI base, JSONObject json) {
+			this.name = name;
+			this.base = base;
+			this.json = json;
+		}
+	}
+
+	/** A schema of a link to be loaded */
+	private static final class LinkDefinition {
+		final EndPoint endPoint;
+		final JSONObject schema;
+		/** URI of the document which has the link */
+		final URI base;
+		final boolean response;
+
+		LinkDefinition(EndPoint endPoint, JSONObject schema, URI base, boolean response) {
+			this.endPoint = endPoint;
+			this.schema = schema;
+			this.base = base;
+			this.response = response;
+		}
+	}
+
+	/**
+	 * @return endPoint whose href is {@link Router#shapeOf(String)}, so that
+	 *         links which match the same requests are detected as duplicates
+	 */
+	private static EndPoint shapeOf(EndPoint endPoint) {
+		return EndPoint.of(endPoint.getMethod(), Router.shapeOf(endPoint.getHref()), endPoint.getEncType());
 	}
 
 	private static void requireKey(JSONObject hyperSchema, String key, Class<?> cls, String pointer) {
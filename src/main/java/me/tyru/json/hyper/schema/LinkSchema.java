@@ -0,0 +1,91 @@
+package me.tyru.json.hyper.schema;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.everit.json.schema.Schema;
+import org.json.JSONObject;
+
+/**
+ * The schema of a link, which is loaded from its JSON by
+ * {@link SchemaResolver} on first use if
+ * {@link HyperSchemaBuilder#lazySchemas(boolean)} is set.
+ *
+ * No lock is taken on first use. Threads which race on it load the schema
+ * each, and the first one published wins, so that all of them use the same
+ * schema. The JSON of the schema is released once it is loaded.
+ *
+ * @author tyru
+ *
+ */
+final class LinkSchema {
+
+	private static final AtomicReferenceFieldUpdater<LinkSchema, Schema> SCHEMA = AtomicReferenceFieldUpdater
+			.newUpdater(LinkSchema.class, Schema.class, "schema");
+
+	/** null until loaded */
+	private volatile Schema schema;
+	/** null after loaded */
+	private volatile JSONObject definition;
+	/** URI of the document which has the link */
+	private final URI base;
+	private final SchemaResolver resolver;
+
+	private LinkSchema(Schema schema, JSONObject definition, URI base, SchemaResolver resolver) {
+		this.schema = schema;
+		this.definition = definition;
+		this.base = base;
+		this.resolver = resolver;
+	}
+
+	/**
+	 * @param schema
+	 * @return LinkSchema which is already loaded
+	 */
+	static LinkSchema loaded(Schema schema) {
+		return new LinkSchema(schema, null, null, null);
+	}
+
+	/**
+	 * @param definition
+	 *            JSON of the schema
+	 * @param base
+	 *            URI of the document which has the link
+	 * @param resolver
+	 *            loader of the schema
+	 * @return LinkSchema which is loaded on first {@link #get()}
+	 */
+	static LinkSchema lazy(JSONObject definition, URI base, SchemaResolver resolver) {
+		return new LinkSchema(null, definition, base, resolver);
+	}
+
+	/**
+	 * @return Schema, which is loaded at the first call
+	 * @throws org.everit.json.schema.SchemaException
+	 *             if the schema is invalid. The next call tries again.
+	 */
+	Schema get() {
+		Schema loaded = schema;
+		if (loaded != null) {
+			return loaded;
+		}
+		JSONObject json = definition;
+		if (json == null) {
+			// Published after the first read
+			return schema;
+		}
+		loaded = resolver.load(json, base);
+		if (SCHEMA.compareAndSet(this, null, loaded)) {
+			definition = null;
+			return loaded;
+		}
+		return schema;
+	}
+
+	/**
+	 * @return true if the schema is loaded
+	 */
+	boolean isLoaded() {
+		return schema != null;
+	}
+}
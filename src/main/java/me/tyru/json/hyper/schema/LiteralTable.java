@@ -0,0 +1,121 @@
+package me.tyru.json.hyper.schema;
+
+import java.util.function.Function;
+
+/**
+ * Open-addressing hash table from String to V whose lookup accepts a region
+ * of {@link CharSequence}, so a caller need not create a substring to look up
+ * a key. Hashes of keys are computed once when they are put.
+ *
+ * Entries are added only while compiling a route table. After that, the table
+ * is read-only and safe to share between threads.
+ *
+ * @author tyru
+ *
+ */
+final class LiteralTable<V> {
+	private String[] keys = new String[8];
+	private int[] hashes = new int[8];
+	private Object[] values = new Object[8];
+	private int size;
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param s
+	 * @param start
+	 *            inclusive
+	 * @param end
+	 *            exclusive
+	 * @return the value of s[start, end), or null
+	 */
+	@SuppressWarnings("unchecked")
+	V get(CharSequence s, int start, int end) {
+		if (size == 0) {
+			return null;
+		}
+		int h = hash(s, start, end);
+		int mask = keys.length - 1;
+		for (int i = spread(h) & mask; keys[i] != null; i = (i + 1) & mask) {
+			if (hashes[i] == h && regionEquals(keys[i], s, start, end)) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	V get(CharSequence s) {
+		return get(s, 0, s.length());
+	}
+
+	@SuppressWarnings("unchecked")
+	V computeIfAbsent(String key, Function<String, V> mappingFunction) {
+		V value = get(key);
+		if (value == null) {
+			value = mappingFunction.apply(key);
+			if (++size * 2 > keys.length) {
+				resize();
+			}
+			insert(key, key.hashCode(), value);
+		}
+		return value;
+	}
+
+	private void insert(String key, int h, Object value) {
+		int mask = keys.length - 1;
+		int i = spread(h) & mask;
+		while (keys[i] != null) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		hashes[i] = h;
+		values[i] = value;
+	}
+
+	private void resize() {
+		String[] oldKeys = keys;
+		int[] oldHashes = hashes;
+		Object[] oldValues = values;
+		keys = new String[oldKeys.length * 2];
+		hashes = new int[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				insert(oldKeys[i], oldHashes[i], oldValues[i]);
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link String#hashCode()} of s[start, end).
+	 */
+	static int hash(CharSequence s, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			h = 31 * h + s.charAt(i);
+		}
+		return h;
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+
+	static boolean regionEquals(String key, CharSequence s, int start, int end) {
+		int len = end - start;
+		if (key.length() != len) {
+			return false;
+		}
+		if (s instanceof String) {
+			return ((String) s).regionMatches(start, key, 0, len);
+		}
+		for (int i = 0; i < len; i++) {
+			if (key.charAt(i) != s.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
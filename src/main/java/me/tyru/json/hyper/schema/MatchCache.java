@@ -0,0 +1,162 @@
+package me.tyru.json.hyper.schema;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.tyru.json.hyper.schema.media.MediaType;
+
+/**
+ * Bounded LRU cache of (method, concrete path, encType) to
+ * {@link RouteMatch}. A hit skips template matching entirely.
+ *
+ * The cache is split into independently locked segments by the hash of a
+ * key, so concurrent lookups of different keys rarely contend and no lookup
+ * takes a global lock. Each segment evicts its least recently used entry
+ * when it is full.
+ *
+ * Entries remember the {@link Router} they were resolved by. An entry of
+ * another router is treated as a miss, so a cache is never stale after the
+ * route table changes.
+ *
+ * @author tyru
+ *
+ */
+final class MatchCache {
+	private static final int MAX_SEGMENTS = 64;
+
+	private final Segment[] segments;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of entries (must be positive)
+	 */
+	MatchCache(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		}
+		// Power of two, and at least 16 entries per segment
+		int n = 1;
+		while (n < MAX_SEGMENTS && n * 2 * 16 <= maxSize) {
+			n *= 2;
+		}
+		segments = new Segment[n];
+		for (int i = 0; i < n; i++) {
+			int capacity = maxSize / n + (i < maxSize % n ? 1 : 0);
+			segments[i] = new Segment(capacity, evictions);
+		}
+	}
+
+	/**
+	 * Returns the cached match, or resolves and caches it.
+	 *
+	 * @param router
+	 *            current route table
+	 * @param method
+	 * @param path
+	 * @param encType
+	 * @return RouteMatch, or null if no route matches (not cached)
+	 */
+	RouteMatch get(Router router, String method, String path, MediaType encType) {
+		Key key = new Key(method, path, encType);
+		Segment segment = segments[(key.hash ^ (key.hash >>> 16)) & (segments.length - 1)];
+		Cached entry;
+		synchronized (segment) {
+			entry = segment.get(key);
+		}
+		if (entry != null && entry.router == router) {
+			hits.increment();
+			return entry.match;
+		}
+		misses.increment();
+		RouteMatch match = router.lookup(method, path, encType);
+		if (match != null) {
+			synchronized (segment) {
+				segment.put(key, new Cached(router, match));
+			}
+		}
+		return match;
+	}
+
+	void invalidateAll() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	CacheStats stats() {
+		long size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+	}
+
+	private static final class Segment extends LinkedHashMap<Key, Cached> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+		private final transient LongAdder evictions;
+
+		Segment(int capacity, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static final class Cached {
+		private final Router router;
+		private final RouteMatch match;
+
+		Cached(Router router, RouteMatch match) {
+			this.router = router;
+			this.match = match;
+		}
+	}
+
+	private static final class Key {
+		private final String method;
+		private final String path;
+		private final MediaType encType;
+		private final int hash;
+
+		Key(String method, String path, MediaType encType) {
+			this.method = method;
+			this.path = path;
+			this.encType = encType;
+			this.hash = 31 * (31 * method.hashCode() + path.hashCode()) + encType.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && path.equals(other.path) && method.equals(other.method)
+					&& encType.equals(other.encType);
+		}
+	}
+}
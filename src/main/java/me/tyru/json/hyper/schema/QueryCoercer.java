@@ -0,0 +1,269 @@
+package me.tyru.json.hyper.schema;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.everit.json.schema.ArraySchema;
+import org.everit.json.schema.BooleanSchema;
+import org.everit.json.schema.NumberSchema;
+import org.everit.json.schema.ObjectSchema;
+import org.everit.json.schema.ReferenceSchema;
+import org.everit.json.schema.Schema;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.compile.CompiledSchema;
+
+/**
+ * Converts query parameters into a JSONObject typed by the schema of a link.
+ * Query parameters are always strings, so a value is converted to the type
+ * of its property schema: "integer", "number", "boolean", or "array" whose
+ * elements are converted by the schema of items. A repeated key becomes an
+ * array only when its property is an array, otherwise it is kept as an array
+ * of the converted values and fails validation as a duplicate key.
+ *
+ * A value which cannot be converted (e.g. "abc" for "integer") is kept as a
+ * string, so that the schema reports a type violation of the original value.
+ *
+ * The kind of each property is resolved once per link, when its route is
+ * compiled.
+ *
+ * @author tyru
+ *
+ */
+final class QueryCoercer {
+
+	private enum Kind {
+		STRING, INTEGER, NUMBER, BOOLEAN, ARRAY
+	}
+
+	private static final QueryCoercer STRINGS = new QueryCoercer(new HashMap<>(), new HashMap<>(), new Pattern[0],
+			new Kind[0], Kind.STRING, Kind.STRING);
+
+	/** Property name to its kind */
+	private final Map<String, Kind> properties;
+	/** Array property name to the kind of its items */
+	private final Map<String, Kind> itemKinds;
+	private final Pattern[] patterns;
+	private final Kind[] patternKinds;
+	private final Kind additionalKind;
+	private final Kind additionalItemKind;
+
+	private QueryCoercer(Map<String, Kind> properties, Map<String, Kind> itemKinds, Pattern[] patterns,
+			Kind[] patternKinds, Kind additionalKind, Kind additionalItemKind) {
+		this.properties = properties;
+		this.itemKinds = itemKinds;
+		this.patterns = patterns;
+		this.patternKinds = patternKinds;
+		this.additionalKind = additionalKind;
+		this.additionalItemKind = additionalItemKind;
+	}
+
+	/**
+	 * @param schema
+	 *            schema of a link
+	 * @return QueryCoercer
+	 */
+	static QueryCoercer compile(Schema schema) {
+		Schema resolved = resolve(schema);
+		if (!(resolved instanceof ObjectSchema)) {
+			return STRINGS;
+		}
+		ObjectSchema objectSchema = (ObjectSchema) resolved;
+		Map<String, Kind> properties = new HashMap<>();
+		Map<String, Kind> itemKinds = new HashMap<>();
+		for (Map.Entry<String, Schema> entry : objectSchema.getPropertySchemas().entrySet()) {
+			Kind kind = kindOf(entry.getValue());
+			properties.put(entry.getKey(), kind);
+			if (kind == Kind.ARRAY) {
+				itemKinds.put(entry.getKey(), itemKindOf(entry.getValue()));
+			}
+		}
+		Map<Pattern, Schema> patternProperties = objectSchema.getPatternProperties();
+		Pattern[] patterns = patternProperties.keySet().toArray(new Pattern[0]);
+		Kind[] patternKinds = new Kind[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			patternKinds[i] = kindOf(patternProperties.get(patterns[i]));
+		}
+		Schema additional = objectSchema.getSchemaOfAdditionalProperties();
+		return new QueryCoercer(properties, itemKinds, patterns, patternKinds,
+				additional != null ? kindOf(additional) : Kind.STRING,
+				additional != null ? itemKindOf(additional) : Kind.STRING);
+	}
+
+	/**
+	 * @param queryParameters
+	 * @return JSONObject whose values are converted
+	 */
+	JSONObject coerce(Map<String, List<String>> queryParameters) {
+		JSONObject obj = new JSONObject();
+		for (Map.Entry<String, List<String>> entry : queryParameters.entrySet()) {
+			String key = entry.getKey();
+			List<String> values = entry.getValue();
+			if (key == null || values == null || values.isEmpty()) {
+				continue;
+			}
+			Kind kind = properties.get(key);
+			Kind itemKind = itemKinds.get(key);
+			if (kind == null) {
+				int i = indexOfPattern(key);
+				kind = i >= 0 ? patternKinds[i] : additionalKind;
+				itemKind = i >= 0 ? Kind.STRING : additionalItemKind;
+			}
+			if (kind == Kind.ARRAY) {
+				obj.put(key, toArray(values, itemKind));
+			} else if (values.size() == 1) {
+				obj.put(key, convert(values.get(0), kind));
+			} else {
+				obj.put(key, toArray(values, kind));
+			}
+		}
+		return obj;
+	}
+
+	/**
+	 * @return the index of the first pattern which matches key, or -1
+	 */
+	private int indexOfPattern(String key) {
+		for (int i = 0; i < patterns.length; i++) {
+			if (patterns[i].matcher(key).find()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static JSONArray toArray(List<String> values, Kind kind) {
+		JSONArray arr = new JSONArray();
+		for (String value : values) {
+			arr.put(convert(value, kind));
+		}
+		return arr;
+	}
+
+	private static Object convert(String value, Kind kind) {
+		if (value == null) {
+			return JSONObject.NULL;
+		}
+		switch (kind) {
+		case INTEGER:
+			if (isInteger(value)) {
+				try {
+					long n = Long.parseLong(value);
+					return n == (int) n ? Integer.valueOf((int) n) : Long.valueOf(n);
+				} catch (NumberFormatException e) {
+					// Too large, keep as string
+				}
+			}
+			return value;
+		case NUMBER:
+			if (isInteger(value)) {
+				return convert(value, Kind.INTEGER);
+			}
+			return isNumber(value) ? Double.valueOf(value) : value;
+		case BOOLEAN:
+			if ("true".equals(value)) {
+				return Boolean.TRUE;
+			}
+			return "false".equals(value) ? Boolean.FALSE : value;
+		default:
+			return value;
+		}
+	}
+
+	private static boolean isInteger(String s) {
+		int i = s.startsWith("-") ? 1 : 0;
+		if (i == s.length()) {
+			return false;
+		}
+		for (; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if s is a number of JSON (RFC 7159). Double.valueOf()
+	 *         accepts more (e.g. "NaN", "1d", "0x1p3").
+	 */
+	private static boolean isNumber(String s) {
+		int i = s.startsWith("-") ? 1 : 0;
+		int digits = 0;
+		while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+			i++;
+			digits++;
+		}
+		if (digits == 0) {
+			return false;
+		}
+		if (i < s.length() && s.charAt(i) == '.') {
+			i++;
+			digits = 0;
+			while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+				i++;
+				digits++;
+			}
+			if (digits == 0) {
+				return false;
+			}
+		}
+		if (i < s.length() && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+			i++;
+			if (i < s.length() && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+				i++;
+			}
+			digits = 0;
+			while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+				i++;
+				digits++;
+			}
+			if (digits == 0) {
+				return false;
+			}
+		}
+		return i == s.length();
+	}
+
+	private static Kind kindOf(Schema schema) {
+		Schema resolved = resolve(schema);
+		if (resolved instanceof NumberSchema) {
+			return ((NumberSchema) resolved).requiresInteger() ? Kind.INTEGER : Kind.NUMBER;
+		}
+		if (resolved instanceof BooleanSchema) {
+			return Kind.BOOLEAN;
+		}
+		if (resolved instanceof ArraySchema) {
+			return Kind.ARRAY;
+		}
+		return Kind.STRING;
+	}
+
+	private static Kind itemKindOf(Schema schema) {
+		Schema resolved = resolve(schema);
+		if (resolved instanceof ArraySchema && ((ArraySchema) resolved).getAllItemSchema() != null) {
+			Kind kind = kindOf(((ArraySchema) resolved).getAllItemSchema());
+			// Nested arrays cannot be written in a query string
+			return kind != Kind.ARRAY ? kind : Kind.STRING;
+		}
+		return Kind.STRING;
+	}
+
+	private static Schema resolve(Schema schema) {
+		// ReferenceSchema may be recursive, so limit the depth
+		for (int i = 0; i < 16; i++) {
+			if (schema instanceof CompiledSchema) {
+				schema = ((CompiledSchema) schema).getSource();
+			} else if (schema instanceof ReferenceSchema && ((ReferenceSchema) schema).getReferredSchema() != null) {
+				schema = ((ReferenceSchema) schema).getReferredSchema();
+			} else {
+				break;
+			}
+		}
+		return schema;
+	}
+}
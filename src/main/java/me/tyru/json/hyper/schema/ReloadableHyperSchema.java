@@ -0,0 +1,296 @@
+package me.tyru.json.hyper.schema;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.exception.DuplicateLinkDefinitionException;
+import me.tyru.json.hyper.schema.media.MediaType;
+
+/**
+ * A handle of {@link HyperSchema} whose route table can be changed while it
+ * is used. Created by {@link HyperSchemaBuilder#buildReloadable()}.
+ *
+ * Each change builds a new HyperSchema off to the side and publishes it by a
+ * single atomic swap. {@link #get()} never blocks, and a validation keeps
+ * using the HyperSchema it got, so it never sees a half-changed route table.
+ * A filter should call {@link #get()} for each request, e.g.
+ * {@code protected HyperSchema getHyperSchema() { return reloadable.get(); }}.
+ *
+ * If the builder reads files or a directory, {@link #watch()} reloads them
+ * in background when they change. A reload which fails (e.g. a file being
+ * written is malformed) is logged, and the current route table is kept.
+ * Links added or removed by {@link #addLink(JSONObject)} and
+ * {@link #removeLink(String, String, String)} last until the next reload.
+ *
+ * @author tyru
+ *
+ */
+public final class ReloadableHyperSchema implements AutoCloseable {
+
+	private static final Logger LOGGER = Logger.getLogger(ReloadableHyperSchema.class.getName());
+	/** Events within this period are reloaded at once */
+	private static final long QUIET_MILLIS = 200;
+
+	private final HyperSchemaBuilder builder;
+	private final AtomicReference<HyperSchema> current;
+	/** Serializes reloads, so that an older read of files is never swapped in last */
+	private final Object reloadLock = new Object();
+	private volatile WatchService watchService;
+
+	ReloadableHyperSchema(HyperSchemaBuilder builder, HyperSchema hyperSchema) {
+		this.builder = builder;
+		this.current = new AtomicReference<>(hyperSchema);
+	}
+
+	/**
+	 * @return the current HyperSchema
+	 */
+	public HyperSchema get() {
+		return current.get();
+	}
+
+	/**
+	 * Builds the hyper schema again from its source, and swaps the route
+	 * table. This is called by the watcher of {@link #watch()}. All link
+	 * schemas are built again, since a definition they refer to may have
+	 * changed.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the hyper schema is malformed. The current route table
+	 *             is kept.
+	 * @throws DuplicateLinkDefinitionException
+	 *             if links are duplicate. The current route table is kept.
+	 * @throws UncheckedIOException
+	 *             if a file cannot be read. The current route table is kept.
+	 */
+	public void reload() {
+		synchronized (reloadLock) {
+			Map<EndPoint, LinkSchema> routes = new LinkedHashMap<>();
+			Map<EndPoint, LinkSchema> responseRoutes = new LinkedHashMap<>();
+			SchemaResolver reloaded = builder.addLinks(routes, responseRoutes);
+			update(hyperSchema -> hyperSchema.withRoutes(routes, responseRoutes, reloaded));
+		}
+	}
+
+	/**
+	 * Adds a link after the current links. Its schema is loaded before the
+	 * swap unless {@link HyperSchemaBuilder#lazySchemas(boolean)} is set.
+	 *
+	 * @param linkDef
+	 *            link definition of JSON Hyper-Schema
+	 * @throws IllegalArgumentException
+	 *             if the link is malformed
+	 * @throws DuplicateLinkDefinitionException
+	 *             if a link of the same method, href and encType exists
+	 */
+	public void addLink(JSONObject linkDef) {
+		Objects.requireNonNull(linkDef, "linkDef must not be null");
+		JSONObject hyperSchemaDef = new JSONObject().put("links", new JSONArray().put(linkDef));
+		update(hyperSchema -> {
+			// Built by the resolver of the routes it is added to, which a
+			// reload may have swapped meanwhile. Duplicates of the current
+			// links are detected by the builder.
+			Map<EndPoint, LinkSchema> routes = new LinkedHashMap<>(hyperSchema.getRoutes());
+			Map<EndPoint, LinkSchema> responseRoutes = new LinkedHashMap<>(hyperSchema.getResponseRoutes());
+			builder.addLinks(hyperSchemaDef, routes, responseRoutes, hyperSchema.getResolver());
+			return hyperSchema.withRoutes(routes, responseRoutes);
+		});
+	}
+
+	/**
+	 * Removes a link. Its targetSchema is removed as well, unless another
+	 * link of the same method and href remains.
+	 *
+	 * @param method
+	 *            HTTP method of the link
+	 * @param href
+	 *            href of the link
+	 * @param encType
+	 *            encType of the link
+	 * @return true if the link was removed
+	 * @throws IllegalArgumentException
+	 *             if encType is not a media type
+	 */
+	public boolean removeLink(String method, String href, String encType) {
+		Objects.requireNonNull(method, "method must not be null");
+		Objects.requireNonNull(href, "href must not be null");
+		Objects.requireNonNull(encType, "encType must not be null");
+		EndPoint endPoint = EndPoint.of(method, href, MediaType.valueOf(encType).toString());
+		EndPoint responseEndPoint = EndPoint.of(method, href, HyperSchema.DEFAULT_ENC_TYPE);
+		boolean[] removed = new boolean[1];
+		update(hyperSchema -> {
+			removed[0] = false;
+			if (!hyperSchema.getRoutes().containsKey(endPoint)) {
+				return hyperSchema;
+			}
+			Map<EndPoint, LinkSchema> routes = new LinkedHashMap<>(hyperSchema.getRoutes());
+			routes.remove(endPoint);
+			Map<EndPoint, LinkSchema> responseRoutes = new LinkedHashMap<>(hyperSchema.getResponseRoutes());
+			if (routes.keySet().stream()
+					.noneMatch(e -> e.getMethod().equals(method) && e.getHref().equals(href))) {
+				responseRoutes.remove(responseEndPoint);
+			}
+			removed[0] = true;
+			return hyperSchema.withRoutes(routes, responseRoutes);
+		});
+		return removed[0];
+	}
+
+	/**
+	 * Swaps the route table by compare-and-set. update is called again if
+	 * another change is swapped meanwhile.
+	 */
+	private void update(UnaryOperator<HyperSchema> update) {
+		while (true) {
+			HyperSchema old = current.get();
+			HyperSchema updated = update.apply(old);
+			if (updated == old || current.compareAndSet(old, updated)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Starts watching the files or the directory of the builder in a daemon
+	 * thread, and reloads them when they change. Changes within a short
+	 * period are reloaded at once.
+	 *
+	 * @return this
+	 * @throws IOException
+	 *             if the files cannot be watched
+	 * @throws IllegalStateException
+	 *             if the builder does not read files, or this is already
+	 *             watching
+	 */
+	public synchronized ReloadableHyperSchema watch() throws IOException {
+		if (builder.getFiles() == null && builder.getDirectory() == null) {
+			throw new IllegalStateException("The hyper schema is not read from files");
+		}
+		if (watchService != null) {
+			throw new IllegalStateException("Already watching");
+		}
+		WatchService service = FileSystems.getDefault().newWatchService();
+		try {
+			register(service);
+		} catch (IOException | RuntimeException e) {
+			service.close();
+			throw e;
+		}
+		watchService = service;
+		Thread thread = new Thread(() -> watchLoop(service), "hyper-schema-reloader");
+		thread.setDaemon(true);
+		thread.start();
+		return this;
+	}
+
+	/**
+	 * Stops watching. {@link #get()} can be still used.
+	 */
+	@Override
+	public synchronized void close() {
+		WatchService service = watchService;
+		if (service != null) {
+			watchService = null;
+			try {
+				service.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private void watchLoop(WatchService service) {
+		try {
+			while (true) {
+				if (!changed(service.take())) {
+					continue;
+				}
+				// Wait until files are written, so that they are read once
+				WatchKey key;
+				while ((key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					changed(key);
+				}
+				try {
+					if (builder.getDirectory() != null) {
+						// Watch subdirectories created meanwhile
+						register(service);
+					}
+					reload();
+				} catch (IOException | RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Failed to reload hyper schema, keeping the current one", e);
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// Closed by close()
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return true if key has an event of the files
+	 */
+	private boolean changed(WatchKey key) {
+		Path dir = (Path) key.watchable();
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				changed = true;
+				continue;
+			}
+			Path path = dir.resolve((Path) event.context());
+			List<Path> files = builder.getFiles();
+			changed |= files != null ? files.stream().anyMatch(file -> isSameFile(file, path))
+					: path.getFileName().toString().endsWith(".json") || Files.isDirectory(path);
+		}
+		key.reset();
+		return changed;
+	}
+
+	private static boolean isSameFile(Path file, Path path) {
+		return file.toAbsolutePath().normalize().equals(path.toAbsolutePath().normalize());
+	}
+
+	private void register(WatchService service) throws IOException {
+		Set<Path> dirs = new HashSet<>();
+		if (builder.getDirectory() != null) {
+			try (Stream<Path> paths = Files.walk(builder.getDirectory())) {
+				paths.filter(Files::isDirectory).forEach(dirs::add);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		} else {
+			for (Path file : builder.getFiles()) {
+				dirs.add(file.toAbsolutePath().normalize().getParent());
+			}
+		}
+		for (Path dir : dirs) {
+			// Registering a directory again returns the same key
+			dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package me.tyru.json.hyper.schema;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * Bounded LRU cache of (route, {@link ContentHash} of the raw entity,
+ * charset, maxErrors) to {@link ValidationResult}. A hit skips decoding,
+ * parsing and validation of the entity, and costs hashing its bytes.
+ *
+ * Each cache hashes by its own random key, so that a client cannot make an
+ * invalid entity whose hash collides with a valid one.
+ *
+ * The cache is split into independently locked segments like
+ * {@link MatchCache}. An entry expires after the time to live, if it is set.
+ *
+ * Keys hold the {@link Route} which the entity was validated by, and a
+ * route is compiled again whenever the route table changes. So an entry of
+ * a previous schema never hits, even before it is evicted.
+ *
+ * @author tyru
+ *
+ */
+final class ResultCache {
+	private static final int MAX_SEGMENTS = 64;
+
+	private final Segment[] segments;
+	/** Key of {@link ContentHash} */
+	private final long k0;
+	private final long k1;
+	/** 0 if entries never expire */
+	private final long ttlNanos;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of entries (must be positive)
+	 * @param ttlNanos
+	 *            time to live of an entry, or 0 if entries never expire
+	 */
+	ResultCache(int maxSize, long ttlNanos) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		}
+		if (ttlNanos < 0) {
+			throw new IllegalArgumentException("ttlNanos must not be negative: " + ttlNanos);
+		}
+		this.ttlNanos = ttlNanos;
+		SecureRandom random = new SecureRandom();
+		this.k0 = random.nextLong();
+		this.k1 = random.nextLong();
+		// Power of two, and at least 16 entries per segment
+		int n = 1;
+		while (n < MAX_SEGMENTS && n * 2 * 16 <= maxSize) {
+			n *= 2;
+		}
+		segments = new Segment[n];
+		for (int i = 0; i < n; i++) {
+			int capacity = maxSize / n + (i < maxSize % n ? 1 : 0);
+			segments[i] = new Segment(capacity, evictions);
+		}
+	}
+
+	/**
+	 * @param route
+	 *            route which validates the entity
+	 * @param entity
+	 *            raw entity, which is hashed and not retained. It must not
+	 *            change until the result is put.
+	 * @param charset
+	 *            charset which the entity is decoded by
+	 * @param maxErrors
+	 * @return Key
+	 */
+	Key keyOf(Route route, ByteBuffer entity, String charset, int maxErrors) {
+		return new Key(route, ContentHash.of(entity, k0, k1), charset, maxErrors);
+	}
+
+	/**
+	 * @param key
+	 * @return the cached result, or null
+	 */
+	ValidationResult get(Key key) {
+		Segment segment = segmentOf(key);
+		Cached entry;
+		synchronized (segment) {
+			entry = segment.get(key);
+			if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+				segment.remove(key);
+				evictions.increment();
+				entry = null;
+			}
+		}
+		if (entry != null) {
+			hits.increment();
+			return entry.result;
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * @param key
+	 * @param result
+	 *            result of validation of the entity of key
+	 */
+	void put(Key key, ValidationResult result) {
+		Cached entry = new Cached(result, ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0);
+		Segment segment = segmentOf(key);
+		synchronized (segment) {
+			segment.put(key, entry);
+		}
+	}
+
+	void invalidateAll() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	CacheStats stats() {
+		long size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+	}
+
+	private Segment segmentOf(Key key) {
+		return segments[(key.hash ^ (key.hash >>> 16)) & (segments.length - 1)];
+	}
+
+	private static final class Segment extends LinkedHashMap<Key, Cached> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+		private final transient LongAdder evictions;
+
+		Segment(int capacity, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static final class Cached {
+		private final ValidationResult result;
+		/** System.nanoTime() to expire at */
+		private final long expiresAt;
+
+		Cached(ValidationResult result, long expiresAt) {
+			this.result = result;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	static final class Key {
+		private final Route route;
+		private final ContentHash content;
+		private final String charset;
+		private final int maxErrors;
+		private final int hash;
+
+		private Key(Route route, ContentHash content, String charset, int maxErrors) {
+			this.route = route;
+			this.content = content;
+			this.charset = charset;
+			this.maxErrors = maxErrors;
+			this.hash = 31 * (31 * System.identityHashCode(route) + content.hashCode()) + maxErrors;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && route == other.route && maxErrors == other.maxErrors
+					&& content.equals(other.content) && charset.equalsIgnoreCase(other.charset);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package me.tyru.json.hyper.schema;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.everit.json.schema.Schema;
+
+/**
+ * A compiled link definition: an {@link EndPoint}, its schema, the names of
+ * template variables in href (in order of appearance) and the converter of
+ * query parameters.
+ *
+ * @author tyru
+ *
+ */
+final class Route {
+	private final EndPoint endPoint;
+	private final LinkSchema linkSchema;
+	private final String[] variableNames;
+	/** Compiled on first use, as the schema may be loaded lazily */
+	private volatile QueryCoercer queryCoercer;
+	/** The number of responses offered to {@link #sample(double)} */
+	private final AtomicLong responses = new AtomicLong();
+
+	Route(EndPoint endPoint, LinkSchema linkSchema, String[] variableNames) {
+		this.endPoint = endPoint;
+		this.linkSchema = linkSchema;
+		this.variableNames = variableNames;
+	}
+
+	EndPoint getEndPoint() {
+		return endPoint;
+	}
+
+	/**
+	 * @return the schema, which is loaded at the first call if it is lazy
+	 */
+	Schema getSchema() {
+		return linkSchema.get();
+	}
+
+	LinkSchema getLinkSchema() {
+		return linkSchema;
+	}
+
+	String[] getVariableNames() {
+		return variableNames;
+	}
+
+	/**
+	 * @return converter of query parameters for this link's schema
+	 */
+	QueryCoercer getQueryCoercer() {
+		QueryCoercer coercer = queryCoercer;
+		if (coercer == null) {
+			// Compiling twice in a race is harmless
+			coercer = QueryCoercer.compile(getSchema());
+			queryCoercer = coercer;
+		}
+		return coercer;
+	}
+
+	/**
+	 * Decides whether to validate a response of this link. Responses are
+	 * sampled evenly by a counter instead of randomly, so a link with little
+	 * traffic is validated at the same rate as the others.
+	 *
+	 * @param rate
+	 *            fraction of responses to validate, from 0 to 1
+	 * @return true if the next response should be validated
+	 */
+	boolean sample(double rate) {
+		if (rate >= 1) {
+			return true;
+		}
+		if (rate <= 0) {
+			return false;
+		}
+		long n = responses.getAndIncrement();
+		return (long) ((n + 1) * rate) != (long) (n * rate);
+	}
+}
@@ -0,0 +1,65 @@
+package me.tyru.json.hyper.schema;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.everit.json.schema.Schema;
+
+/**
+ * The result of {@link HyperSchema#route(String, String, String)}. This holds
+ * the matched link definition and the values of template variables
+ * extracted from a concrete URI path.
+ *
+ * e.g. a link whose href is {@code /users/{id}/orders} matches
+ * {@code /users/42/orders} with path variables {@code {id=42}}.
+ *
+ * @author tyru
+ *
+ */
+public class RouteMatch {
+	private final Route route;
+	private final EndPoint endPoint;
+	private final Schema schema;
+	private final Map<String, String> pathVariables;
+
+	RouteMatch(Route route, String[] values) {
+		this.route = route;
+		this.endPoint = route.getEndPoint();
+		this.schema = route.getSchema();
+		String[] names = route.getVariableNames();
+		if (names.length == 0) {
+			this.pathVariables = Collections.emptyMap();
+		} else {
+			Map<String, String> map = new LinkedHashMap<>();
+			for (int i = 0; i < names.length; i++) {
+				map.put(names[i], values[i]);
+			}
+			this.pathVariables = Collections.unmodifiableMap(map);
+		}
+	}
+
+	Route getRoute() {
+		return route;
+	}
+
+	/**
+	 * @return the matched link definition (href is a URI template as it is
+	 *         written in JSON Hyper Schema)
+	 */
+	public EndPoint getEndPoint() {
+		return endPoint;
+	}
+
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return unmodifiable map of template variable name to its raw (not
+	 *         percent-decoded) value
+	 */
+	public Map<String, String> getPathVariables() {
+		return pathVariables;
+	}
+}
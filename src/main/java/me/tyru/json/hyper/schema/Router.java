@@ -0,0 +1,432 @@
+package me.tyru.json.hyper.schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import me.tyru.json.hyper.schema.exception.DuplicateLinkDefinitionException;
+import me.tyru.json.hyper.schema.media.MediaType;
+
+/**
+ * Compiled router of link definitions.
+ *
+ * Each HTTP method has its own trie over path segments ('/'-separated).
+ * Literal segments are looked up by hash, templated segments like
+ * {@code {id}} or {@code {id}.json} are tried in definition order when no
+ * literal child leads to a match. So the cost of a lookup depends on the
+ * depth of the path, not on the number of routes.
+ *
+ * The router is immutable after {@link #compile(Map)} and is laid out for the
+ * hot path: methods are interned to ordinals indexing an array of per-method
+ * tables, hrefs without template are also registered in a per-method table of
+ * whole paths, and all literal keys carry precomputed hashes. Lookups take a
+ * region of {@link CharSequence} and allocate nothing unless template
+ * variables are extracted.
+ *
+ * The query part of href ({@code ?...} or RFC 6570 {@code {?...}}) is not
+ * a part of a route and is ignored.
+ *
+ * NOTE: This class is internal-use only. Use
+ * {@link HyperSchema#route(String, String, String)} instead.
+ *
+ * @author tyru
+ *
+ */
+final class Router {
+
+	/** Indexed by method ordinal. An element is null if no route exists. */
+	private final MethodTable[] tables;
+	/** Non-standard methods. The ordinal is STANDARD.length + index. */
+	private final String[] extensionMethods;
+	private final int maxVariables;
+	/** All routes in definition order */
+	private final List<Route> routes;
+
+	private Router(MethodTable[] tables, String[] extensionMethods, int maxVariables, List<Route> routes) {
+		this.tables = tables;
+		this.extensionMethods = extensionMethods;
+		this.maxVariables = maxVariables;
+		this.routes = Collections.unmodifiableList(routes);
+	}
+
+	/**
+	 * Compile given routes. An iteration order of {@code routes} decides the
+	 * priority among templated segments at the same depth.
+	 *
+	 * @param routes
+	 * @return Router
+	 * @throws IllegalArgumentException
+	 *             when href has an invalid URI template or encType is not a
+	 *             media type
+	 * @throws DuplicateLinkDefinitionException
+	 *             when two routes differ only in the names of template
+	 *             variables (see {@link #shapeOf(String)})
+	 */
+	static Router compile(Map<EndPoint, LinkSchema> routes) {
+		Objects.requireNonNull(routes, "routes must not be null");
+		List<String> extensionMethods = new ArrayList<>();
+		for (EndPoint endPoint : routes.keySet()) {
+			String method = endPoint.getMethod();
+			if (HttpMethods.ordinalOf(method) < 0 && !extensionMethods.contains(method)) {
+				extensionMethods.add(method);
+			}
+		}
+		MethodTable[] tables = new MethodTable[HttpMethods.STANDARD.length + extensionMethods.size()];
+		int maxVariables = 0;
+		List<Route> all = new ArrayList<>(routes.size());
+		for (Map.Entry<EndPoint, LinkSchema> entry : routes.entrySet()) {
+			EndPoint endPoint = entry.getKey();
+			int ordinal = HttpMethods.ordinalOf(endPoint.getMethod());
+			if (ordinal < 0) {
+				ordinal = HttpMethods.STANDARD.length + extensionMethods.indexOf(endPoint.getMethod());
+			}
+			if (tables[ordinal] == null) {
+				tables[ordinal] = new MethodTable();
+			}
+			MethodTable table = tables[ordinal];
+			Node node = table.root;
+			List<String> variableNames = new ArrayList<>();
+			String path = stripQuery(endPoint.getHref());
+			for (String segment : splitPath(path)) {
+				SegmentTemplate template = SegmentTemplate.parse(segment, endPoint.getHref());
+				if (template == null) {
+					node = node.statics.computeIfAbsent(segment, k -> new Node(null));
+				} else {
+					node = node.templateChild(template);
+					variableNames.addAll(Arrays.asList(template.names));
+				}
+			}
+			Route route = new Route(endPoint, entry.getValue(), variableNames.toArray(new String[0]));
+			MediaType encType = MediaType.valueOf(endPoint.getEncType());
+			Route defined = node.routes.getExactly(encType);
+			if (defined != null) {
+				// The later one would never be matched
+				throw new DuplicateLinkDefinitionException(
+						"Duplicate key: " + endPoint.toString() + ", defined as " + defined.getEndPoint().toString());
+			}
+			if (variableNames.isEmpty()) {
+				table.literalPaths.computeIfAbsent(path, k -> new Node(null)).routes.add(encType, route);
+			}
+			node.routes.add(encType, route);
+			maxVariables = Math.max(maxVariables, variableNames.size());
+			all.add(route);
+		}
+		return new Router(tables, extensionMethods.toArray(new String[0]), maxVariables, all);
+	}
+
+	/**
+	 * @return all routes in definition order
+	 */
+	List<Route> getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * Finds the route which matches given request and extracts template
+	 * variables.
+	 *
+	 * @param method
+	 * @param path
+	 *            concrete URI path (query string must not be included)
+	 * @param encType
+	 *            requested media type
+	 * @return RouteMatch, or null if no route matches
+	 */
+	RouteMatch lookup(String method, CharSequence path, MediaType encType) {
+		MethodTable table = tableOf(method);
+		if (table == null) {
+			return null;
+		}
+		Route route = findLiteral(table, path, 0, path.length(), encType);
+		if (route != null) {
+			return new RouteMatch(route, null);
+		}
+		String[] values = new String[maxVariables];
+		route = walk(table.root, path, 0, path.length(), encType, values, 0);
+		return route != null ? new RouteMatch(route, values) : null;
+	}
+
+	/**
+	 * Same as {@link #lookup(String, CharSequence, MediaType)} except that
+	 * template variables are not extracted. This method does not allocate.
+	 *
+	 * @param method
+	 * @param path
+	 * @param offset
+	 *            the start index of URI path in {@code path}
+	 * @param length
+	 *            the length of URI path
+	 * @param encType
+	 *            requested media type
+	 * @return Route, or null if no route matches
+	 */
+	Route find(CharSequence method, CharSequence path, int offset, int length, MediaType encType) {
+		MethodTable table = tableOf(method);
+		if (table == null) {
+			return null;
+		}
+		int limit = offset + length;
+		Route route = findLiteral(table, path, offset, limit, encType);
+		if (route != null) {
+			return route;
+		}
+		return walk(table.root, path, offset, limit, encType, null, 0);
+	}
+
+	private MethodTable tableOf(CharSequence method) {
+		int ordinal = HttpMethods.ordinalOf(method);
+		if (ordinal < 0) {
+			for (int i = 0; i < extensionMethods.length; i++) {
+				if (LiteralTable.regionEquals(extensionMethods[i], method, 0, method.length())) {
+					ordinal = HttpMethods.STANDARD.length + i;
+					break;
+				}
+			}
+			if (ordinal < 0) {
+				return null;
+			}
+		}
+		return tables[ordinal];
+	}
+
+	private static Route findLiteral(MethodTable table, CharSequence path, int start, int limit, MediaType encType) {
+		Node leaf = table.literalPaths.get(path, start, limit);
+		return leaf != null ? leaf.routes.get(encType) : null;
+	}
+
+	private static Route walk(Node node, CharSequence path, int start, int limit, MediaType encType, String[] values,
+			int count) {
+		if (start > limit) {
+			return node.routes.get(encType);
+		}
+		int end = indexOf(path, '/', start, limit);
+		Node child = node.statics.get(path, start, end);
+		if (child != null) {
+			Route route = walk(child, path, end + 1, limit, encType, values, count);
+			if (route != null) {
+				return route;
+			}
+		}
+		for (int i = 0; i < node.templates.size(); i++) {
+			child = node.templates.get(i);
+			if (child.template.match(path, start, end, values, count)) {
+				Route route = walk(child, path, end + 1, limit, encType, values,
+						count + child.template.names.length);
+				if (route != null) {
+					return route;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the index of c in s[from, limit), or limit if not found
+	 */
+	private static int indexOf(CharSequence s, char c, int from, int limit) {
+		for (int i = from; i < limit; i++) {
+			if (s.charAt(i) == c) {
+				return i;
+			}
+		}
+		return limit;
+	}
+
+	/**
+	 * @return the index of literal in s[from, limit), or -1 if not found
+	 */
+	private static int indexOf(CharSequence s, String literal, int from, int limit) {
+		for (int i = from; i + literal.length() <= limit; i++) {
+			if (LiteralTable.regionEquals(literal, s, i, i + literal.length())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the part of href which routes by, i.e. href without the query
+	 * part and with the names of template variables removed. Links of the
+	 * same method, encType and shape (e.g. {@code /users/{id}} and
+	 * {@code /users/{userId}}) match the same requests.
+	 *
+	 * @param href
+	 * @return e.g. {@code /users/{}} of {@code /users/{id}{?q}}
+	 */
+	static String shapeOf(String href) {
+		String path = stripQuery(href);
+		if (path.indexOf('{') < 0) {
+			return path;
+		}
+		StringBuilder sb = new StringBuilder(path.length());
+		int pos = 0;
+		int open;
+		while ((open = path.indexOf('{', pos)) >= 0) {
+			int close = path.indexOf('}', open);
+			if (close < 0) {
+				break;
+			}
+			sb.append(path, pos, open + 1).append('}');
+			pos = close + 1;
+		}
+		return sb.append(path, pos, path.length()).toString();
+	}
+
+	private static String stripQuery(String href) {
+		int i = href.indexOf('?');
+		if (i < 0) {
+			return href;
+		}
+		// "/users{?q}" -> "/users"
+		return i > 0 && href.charAt(i - 1) == '{' ? href.substring(0, i - 1) : href.substring(0, i);
+	}
+
+	/**
+	 * Splits href by '/'. '/' in a template expression like
+	 * {@code {#/definitions/id}} is not a separator.
+	 */
+	private static List<String> splitPath(String href) {
+		List<String> segments = new ArrayList<>();
+		int start = 0;
+		boolean inExpression = false;
+		for (int i = 0; i < href.length(); i++) {
+			char c = href.charAt(i);
+			if (c == '{') {
+				inExpression = true;
+			} else if (c == '}') {
+				inExpression = false;
+			} else if (c == '/' && !inExpression) {
+				segments.add(href.substring(start, i));
+				start = i + 1;
+			}
+		}
+		segments.add(href.substring(start));
+		return segments;
+	}
+
+	private static final class MethodTable {
+		private final Node root = new Node(null);
+		/** Leaves of hrefs which have no template variables. */
+		private final LiteralTable<Node> literalPaths = new LiteralTable<>();
+	}
+
+	private static final class Node {
+		private final SegmentTemplate template;
+		private final LiteralTable<Node> statics = new LiteralTable<>();
+		private final List<Node> templates = new ArrayList<>(0);
+		private final EncTypeIndex routes = new EncTypeIndex();
+
+		Node(SegmentTemplate template) {
+			this.template = template;
+		}
+
+		Node templateChild(SegmentTemplate template) {
+			for (Node child : templates) {
+				if (child.template.equals(template)) {
+					return child;
+				}
+			}
+			Node child = new Node(template);
+			templates.add(child);
+			return child;
+		}
+	}
+
+	/**
+	 * A path segment which contains one or more template variables. e.g.
+	 * {@code {id}}, {@code {id}.json}, {@code v{major}.{minor}}.
+	 */
+	static final class SegmentTemplate {
+		/** literals.length == names.length + 1 */
+		private final String[] literals;
+		private final String[] names;
+
+		private SegmentTemplate(String[] literals, String[] names) {
+			this.literals = literals;
+			this.names = names;
+		}
+
+		/**
+		 * @param segment
+		 * @param href
+		 *            for error messages
+		 * @return SegmentTemplate, or null if segment has no variables
+		 * @throws IllegalArgumentException
+		 */
+		static SegmentTemplate parse(String segment, String href) {
+			if (segment.indexOf('{') < 0) {
+				return null;
+			}
+			List<String> literals = new ArrayList<>();
+			List<String> names = new ArrayList<>();
+			int pos = 0;
+			int open;
+			while ((open = segment.indexOf('{', pos)) >= 0) {
+				int close = segment.indexOf('}', open);
+				if (close < 0 || close == open + 1) {
+					throw new IllegalArgumentException("Invalid URI template: " + href);
+				}
+				if (open == pos && !literals.isEmpty()) {
+					// "{a}{b}" cannot be split without regex backtracking
+					throw new IllegalArgumentException("Adjacent template variables: " + href);
+				}
+				literals.add(segment.substring(pos, open));
+				names.add(segment.substring(open + 1, close));
+				pos = close + 1;
+			}
+			literals.add(segment.substring(pos));
+			return new SegmentTemplate(literals.toArray(new String[0]), names.toArray(new String[0]));
+		}
+
+		/**
+		 * Matches path[start, end) and stores variable values to
+		 * {@code values[offset...]} unless values is null. Each variable
+		 * must match one or more characters.
+		 */
+		boolean match(CharSequence path, int start, int end, String[] values, int offset) {
+			String prefix = literals[0];
+			String suffix = literals[literals.length - 1];
+			if (end - start < prefix.length() + suffix.length() + names.length
+					|| !LiteralTable.regionEquals(prefix, path, start, start + prefix.length())
+					|| !LiteralTable.regionEquals(suffix, path, end - suffix.length(), end)) {
+				return false;
+			}
+			int pos = start + prefix.length();
+			int limit = end - suffix.length();
+			for (int i = 0; i < names.length; i++) {
+				boolean last = i == names.length - 1;
+				int valueEnd = last ? limit : indexOf(path, literals[i + 1], pos + 1, limit);
+				if (valueEnd <= pos) {
+					return false;
+				}
+				if (values != null) {
+					values[offset + i] = path.subSequence(pos, valueEnd).toString();
+				}
+				pos = valueEnd + (last ? 0 : literals[i + 1].length());
+			}
+			return true;
+		}
+
+		/**
+		 * Names of variables are not a part of the key, so that templates of
+		 * the same shape share a node.
+		 */
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(literals);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			SegmentTemplate other = (SegmentTemplate) obj;
+			return Arrays.equals(literals, other.literals);
+		}
+	}
+}
@@ -0,0 +1,578 @@
+package me.tyru.json.hyper.schema;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.everit.json.schema.ReferenceSchema;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.SchemaException;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.everit.json.schema.loader.SchemaLoader.SchemaLoaderBuilder;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.compile.SchemaCompiler;
+
+/**
+ * Loads the schemas of links, resolving $ref against the documents of the
+ * hyper schema, and shares one loaded copy of each definition among all
+ * links.
+ *
+ * everit-org/json-schema loads each schema on its own, so a definition which
+ * is referred by many links is loaded (and compiled) once for each of them.
+ * This resolves $ref to its canonical URI, i.e. the URI of the document
+ * with a JSON pointer, loads the definition at the URI once, and hands the
+ * same {@link ReferenceSchema} to all links which refer to it. If schemas
+ * are compiled, each definition is compiled once, and links share its
+ * checks.
+ *
+ * A $ref is resolved against the document of the link: the JSONObject given
+ * to {@link HyperSchemaBuilder#hyperSchema(JSONObject)} has the URI
+ * {@link #ROOT}, and a file has its file URI. So {@code #/definitions/user}
+ * refers to the definitions of the hyper schema, and
+ * {@code common.json#/definitions/user} to a sibling file, which is read
+ * from the file system if it is not a source of the hyper schema. A pointer
+ * which is not in the document is resolved against the link schema itself
+ * as before. Other $ref (e.g. to http) is resolved by everit-org/json-schema.
+ *
+ * Identical schemas are loaded once as well. Links whose schemas are equal
+ * in structure (and resolve $ref against the same document) share one
+ * Schema, and a sub-schema which has sub-schemas and no $ref is replaced by
+ * $ref to an interned definition keyed by its structural hash, so that equal
+ * sub-schemas of all links share one Schema. Leaf schemas, e.g.
+ * {@code {"type": "string"}}, are not interned since a reference to them
+ * costs as much as the schema. Sub-schemas of a schema which has a $ref
+ * into itself other than to its definitions are not interned, so that the
+ * $ref still points to the same JSON.
+ *
+ * Definitions are loaded by the thread which refers to them first. Another
+ * thread which refers to a definition being loaded does not load it again,
+ * and waits for it before its link schema is used.
+ *
+ * @author tyru
+ *
+ */
+final class SchemaResolver {
+
+	/** URI of the hyper schema given as JSONObject */
+	static final URI ROOT = URI.create("hyper-schema:/root");
+	/** Prefix of the URIs of interned sub-schemas, followed by their hashes */
+	private static final String INTERNED = "hyper-schema:/interned/";
+
+	/** Keywords whose value is a schema */
+	private static final Set<String> SCHEMA_KEYWORDS = new HashSet<>(
+			Arrays.asList("additionalItems", "additionalProperties", "items", "not"));
+	/** Keywords whose value is an array of schemas */
+	private static final Set<String> ARRAY_KEYWORDS = new HashSet<>(
+			Arrays.asList("items", "allOf", "anyOf", "oneOf"));
+	/** Keywords whose value is an object of schemas */
+	private static final Set<String> OBJECT_KEYWORDS = new HashSet<>(
+			Arrays.asList("properties", "patternProperties", "dependencies", "definitions"));
+
+	private static final Logger LOGGER = Logger.getLogger(SchemaResolver.class.getName());
+
+	/**
+	 * {@code SchemaLoaderBuilder.pointerSchemas(Map)}, which is
+	 * package-private. everit-org/json-schema has no public way to hand
+	 * loaded schemas to a loader, and a referred schema can be set only once,
+	 * so definitions cannot be shared without it. This class fails to
+	 * initialize if it is not accessible.
+	 */
+	private static final Method POINTER_SCHEMAS = pointerSchemasMethod();
+
+	private final boolean compile;
+	/** Documents by URI without fragment. Empty if it cannot be read. */
+	private final ConcurrentMap<URI, Optional<JSONObject>> documents = new ConcurrentHashMap<>();
+	/** Definitions and interned sub-schemas by canonical URI */
+	private final ConcurrentMap<String, Definition> definitions = new ConcurrentHashMap<>();
+	/** Schemas of links by base URI and structural hash */
+	private final ConcurrentMap<String, Definition> links = new ConcurrentHashMap<>();
+	private final LongAdder schemaCount = new LongAdder();
+	private final LongAdder subSchemaCount = new LongAdder();
+
+	/**
+	 * @param compile
+	 *            compile schemas by {@link SchemaCompiler}
+	 */
+	SchemaResolver(boolean compile) {
+		this.compile = compile;
+	}
+
+	/**
+	 * Registers a document which $ref may refer to.
+	 *
+	 * @param uri
+	 *            URI of the document without fragment
+	 * @param document
+	 */
+	void addDocument(URI uri, JSONObject document) {
+		URI key = documentUri(uri);
+		if (key != null) {
+			documents.put(key, Optional.of(document));
+		}
+	}
+
+	/**
+	 * @return the number of definitions loaded for links
+	 */
+	int getDefinitionCount() {
+		return definitions.size();
+	}
+
+	/**
+	 * @return statistics of schemas deduplicated so far
+	 */
+	DeduplicationStats stats() {
+		long distinctSubSchemaCount = definitions.keySet().stream().filter(key -> key.startsWith(INTERNED)).count();
+		return new DeduplicationStats(schemaCount.sum(), links.size(), subSchemaCount.sum(), distinctSubSchemaCount);
+	}
+
+	/**
+	 * @param json
+	 *            schema of a link
+	 * @param base
+	 *            URI of the document which has the link
+	 * @return Schema, which is compiled if compile is set. The same Schema is
+	 *         returned for schemas which are equal in structure.
+	 * @throws SchemaException
+	 *             if the schema or a definition it refers to is invalid
+	 */
+	Schema load(JSONObject json, URI base) {
+		schemaCount.increment();
+		Definition definition = definition(links, base + " " + hash(json), json, base);
+		await(Collections.singletonList(definition));
+		return definition.builder.build().getReferredSchema();
+	}
+
+	private static SchemaLoader loader(JSONObject json, URI base, References references) {
+		Object id = json.opt("id");
+		URI scope = id instanceof String ? base.resolve((String) id) : base;
+		SchemaLoaderBuilder builder = SchemaLoader.builder().schemaJson(json).resolutionScope(scope);
+		try {
+			POINTER_SCHEMAS.invoke(builder, references);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException(e);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param key
+	 *            $ref resolved by everit-org/json-schema
+	 * @return ReferenceSchema.Builder of the definition, or null if this
+	 *         cannot resolve it
+	 */
+	private ReferenceSchema.Builder resolve(String key, References references) {
+		if (key.startsWith(INTERNED)) {
+			// Created by intern() before loading
+			Definition definition = definitions.get(key);
+			if (definition != null) {
+				references.definitions.add(definition);
+				return definition.builder;
+			}
+			return null;
+		}
+		URI uri;
+		try {
+			uri = new URI(key);
+		} catch (URISyntaxException e) {
+			return null;
+		}
+		URI documentUri = documentUri(uri);
+		if (documentUri == null) {
+			return null;
+		}
+		String pointer = uri.getFragment() != null ? uri.getFragment() : "";
+		Object json = document(documentUri).map(document -> query(document, pointer)).orElse(null);
+		if (json instanceof JSONObject) {
+			Definition definition = definition(definitions, documentUri + "#" + pointer, (JSONObject) json,
+					documentUri);
+			references.definitions.add(definition);
+			return definition.builder;
+		}
+		json = documentUri.equals(documentUri(references.base)) ? query(references.root, pointer) : null;
+		if (json instanceof JSONObject) {
+			// Resolved against the link schema itself, which is not shared
+			ReferenceSchema.Builder local = ReferenceSchema.builder();
+			references.put(key, local);
+			local.build().setReferredSchema(loader((JSONObject) json, references.base, references).load().build());
+			return local;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the definition, which is loaded by this thread if no thread
+	 *         has loaded it. It may be still being loaded by another thread.
+	 */
+	private Definition definition(ConcurrentMap<String, Definition> definitions, String key, JSONObject json,
+			URI documentUri) {
+		Definition definition = definitions.get(key);
+		if (definition != null) {
+			return definition;
+		}
+		Definition created = new Definition();
+		definition = definitions.putIfAbsent(key, created);
+		if (definition != null) {
+			return definition;
+		}
+		try {
+			// A definition which refers to itself gets the placeholder
+			References references = new References(json, documentUri);
+			JSONObject interned = interns(json) ? rewrite(json, references) : json;
+			Schema schema = loader(interned, documentUri, references).load().build();
+			created.references = references.definitions;
+			created.builder.build().setReferredSchema(compile ? SchemaCompiler.compile(schema) : schema);
+			created.loaded.complete(null);
+			return created;
+		} catch (RuntimeException e) {
+			definitions.remove(key, created);
+			created.loaded.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return true if sub-schemas of json can be interned, i.e. all $ref
+	 *         into json itself are to its root or definitions, which are not
+	 *         rewritten
+	 */
+	private static boolean interns(JSONObject json) {
+		List<String> refs = new ArrayList<>();
+		collectRefs(json, refs);
+		return refs.stream()
+				.noneMatch(ref -> ref.startsWith("#") && !ref.equals("#") && !ref.startsWith("#/definitions/"));
+	}
+
+	/**
+	 * @return json whose sub-schemas are interned, or json itself if no
+	 *         sub-schema is interned. json is not modified.
+	 */
+	private JSONObject rewrite(JSONObject json, References references) {
+		JSONObject copy = null;
+		for (String key : json.keySet()) {
+			Object value = json.get(key);
+			Object rewritten = value;
+			if (SCHEMA_KEYWORDS.contains(key) && value instanceof JSONObject) {
+				rewritten = rewriteSubSchema((JSONObject) value, references);
+			} else if (ARRAY_KEYWORDS.contains(key) && value instanceof JSONArray) {
+				JSONArray array = (JSONArray) value;
+				JSONArray rewrittenArray = new JSONArray();
+				boolean changed = false;
+				for (Object item : array) {
+					Object rewrittenItem = item instanceof JSONObject ? rewriteSubSchema((JSONObject) item, references)
+							: item;
+					changed |= rewrittenItem != item;
+					rewrittenArray.put(rewrittenItem);
+				}
+				rewritten = changed ? rewrittenArray : array;
+			} else if (OBJECT_KEYWORDS.contains(key) && !key.equals("definitions") && value instanceof JSONObject) {
+				// definitions are left as is, since $ref may point into them
+				JSONObject object = (JSONObject) value;
+				JSONObject rewrittenObject = new JSONObject();
+				boolean changed = false;
+				for (String name : object.keySet()) {
+					Object item = object.get(name);
+					Object rewrittenItem = item instanceof JSONObject ? rewriteSubSchema((JSONObject) item, references)
+							: item;
+					changed |= rewrittenItem != item;
+					rewrittenObject.put(name, rewrittenItem);
+				}
+				rewritten = changed ? rewrittenObject : object;
+			}
+			if (rewritten != value) {
+				if (copy == null) {
+					copy = new JSONObject(json, JSONObject.getNames(json));
+				}
+				copy.put(key, rewritten);
+			}
+		}
+		return copy != null ? copy : json;
+	}
+
+	private Object rewriteSubSchema(JSONObject json, References references) {
+		if (!hasSubSchemas(json)) {
+			return json;
+		}
+		List<String> refs = new ArrayList<>();
+		collectRefs(json, refs);
+		if (!refs.isEmpty()) {
+			return rewrite(json, references);
+		}
+		// Sub-schemas of json are interned when it is loaded
+		String uri = INTERNED + hash(json);
+		subSchemaCount.increment();
+		references.definitions.add(definition(definitions, uri, json, ROOT));
+		return new JSONObject().put("$ref", uri);
+	}
+
+	private static boolean hasSubSchemas(JSONObject json) {
+		for (String key : json.keySet()) {
+			if ((SCHEMA_KEYWORDS.contains(key) || OBJECT_KEYWORDS.contains(key)) && json.get(key) instanceof JSONObject
+					|| ARRAY_KEYWORDS.contains(key) && json.get(key) instanceof JSONArray) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Collects $ref of json and its sub-schemas.
+	 */
+	private static void collectRefs(JSONObject json, List<String> refs) {
+		Object ref = json.opt("$ref");
+		if (ref instanceof String) {
+			refs.add((String) ref);
+		}
+		for (String key : json.keySet()) {
+			Object value = json.get(key);
+			if (SCHEMA_KEYWORDS.contains(key) && value instanceof JSONObject) {
+				collectRefs((JSONObject) value, refs);
+			} else if (ARRAY_KEYWORDS.contains(key) && value instanceof JSONArray) {
+				for (Object item : (JSONArray) value) {
+					if (item instanceof JSONObject) {
+						collectRefs((JSONObject) item, refs);
+					}
+				}
+			} else if (OBJECT_KEYWORDS.contains(key) && value instanceof JSONObject) {
+				for (String name : ((JSONObject) value).keySet()) {
+					Object item = ((JSONObject) value).get(name);
+					if (item instanceof JSONObject) {
+						collectRefs((JSONObject) item, refs);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return SHA-256 of the canonical JSON text, where keys of objects are
+	 *         sorted, in hex
+	 */
+	private static String hash(JSONObject json) {
+		StringBuilder sb = new StringBuilder();
+		appendCanonical(json, sb);
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform must support SHA-256
+			throw new IllegalStateException(e);
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8))) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	private static void appendCanonical(Object json, StringBuilder sb) {
+		if (json instanceof JSONObject) {
+			JSONObject object = (JSONObject) json;
+			sb.append('{');
+			boolean first = true;
+			for (String key : new TreeSet<>(object.keySet())) {
+				if (!first) {
+					sb.append(',');
+				}
+				first = false;
+				sb.append(JSONObject.quote(key)).append(':');
+				appendCanonical(object.get(key), sb);
+			}
+			sb.append('}');
+		} else if (json instanceof JSONArray) {
+			JSONArray array = (JSONArray) json;
+			sb.append('[');
+			for (int i = 0; i < array.length(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				appendCanonical(array.get(i), sb);
+			}
+			sb.append(']');
+		} else if (json instanceof String) {
+			sb.append(JSONObject.quote((String) json));
+		} else {
+			sb.append(JSONObject.valueToString(json));
+		}
+	}
+
+	/**
+	 * Waits for definitions loaded by other threads, and the definitions
+	 * which they refer to.
+	 */
+	private static void await(List<Definition> definitions) {
+		Set<Definition> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<Definition> queue = new ArrayDeque<>(definitions);
+		while (!queue.isEmpty()) {
+			Definition definition = queue.poll();
+			if (!seen.add(definition)) {
+				continue;
+			}
+			try {
+				definition.loaded.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+			queue.addAll(definition.references);
+		}
+	}
+
+	/**
+	 * @return the document, which is read if it is a local file and not
+	 *         registered
+	 */
+	private Optional<JSONObject> document(URI documentUri) {
+		return documents.computeIfAbsent(documentUri, uri -> {
+			if (!"file".equals(uri.getScheme())) {
+				return Optional.empty();
+			}
+			try {
+				byte[] bytes = Files.readAllBytes(Paths.get(uri));
+				return Optional.of(new JSONObject(new String(bytes, StandardCharsets.UTF_8)));
+			} catch (IOException | JSONException e) {
+				throw new SchemaException("Failed to read " + uri + ": " + e.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * @return URI without fragment, where file URIs are normalized, or null
+	 *         if it is not absolute
+	 */
+	private static URI documentUri(URI uri) {
+		if (!uri.isAbsolute() || uri.isOpaque()) {
+			return null;
+		}
+		try {
+			URI withoutFragment = new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null);
+			if ("file".equals(withoutFragment.getScheme())) {
+				Path path = Paths.get(withoutFragment);
+				return path.toAbsolutePath().normalize().toUri();
+			}
+			return withoutFragment.normalize();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the value at JSON pointer, or null if it does not exist
+	 */
+	private static Object query(JSONObject document, String pointer) {
+		if (pointer.isEmpty()) {
+			return document;
+		}
+		if (!pointer.startsWith("/")) {
+			return null;
+		}
+		Object current = document;
+		for (String token : pointer.substring(1).split("/", -1)) {
+			String name = token.replace("~1", "/").replace("~0", "~");
+			if (current instanceof JSONObject) {
+				current = ((JSONObject) current).opt(name);
+			} else if (current instanceof JSONArray) {
+				try {
+					current = ((JSONArray) current).opt(Integer.parseInt(name));
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			} else {
+				return null;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * pointerSchemas of loaders, which resolves a $ref by
+	 * {@link SchemaResolver#resolve} when a loader looks it up by either
+	 * {@link #containsKey(Object)} or {@link #get(Object)}. A $ref which
+	 * cannot be resolved is left to the loader.
+	 */
+	@SuppressWarnings("serial")
+	private final class References extends HashMap<String, ReferenceSchema.Builder> {
+		/** The schema being loaded */
+		final JSONObject root;
+		final URI base;
+		/** Shared definitions which the schema refers to */
+		final List<Definition> definitions = new ArrayList<>();
+
+		References(JSONObject root, URI base) {
+			this.root = root;
+			this.base = base;
+		}
+
+		@Override
+		public ReferenceSchema.Builder get(Object key) {
+			ReferenceSchema.Builder builder = super.get(key);
+			if (builder == null && key instanceof String) {
+				builder = resolve((String) key, this);
+				if (builder != null) {
+					put((String) key, builder);
+				}
+			}
+			return builder;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+	}
+
+	/** A shared definition */
+	private static final class Definition {
+		final ReferenceSchema.Builder builder = ReferenceSchema.builder();
+		final CompletableFuture<Void> loaded = new CompletableFuture<>();
+		/** Definitions which this refers to. Set before loaded. */
+		List<Definition> references = Collections.emptyList();
+	}
+
+	private static Method pointerSchemasMethod() {
+		try {
+			Method method = SchemaLoaderBuilder.class.getDeclaredMethod("pointerSchemas", Map.class);
+			method.setAccessible(true);
+			return method;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Later uses of this class throw NoClassDefFoundError without the cause
+			LOGGER.log(Level.SEVERE, "Unsupported version of everit-org/json-schema", e);
+			throw new IllegalStateException(
+					"SchemaLoader.SchemaLoaderBuilder.pointerSchemas(Map) of everit-org/json-schema is not accessible",
+					e);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package me.tyru.json.hyper.schema.batch;
+
+import java.util.Objects;
+
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+
+/**
+ * A document to validate in a batch, with the request it would be sent by.
+ *
+ * In NDJSON, a record is a line of JSON object like
+ * {@code {"method": "POST", "href": "/users", "document": {...}}}, whose
+ * "encType" is optional.
+ *
+ * @author tyru
+ *
+ */
+public final class BatchRecord {
+	private final String method;
+	private final String href;
+	private final String encType;
+	private final JSONObject document;
+
+	private BatchRecord(String method, String href, String encType, JSONObject document) {
+		this.method = method;
+		this.href = href;
+		this.encType = encType;
+		this.document = document;
+	}
+
+	/**
+	 * Same as {@code of(method, href, HyperSchema.DEFAULT_ENC_TYPE, document)}.
+	 *
+	 * @param method
+	 * @param href
+	 * @param document
+	 * @return BatchRecord
+	 */
+	public static BatchRecord of(String method, String href, JSONObject document) {
+		return of(method, href, HyperSchema.DEFAULT_ENC_TYPE, document);
+	}
+
+	public static BatchRecord of(String method, String href, String encType, JSONObject document) {
+		return new BatchRecord(
+				Objects.requireNonNull(method, "method must not be null"),
+				Objects.requireNonNull(href, "href must not be null"),
+				Objects.requireNonNull(encType, "encType must not be null"),
+				Objects.requireNonNull(document, "document must not be null"));
+	}
+
+	/**
+	 * @param line
+	 *            NDJSON line of a record
+	 * @return BatchRecord
+	 * @throws org.json.JSONException
+	 *             if line is not a record
+	 */
+	public static BatchRecord parse(String line) {
+		JSONObject obj = new JSONObject(line);
+		return of(obj.getString("method"), obj.getString("href"),
+				obj.optString("encType", HyperSchema.DEFAULT_ENC_TYPE), obj.getJSONObject("document"));
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getHref() {
+		return href;
+	}
+
+	public String getEncType() {
+		return encType;
+	}
+
+	public JSONObject getDocument() {
+		return document;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + href + " (" + encType + ")";
+	}
+}
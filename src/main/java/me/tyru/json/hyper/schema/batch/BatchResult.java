@@ -0,0 +1,67 @@
+package me.tyru.json.hyper.schema.batch;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * The result of a record in a batch. A record which could not be validated
+ * (e.g. a malformed NDJSON line, or an invalid encType) has an error instead
+ * of ValidationResult.
+ *
+ * @author tyru
+ *
+ */
+public final class BatchResult {
+	private final long index;
+	private final BatchRecord record;
+	private final ValidationResult result;
+	private final RuntimeException error;
+
+	BatchResult(long index, BatchRecord record, ValidationResult result, RuntimeException error) {
+		this.index = index;
+		this.record = record;
+		this.result = result;
+		this.error = error;
+	}
+
+	/**
+	 * @return 0-based index of the record in input. Blank lines of NDJSON
+	 *         are not records.
+	 */
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the record, or null if it could not be parsed
+	 */
+	public BatchRecord getRecord() {
+		return record;
+	}
+
+	/**
+	 * @return ValidationResult, or null if the record could not be validated
+	 */
+	public ValidationResult getResult() {
+		return result;
+	}
+
+	/**
+	 * @return why the record could not be validated, or null
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+
+	/**
+	 * @return true if the record was validated and is valid
+	 */
+	public boolean isValid() {
+		return result != null && result.isValid();
+	}
+
+	@Override
+	public String toString() {
+		return "#" + index + " " + (record != null ? record + ": " : "")
+				+ (error != null ? error.toString() : result.toString());
+	}
+}
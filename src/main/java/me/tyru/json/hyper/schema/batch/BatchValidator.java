@@ -0,0 +1,289 @@
+package me.tyru.json.hyper.schema.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * Validates a batch of documents against a hyper schema in parallel. This is
+ * same as calling {@link HyperSchema#check(String, String, String, JSONObject, int)}
+ * for each record, but records are parsed and validated on a
+ * {@link ForkJoinPool} which uses all processors by default.
+ *
+ * Results are streamed in input order. Only a window of records is read
+ * ahead of the consumer of results, so a batch larger than memory can be
+ * validated.
+ *
+ * <pre>
+ * try (Stream&lt;BatchResult&gt; results = BatchValidator.of(hyperSchema).validateNdjson(path)) {
+ *     results.filter(r -&gt; !r.isValid()).forEach(System.out::println);
+ * }
+ * </pre>
+ *
+ * @author tyru
+ *
+ */
+public final class BatchValidator {
+
+	private final HyperSchema hyperSchema;
+	private ForkJoinPool pool;
+	private int window;
+	private int maxErrors = 1;
+
+	private BatchValidator(HyperSchema hyperSchema) {
+		this.hyperSchema = hyperSchema;
+		this.pool = DefaultPool.INSTANCE;
+		this.window = DefaultPool.INSTANCE.getParallelism() * 4;
+	}
+
+	/**
+	 * @param hyperSchema
+	 * @return BatchValidator
+	 */
+	public static BatchValidator of(HyperSchema hyperSchema) {
+		return new BatchValidator(Objects.requireNonNull(hyperSchema, "hyperSchema must not be null"));
+	}
+
+	/**
+	 * Sets the pool which validates records. Default is a pool whose
+	 * parallelism is the number of processors. The window is set to 4 times
+	 * the parallelism of pool.
+	 *
+	 * @param pool
+	 * @return BatchValidator
+	 */
+	public BatchValidator pool(ForkJoinPool pool) {
+		this.pool = Objects.requireNonNull(pool, "pool must not be null");
+		this.window = pool.getParallelism() * 4;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of records which are read ahead of the consumer
+	 * of results.
+	 *
+	 * @param window
+	 * @return BatchValidator
+	 */
+	public BatchValidator window(int window) {
+		if (window <= 0) {
+			throw new IllegalArgumentException("window must be positive: " + window);
+		}
+		this.window = window;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of violations recorded for each record. Default
+	 * is 1 (fail-fast).
+	 *
+	 * @param maxErrors
+	 * @return BatchValidator
+	 */
+	public BatchValidator maxErrors(int maxErrors) {
+		if (maxErrors <= 0) {
+			throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+		}
+		this.maxErrors = maxErrors;
+		return this;
+	}
+
+	/**
+	 * @param records
+	 * @return results in the order of records
+	 */
+	public Stream<BatchResult> validate(Iterable<? extends BatchRecord> records) {
+		Objects.requireNonNull(records, "records must not be null");
+		return stream(tasksOf(records.iterator()));
+	}
+
+	/**
+	 * @param records
+	 * @return results in the order of records. Closing this closes records.
+	 */
+	public Stream<BatchResult> validate(Stream<? extends BatchRecord> records) {
+		Objects.requireNonNull(records, "records must not be null");
+		return stream(tasksOf(records.iterator())).onClose(records::close);
+	}
+
+	/**
+	 * Validates NDJSON records (see {@link BatchRecord}). A line which is not
+	 * a record has an error as its result, and does not stop the batch.
+	 *
+	 * @param in
+	 * @param charset
+	 * @return results in the order of lines. Closing this closes in.
+	 * @throws UncheckedIOException
+	 *             from the returned stream if in cannot be read
+	 */
+	public Stream<BatchResult> validateNdjson(InputStream in, Charset charset) {
+		Objects.requireNonNull(in, "in must not be null");
+		Objects.requireNonNull(charset, "charset must not be null");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, charset));
+		return stream(new LineTasks(reader)).onClose(() -> {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Validates NDJSON records of a UTF-8 file.
+	 *
+	 * @see {@link BatchValidator#validateNdjson(InputStream, Charset)}
+	 * @param path
+	 * @return results in the order of lines. Close this to close the file.
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public Stream<BatchResult> validateNdjson(Path path) throws IOException {
+		return validateNdjson(Files.newInputStream(path), StandardCharsets.UTF_8);
+	}
+
+	private Stream<BatchResult> stream(Iterator<Callable<BatchResult>> tasks) {
+		Iterator<BatchResult> results = new Window(tasks, pool, window);
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results,
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	private Iterator<Callable<BatchResult>> tasksOf(Iterator<? extends BatchRecord> records) {
+		return new Iterator<Callable<BatchResult>>() {
+			private long index;
+
+			@Override
+			public boolean hasNext() {
+				return records.hasNext();
+			}
+
+			@Override
+			public Callable<BatchResult> next() {
+				BatchRecord record = Objects.requireNonNull(records.next(), "record must not be null");
+				long i = index++;
+				return () -> validate(i, record);
+			}
+		};
+	}
+
+	private BatchResult validate(long index, BatchRecord record) {
+		try {
+			ValidationResult result = hyperSchema.check(record.getMethod(), record.getHref(), record.getEncType(),
+					record.getDocument(), maxErrors);
+			return new BatchResult(index, record, result, null);
+		} catch (RuntimeException e) {
+			return new BatchResult(index, record, null, e);
+		}
+	}
+
+	/** Reads lines in the consumer thread, and parses them in the pool. */
+	private final class LineTasks implements Iterator<Callable<BatchResult>> {
+		private final BufferedReader reader;
+		private String line;
+		private long index;
+
+		LineTasks(BufferedReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public boolean hasNext() {
+			try {
+				while (line == null) {
+					String read = reader.readLine();
+					if (read == null) {
+						return false;
+					}
+					if (!read.trim().isEmpty()) {
+						line = read;
+					}
+				}
+				return true;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public Callable<BatchResult> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String text = line;
+			long i = index++;
+			line = null;
+			return () -> {
+				BatchRecord record;
+				try {
+					record = BatchRecord.parse(text);
+				} catch (RuntimeException e) {
+					return new BatchResult(i, null, null, e);
+				}
+				return validate(i, record);
+			};
+		}
+	}
+
+	/** Keeps at most window tasks running ahead of the consumer. */
+	private static final class Window implements Iterator<BatchResult> {
+		private final Iterator<Callable<BatchResult>> tasks;
+		private final ForkJoinPool pool;
+		private final int window;
+		private final ArrayDeque<ForkJoinTask<BatchResult>> running;
+
+		Window(Iterator<Callable<BatchResult>> tasks, ForkJoinPool pool, int window) {
+			this.tasks = tasks;
+			this.pool = pool;
+			this.window = window;
+			this.running = new ArrayDeque<>(window);
+		}
+
+		@Override
+		public boolean hasNext() {
+			fill();
+			return !running.isEmpty();
+		}
+
+		@Override
+		public BatchResult next() {
+			fill();
+			if (running.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			return running.poll().join();
+		}
+
+		private void fill() {
+			while (running.size() < window && tasks.hasNext()) {
+				running.add(pool.submit(tasks.next()));
+			}
+		}
+	}
+
+	/** Lazily created pool which uses all processors */
+	private static final class DefaultPool {
+		static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	}
+}
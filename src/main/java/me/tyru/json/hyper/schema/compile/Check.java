@@ -0,0 +1,77 @@
+package me.tyru.json.hyper.schema.compile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.everit.json.schema.Schema;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+import me.tyru.json.hyper.schema.result.Violation;
+
+/**
+ * A compiled check of a schema. Implementations must accept exactly the
+ * same subjects as the schema they were compiled from, without throwing
+ * {@link org.everit.json.schema.ValidationException}.
+ *
+ * @author tyru
+ *
+ */
+abstract class Check {
+
+	/** The schema which this check was compiled from */
+	final Schema schema;
+
+	Check(Schema schema) {
+		this.schema = schema;
+	}
+
+	/**
+	 * @param subject
+	 * @return true if subject is valid
+	 */
+	abstract boolean test(Object subject);
+
+	/**
+	 * Records violations of subject. This is called only to describe an
+	 * invalid subject, so it need not be as fast as {@link #test(Object)}.
+	 * The default implementation records the whole subject as a violation
+	 * of this schema.
+	 *
+	 * @param subject
+	 * @param path
+	 *            fragments of JSON pointer to subject. Implementations must
+	 *            restore it before returning.
+	 * @param out
+	 * @return true if subject is valid
+	 */
+	boolean collect(Object subject, List<String> path, ValidationResult.Builder out) {
+		if (test(subject)) {
+			return true;
+		}
+		out.add(Violation.of(new ArrayList<>(path), schema, subject));
+		return false;
+	}
+
+	/**
+	 * Collects violations of a child value, if it is invalid.
+	 *
+	 * @return true if value is valid
+	 */
+	static boolean collectChild(Check check, Object value, String fragment, List<String> path,
+			ValidationResult.Builder out) {
+		if (check.test(value)) {
+			return true;
+		}
+		path.add(fragment);
+		check.collect(value, path, out);
+		path.remove(path.size() - 1);
+		return false;
+	}
+
+	/**
+	 * Records a violation of a keyword of this schema.
+	 */
+	void report(List<String> path, ValidationResult.Builder out, String keyword, String format, Object... args) {
+		out.add(Violation.of(new ArrayList<>(path), schema, keyword, format, args));
+	}
+}
@@ -0,0 +1,121 @@
+package me.tyru.json.hyper.schema.compile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Objects;
+
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+import me.tyru.json.hyper.schema.result.Violation;
+
+/**
+ * A schema compiled by {@link SchemaCompiler}. This is a drop-in replacement
+ * of the source schema: {@link #validate(Object)} accepts the same subjects
+ * and throws the same {@link ValidationException}.
+ *
+ * A valid subject is checked only by the compiled checks, which neither
+ * throw nor allocate. When a subject is invalid, the source schema validates
+ * it again to report violations in the same way as everit-org/json-schema.
+ *
+ * @author tyru
+ *
+ */
+public final class CompiledSchema extends Schema {
+
+	private final Schema source;
+	final Check check;
+
+	CompiledSchema(Schema source, Check check) {
+		super(new SourceBuilder(source));
+		this.source = Objects.requireNonNull(source, "source must not be null");
+		this.check = Objects.requireNonNull(check, "check must not be null");
+	}
+
+	/**
+	 * @return the schema which this schema was compiled from
+	 */
+	public Schema getSource() {
+		return source;
+	}
+
+	/**
+	 * @param subject
+	 * @return true if subject is valid
+	 */
+	public boolean test(Object subject) {
+		return check.test(subject);
+	}
+
+	/**
+	 * Validates subject without throwing {@link ValidationException}.
+	 *
+	 * @param subject
+	 * @param maxErrors
+	 *            the maximum number of violations to record (1 means
+	 *            fail-fast)
+	 * @return ValidationResult
+	 * @throws IllegalArgumentException
+	 *             if maxErrors is not positive
+	 */
+	public ValidationResult check(Object subject, int maxErrors) {
+		if (maxErrors <= 0) {
+			throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+		}
+		if (check.test(subject)) {
+			return ValidationResult.valid();
+		}
+		ValidationResult.Builder out = ValidationResult.builder(source, maxErrors);
+		if (check.collect(subject, new ArrayList<>(), out)) {
+			// Compiled checks disagree with themselves; report the whole subject
+			out.add(Violation.of(Collections.emptyList(), source, subject));
+		}
+		return out.build();
+	}
+
+	@Override
+	public void validate(Object subject) {
+		if (!check.test(subject)) {
+			source.validate(subject);
+		}
+	}
+
+	@Override
+	public boolean definesProperty(String field) {
+		return source.definesProperty(field);
+	}
+
+	@Override
+	public int hashCode() {
+		return source.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		return source.equals(((CompiledSchema) obj).source);
+	}
+
+	@Override
+	public String toString() {
+		return source.toString();
+	}
+
+	/** Copies title, description and id of the source schema. */
+	private static final class SourceBuilder extends Schema.Builder<CompiledSchema> {
+		SourceBuilder(Schema source) {
+			title(source.getTitle());
+			description(source.getDescription());
+			id(source.getId());
+		}
+
+		@Override
+		public CompiledSchema build() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
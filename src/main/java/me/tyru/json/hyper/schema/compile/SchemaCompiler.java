@@ -0,0 +1,638 @@
+package me.tyru.json.hyper.schema.compile;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.everit.json.schema.ArraySchema;
+import org.everit.json.schema.BooleanSchema;
+import org.everit.json.schema.CombinedSchema;
+import org.everit.json.schema.EmptySchema;
+import org.everit.json.schema.FormatValidator;
+import org.everit.json.schema.NullSchema;
+import org.everit.json.schema.NumberSchema;
+import org.everit.json.schema.ObjectSchema;
+import org.everit.json.schema.ReferenceSchema;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.StringSchema;
+import org.everit.json.schema.ValidationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+import me.tyru.json.hyper.schema.result.Violation;
+
+/**
+ * Compiles a schema of everit-org/json-schema into a tree of specialized
+ * checks. Each check is a final class whose keywords are resolved at compile
+ * time into plain fields and arrays, so validation of a valid subject is
+ * straight-line type checks, lookups and comparisons without virtual
+ * dispatch on schema types, streams, or exceptions.
+ *
+ * Keywords whose semantics are not reproduced here ({@code enum},
+ * {@code not}, {@code multipleOf}, {@code uniqueItems}, ...) are checked by
+ * the original schema. {@code $ref} is resolved once at compile time, and
+ * recursive references are supported.
+ *
+ * @author tyru
+ *
+ */
+public final class SchemaCompiler {
+
+	/** Compiled checks of schemas, to share checks of the same schema and to resolve recursive references */
+	private final Map<Schema, Check> compiled = new IdentityHashMap<>();
+
+	private SchemaCompiler() {
+	}
+
+	/**
+	 * @param schema
+	 * @return CompiledSchema which validates the same as {@code schema}
+	 */
+	public static CompiledSchema compile(Schema schema) {
+		Objects.requireNonNull(schema, "schema must not be null");
+		if (schema instanceof CompiledSchema) {
+			return (CompiledSchema) schema;
+		}
+		return new CompiledSchema(schema, new SchemaCompiler().compileCheck(schema));
+	}
+
+	private Check compileCheck(Schema schema) {
+		Check check = compiled.get(schema);
+		if (check != null) {
+			return check;
+		}
+		if (schema instanceof ReferenceSchema) {
+			// Register before compiling the referred schema which may refer to this
+			ReferenceCheck reference = new ReferenceCheck(schema);
+			compiled.put(schema, reference);
+			Schema referred = ((ReferenceSchema) schema).getReferredSchema();
+			reference.target = referred != null ? compileCheck(referred) : new DelegateCheck(schema);
+			return reference;
+		}
+		check = compileNonReference(schema);
+		compiled.put(schema, check);
+		return check;
+	}
+
+	private Check compileNonReference(Schema schema) {
+		if (schema instanceof CompiledSchema) {
+			return ((CompiledSchema) schema).check;
+		}
+		if (schema instanceof EmptySchema) {
+			return new PredicateCheck(schema, subject -> true);
+		}
+		if (schema instanceof BooleanSchema) {
+			return new PredicateCheck(schema, subject -> subject instanceof Boolean);
+		}
+		if (schema instanceof NullSchema) {
+			return new PredicateCheck(schema, subject -> subject == null || subject == JSONObject.NULL);
+		}
+		if (schema instanceof StringSchema) {
+			return compileString((StringSchema) schema);
+		}
+		if (schema instanceof NumberSchema) {
+			return compileNumber((NumberSchema) schema);
+		}
+		if (schema instanceof ObjectSchema) {
+			return compileObject((ObjectSchema) schema);
+		}
+		if (schema instanceof ArraySchema) {
+			return compileArray((ArraySchema) schema);
+		}
+		if (schema instanceof CombinedSchema) {
+			return compileCombined((CombinedSchema) schema);
+		}
+		// EnumSchema, NotSchema, ...
+		return new DelegateCheck(schema);
+	}
+
+	private Check compileString(StringSchema schema) {
+		Object format = readField(schema, "formatValidator");
+		if (!(format instanceof FormatValidator)) {
+			return new DelegateCheck(schema);
+		}
+		return new StringCheck(schema, requiresType(schema, Boolean.TRUE), schema.getMinLength(),
+				schema.getMaxLength(), schema.getPattern(),
+				format != FormatValidator.NONE ? (FormatValidator) format : null);
+	}
+
+	private Check compileNumber(NumberSchema schema) {
+		NumberCheck check = new NumberCheck(schema, requiresType(schema, ""), schema.requiresInteger(),
+				schema.getMinimum(), schema.isExclusiveMinimum(), schema.getMaximum(), schema.isExclusiveMaximum());
+		if (schema.getMultipleOf() == null) {
+			return check;
+		}
+		Check multipleOf = new DelegateCheck(schema);
+		return new PredicateCheck(schema, subject -> check.test(subject) && multipleOf.test(subject));
+	}
+
+	private Check compileObject(ObjectSchema schema) {
+		Map<String, Schema> properties = schema.getPropertySchemas();
+		String[] propertyNames = properties.keySet().toArray(new String[0]);
+		Check[] propertyChecks = new Check[propertyNames.length];
+		for (int i = 0; i < propertyNames.length; i++) {
+			propertyChecks[i] = compileCheck(properties.get(propertyNames[i]));
+		}
+		Map<Pattern, Schema> patternProperties = schema.getPatternProperties();
+		Pattern[] patterns = patternProperties.keySet().toArray(new Pattern[0]);
+		Check[] patternChecks = new Check[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			patternChecks[i] = compileCheck(patternProperties.get(patterns[i]));
+		}
+		Map<String, Set<String>> propertyDependencies = schema.getPropertyDependencies();
+		String[] dependencyNames = propertyDependencies.keySet().toArray(new String[0]);
+		String[][] dependencies = new String[dependencyNames.length][];
+		for (int i = 0; i < dependencyNames.length; i++) {
+			dependencies[i] = propertyDependencies.get(dependencyNames[i]).toArray(new String[0]);
+		}
+		Map<String, Schema> schemaDependencies = schema.getSchemaDependencies();
+		String[] schemaDependencyNames = schemaDependencies.keySet().toArray(new String[0]);
+		Check[] schemaDependencyChecks = new Check[schemaDependencyNames.length];
+		for (int i = 0; i < schemaDependencyNames.length; i++) {
+			schemaDependencyChecks[i] = compileCheck(schemaDependencies.get(schemaDependencyNames[i]));
+		}
+		Schema additional = schema.getSchemaOfAdditionalProperties();
+		ObjectCheck check = new ObjectCheck(schema);
+		check.requiresObject = schema.requiresObject();
+		check.propertyNames = propertyNames;
+		check.definedNames = new HashSet<>(properties.keySet());
+		check.propertyChecks = propertyChecks;
+		check.required = schema.getRequiredProperties().toArray(new String[0]);
+		check.minProperties = schema.getMinProperties() != null ? schema.getMinProperties() : 0;
+		check.maxProperties = schema.getMaxProperties() != null ? schema.getMaxProperties() : Integer.MAX_VALUE;
+		check.patterns = patterns;
+		check.patternChecks = patternChecks;
+		check.additionalProperties = schema.permitsAdditionalProperties();
+		check.additionalCheck = additional != null ? compileCheck(additional) : null;
+		check.dependencyNames = dependencyNames;
+		check.dependencies = dependencies;
+		check.schemaDependencyNames = schemaDependencyNames;
+		check.schemaDependencyChecks = schemaDependencyChecks;
+		return check;
+	}
+
+	private Check compileArray(ArraySchema schema) {
+		if (schema.needsUniqueItems()) {
+			return new DelegateCheck(schema);
+		}
+		ArrayCheck check = new ArrayCheck(schema);
+		check.requiresArray = schema.requiresArray();
+		check.minItems = schema.getMinItems() != null ? schema.getMinItems() : 0;
+		check.maxItems = schema.getMaxItems() != null ? schema.getMaxItems() : Integer.MAX_VALUE;
+		if (schema.getAllItemSchema() != null) {
+			check.allItemsCheck = compileCheck(schema.getAllItemSchema());
+		} else if (schema.getItemSchemas() != null) {
+			List<Check> itemChecks = new ArrayList<>();
+			for (Schema item : schema.getItemSchemas()) {
+				itemChecks.add(compileCheck(item));
+			}
+			check.itemChecks = itemChecks.toArray(new Check[0]);
+			check.additionalItems = schema.permitsAdditionalItems();
+			Schema additional = schema.getSchemaOfAdditionalItems();
+			check.additionalItemsCheck = additional != null ? compileCheck(additional) : null;
+		}
+		return check;
+	}
+
+	private Check compileCombined(CombinedSchema schema) {
+		List<Check> checks = new ArrayList<>();
+		for (Schema subschema : schema.getSubschemas()) {
+			checks.add(compileCheck(subschema));
+		}
+		Check[] subchecks = checks.toArray(new Check[0]);
+		if (schema.getCriterion() == CombinedSchema.ALL_CRITERION) {
+			return new PredicateCheck(schema, subject -> {
+				for (Check check : subchecks) {
+					if (!check.test(subject)) {
+						return false;
+					}
+				}
+				return true;
+			});
+		} else if (schema.getCriterion() == CombinedSchema.ANY_CRITERION) {
+			return new PredicateCheck(schema, subject -> {
+				for (Check check : subchecks) {
+					if (check.test(subject)) {
+						return true;
+					}
+				}
+				return false;
+			});
+		} else if (schema.getCriterion() == CombinedSchema.ONE_CRITERION) {
+			return new PredicateCheck(schema, subject -> {
+				int matching = 0;
+				for (Check check : subchecks) {
+					if (check.test(subject) && ++matching > 1) {
+						return false;
+					}
+				}
+				return matching == 1;
+			});
+		}
+		return new DelegateCheck(schema);
+	}
+
+	/**
+	 * @return true if schema rejects {@code otherType} (e.g. "type" keyword
+	 *         is specified)
+	 */
+	private static boolean requiresType(Schema schema, Object otherType) {
+		try {
+			schema.validate(otherType);
+			return false;
+		} catch (ValidationException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * @return the value of the field, or null if it cannot be read
+	 */
+	private static Object readField(Object obj, String name) {
+		try {
+			Field field = obj.getClass().getDeclaredField(name);
+			field.setAccessible(true);
+			return field.get(obj);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static final class ReferenceCheck extends Check {
+		private Check target;
+
+		ReferenceCheck(Schema schema) {
+			super(schema);
+		}
+
+		@Override
+		boolean test(Object subject) {
+			return target.test(subject);
+		}
+
+		@Override
+		boolean collect(Object subject, List<String> path, ValidationResult.Builder out) {
+			return target.collect(subject, path, out);
+		}
+	}
+
+	private static final class PredicateCheck extends Check {
+		private final Predicate<Object> predicate;
+
+		PredicateCheck(Schema schema, Predicate<Object> predicate) {
+			super(schema);
+			this.predicate = predicate;
+		}
+
+		@Override
+		boolean test(Object subject) {
+			return predicate.test(subject);
+		}
+	}
+
+	/** Checks by the original schema, for keywords which are not compiled */
+	private static final class DelegateCheck extends Check {
+		DelegateCheck(Schema schema) {
+			super(schema);
+		}
+
+		@Override
+		boolean test(Object subject) {
+			try {
+				schema.validate(subject);
+				return true;
+			} catch (ValidationException e) {
+				return false;
+			}
+		}
+	}
+
+	private static final class StringCheck extends Check {
+		private final boolean requiresString;
+		private final int minLength;
+		private final int maxLength;
+		private final Pattern pattern;
+		private final FormatValidator format;
+
+		StringCheck(Schema schema, boolean requiresString, Integer minLength, Integer maxLength, Pattern pattern,
+				FormatValidator format) {
+			super(schema);
+			this.requiresString = requiresString;
+			this.minLength = minLength != null ? minLength : 0;
+			this.maxLength = maxLength != null ? maxLength : Integer.MAX_VALUE;
+			this.pattern = pattern;
+			this.format = format;
+		}
+
+		@Override
+		boolean test(Object subject) {
+			if (!(subject instanceof String)) {
+				return !requiresString;
+			}
+			String s = (String) subject;
+			int length = s.length();
+			return length >= minLength && length <= maxLength
+					&& (pattern == null || pattern.matcher(s).find())
+					&& (format == null || !format.validate(s).isPresent());
+		}
+	}
+
+	private static final class NumberCheck extends Check {
+		private final boolean requiresNumber;
+		private final boolean requiresInteger;
+		private final boolean hasMinimum;
+		private final double minimum;
+		private final boolean exclusiveMinimum;
+		private final boolean hasMaximum;
+		private final double maximum;
+		private final boolean exclusiveMaximum;
+
+		NumberCheck(Schema schema, boolean requiresNumber, boolean requiresInteger, Number minimum,
+				boolean exclusiveMinimum, Number maximum, boolean exclusiveMaximum) {
+			super(schema);
+			this.requiresNumber = requiresNumber;
+			this.requiresInteger = requiresInteger;
+			this.hasMinimum = minimum != null;
+			this.minimum = minimum != null ? minimum.doubleValue() : 0;
+			this.exclusiveMinimum = exclusiveMinimum;
+			this.hasMaximum = maximum != null;
+			this.maximum = maximum != null ? maximum.doubleValue() : 0;
+			this.exclusiveMaximum = exclusiveMaximum;
+		}
+
+		@Override
+		boolean test(Object subject) {
+			if (!(subject instanceof Number)) {
+				return !requiresNumber;
+			}
+			if (requiresInteger && !(subject instanceof Integer) && !(subject instanceof Long)) {
+				return false;
+			}
+			double value = ((Number) subject).doubleValue();
+			if (hasMinimum && (exclusiveMinimum ? value <= minimum : value < minimum)) {
+				return false;
+			}
+			if (hasMaximum && (exclusiveMaximum ? value >= maximum : value > maximum)) {
+				return false;
+			}
+			return true;
+		}
+	}
+
+	private static final class ObjectCheck extends Check {
+		private boolean requiresObject;
+		private String[] propertyNames;
+		private Set<String> definedNames;
+		private Check[] propertyChecks;
+		private String[] required;
+		private int minProperties;
+		private int maxProperties;
+		private Pattern[] patterns;
+		private Check[] patternChecks;
+		private boolean additionalProperties;
+		private Check additionalCheck;
+		private String[] dependencyNames;
+		private String[][] dependencies;
+		private String[] schemaDependencyNames;
+		private Check[] schemaDependencyChecks;
+
+		ObjectCheck(Schema schema) {
+			super(schema);
+		}
+
+		@Override
+		boolean test(Object subject) {
+			if (!(subject instanceof JSONObject)) {
+				return !requiresObject;
+			}
+			JSONObject obj = (JSONObject) subject;
+			for (int i = 0; i < propertyNames.length; i++) {
+				Object value = obj.opt(propertyNames[i]);
+				if (value != null && !propertyChecks[i].test(value)) {
+					return false;
+				}
+			}
+			for (String name : required) {
+				if (!obj.has(name)) {
+					return false;
+				}
+			}
+			int size = obj.length();
+			if (size < minProperties || size > maxProperties) {
+				return false;
+			}
+			if (patterns.length > 0 || !additionalProperties || additionalCheck != null) {
+				for (String key : obj.keySet()) {
+					if (!testKey(obj, key)) {
+						return false;
+					}
+				}
+			}
+			for (int i = 0; i < dependencyNames.length; i++) {
+				if (obj.has(dependencyNames[i])) {
+					for (String dependency : dependencies[i]) {
+						if (!obj.has(dependency)) {
+							return false;
+						}
+					}
+				}
+			}
+			for (int i = 0; i < schemaDependencyNames.length; i++) {
+				if (obj.has(schemaDependencyNames[i]) && !schemaDependencyChecks[i].test(obj)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/** patternProperties and additionalProperties */
+		private boolean testKey(JSONObject obj, String key) {
+			boolean matched = false;
+			for (int i = 0; i < patterns.length; i++) {
+				if (patterns[i].matcher(key).find()) {
+					matched = true;
+					if (!patternChecks[i].test(obj.get(key))) {
+						return false;
+					}
+				}
+			}
+			if (matched || definedNames.contains(key)) {
+				return true;
+			}
+			return additionalProperties && (additionalCheck == null || additionalCheck.test(obj.get(key)));
+		}
+
+		@Override
+		boolean collect(Object subject, List<String> path, ValidationResult.Builder out) {
+			if (!(subject instanceof JSONObject)) {
+				return super.collect(subject, path, out);
+			}
+			JSONObject obj = (JSONObject) subject;
+			boolean valid = true;
+			for (int i = 0; i < propertyNames.length && !out.isFull(); i++) {
+				Object value = obj.opt(propertyNames[i]);
+				if (value != null) {
+					valid &= collectChild(propertyChecks[i], value, propertyNames[i], path, out);
+				}
+			}
+			for (int i = 0; i < required.length && !out.isFull(); i++) {
+				if (!obj.has(required[i])) {
+					report(path, out, "required", "required key [%s] not found", required[i]);
+					valid = false;
+				}
+			}
+			int size = obj.length();
+			if (size < minProperties && !out.isFull()) {
+				report(path, out, "minProperties", "minimum size: [%d], found: [%d]", minProperties, size);
+				valid = false;
+			}
+			if (size > maxProperties && !out.isFull()) {
+				report(path, out, "maxProperties", "maximum size: [%d], found: [%d]", maxProperties, size);
+				valid = false;
+			}
+			if (patterns.length > 0 || !additionalProperties || additionalCheck != null) {
+				for (String key : obj.keySet()) {
+					if (out.isFull()) {
+						break;
+					}
+					valid &= collectKey(obj, key, path, out);
+				}
+			}
+			for (int i = 0; i < dependencyNames.length && !out.isFull(); i++) {
+				if (obj.has(dependencyNames[i])) {
+					for (String dependency : dependencies[i]) {
+						if (!obj.has(dependency) && !out.isFull()) {
+							report(path, out, "dependencies", "property [%s] is required", dependency);
+							valid = false;
+						}
+					}
+				}
+			}
+			for (int i = 0; i < schemaDependencyNames.length && !out.isFull(); i++) {
+				if (obj.has(schemaDependencyNames[i]) && !schemaDependencyChecks[i].test(obj)) {
+					schemaDependencyChecks[i].collect(obj, path, out);
+					valid = false;
+				}
+			}
+			return valid;
+		}
+
+		private boolean collectKey(JSONObject obj, String key, List<String> path, ValidationResult.Builder out) {
+			boolean valid = true;
+			boolean matched = false;
+			for (int i = 0; i < patterns.length; i++) {
+				if (patterns[i].matcher(key).find()) {
+					matched = true;
+					valid &= collectChild(patternChecks[i], obj.get(key), key, path, out);
+				}
+			}
+			if (matched || definedNames.contains(key)) {
+				return valid;
+			}
+			if (!additionalProperties) {
+				report(path, out, "additionalProperties", "extraneous key [%s] is not permitted", key);
+				return false;
+			}
+			return additionalCheck == null || collectChild(additionalCheck, obj.get(key), key, path, out);
+		}
+	}
+
+	private static final class ArrayCheck extends Check {
+		private boolean requiresArray;
+		private int minItems;
+		private int maxItems;
+		private Check allItemsCheck;
+		private Check[] itemChecks;
+		private boolean additionalItems;
+		private Check additionalItemsCheck;
+
+		ArrayCheck(Schema schema) {
+			super(schema);
+		}
+
+		@Override
+		boolean test(Object subject) {
+			if (!(subject instanceof JSONArray)) {
+				return !requiresArray;
+			}
+			JSONArray arr = (JSONArray) subject;
+			int length = arr.length();
+			if (length < minItems || length > maxItems) {
+				return false;
+			}
+			if (allItemsCheck != null) {
+				for (int i = 0; i < length; i++) {
+					if (!allItemsCheck.test(arr.get(i))) {
+						return false;
+					}
+				}
+			} else if (itemChecks != null) {
+				if (!additionalItems && length > itemChecks.length) {
+					return false;
+				}
+				int tupleLength = Math.min(length, itemChecks.length);
+				for (int i = 0; i < tupleLength; i++) {
+					if (!itemChecks[i].test(arr.get(i))) {
+						return false;
+					}
+				}
+				if (additionalItemsCheck != null) {
+					for (int i = itemChecks.length; i < length; i++) {
+						if (!additionalItemsCheck.test(arr.get(i))) {
+							return false;
+						}
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		boolean collect(Object subject, List<String> path, ValidationResult.Builder out) {
+			if (!(subject instanceof JSONArray)) {
+				return super.collect(subject, path, out);
+			}
+			JSONArray arr = (JSONArray) subject;
+			int length = arr.length();
+			boolean valid = true;
+			if (length < minItems) {
+				report(path, out, "minItems", "expected minimum item count: %d, found: %d", minItems, length);
+				valid = false;
+			}
+			if (length > maxItems && !out.isFull()) {
+				// everit-org/json-schema reports minItems as the maximum
+				report(path, out, "maxItems", "expected maximum item count: %s, found: %d", ((ArraySchema) schema).getMinItems(),
+						length);
+				valid = false;
+			}
+			if (allItemsCheck != null) {
+				for (int i = 0; i < length && !out.isFull(); i++) {
+					valid &= collectChild(allItemsCheck, arr.get(i), String.valueOf(i), path, out);
+				}
+			} else if (itemChecks != null) {
+				if (!additionalItems && length > itemChecks.length && !out.isFull()) {
+					report(path, out, "items", "expected: [%d] array items, found: [%d]", itemChecks.length, length);
+					valid = false;
+				}
+				int tupleLength = Math.min(length, itemChecks.length);
+				for (int i = 0; i < tupleLength && !out.isFull(); i++) {
+					valid &= collectChild(itemChecks[i], arr.get(i), String.valueOf(i), path, out);
+				}
+				if (additionalItemsCheck != null) {
+					for (int i = itemChecks.length; i < length && !out.isFull(); i++) {
+						valid &= collectChild(additionalItemsCheck, arr.get(i), String.valueOf(i), path, out);
+					}
+				}
+			}
+			return valid;
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package me.tyru.json.hyper.schema.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * Bounded executor of validations, which keeps large or pathological request
+ * entities off container threads.
+ *
+ * At most {@code parallelism} validations run at a time, and at most
+ * {@code queueLimit} more wait for them. A validation beyond that is shed:
+ * it completes at once with {@link ValidationResult#rejected()}.
+ *
+ * A validation with a time budget completes with
+ * {@link ValidationResult#timedOut(long)} when the budget runs out. If it is
+ * still waiting, it never runs; if it is running, its thread is interrupted,
+ * though schema validation itself does not stop until it finishes. Such a
+ * validation still counts as pending, so a burst of pathological payloads is
+ * shed instead of piling up.
+ *
+ * Validations run on virtual threads if the JVM has them (Java 21 or later),
+ * otherwise on a fixed pool of daemon threads.
+ *
+ * @author tyru
+ *
+ */
+public final class ValidationExecutor {
+
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+	private final ExecutorService executor;
+	/** Bounds running virtual threads, or null for the fixed pool */
+	private final Semaphore running;
+	private final boolean virtual;
+	private final int limit;
+	private final AtomicInteger pending = new AtomicInteger();
+
+	private ValidationExecutor(ExecutorService executor, Semaphore running, boolean virtual, int limit) {
+		this.executor = executor;
+		this.running = running;
+		this.virtual = virtual;
+		this.limit = limit;
+	}
+
+	/**
+	 * Creates an executor on virtual threads if available, otherwise on a
+	 * fixed pool of platform threads.
+	 *
+	 * @param parallelism
+	 *            the maximum number of running validations
+	 * @param queueLimit
+	 *            the maximum number of waiting validations
+	 * @return ValidationExecutor
+	 * @throws IllegalArgumentException
+	 *             if parallelism is not positive or queueLimit is negative
+	 */
+	public static ValidationExecutor create(int parallelism, int queueLimit) {
+		ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+		if (virtualExecutor == null) {
+			return createPlatform(parallelism, queueLimit);
+		}
+		requireLimits(parallelism, queueLimit);
+		return new ValidationExecutor(virtualExecutor, new Semaphore(parallelism), true, parallelism + queueLimit);
+	}
+
+	/**
+	 * Creates an executor on a fixed pool of platform threads.
+	 *
+	 * @param parallelism
+	 *            the number of threads
+	 * @param queueLimit
+	 *            the maximum number of waiting validations
+	 * @return ValidationExecutor
+	 * @throws IllegalArgumentException
+	 *             if parallelism is not positive or queueLimit is negative
+	 */
+	public static ValidationExecutor createPlatform(int parallelism, int queueLimit) {
+		requireLimits(parallelism, queueLimit);
+		String prefix = "hyper-schema-validation-" + POOL_NUMBER.incrementAndGet() + "-";
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		// Admission is bounded by pending, so the queue need not be
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), factory);
+		pool.allowCoreThreadTimeOut(true);
+		return new ValidationExecutor(pool, null, false, parallelism + queueLimit);
+	}
+
+	/**
+	 * @return true if validations run on virtual threads
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * @return the number of running and waiting validations
+	 */
+	public int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * Runs validation.
+	 *
+	 * @param validation
+	 * @param timeoutMillis
+	 *            time budget of validation from now, or 0 for no budget
+	 * @return future of the result of validation. It completes exceptionally
+	 *         if validation throws.
+	 */
+	public CompletableFuture<ValidationResult> submit(Supplier<ValidationResult> validation, long timeoutMillis) {
+		Objects.requireNonNull(validation, "validation must not be null");
+		return submit(abandoned -> validation.get(), timeoutMillis);
+	}
+
+	/**
+	 * Runs validation, which is given a test of whether its result is
+	 * abandoned, i.e. the future has already completed without it (e.g. it
+	 * timed out). Validation can test it not to publish the result
+	 * elsewhere.
+	 *
+	 * @param validation
+	 * @param timeoutMillis
+	 *            time budget of validation from now, or 0 for no budget
+	 * @return future of the result of validation. It completes exceptionally
+	 *         if validation throws.
+	 */
+	public CompletableFuture<ValidationResult> submit(Function<BooleanSupplier, ValidationResult> validation,
+			long timeoutMillis) {
+		Objects.requireNonNull(validation, "validation must not be null");
+		if (timeoutMillis < 0) {
+			throw new IllegalArgumentException("timeoutMillis must not be negative: " + timeoutMillis);
+		}
+		if (pending.incrementAndGet() > limit) {
+			pending.decrementAndGet();
+			return CompletableFuture.completedFuture(ValidationResult.rejected());
+		}
+		Task task = new Task(validation);
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			// Shut down
+			pending.decrementAndGet();
+			return CompletableFuture.completedFuture(ValidationResult.rejected());
+		}
+		if (timeoutMillis > 0) {
+			ScheduledFuture<?> timer = Timer.INSTANCE.schedule(() -> task.timeOut(timeoutMillis), timeoutMillis,
+					TimeUnit.MILLISECONDS);
+			task.future.whenComplete((result, error) -> timer.cancel(false));
+		}
+		return task.future;
+	}
+
+	/**
+	 * Stops accepting validations. Submitted ones still run.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private final class Task implements Runnable {
+		/** Not started yet */
+		private static final int WAITING = 0;
+		private static final int RUNNING = 1;
+		/** Finished, or timed out before it started */
+		private static final int DONE = 2;
+		/** timeOut() is interrupting the runner */
+		private static final int INTERRUPTING = 3;
+		/** timeOut() has interrupted the runner */
+		private static final int INTERRUPTED = 4;
+
+		final CompletableFuture<ValidationResult> future = new CompletableFuture<>();
+		private final Function<BooleanSupplier, ValidationResult> validation;
+		/** Hands the runner over between run() and timeOut() */
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		private volatile Thread runner;
+
+		Task(Function<BooleanSupplier, ValidationResult> validation) {
+			this.validation = validation;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (running != null) {
+					running.acquire();
+				}
+				try {
+					runner = Thread.currentThread();
+					// Skip if timed out while waiting
+					if (state.compareAndSet(WAITING, RUNNING)) {
+						try {
+							future.complete(validation.apply(future::isDone));
+						} finally {
+							settle();
+						}
+					}
+				} finally {
+					if (running != null) {
+						running.release();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			} finally {
+				// Clear the interrupt of timeOut() before the thread is reused.
+				// settle() ensures that no interrupt comes after this.
+				Thread.interrupted();
+				pending.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Leaves RUNNING, or waits until timeOut() has interrupted this
+		 * thread if it did so first.
+		 */
+		private void settle() {
+			if (!state.compareAndSet(RUNNING, DONE)) {
+				while (state.get() == INTERRUPTING) {
+					Thread.yield();
+				}
+			}
+		}
+
+		void timeOut(long timeoutMillis) {
+			if (!future.complete(ValidationResult.timedOut(timeoutMillis))) {
+				return;
+			}
+			if (state.compareAndSet(WAITING, DONE)) {
+				// Never runs
+				return;
+			}
+			// The runner is interrupted only if it has not finished yet
+			if (state.compareAndSet(RUNNING, INTERRUPTING)) {
+				runner.interrupt();
+				state.set(INTERRUPTED);
+			}
+		}
+	}
+
+	private static void requireLimits(int parallelism, int queueLimit) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		}
+		if (queueLimit < 0) {
+			throw new IllegalArgumentException("queueLimit must not be negative: " + queueLimit);
+		}
+	}
+
+	/**
+	 * @return {@code Executors.newVirtualThreadPerTaskExecutor()}, or null if
+	 *         the JVM does not have virtual threads
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/** Lazily started timer of time budgets */
+	private static final class Timer {
+		static final ScheduledThreadPoolExecutor INSTANCE;
+
+		static {
+			INSTANCE = new ScheduledThreadPoolExecutor(1, r -> {
+				Thread thread = new Thread(r, "hyper-schema-validation-timer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			INSTANCE.setRemoveOnCancelPolicy(true);
+		}
+	}
+}
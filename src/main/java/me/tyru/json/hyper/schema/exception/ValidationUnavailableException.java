@@ -0,0 +1,28 @@
+package me.tyru.json.hyper.schema.exception;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * Thrown when a request could not be validated: validation ran out of its
+ * time budget, or was rejected because too many validations were pending.
+ * This should be reported as 503 Service Unavailable.
+ *
+ * @author tyru
+ *
+ */
+public class ValidationUnavailableException extends RuntimeException {
+
+	private final transient ValidationResult result;
+
+	public ValidationUnavailableException(ValidationResult result) {
+		super(result.getMessage());
+		this.result = result;
+	}
+
+	/**
+	 * @return the result whose status is TIMED_OUT or REJECTED
+	 */
+	public ValidationResult getResult() {
+		return result;
+	}
+}
@@ -0,0 +1,153 @@
+package me.tyru.json.hyper.schema.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * JAX-RS filter of abstract class which validates responses against
+ * targetSchema of links. A user can extends this class to easily implement
+ * JSON response validation filter.
+ *
+ * Only the responses sampled by
+ * {@link HyperSchema#sampleResponse(String, String)} are buffered, while they
+ * are written to the client. They are validated after they are written, by
+ * {@link #getExecutor()}, so validation never delays nor fails the response.
+ * Violations are reported to
+ * {@link #onInvalidResponse(String, String, ValidationResult)}.
+ *
+ * NOTE: A user must provide
+ * {@code @Named("AbstractJaxrsJSONValidationFilter.hyperSchema")} injectee
+ * built with {@link HyperSchemaBuilder#responseSampleRate(double)}.
+ *
+ * @author tyru
+ *
+ */
+@Dependent
+public abstract class AbstractJaxrsJSONResponseValidationFilter implements ContainerResponseFilter, WriterInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(AbstractJaxrsJSONResponseValidationFilter.class.getName());
+	private static final String SAMPLED = AbstractJaxrsJSONResponseValidationFilter.class.getName() + ".sampled";
+	/** The maximum number of violations reported for a response */
+	protected static final int MAX_ERRORS = 10;
+
+	@SuppressWarnings("cdi-ambiguous-dependency")
+	@Inject
+	@Named("AbstractJaxrsJSONValidationFilter.hyperSchema")
+	private HyperSchema hyperSchema;
+
+	@Override
+	public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+			throws IOException {
+		if (!responseContext.hasEntity()) {
+			return;
+		}
+		String method = requestContext.getMethod();
+		String href = requestContext.getUriInfo().getRequestUri().getPath();
+		if (hyperSchema.sampleResponse(method, href)) {
+			requestContext.setProperty(SAMPLED, new String[] { method, href });
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		Object sampled = context.getProperty(SAMPLED);
+		if (!(sampled instanceof String[])) {
+			context.proceed();
+			return;
+		}
+		context.removeProperty(SAMPLED);
+		OutputStream out = context.getOutputStream();
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		context.setOutputStream(new TeeOutputStream(out, copy));
+		try {
+			context.proceed();
+		} finally {
+			context.setOutputStream(out);
+		}
+		MediaType mediaType = context.getMediaType();
+		String charset = mediaType != null ? mediaType.getParameters().get(MediaType.CHARSET_PARAMETER) : null;
+		String method = ((String[]) sampled)[0];
+		String href = ((String[]) sampled)[1];
+		getExecutor().execute(() -> validate(method, href, copy, charset != null ? charset : HyperSchema.DEFAULT_CHARSET));
+	}
+
+	/**
+	 * @return executor which validates responses, the common pool by default
+	 */
+	protected Executor getExecutor() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Called by {@link #getExecutor()} when a response violates targetSchema.
+	 * This logs a warning by default.
+	 *
+	 * @param method
+	 *            HTTP method of the request
+	 * @param href
+	 *            URI path of the request
+	 * @param result
+	 *            invalid result
+	 */
+	protected void onInvalidResponse(String method, String href, ValidationResult result) {
+		LOGGER.log(Level.WARNING, "Response of {0} {1} violates targetSchema: {2}",
+				new Object[] { method, href, result });
+	}
+
+	private void validate(String method, String href, ByteArrayOutputStream copy, String charset) {
+		try {
+			Object entity = new JSONTokener(copy.toString(charset)).nextValue();
+			ValidationResult result = hyperSchema.checkResponse(method, href, entity, MAX_ERRORS);
+			if (!result.isValid()) {
+				onInvalidResponse(method, href, result);
+			}
+		} catch (JSONException | UnsupportedEncodingException e) {
+			LOGGER.log(Level.FINE, "Response of " + method + " " + href + " is not JSON", e);
+		}
+	}
+
+	private static final class TeeOutputStream extends FilterOutputStream {
+		private final OutputStream copy;
+
+		TeeOutputStream(OutputStream out, OutputStream copy) {
+			super(out);
+			this.copy = copy;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			copy.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			copy.write(b, off, len);
+		}
+	}
+}
@@ -8,11 +8,11 @@ import javax.inject.Named;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.core.Response.Status;
-
-import org.everit.json.schema.ValidationException;
 
 import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.request.JaxrsJSONRequest;
+import me.tyru.json.hyper.schema.result.ValidationResult;
 
 /**
  * JAX-RS filter of abstract class. A user can extends this class to easily
@@ -21,6 +21,13 @@ import me.tyru.json.hyper.schema.HyperSchema;
  * NOTE: A user must provide {@code @Named("JSONValidationFilter.hyperSchema")}
  * injectee to inject this class.
  *
+ * Requests are validated by {@link HyperSchema#validateAsync}, so the
+ * executor and the time budget set by
+ * {@link HyperSchemaBuilder#validationExecutor} apply. A request filter of
+ * JAX-RS 2.0 cannot suspend the request, so this waits for the result. A
+ * request which could not be validated in time, or was shed, is aborted with
+ * 503 Service Unavailable.
+ *
  * @author tyru
  *
  */
@@ -38,11 +45,10 @@ public abstract class AbstractJaxrsJSONValidationFilter implements ContainerRequ
 
 	@Override
 	public void filter(ContainerRequestContext context) throws IOException {
-		try {
-			// Throws a ValidationException if accepted json is invalid
-			hyperSchema.validate(context);
-		} catch (ValidationException e) {
-			context.abortWith(Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build());
+		// Invalid json is reported without throwing a ValidationException
+		ValidationResult result = AsyncValidation.await(hyperSchema.validateAsync(JaxrsJSONRequest.of(context)));
+		if (!result.isValid()) {
+			context.abortWith(Response.status(AsyncValidation.statusOf(result)).entity(result.getMessage()).build());
 		}
 	}
 }
\ No newline at end of file
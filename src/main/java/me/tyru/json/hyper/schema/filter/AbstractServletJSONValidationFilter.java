@@ -0,0 +1,253 @@
+package me.tyru.json.hyper.schema.filter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONException;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.request.ServletJSONRequest;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * Servlet filter of abstract class. A user can extends this class to easily
+ * implement JSON validation filter.
+ *
+ * When the request supports asynchronous processing and has an entity (POST,
+ * PUT or PATCH with a positive Content-Length or a chunked entity), the
+ * entity is read by non-blocking I/O of Servlet 3.1, so that a slow client does not hold a
+ * container thread while it uploads. The request is validated once the whole
+ * entity is read, and then dispatched again with the buffered entity, which
+ * the downstream can read any number of times. Later asynchronous dispatches
+ * of the downstream (e.g. of a DeferredResult) get the same entity, and its
+ * buffer is returned to the pool when the request completes.
+ *
+ * Requests are validated by {@link HyperSchema#validateAsync}, so the
+ * executor and the time budget set by
+ * {@link HyperSchemaBuilder#validationExecutor} apply. In the asynchronous
+ * mode, no container thread waits for validation. A request which could not
+ * be validated in time, or was shed, gets 503 Service Unavailable.
+ *
+ * NOTE: A user must map the filter with {@code asyncSupported = true} and the
+ * dispatcher types {@link DispatcherType#REQUEST} and
+ * {@link DispatcherType#ASYNC}, e.g.
+ * {@code @WebFilter(urlPatterns = "/*", asyncSupported = true, dispatcherTypes = { DispatcherType.REQUEST, DispatcherType.ASYNC })}.
+ * Otherwise the entity is read by blocking I/O.
+ *
+ * @author tyru
+ *
+ */
+public abstract class AbstractServletJSONValidationFilter implements Filter {
+
+	private static final String ATTRIBUTE = AbstractServletJSONValidationFilter.class.getName() + ".request";
+	private static final Set<String> ENTITY_METHODS = Collections
+			.unmodifiableSet(new HashSet<>(Arrays.asList("POST", "PUT", "PATCH")));
+
+	/**
+	 * @return HyperSchema to validate requests
+	 */
+	protected abstract HyperSchema getHyperSchema();
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)) {
+			chain.doFilter(request, response);
+			return;
+		}
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletResponse res = (HttpServletResponse) response;
+		Object validated = req.getAttribute(ATTRIBUTE);
+		if (validated instanceof ServletJSONRequest && req.getDispatcherType() == DispatcherType.ASYNC) {
+			// Dispatched again after the entity was read and validated, or by
+			// asynchronous processing of the downstream. The entity is kept
+			// until the request completes.
+			chain.doFilter(((ServletJSONRequest) validated).getRequest(), res);
+		} else if (req.isAsyncSupported() && req.getDispatcherType() == DispatcherType.REQUEST
+				&& hasEntity(req)) {
+			AsyncContext asyncContext = req.startAsync();
+			ServletJSONRequest.readAsync(req, (json, error) -> {
+				if (error != null) {
+					respond(res, HttpServletResponse.SC_BAD_REQUEST, "Failed to read the request entity");
+					asyncContext.complete();
+					return;
+				}
+				getHyperSchema().validateAsync(json).whenComplete((result, validationError) -> {
+					if (accepts(result, validationError, res)) {
+						req.setAttribute(ATTRIBUTE, json);
+						asyncContext.addListener(new Release(json));
+						asyncContext.dispatch();
+					} else {
+						release(json, result);
+						asyncContext.complete();
+					}
+				});
+			});
+		} else {
+			ServletJSONRequest json;
+			try {
+				json = ServletJSONRequest.of(req);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			ValidationResult result;
+			RuntimeException error = null;
+			try {
+				result = AsyncValidation.await(getHyperSchema().validateAsync(json));
+			} catch (JSONException | IllegalArgumentException e) {
+				result = null;
+				error = e;
+			}
+			if (accepts(result, error, res)) {
+				proceed(json, req, res, chain);
+			} else {
+				release(json, result);
+			}
+		}
+	}
+
+	/**
+	 * @return true if req is of a method which has an entity, and the entity
+	 *         is not empty or is chunked
+	 */
+	private static boolean hasEntity(HttpServletRequest req) {
+		if (!ENTITY_METHODS.contains(req.getMethod())) {
+			return false;
+		}
+		long contentLength = req.getContentLengthLong();
+		if (contentLength >= 0) {
+			return contentLength > 0;
+		}
+		String transferEncoding = req.getHeader("Transfer-Encoding");
+		return transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked");
+	}
+
+	/**
+	 * @param result
+	 *            result of validation, or null if it threw error
+	 * @return true if the request is valid, otherwise responds 400 Bad
+	 *         Request, or 503 Service Unavailable if it could not be
+	 *         validated
+	 */
+	private static boolean accepts(ValidationResult result, Throwable error, HttpServletResponse res) {
+		if (error != null) {
+			Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause()
+					: error;
+			if (cause instanceof JSONException || cause instanceof IllegalArgumentException) {
+				// Malformed JSON or Content-Type
+				respond(res, HttpServletResponse.SC_BAD_REQUEST, cause.getMessage());
+			} else {
+				respond(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to validate the request");
+			}
+			return false;
+		}
+		if (result.isValid()) {
+			return true;
+		}
+		respond(res, AsyncValidation.statusOf(result), result.getMessage());
+		return false;
+	}
+
+	/**
+	 * Returns the buffer of a rejected request to the pool, unless its
+	 * validation timed out and may still be reading the buffer. Such a
+	 * buffer is left to be garbage collected.
+	 */
+	private static void release(ServletJSONRequest json, ValidationResult result) {
+		if (result == null || result.getStatus() != ValidationResult.Status.TIMED_OUT) {
+			json.close();
+		}
+	}
+
+	private static void proceed(ServletJSONRequest json, HttpServletRequest req, HttpServletResponse res,
+			FilterChain chain) throws IOException, ServletException {
+		req.setAttribute(ATTRIBUTE, json);
+		try {
+			chain.doFilter(json.getRequest(), res);
+		} finally {
+			if (req.isAsyncStarted()) {
+				// The downstream may still read the entity asynchronously,
+				// and dispatch the request again
+				req.getAsyncContext().addListener(new Release(json));
+			} else {
+				req.removeAttribute(ATTRIBUTE);
+				json.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the buffer of a request to the pool when its asynchronous
+	 * processing completes. A new cycle of asynchronous processing started
+	 * by the downstream is followed.
+	 */
+	private static final class Release implements AsyncListener {
+		private final ServletJSONRequest json;
+
+		Release(ServletJSONRequest json) {
+			this.json = json;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			json.close();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			// onComplete() follows
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			// onComplete() follows
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// Listeners are removed when a new cycle starts
+			event.getAsyncContext().addListener(this);
+		}
+	}
+
+	private static void respond(HttpServletResponse res, int status, String message) {
+		if (res.isCommitted()) {
+			return;
+		}
+		try {
+			res.setStatus(status);
+			res.setContentType("text/plain; charset=UTF-8");
+			res.getWriter().write(message);
+		} catch (IOException e) {
+			// The client has gone, nothing to report
+		}
+	}
+}
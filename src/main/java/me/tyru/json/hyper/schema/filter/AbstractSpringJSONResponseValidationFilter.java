@@ -0,0 +1,134 @@
+package me.tyru.json.hyper.schema.filter;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * Spring MVC advice of abstract class which validates response bodies
+ * against targetSchema of links. A user can extends this class to easily
+ * implement JSON response validation filter.
+ *
+ * Only the responses sampled by
+ * {@link HyperSchema#sampleResponse(String, String)} are validated, by
+ * {@link #getExecutor()}, so validation never delays nor fails the response.
+ * Violations are reported to
+ * {@link #onInvalidResponse(String, String, ValidationResult)}.
+ *
+ * The body is converted into a JSON value by {@link #toJson(Object)} in the
+ * calling thread, before the message converter writes it, so the executor
+ * never reads the body while the application may change or reuse it.
+ *
+ * NOTE: A user must provide
+ * {@code @Qualifier("AbstractSpringJSONValidationFilter.hyperSchema")} bean
+ * built with {@link HyperSchemaBuilder#responseSampleRate(double)}.
+ *
+ * @author tyru
+ *
+ */
+public abstract class AbstractSpringJSONResponseValidationFilter implements ResponseBodyAdvice<Object> {
+
+	private static final Logger LOGGER = Logger.getLogger(AbstractSpringJSONResponseValidationFilter.class.getName());
+	/** The maximum number of violations reported for a response */
+	protected static final int MAX_ERRORS = 10;
+
+	@Autowired
+	@Qualifier("AbstractSpringJSONValidationFilter.hyperSchema")
+	private HyperSchema hyperSchema;
+
+	@Override
+	public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+		return true;
+	}
+
+	@Override
+	public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+			Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request,
+			ServerHttpResponse response) {
+		if (body == null) {
+			return body;
+		}
+		String method = request.getMethod().toString();
+		String href = request.getURI().getPath();
+		if (!hyperSchema.sampleResponse(method, href)) {
+			return body;
+		}
+		Object json;
+		try {
+			json = toJson(body);
+		} catch (JSONException e) {
+			LOGGER.log(Level.FINE, "Response of " + method + " " + href + " is not JSON", e);
+			return body;
+		}
+		getExecutor().execute(() -> validate(method, href, json));
+		return body;
+	}
+
+	/**
+	 * @return executor which validates responses, the common pool by default
+	 */
+	protected Executor getExecutor() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Converts a response body into a JSON value in the calling thread. A
+	 * String, JSONObject or JSONArray is parsed as JSON text, and other
+	 * objects are converted by {@link JSONObject#wrap(Object)}. Override this
+	 * to convert by the serializer of the application, e.g. Jackson's
+	 * ObjectMapper. The result is validated by {@link #getExecutor()}, so it
+	 * must not share mutable objects with body.
+	 *
+	 * @param body
+	 * @return JSON value (e.g. JSONObject, JSONArray)
+	 * @throws JSONException
+	 *             if body cannot be converted
+	 */
+	protected Object toJson(Object body) {
+		if (body instanceof String || body instanceof JSONObject || body instanceof JSONArray) {
+			return new JSONTokener(body.toString()).nextValue();
+		}
+		return JSONObject.wrap(body);
+	}
+
+	/**
+	 * Called by {@link #getExecutor()} when a response violates targetSchema.
+	 * This logs a warning by default.
+	 *
+	 * @param method
+	 *            HTTP method of the request
+	 * @param href
+	 *            URI path of the request
+	 * @param result
+	 *            invalid result
+	 */
+	protected void onInvalidResponse(String method, String href, ValidationResult result) {
+		LOGGER.log(Level.WARNING, "Response of {0} {1} violates targetSchema: {2}",
+				new Object[] { method, href, result });
+	}
+
+	private void validate(String method, String href, Object json) {
+		ValidationResult result = hyperSchema.checkResponse(method, href, json, MAX_ERRORS);
+		if (!result.isValid()) {
+			onInvalidResponse(method, href, result);
+		}
+	}
+}
@@ -1,11 +1,14 @@
 package me.tyru.json.hyper.schema.filter;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
 
-import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.MethodParameter;
@@ -14,21 +17,51 @@ import org.springframework.http.HttpInputMessage;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
 
 import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.exception.ValidationUnavailableException;
 import me.tyru.json.hyper.schema.request.JSONRequest;
 import me.tyru.json.hyper.schema.request.SpringJSONRequest;
+import me.tyru.json.hyper.schema.result.ValidationResult;
 
+/**
+ * Spring MVC advice of abstract class. A user can extends this class to
+ * easily implement JSON validation filter.
+ *
+ * The entity is read once into a byte array in
+ * {@link #beforeBodyRead(HttpInputMessage, MethodParameter, Type, Class)},
+ * validated, and handed to the message converter as a stream over the same
+ * array. This advice is a singleton, so it has no state of a request: the
+ * buffer is local to the call, and whether the request was validated is a
+ * request-scoped attribute.
+ *
+ * Requests are validated by {@link HyperSchema#validateAsync}, so the
+ * executor and the time budget set by
+ * {@link HyperSchemaBuilder#validationExecutor} apply. An advice cannot
+ * suspend the request, so this waits for the result. A request which could
+ * not be validated in time, or was shed, throws
+ * {@link ValidationUnavailableException}, which an application should map to
+ * 503 Service Unavailable.
+ *
+ * @author tyru
+ *
+ */
 public abstract class AbstractSpringJSONValidationFilter extends RequestBodyAdviceAdapter {
 
+	private static final String VALIDATED = AbstractSpringJSONValidationFilter.class.getName() + ".validated";
+	/** Content-Length is not trusted beyond this, the buffer grows instead */
+	private static final int MAX_PRESIZE = 1024 * 1024;
+
 	@Autowired
 	@Qualifier("AbstractSpringJSONValidationFilter.hyperSchema")
 	private HyperSchema hyperSchema;
 
-	private String json;
-
 	@Override
 	public boolean supports(MethodParameter paramMethodParameter, Type paramType,
 			Class<? extends HttpMessageConverter<?>> paramClass) {
@@ -38,14 +71,41 @@ public abstract class AbstractSpringJSONValidationFilter extends RequestBodyAdvi
 	@Override
 	public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
 			Class<? extends HttpMessageConverter<?>> converterType) throws IOException {
-		this.json = IOUtils.toString(inputMessage.getBody());
-		final InputStream returnInputStream = IOUtils.toInputStream(json);
 		final HttpHeaders returnHeaders = inputMessage.getHeaders();
+		final long contentLength = returnHeaders.getContentLength();
+		byte[] buff = new byte[contentLength >= 0 ? (int) Math.min(contentLength, MAX_PRESIZE) : 1024];
+		int count = 0;
+		final InputStream in = inputMessage.getBody();
+		while (true) {
+			if (count == buff.length) {
+				// Content-Length may be wrong, so check the end
+				int b = in.read();
+				if (b < 0) {
+					break;
+				}
+				buff = Arrays.copyOf(buff, Math.max(count * 2, 1024));
+				buff[count++] = (byte) b;
+			}
+			int read = in.read(buff, count, buff.length - count);
+			if (read < 0) {
+				break;
+			}
+			count += read;
+		}
+		final byte[] body = buff;
+		final int length = count;
+
+		final HttpServletRequest request = currentRequest();
+		if (request != null) {
+			request.setAttribute(VALIDATED, Boolean.TRUE);
+			check(SpringJSONRequest.of(request.getMethod(), URI.create(request.getRequestURI()), returnHeaders, body,
+					length));
+		}
 
 		return new HttpInputMessage() {
 			@Override
 			public InputStream getBody() throws IOException {
-				return returnInputStream;
+				return new ByteArrayInputStream(body, 0, length);
 			}
 			@Override
 			public HttpHeaders getHeaders() {
@@ -54,23 +114,49 @@ public abstract class AbstractSpringJSONValidationFilter extends RequestBodyAdvi
 		};
 	}
 
+	/**
+	 * Validates a request whose body is not read by a message converter
+	 * (e.g. query parameters of GET).
+	 */
 	@InitBinder
 	private void initBinder(
 			WebDataBinder binder,
 			ServletWebRequest request) throws IOException
 	{
-		try {
-			// Throws a ValidationException if accepted json is invalid
-			HttpHeaders headers = new HttpHeaders();
-			request.getHeaderNames().forEachRemaining(name -> {
-				headers.add(name, request.getHeader(name));
-			});
-			final JSONRequest req = SpringJSONRequest.of(
-					request.getHttpMethod().toString(), URI.create(request.getRequest().getRequestURI()),
-					headers , this.json);
-			hyperSchema.validate(req);
-		} finally {
-			this.json = null;
+		if (request.getAttribute(VALIDATED, RequestAttributes.SCOPE_REQUEST) != null) {
+			return;
+		}
+		request.setAttribute(VALIDATED, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+		// Only Content-Type is needed to validate
+		HttpHeaders headers = new HttpHeaders();
+		String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+		if (contentType != null) {
+			headers.set(HttpHeaders.CONTENT_TYPE, contentType);
 		}
+		check(SpringJSONRequest.of(
+				request.getHttpMethod().toString(), URI.create(request.getRequest().getRequestURI()),
+				headers, null, 0));
+	}
+
+	/**
+	 * @throws org.everit.json.schema.ValidationException
+	 *             if req is invalid
+	 * @throws ValidationUnavailableException
+	 *             if req could not be validated
+	 */
+	private void check(JSONRequest req) {
+		ValidationResult result = AsyncValidation.await(hyperSchema.validateAsync(req));
+		if (result.getStatus() == ValidationResult.Status.INVALID) {
+			// Only the first violation is rendered into the exception
+			throw result.toException();
+		} else if (!result.isValid()) {
+			throw new ValidationUnavailableException(result);
+		}
+	}
+
+	private static HttpServletRequest currentRequest() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getRequest()
+				: null;
 	}
 }
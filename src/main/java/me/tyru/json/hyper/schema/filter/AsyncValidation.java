@@ -0,0 +1,64 @@
+package me.tyru.json.hyper.schema.filter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * Helpers of filters which validate by
+ * {@link me.tyru.json.hyper.schema.HyperSchema#validateAsync}.
+ *
+ * @author tyru
+ *
+ */
+final class AsyncValidation {
+
+	static final int SC_BAD_REQUEST = 400;
+	static final int SC_SERVICE_UNAVAILABLE = 503;
+
+	private AsyncValidation() {
+	}
+
+	/**
+	 * Waits for future in a filter which cannot suspend the request.
+	 *
+	 * @param future
+	 * @return ValidationResult
+	 * @throws RuntimeException
+	 *             what validation threw (e.g. JSONException)
+	 */
+	static ValidationResult await(CompletableFuture<ValidationResult> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			throw unwrap(e);
+		}
+	}
+
+	/**
+	 * @return the cause of CompletionException as a RuntimeException
+	 */
+	static RuntimeException unwrap(Throwable t) {
+		Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+	}
+
+	/**
+	 * @param result
+	 *            invalid result
+	 * @return 503 if validation did not finish, otherwise 400
+	 */
+	static int statusOf(ValidationResult result) {
+		switch (result.getStatus()) {
+		case TIMED_OUT:
+		case REJECTED:
+			return SC_SERVICE_UNAVAILABLE;
+		default:
+			return SC_BAD_REQUEST;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package me.tyru.json.hyper.schema.media;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parsed value of Content-Type header: a {@link MediaType} and its charset
+ * parameter. Other parameters are ignored.
+ *
+ * {@link #parse(String)} is a hand-written parser of RFC 7231 section 3.1.1.1
+ * (no regex). Parsed values are cached by the raw header value, because
+ * clients send the same few values again and again.
+ *
+ * @author tyru
+ *
+ */
+public final class ContentType {
+
+	/** See {@link MediaType} */
+	private static final int MAX_CACHED = 1024;
+	private static final ConcurrentMap<String, ContentType> CACHE = new ConcurrentHashMap<>();
+
+	private final MediaType mediaType;
+	private final String charset;
+
+	private ContentType(MediaType mediaType, String charset) {
+		this.mediaType = mediaType;
+		this.charset = charset;
+	}
+
+	public static ContentType of(MediaType mediaType, String charset) {
+		return new ContentType(Objects.requireNonNull(mediaType, "mediaType must not be null"), charset);
+	}
+
+	/**
+	 * Parses a value of Content-Type header like
+	 * {@code application/json; charset="UTF-8"}.
+	 *
+	 * @param value
+	 * @return ContentType, or null if value is malformed
+	 */
+	public static ContentType parse(String value) {
+		Objects.requireNonNull(value, "value must not be null");
+		ContentType cached = CACHE.get(value);
+		if (cached != null) {
+			return cached;
+		}
+		ContentType contentType = doParse(value);
+		if (contentType != null && CACHE.size() < MAX_CACHED) {
+			CACHE.putIfAbsent(value, contentType);
+		}
+		return contentType;
+	}
+
+	private static ContentType doParse(String s) {
+		int len = s.length();
+		int i = skipWhitespace(s, 0);
+		int typeStart = i;
+		i = skipToken(s, i);
+		int typeEnd = i;
+		if (typeStart == typeEnd || i >= len || s.charAt(i) != '/') {
+			return null;
+		}
+		int subtypeStart = ++i;
+		i = skipToken(s, i);
+		int subtypeEnd = i;
+		if (subtypeStart == subtypeEnd) {
+			return null;
+		}
+		String charset = null;
+		i = skipWhitespace(s, i);
+		while (i < len) {
+			if (s.charAt(i) != ';') {
+				return null;
+			}
+			i = skipWhitespace(s, i + 1);
+			if (i >= len) {
+				// Trailing ';' is tolerated
+				break;
+			}
+			int nameStart = i;
+			i = skipToken(s, i);
+			int nameEnd = i;
+			if (nameStart == nameEnd || i >= len || s.charAt(i) != '=') {
+				return null;
+			}
+			i++;
+			String value;
+			if (i < len && s.charAt(i) == '"') {
+				StringBuilder sb = new StringBuilder();
+				for (i++; i < len && s.charAt(i) != '"'; i++) {
+					char c = s.charAt(i);
+					if (c == '\\' && i + 1 < len) {
+						c = s.charAt(++i);
+					}
+					sb.append(c);
+				}
+				if (i >= len) {
+					return null;
+				}
+				i++;
+				value = sb.toString();
+			} else {
+				int valueStart = i;
+				i = skipToken(s, i);
+				value = s.substring(valueStart, i);
+			}
+			if (nameEnd - nameStart == 7 && s.regionMatches(true, nameStart, "charset", 0, 7)) {
+				charset = value;
+			}
+			i = skipWhitespace(s, i);
+		}
+		MediaType mediaType = MediaType.of(s.substring(typeStart, typeEnd), s.substring(subtypeStart, subtypeEnd));
+		return new ContentType(mediaType, charset);
+	}
+
+	private static int skipWhitespace(String s, int i) {
+		while (i < s.length() && (s.charAt(i) == ' ' || s.charAt(i) == '\t')) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * token = 1*tchar (RFC 7230 section 3.2.6)
+	 */
+	private static int skipToken(String s, int i) {
+		while (i < s.length() && isTchar(s.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isTchar(char c) {
+		if (c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+			return true;
+		}
+		return "!#$%&'*+-.^_`|~".indexOf(c) >= 0;
+	}
+
+	public MediaType getMediaType() {
+		return mediaType;
+	}
+
+	/**
+	 * @return charset parameter, or null if it is not specified
+	 */
+	public String getCharset() {
+		return charset;
+	}
+
+	@Override
+	public String toString() {
+		return charset != null ? mediaType + "; charset=" + charset : mediaType.toString();
+	}
+}
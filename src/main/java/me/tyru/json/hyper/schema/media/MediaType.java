@@ -0,0 +1,229 @@
+package me.tyru.json.hyper.schema.media;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Media type without parameters, like {@code application/json} or
+ * {@code application/vnd.x+json}. Instances are interned, so repeated
+ * lookups of the same media type return the same object without parsing nor
+ * building a string.
+ *
+ * Wildcards ({@code * / *}, {@code application/*}, {@code application/*+json})
+ * are allowed as encType of link definitions. See
+ * {@link MediaType#includes(MediaType)}.
+ *
+ * @author tyru
+ *
+ */
+public final class MediaType {
+
+	/**
+	 * Interned caches stop growing at this size, because values can come
+	 * from request headers. Media types beyond this are still usable but not
+	 * interned.
+	 */
+	private static final int MAX_CACHED = 1024;
+	private static final String WILDCARD = "*";
+
+	private static final ConcurrentMap<String, MediaType> INTERNED = new ConcurrentHashMap<>();
+	/** Raw string (maybe not normalized) to MediaType */
+	private static final ConcurrentMap<String, MediaType> BY_STRING = new ConcurrentHashMap<>();
+	/** type to subtype to MediaType, for JAX-RS and Spring media types */
+	private static final ConcurrentMap<String, ConcurrentMap<String, MediaType>> BY_PARTS = new ConcurrentHashMap<>();
+
+	public static final MediaType APPLICATION_JSON = valueOf("application/json");
+	public static final MediaType WILDCARD_TYPE = valueOf("*/*");
+
+	private final String type;
+	private final String subtype;
+	private final String suffix;
+	private final String essence;
+	/** e.g. application/json for application/vnd.x+json */
+	private final MediaType structuredSyntax;
+
+	private MediaType(String type, String subtype) {
+		this.type = type;
+		this.subtype = subtype;
+		int plus = subtype.lastIndexOf('+');
+		this.suffix = plus >= 0 && plus < subtype.length() - 1 ? subtype.substring(plus + 1) : null;
+		this.essence = type + "/" + subtype;
+		this.structuredSyntax = suffix != null && !WILDCARD.equals(type) ? of(type, suffix) : null;
+	}
+
+	/**
+	 * Returns the interned media type of given type and subtype.
+	 *
+	 * @param type
+	 * @param subtype
+	 * @return MediaType
+	 * @throws IllegalArgumentException
+	 *             if type or subtype is empty
+	 */
+	public static MediaType of(String type, String subtype) {
+		Objects.requireNonNull(type, "type must not be null");
+		Objects.requireNonNull(subtype, "subtype must not be null");
+		ConcurrentMap<String, MediaType> subtypes = BY_PARTS.get(type);
+		MediaType mediaType = subtypes != null ? subtypes.get(subtype) : null;
+		if (mediaType != null) {
+			return mediaType;
+		}
+		mediaType = intern(normalize(type, "type"), normalize(subtype, "subtype"));
+		if (BY_PARTS.size() < MAX_CACHED) {
+			subtypes = BY_PARTS.computeIfAbsent(type, k -> new ConcurrentHashMap<>());
+			if (subtypes.size() < MAX_CACHED) {
+				subtypes.putIfAbsent(subtype, mediaType);
+			}
+		}
+		return mediaType;
+	}
+
+	/**
+	 * Parses {@code type "/" subtype}. Parameters like
+	 * {@code ; charset=UTF-8} are ignored, use
+	 * {@link ContentType#parse(String)} to get them.
+	 *
+	 * @param mediaType
+	 * @return MediaType
+	 * @throws IllegalArgumentException
+	 *             if given string is not a media type
+	 */
+	public static MediaType valueOf(String mediaType) {
+		Objects.requireNonNull(mediaType, "mediaType must not be null");
+		MediaType cached = BY_STRING.get(mediaType);
+		if (cached != null) {
+			return cached;
+		}
+		ContentType contentType = ContentType.parse(mediaType);
+		if (contentType == null) {
+			throw new IllegalArgumentException("Invalid media type: '" + mediaType + "'");
+		}
+		if (BY_STRING.size() < MAX_CACHED) {
+			BY_STRING.putIfAbsent(mediaType, contentType.getMediaType());
+		}
+		return contentType.getMediaType();
+	}
+
+	/**
+	 * @param type
+	 *            normalized type
+	 * @param subtype
+	 *            normalized subtype
+	 * @return MediaType
+	 */
+	static MediaType intern(String type, String subtype) {
+		String essence = type + "/" + subtype;
+		MediaType mediaType = INTERNED.get(essence);
+		if (mediaType != null) {
+			return mediaType;
+		}
+		mediaType = new MediaType(type, subtype);
+		if (INTERNED.size() >= MAX_CACHED) {
+			return mediaType;
+		}
+		MediaType prev = INTERNED.putIfAbsent(essence, mediaType);
+		return prev != null ? prev : mediaType;
+	}
+
+	private static String normalize(String token, String name) {
+		String s = token.trim();
+		if (s.isEmpty()) {
+			throw new IllegalArgumentException("Media " + name + " must not be empty");
+		}
+		return s.toLowerCase(Locale.ROOT);
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getSubtype() {
+		return subtype;
+	}
+
+	/**
+	 * @return structured syntax suffix (RFC 6839) like "json" of
+	 *         "application/vnd.x+json", or null
+	 */
+	public String getSuffix() {
+		return suffix;
+	}
+
+	/**
+	 * @return {@code type/suffix} like application/json of
+	 *         application/vnd.x+json, or null if this has no suffix
+	 */
+	public MediaType getStructuredSyntax() {
+		return structuredSyntax;
+	}
+
+	public boolean isWildcard() {
+		return WILDCARD.equals(type) || subtype.startsWith(WILDCARD);
+	}
+
+	/**
+	 * @return true if this is application/json or has "+json" suffix
+	 */
+	public boolean isJson() {
+		return APPLICATION_JSON.equals(this) || "json".equals(suffix);
+	}
+
+	/**
+	 * Returns true if this media type (which may be a wildcard) includes
+	 * given media type.
+	 *
+	 * <ul>
+	 * <li>{@code * / *} includes everything</li>
+	 * <li>{@code application/*} includes {@code application/json},
+	 * {@code application/vnd.x+json}, ...</li>
+	 * <li>{@code application/*+json} includes {@code application/json},
+	 * {@code application/vnd.x+json}, ...</li>
+	 * <li>otherwise, media types must be equal</li>
+	 * </ul>
+	 *
+	 * @param other
+	 * @return boolean
+	 */
+	public boolean includes(MediaType other) {
+		if (equals(other)) {
+			return true;
+		}
+		if (WILDCARD.equals(type)) {
+			return true;
+		}
+		if (!type.equals(other.type)) {
+			return false;
+		}
+		if (WILDCARD.equals(subtype)) {
+			return true;
+		}
+		if (subtype.startsWith(WILDCARD + "+") && suffix != null) {
+			return suffix.equals(other.suffix) || suffix.equals(other.subtype);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return essence.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		return essence.equals(((MediaType) obj).essence);
+	}
+
+	/**
+	 * @return {@code type/subtype}
+	 */
+	@Override
+	public String toString() {
+		return essence;
+	}
+}
@@ -0,0 +1,233 @@
+package me.tyru.json.hyper.schema.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import me.tyru.json.hyper.schema.EndPoint;
+
+/**
+ * Exports {@link ValidationMetrics} to JMX. Each link is an MBean named
+ * {@code <domain>:type=ValidationMetrics,method=...,href="...",encType="..."},
+ * and requests which match no link are
+ * {@code <domain>:type=ValidationMetrics,route=unmatched}. A link is
+ * registered when it gets its first request.
+ *
+ * Attributes of an MBean are RequestCount, InvalidCount, ErrorCount and
+ * EntityLength, and for each {@link Phase} (e.g. Validate), its Count,
+ * MeanMicros, P50Micros, P99Micros and MaxMicros (e.g. ValidateP99Micros).
+ *
+ * @author tyru
+ *
+ */
+public final class JmxExporter implements AutoCloseable {
+
+	/** Default domain of MBeans */
+	public static final String DEFAULT_DOMAIN = "me.tyru.json.hyper.schema";
+
+	private static final Logger LOGGER = Logger.getLogger(JmxExporter.class.getName());
+	private static final Map<String, Function<RouteMetrics, Object>> ATTRIBUTES = attributes();
+	private static final MBeanInfo INFO = info();
+
+	private final ValidationMetrics metrics;
+	private final MBeanServer server;
+	private final String domain;
+	private final Set<ObjectName> names = ConcurrentHashMap.newKeySet();
+	private final Consumer<RouteMetrics> listener = this::register;
+	private volatile boolean closed;
+
+	private JmxExporter(ValidationMetrics metrics, MBeanServer server, String domain) {
+		this.metrics = metrics;
+		this.server = server;
+		this.domain = domain;
+	}
+
+	/**
+	 * Exports metrics to the platform MBeanServer in
+	 * {@link #DEFAULT_DOMAIN}.
+	 *
+	 * @param metrics
+	 * @return JmxExporter, which unregisters the MBeans when closed
+	 */
+	public static JmxExporter register(ValidationMetrics metrics) {
+		return register(metrics, ManagementFactory.getPlatformMBeanServer(), DEFAULT_DOMAIN);
+	}
+
+	/**
+	 * @param metrics
+	 * @param server
+	 * @param domain
+	 *            domain of the names of MBeans
+	 * @return JmxExporter, which unregisters the MBeans when closed
+	 * @throws IllegalArgumentException
+	 *             if domain is not valid in ObjectName
+	 */
+	public static JmxExporter register(ValidationMetrics metrics, MBeanServer server, String domain) {
+		Objects.requireNonNull(metrics, "metrics must not be null");
+		Objects.requireNonNull(server, "server must not be null");
+		Objects.requireNonNull(domain, "domain must not be null");
+		JmxExporter exporter = new JmxExporter(metrics, server, domain);
+		exporter.register(metrics.getUnmatched());
+		metrics.addRouteListener(exporter.listener);
+		return exporter;
+	}
+
+	/**
+	 * @param endPoint
+	 *            EndPoint of a link, or null for requests which match no link
+	 * @return ObjectName of the MBean of the link
+	 * @throws IllegalArgumentException
+	 *             if domain is not valid in ObjectName
+	 */
+	public ObjectName nameOf(EndPoint endPoint) {
+		try {
+			if (endPoint == null) {
+				return new ObjectName(domain + ":type=ValidationMetrics,route=unmatched");
+			}
+			return new ObjectName(domain + ":type=ValidationMetrics,method=" + ObjectName.quote(endPoint.getMethod())
+					+ ",href=" + ObjectName.quote(endPoint.getHref()) + ",encType="
+					+ ObjectName.quote(endPoint.getEncType()));
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Unregisters the MBeans.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		metrics.removeRouteListener(listener);
+		for (ObjectName name : names) {
+			try {
+				server.unregisterMBean(name);
+			} catch (InstanceNotFoundException e) {
+				// Unregistered by another
+			} catch (JMException e) {
+				LOGGER.log(Level.WARNING, "Failed to unregister " + name, e);
+			}
+		}
+		names.clear();
+	}
+
+	private void register(RouteMetrics route) {
+		if (closed) {
+			return;
+		}
+		ObjectName name = nameOf(route.getEndPoint());
+		if (!names.add(name)) {
+			// Notified again by a race of addRouteListener()
+			return;
+		}
+		try {
+			server.registerMBean(new RouteMBean(route), name);
+		} catch (InstanceAlreadyExistsException e) {
+			LOGGER.log(Level.WARNING, name + " is already registered by another exporter", e);
+			names.remove(name);
+		} catch (JMException e) {
+			// Called in the validating thread, which must not fail by this
+			LOGGER.log(Level.WARNING, "Failed to register " + name, e);
+			names.remove(name);
+		}
+	}
+
+	private static Map<String, Function<RouteMetrics, Object>> attributes() {
+		Map<String, Function<RouteMetrics, Object>> attributes = new LinkedHashMap<>();
+		attributes.put("RequestCount", RouteMetrics::getRequestCount);
+		attributes.put("InvalidCount", RouteMetrics::getInvalidCount);
+		attributes.put("ErrorCount", RouteMetrics::getErrorCount);
+		attributes.put("EntityLength", RouteMetrics::getEntityLength);
+		for (Phase phase : Phase.values()) {
+			String name = phase.name().charAt(0) + phase.name().substring(1).toLowerCase();
+			attributes.put(name + "Count", route -> route.getLatency(phase).getCount());
+			attributes.put(name + "MeanMicros", route -> route.getLatency(phase).getMeanNanos() / 1000);
+			attributes.put(name + "P50Micros", route -> route.getLatency(phase).getPercentileNanos(50) / 1000.0);
+			attributes.put(name + "P99Micros", route -> route.getLatency(phase).getPercentileNanos(99) / 1000.0);
+			attributes.put(name + "MaxMicros", route -> route.getLatency(phase).getMaxNanos() / 1000.0);
+		}
+		return attributes;
+	}
+
+	private static MBeanInfo info() {
+		List<MBeanAttributeInfo> infos = new ArrayList<>();
+		for (String name : ATTRIBUTES.keySet()) {
+			String type = name.endsWith("Micros") ? "double" : "long";
+			infos.add(new MBeanAttributeInfo(name, type, name, true, false, false));
+		}
+		return new MBeanInfo(RouteMBean.class.getName(), "Validation metrics of a link",
+				infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+	}
+
+	/** Read-only MBean of RouteMetrics */
+	private static final class RouteMBean implements DynamicMBean {
+		private final RouteMetrics route;
+
+		RouteMBean(RouteMetrics route) {
+			this.route = route;
+		}
+
+		@Override
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			Function<RouteMetrics, Object> getter = ATTRIBUTES.get(attribute);
+			if (getter == null) {
+				throw new AttributeNotFoundException(attribute);
+			}
+			return getter.apply(route);
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				Function<RouteMetrics, Object> getter = ATTRIBUTES.get(attribute);
+				if (getter != null) {
+					list.add(new Attribute(attribute, getter.apply(route)));
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) {
+			throw new UnsupportedOperationException(actionName);
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			return INFO;
+		}
+	}
+}
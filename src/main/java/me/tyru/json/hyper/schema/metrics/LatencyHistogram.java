@@ -0,0 +1,99 @@
+package me.tyru.json.hyper.schema.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies whose buckets are powers of 2 of nanoseconds.
+ * Recording is lock-free and striped by {@link LongAdder}, so threads which
+ * record at once do not contend. A percentile is the upper bound of its
+ * bucket, i.e. it is precise within a factor of 2.
+ *
+ * @author tyru
+ *
+ */
+public final class LatencyHistogram {
+
+	/** Bucket i counts latencies from 2^i to 2^(i+1) - 1 nanoseconds */
+	private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+	LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param nanos
+	 *            latency in nanoseconds. Negative one is recorded as 0.
+	 */
+	void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		buckets[Long.SIZE - 1 - Long.numberOfLeadingZeros(value | 1)].increment();
+		count.increment();
+		totalNanos.add(value);
+		maxNanos.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @return the mean latency, or 0 if none is recorded
+	 */
+	public double getMeanNanos() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) totalNanos.sum() / n;
+	}
+
+	/**
+	 * @param percentile
+	 *            from 0 to 100, e.g. 99 for p99
+	 * @return the upper bound of the bucket of the percentile, which is not
+	 *         more than the max, or 0 if none is recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("percentile must be from 0 to 100: " + percentile);
+		}
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max((long) Math.ceil(total * percentile / 100), 1);
+		long max = maxNanos.get();
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				long upper = i == Long.SIZE - 2 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+				return Math.min(upper, max);
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + getCount() + ", meanNanos=" + getMeanNanos() + ", p50Nanos="
+				+ getPercentileNanos(50) + ", p99Nanos=" + getPercentileNanos(99) + ", maxNanos=" + getMaxNanos()
+				+ "]";
+	}
+}
@@ -0,0 +1,18 @@
+package me.tyru.json.hyper.schema.metrics;
+
+/**
+ * A phase of the validation of a request.
+ *
+ * @author tyru
+ *
+ */
+public enum Phase {
+	/** Reading the entity of the request into a string */
+	BUFFER,
+	/** Parsing the entity, or converting query parameters */
+	PARSE,
+	/** Finding the link of the request */
+	MATCH,
+	/** Validating against the schema of the link */
+	VALIDATE
+}
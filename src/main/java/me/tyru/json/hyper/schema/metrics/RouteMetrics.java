@@ -0,0 +1,97 @@
+package me.tyru.json.hyper.schema.metrics;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.tyru.json.hyper.schema.EndPoint;
+
+/**
+ * Counters and latency histograms of the requests of a link.
+ *
+ * @author tyru
+ *
+ */
+public final class RouteMetrics {
+	private final EndPoint endPoint;
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder invalid = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder entityLength = new LongAdder();
+
+	RouteMetrics(EndPoint endPoint) {
+		this.endPoint = endPoint;
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * @return EndPoint of the link, or null for requests which match no link
+	 */
+	public EndPoint getEndPoint() {
+		return endPoint;
+	}
+
+	/**
+	 * @param phase
+	 * @return LatencyHistogram of the phase
+	 */
+	public LatencyHistogram getLatency(Phase phase) {
+		return latencies[Objects.requireNonNull(phase, "phase must not be null").ordinal()];
+	}
+
+	/**
+	 * @return the number of requests validated
+	 */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * @return the number of requests which violate the schema
+	 */
+	public long getInvalidCount() {
+		return invalid.sum();
+	}
+
+	/**
+	 * @return the number of requests whose entity cannot be read or parsed
+	 */
+	public long getErrorCount() {
+		return errors.sum();
+	}
+
+	/**
+	 * @return the total number of characters of entities
+	 */
+	public long getEntityLength() {
+		return entityLength.sum();
+	}
+
+	void recordPhase(Phase phase, long nanos) {
+		latencies[phase.ordinal()].record(nanos);
+	}
+
+	void recordEntity(int length) {
+		entityLength.add(length);
+	}
+
+	void recordResult(boolean valid) {
+		requests.increment();
+		if (!valid) {
+			invalid.increment();
+		}
+	}
+
+	void recordError() {
+		errors.increment();
+	}
+
+	@Override
+	public String toString() {
+		return "RouteMetrics [endPoint=" + endPoint + ", requestCount=" + getRequestCount() + ", invalidCount="
+				+ getInvalidCount() + ", errorCount=" + getErrorCount() + ", entityLength=" + getEntityLength()
+				+ "]";
+	}
+}
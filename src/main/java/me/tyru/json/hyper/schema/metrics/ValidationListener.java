@@ -0,0 +1,72 @@
+package me.tyru.json.hyper.schema.metrics;
+
+import me.tyru.json.hyper.schema.EndPoint;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+
+/**
+ * Listener of the validation of requests, set by
+ * {@link HyperSchemaBuilder#validationListener(ValidationListener)}, e.g.
+ * {@link ValidationMetrics}.
+ *
+ * Requests validated by {@code HyperSchema#check} and by
+ * {@code HyperSchema#validate} of a JSONRequest (thus by the filters) are
+ * reported. Methods are called in the validating thread, so they must be
+ * fast, thread-safe and must not throw.
+ *
+ * With {@link #NOOP}, which is the default, HyperSchema does not even read
+ * the clock.
+ *
+ * @author tyru
+ *
+ */
+public interface ValidationListener {
+
+	/** Listener which does nothing */
+	ValidationListener NOOP = new ValidationListener() {
+	};
+
+	/**
+	 * Called when a phase of a request finishes.
+	 *
+	 * @param endPoint
+	 *            link of the request, or null if no link matches
+	 * @param phase
+	 * @param nanos
+	 *            elapsed time of the phase in nanoseconds
+	 */
+	default void onPhase(EndPoint endPoint, Phase phase, long nanos) {
+	}
+
+	/**
+	 * Called when the entity of a request is buffered.
+	 *
+	 * @param endPoint
+	 *            link of the request
+	 * @param length
+	 *            the number of characters of the entity, or 0 if it is empty
+	 */
+	default void onEntity(EndPoint endPoint, int length) {
+	}
+
+	/**
+	 * Called when a request is validated.
+	 *
+	 * @param endPoint
+	 *            link of the request
+	 * @param valid
+	 *            false if the request violates the schema
+	 */
+	default void onResult(EndPoint endPoint, boolean valid) {
+	}
+
+	/**
+	 * Called when the entity of a request cannot be read or parsed.
+	 *
+	 * @param endPoint
+	 *            link of the request
+	 * @param error
+	 *            the error which is thrown to the caller
+	 */
+	default void onError(EndPoint endPoint, RuntimeException error) {
+	}
+}
@@ -0,0 +1,116 @@
+package me.tyru.json.hyper.schema.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import me.tyru.json.hyper.schema.EndPoint;
+
+/**
+ * {@link ValidationListener} which records {@link RouteMetrics} of each
+ * link, e.g.
+ * {@code HyperSchemaBuilder.hyperSchema(json).validationListener(metrics).build()}.
+ * The metrics can be exported to JMX by {@link JmxExporter}.
+ *
+ * A ValidationMetrics may be shared by several HyperSchema objects, e.g. the
+ * ones swapped by {@code ReloadableHyperSchema}, so that the metrics of a
+ * link last across reloads.
+ *
+ * @author tyru
+ *
+ */
+public final class ValidationMetrics implements ValidationListener {
+
+	private final ConcurrentMap<EndPoint, RouteMetrics> routes = new ConcurrentHashMap<>();
+	private final RouteMetrics unmatched = new RouteMetrics(null);
+	private final List<Consumer<RouteMetrics>> routeListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param endPoint
+	 * @return RouteMetrics of the link, or empty Optional if it has no request
+	 */
+	public Optional<RouteMetrics> get(EndPoint endPoint) {
+		return Optional.ofNullable(routes.get(Objects.requireNonNull(endPoint, "endPoint must not be null")));
+	}
+
+	/**
+	 * @return RouteMetrics of the links which have requests
+	 */
+	public Collection<RouteMetrics> getRoutes() {
+		return Collections.unmodifiableCollection(routes.values());
+	}
+
+	/**
+	 * @return RouteMetrics of requests which match no link. Only the match
+	 *         phase is recorded.
+	 */
+	public RouteMetrics getUnmatched() {
+		return unmatched;
+	}
+
+	/**
+	 * Adds a listener which is called with the RouteMetrics of each link,
+	 * once for the links which already have requests and then when a link
+	 * gets its first request.
+	 *
+	 * @param listener
+	 */
+	public void addRouteListener(Consumer<RouteMetrics> listener) {
+		Objects.requireNonNull(listener, "listener must not be null");
+		routeListeners.add(listener);
+		routes.values().forEach(listener);
+	}
+
+	/**
+	 * @param listener
+	 *            listener added by {@link #addRouteListener(Consumer)}
+	 */
+	public void removeRouteListener(Consumer<RouteMetrics> listener) {
+		routeListeners.remove(listener);
+	}
+
+	@Override
+	public void onPhase(EndPoint endPoint, Phase phase, long nanos) {
+		metricsOf(endPoint).recordPhase(phase, nanos);
+	}
+
+	@Override
+	public void onEntity(EndPoint endPoint, int length) {
+		metricsOf(endPoint).recordEntity(length);
+	}
+
+	@Override
+	public void onResult(EndPoint endPoint, boolean valid) {
+		metricsOf(endPoint).recordResult(valid);
+	}
+
+	@Override
+	public void onError(EndPoint endPoint, RuntimeException error) {
+		metricsOf(endPoint).recordError();
+	}
+
+	private RouteMetrics metricsOf(EndPoint endPoint) {
+		if (endPoint == null) {
+			return unmatched;
+		}
+		RouteMetrics metrics = routes.get(endPoint);
+		if (metrics != null) {
+			return metrics;
+		}
+		RouteMetrics created = new RouteMetrics(endPoint);
+		metrics = routes.putIfAbsent(endPoint, created);
+		if (metrics != null) {
+			return metrics;
+		}
+		for (Consumer<RouteMetrics> listener : routeListeners) {
+			listener.accept(created);
+		}
+		return created;
+	}
+}
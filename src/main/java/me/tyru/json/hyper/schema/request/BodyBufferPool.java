@@ -0,0 +1,79 @@
+package me.tyru.json.hyper.schema.request;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Striped pool of byte arrays which buffer request entities. A thread takes
+ * the array of its stripe, so threads rarely contend for the same slot. An
+ * array is owned by one request between {@link #acquire(int)} and
+ * {@link #release(byte[])}; an array which is never released is simply
+ * garbage collected.
+ *
+ * Arrays larger than {@link #MAX_POOLED_SIZE} are not pooled, so that a few
+ * large entities do not pin memory.
+ *
+ * @author tyru
+ *
+ */
+final class BodyBufferPool {
+
+	static final int MAX_POOLED_SIZE = 64 * 1024;
+	private static final int DEFAULT_SIZE = 1024;
+	/** Content-Length is not trusted beyond this, the buffer grows instead */
+	private static final int MAX_PRESIZE = 1024 * 1024;
+
+	private static final AtomicReferenceArray<byte[]> STRIPES = new AtomicReferenceArray<>(
+			stripeCount(Runtime.getRuntime().availableProcessors()));
+
+	private BodyBufferPool() {
+	}
+
+	/**
+	 * @param minSize
+	 *            the minimum length of the array, or -1 if unknown
+	 * @return an array whose length is minSize or larger, unless minSize is
+	 *         too large to trust
+	 */
+	static byte[] acquire(int minSize) {
+		int size = minSize >= 0 ? Math.min(minSize, MAX_PRESIZE) : DEFAULT_SIZE;
+		if (size <= MAX_POOLED_SIZE) {
+			int stripe = stripe();
+			byte[] pooled = STRIPES.getAndSet(stripe, null);
+			if (pooled != null) {
+				if (pooled.length >= size) {
+					return pooled;
+				}
+				// Too small for this request, leave it to others
+				STRIPES.compareAndSet(stripe, null, pooled);
+			}
+		}
+		return new byte[size];
+	}
+
+	/**
+	 * Returns buffer to the pool. The caller must not use buffer after this.
+	 *
+	 * @param buffer
+	 */
+	static void release(byte[] buffer) {
+		if (buffer.length == 0 || buffer.length > MAX_POOLED_SIZE) {
+			return;
+		}
+		int stripe = stripe();
+		byte[] pooled = STRIPES.get(stripe);
+		// Keep the larger one, which can serve more requests
+		if (pooled == null || pooled.length < buffer.length) {
+			STRIPES.compareAndSet(stripe, pooled, buffer);
+		}
+	}
+
+	private static int stripe() {
+		return (int) Thread.currentThread().getId() & (STRIPES.length() - 1);
+	}
+
+	private static int stripeCount(int processors) {
+		// Power of two, so that a thread id is masked to a stripe
+		int n = Integer.highestOneBit(Math.max(1, processors * 2) - 1) << 1;
+		return Math.max(2, Math.min(n, 256));
+	}
+}
@@ -1,19 +1,65 @@
 package me.tyru.json.hyper.schema.request;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 
 import javax.ws.rs.core.MultivaluedMap;
 
+import me.tyru.json.hyper.schema.media.MediaType;
+
 public interface JSONRequest {
 	String getMethod();
 	String getHref();
 	String getEncType();
+	/**
+	 * Override this if the request already has a parsed media type, to avoid
+	 * parsing {@link #getEncType()}.
+	 *
+	 * @return media type of Content-Type (without parameters)
+	 * @throws IllegalArgumentException
+	 *             if {@link #getEncType()} is not a media type
+	 */
+	default MediaType getMediaType() {
+		return MediaType.valueOf(getEncType());
+	}
+	/**
+	 * @return charset parameter of Content-Type, or null if not specified
+	 */
+	default String getCharset() {
+		return null;
+	}
 	/**
 	 * @param charset
 	 * @return
 	 * @throws UncheckedIOException
 	 */
 	String getEntityWithKeepingStream(String charset);
+	/**
+	 * Override this if the entity can be decoded from bytes on demand, to
+	 * avoid building a String of the whole entity.
+	 *
+	 * @param charset
+	 * @return reader of the entity, or null if the request has no entity
+	 * @throws UncheckedIOException
+	 */
+	default Reader getEntityReaderWithKeepingStream(String charset) {
+		String entity = getEntityWithKeepingStream(charset);
+		return entity != null ? new StringReader(entity) : null;
+	}
+	/**
+	 * Override this if the entity is buffered as bytes, so that a result
+	 * cached by {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#resultCache}
+	 * is looked up by hashing them, without decoding nor parsing the entity.
+	 *
+	 * @return read-only buffer of the raw entity, or null if it is not
+	 *         available as bytes
+	 * @throws UncheckedIOException
+	 */
+	default ByteBuffer getEntityBytesWithKeepingStream() {
+		return null;
+	}
 	/**
 	 * @return
 	 * @throws UncheckedIOException
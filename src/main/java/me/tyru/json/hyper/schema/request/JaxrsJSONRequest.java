@@ -1,16 +1,37 @@
 package me.tyru.json.hyper.schema.request;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.MultivaluedMap;
 
-import org.apache.commons.io.IOUtils;
+import me.tyru.json.hyper.schema.media.MediaType;
 
+/**
+ * JSONRequest of JAX-RS ContainerRequestContext. The entity stream is read
+ * once into a byte array, and replaced with a stream over the same array.
+ * The bytes are decoded only for validation, so the resource method reads
+ * the original bytes whatever the charset is.
+ *
+ * @author tyru
+ *
+ */
 public class JaxrsJSONRequest implements JSONRequest {
+	/** Content-Length is not trusted beyond this, the buffer grows instead */
+	private static final int MAX_PRESIZE = 1024 * 1024;
+
 	private ContainerRequestContext context;
+	private byte[] entity;
+	private int length;
 
 	public static JaxrsJSONRequest of(ContainerRequestContext context) {
 		return new JaxrsJSONRequest(context);
@@ -36,7 +57,17 @@ public class JaxrsJSONRequest implements JSONRequest {
 
 	@Override
 	public String getEncType() {
-		return context.getMediaType().getType() + "/" + context.getMediaType().getSubtype();
+		return getMediaType().toString();
+	}
+
+	@Override
+	public MediaType getMediaType() {
+		return MediaType.of(context.getMediaType().getType(), context.getMediaType().getSubtype());
+	}
+
+	@Override
+	public String getCharset() {
+		return context.getMediaType().getParameters().get(javax.ws.rs.core.MediaType.CHARSET_PARAMETER);
 	}
 
 	/**
@@ -44,14 +75,75 @@ public class JaxrsJSONRequest implements JSONRequest {
 	 */
 	@Override
 	public String getEntityWithKeepingStream(String charset) {
+		bufferEntity();
+		try {
+			return new String(entity, 0, length, charset);
+		} catch (UnsupportedEncodingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @throws UncheckedIOException
+	 */
+	@Override
+	public ByteBuffer getEntityBytesWithKeepingStream() {
+		bufferEntity();
+		return ByteBuffer.wrap(entity, 0, length).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Decodes the buffered entity on demand.
+	 *
+	 * @throws UncheckedIOException
+	 */
+	@Override
+	public Reader getEntityReaderWithKeepingStream(String charset) {
+		bufferEntity();
+		try {
+			return new InputStreamReader(new ByteArrayInputStream(entity, 0, length), charset);
+		} catch (UnsupportedEncodingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the entity stream at the first call.
+	 *
+	 * @throws UncheckedIOException
+	 */
+	private void bufferEntity() {
+		if (entity != null) {
+			return;
+		}
+		int contentLength = context.getLength();
+		byte[] buff = new byte[contentLength >= 0 ? Math.min(contentLength, MAX_PRESIZE) : 1024];
+		int count = 0;
 		try {
-			String json = IOUtils.toString(context.getEntityStream(), charset);
-			// A user's controller method won't be called w/o this!
-			context.setEntityStream(IOUtils.toInputStream(json));
-			return json;
+			InputStream is = context.getEntityStream();
+			while (true) {
+				if (count == buff.length) {
+					// Content-Length may be wrong, so check the end
+					int b = is.read();
+					if (b < 0) {
+						break;
+					}
+					buff = Arrays.copyOf(buff, Math.max(count * 2, 1024));
+					buff[count++] = (byte) b;
+				}
+				int read = is.read(buff, count, buff.length - count);
+				if (read < 0) {
+					break;
+				}
+				count += read;
+			}
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
+		entity = buff;
+		length = count;
+		// A user's controller method won't be called w/o this!
+		context.setEntityStream(new ByteArrayInputStream(entity, 0, length));
 	}
 
 	@Override
@@ -1,12 +1,22 @@
 package me.tyru.json.hyper.schema.request;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
 import javax.servlet.ReadListener;
@@ -16,10 +26,34 @@ import javax.servlet.http.HttpServletRequestWrapper;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
 
-import org.apache.commons.io.IOUtils;
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.media.ContentType;
+import me.tyru.json.hyper.schema.media.MediaType;
+
+/**
+ * JSONRequest of HttpServletRequest. The entity is read once into a buffer
+ * sized by Content-Length and taken from a pool of byte arrays. The buffer
+ * is shared by the entity, the parameters of a form entity, and the input
+ * stream of {@link #getRequest()} which should be passed to the downstream
+ * filters instead of the original request.
+ *
+ * {@link #close()} returns the buffer to the pool. Call it after the request
+ * is processed, or never; an unclosed buffer is garbage collected.
+ *
+ * {@link #readAsync(HttpServletRequest, BiConsumer)} reads the entity by
+ * non-blocking I/O of Servlet 3.1, so that a slow client does not hold a
+ * container thread.
+ *
+ * @author tyru
+ *
+ */
+public class ServletJSONRequest implements JSONRequest, AutoCloseable {
+	private static final String FORM_URLENCODED = "application/x-www-form-urlencoded";
+	private static final ContentType DEFAULT_CONTENT_TYPE = ContentType.parse(HyperSchema.DEFAULT_ENC_TYPE);
 
-public class ServletJSONRequest implements JSONRequest {
 	private BufferedServletRequestWrapper request;
+	/** False if the buffer was created by another instance */
+	private boolean ownsBuffer;
 	private Supplier<MultivaluedMap<String, String>> queryParams = () -> createQueryParameters();
 
 	/**
@@ -36,13 +70,54 @@ public class ServletJSONRequest implements JSONRequest {
 	 * @throws UncheckedIOException
 	 */
 	private ServletJSONRequest(HttpServletRequest request) {
+		Objects.requireNonNull(request, "request must not be null");
+		if (request instanceof BufferedServletRequestWrapper) {
+			// Already buffered by another instance, which owns the buffer
+			this.request = (BufferedServletRequestWrapper) request;
+			return;
+		}
 		try {
 			this.request = new BufferedServletRequestWrapper(request);
+			this.ownsBuffer = true;
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
+	private ServletJSONRequest(BufferedServletRequestWrapper request) {
+		this.request = request;
+		this.ownsBuffer = true;
+	}
+
+	/**
+	 * Reads the entity of request by {@link ReadListener}. request must be in
+	 * asynchronous mode ({@link HttpServletRequest#startAsync()}).
+	 *
+	 * callback is called once on a container thread, with the buffered
+	 * request when the whole entity is read, or with the error of reading.
+	 *
+	 * @param request
+	 * @param callback
+	 * @throws IOException
+	 *             if the input stream cannot be obtained
+	 * @throws IllegalStateException
+	 *             if request is not in asynchronous mode
+	 */
+	public static void readAsync(HttpServletRequest request, BiConsumer<ServletJSONRequest, Throwable> callback)
+			throws IOException {
+		Objects.requireNonNull(request, "request must not be null");
+		Objects.requireNonNull(callback, "callback must not be null");
+		ServletInputStream in = request.getInputStream();
+		in.setReadListener(new AsyncEntityReader(request, in, callback));
+	}
+
+	/**
+	 * @return the request whose input stream reads the buffered entity
+	 */
+	public HttpServletRequest getRequest() {
+		return request;
+	}
+
 	@Override
 	public String getMethod() {
 		return request.getMethod();
@@ -55,10 +130,38 @@ public class ServletJSONRequest implements JSONRequest {
 
 	@Override
 	public String getEncType() {
-		final String encType = Objects.requireNonNull(request.getContentType());
-		// Get rid of string after {type}/{subtype} like "; charset=UTF-8" (XXX:
-		// Is this really necessary?)
-		return encType.replaceFirst(";.*", "");
+		return getMediaType().toString();
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if Content-Type is malformed
+	 */
+	@Override
+	public MediaType getMediaType() {
+		return getContentType().getMediaType();
+	}
+
+	@Override
+	public String getCharset() {
+		return getContentType().getCharset();
+	}
+
+	/**
+	 * @return Content-Type, or {@link HyperSchema#DEFAULT_ENC_TYPE} if the
+	 *         request has none (e.g. GET)
+	 */
+	private ContentType getContentType() {
+		final String value = request.getContentType();
+		if (value == null) {
+			return DEFAULT_CONTENT_TYPE;
+		}
+		// Get rid of string after {type}/{subtype} like "; charset=UTF-8"
+		final ContentType contentType = ContentType.parse(value);
+		if (contentType == null) {
+			throw new IllegalArgumentException("Invalid Content-Type: '" + value + "'");
+		}
+		return contentType;
 	}
 
 	/**
@@ -66,8 +169,27 @@ public class ServletJSONRequest implements JSONRequest {
 	 */
 	@Override
 	public String getEntityWithKeepingStream(String charset) {
+		return request.decode(charset);
+	}
+
+	/**
+	 * @return read-only buffer over the buffered entity, which is valid
+	 *         until {@link #close()}
+	 */
+	@Override
+	public ByteBuffer getEntityBytesWithKeepingStream() {
+		return request.bytes();
+	}
+
+	/**
+	 * Decodes the buffered entity on demand.
+	 *
+	 * @throws UncheckedIOException
+	 */
+	@Override
+	public Reader getEntityReaderWithKeepingStream(String charset) {
 		try {
-			return IOUtils.toString(request.getInputStream(), charset);
+			return new InputStreamReader(request.getInputStream(), charset);
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -81,6 +203,18 @@ public class ServletJSONRequest implements JSONRequest {
 		return queryParams.get();
 	}
 
+	/**
+	 * Returns the buffer to the pool. The entity of this request and
+	 * {@link #getRequest()} are empty after this. This does nothing if this
+	 * was created of {@link #getRequest()} of another instance.
+	 */
+	@Override
+	public void close() {
+		if (ownsBuffer) {
+			request.release();
+		}
+	}
+
 	/**
 	 * This method was invoked at the first time of creation of 'queryParams'
 	 * instance.
@@ -99,14 +233,8 @@ public class ServletJSONRequest implements JSONRequest {
 
 		public CreatedSupplier(HttpServletRequest request) {
 			MultivaluedMap<String, String> tmp = new MultivaluedHashMap<>();
-			BufferedServletRequestWrapper req;
-			try {
-				req = new BufferedServletRequestWrapper(request);
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
-			}
-			for (String key : Collections.list(req.getParameterNames())) {
-				tmp.addAll(key, req.getParameterValues(key));
+			for (Map.Entry<String, String[]> entry : request.getParameterMap().entrySet()) {
+				tmp.addAll(entry.getKey(), entry.getValue());
 			}
 			instance = tmp;
 		}
@@ -123,12 +251,64 @@ public class ServletJSONRequest implements JSONRequest {
 		}
 	}
 
+	private static class AsyncEntityReader implements ReadListener {
+		private final HttpServletRequest request;
+		private final ServletInputStream in;
+		private final BiConsumer<ServletJSONRequest, Throwable> callback;
+		private final AtomicBoolean done = new AtomicBoolean();
+		private byte[] buffer;
+		private int count;
+
+		AsyncEntityReader(HttpServletRequest request, ServletInputStream in,
+				BiConsumer<ServletJSONRequest, Throwable> callback) {
+			this.request = request;
+			this.in = in;
+			this.callback = callback;
+			long contentLength = request.getContentLengthLong();
+			this.buffer = BodyBufferPool.acquire(
+					contentLength >= 0 && contentLength <= Integer.MAX_VALUE - 8 ? (int) contentLength : -1);
+		}
+
+		@Override
+		public void onDataAvailable() throws IOException {
+			// Read only what arrived; the container calls this again for more
+			while (in.isReady() && !in.isFinished()) {
+				if (count == buffer.length) {
+					byte[] grown = Arrays.copyOf(buffer, Math.max(count * 2, 1024));
+					BodyBufferPool.release(buffer);
+					buffer = grown;
+				}
+				int read = in.read(buffer, count, buffer.length - count);
+				if (read < 0) {
+					break;
+				}
+				count += read;
+			}
+		}
+
+		@Override
+		public void onAllDataRead() {
+			if (done.compareAndSet(false, true)) {
+				callback.accept(new ServletJSONRequest(new BufferedServletRequestWrapper(request, buffer, count)),
+						null);
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			if (done.compareAndSet(false, true)) {
+				BodyBufferPool.release(buffer);
+				callback.accept(null, t);
+			}
+		}
+	}
+
 	private static class BufferedServletInputStream extends ServletInputStream {
 
 		private ByteArrayInputStream inputStream;
 
-		public BufferedServletInputStream(byte[] buffer) {
-			this.inputStream = new ByteArrayInputStream(buffer);
+		public BufferedServletInputStream(byte[] buffer, int length) {
+			this.inputStream = new ByteArrayInputStream(buffer, 0, length);
 		}
 
 		@Override
@@ -156,33 +336,166 @@ public class ServletJSONRequest implements JSONRequest {
 			return true;
 		}
 
+		/**
+		 * The whole entity is already buffered, so listener is notified of
+		 * all data at once.
+		 */
 		@Override
-		public void setReadListener(ReadListener arg0) {
-			throw new UnsupportedOperationException("Not implemented");
+		public void setReadListener(ReadListener listener) {
+			Objects.requireNonNull(listener, "listener must not be null");
+			try {
+				if (!isFinished()) {
+					listener.onDataAvailable();
+				}
+				listener.onAllDataRead();
+			} catch (IOException | RuntimeException e) {
+				listener.onError(e);
+			}
 		}
 	}
 
 	private static class BufferedServletRequestWrapper extends HttpServletRequestWrapper {
 
-		private byte[] buffer;
+		private static final byte[] EMPTY = new byte[0];
+
+		private volatile byte[] buffer;
+		private volatile int length;
+		private Map<String, String[]> formParameters;
 
 		public BufferedServletRequestWrapper(HttpServletRequest request) throws IOException {
 			super(request);
 
+			long contentLength = request.getContentLengthLong();
+			byte[] buff = BodyBufferPool.acquire(
+					contentLength >= 0 && contentLength <= Integer.MAX_VALUE - 8 ? (int) contentLength : -1);
+			int count = 0;
 			InputStream is = request.getInputStream();
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			byte buff[] = new byte[1024];
-			int read;
-			while ((read = is.read(buff)) > 0) {
-				baos.write(buff, 0, read);
+			try {
+				while (true) {
+					if (count == buff.length) {
+						// Content-Length may be wrong, so check the end
+						int b = is.read();
+						if (b < 0) {
+							break;
+						}
+						byte[] grown = Arrays.copyOf(buff, Math.max(count * 2, 1024));
+						BodyBufferPool.release(buff);
+						buff = grown;
+						buff[count++] = (byte) b;
+					}
+					int read = is.read(buff, count, buff.length - count);
+					if (read < 0) {
+						break;
+					}
+					count += read;
+				}
+			} catch (IOException | RuntimeException e) {
+				BodyBufferPool.release(buff);
+				throw e;
 			}
+			this.buffer = buff;
+			this.length = count;
+		}
 
-			this.buffer = baos.toByteArray();
+		public BufferedServletRequestWrapper(HttpServletRequest request, byte[] buffer, int length) {
+			super(request);
+			this.buffer = buffer;
+			this.length = length;
 		}
 
 		@Override
 		public ServletInputStream getInputStream() throws IOException {
-			return new BufferedServletInputStream(this.buffer);
+			return new BufferedServletInputStream(this.buffer, this.length);
+		}
+
+		String decode(String charset) {
+			try {
+				return new String(buffer, 0, length, charset);
+			} catch (UnsupportedEncodingException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		ByteBuffer bytes() {
+			return ByteBuffer.wrap(buffer, 0, length).asReadOnlyBuffer();
+		}
+
+		void release() {
+			byte[] buff = this.buffer;
+			if (buff != EMPTY) {
+				// Readers get the buffer before the length
+				this.length = 0;
+				this.buffer = EMPTY;
+				BodyBufferPool.release(buff);
+			}
+		}
+
+		/**
+		 * Parameters of a form entity are parsed from the buffer, because the
+		 * container can no longer read them from the consumed stream.
+		 */
+		@Override
+		public synchronized Map<String, String[]> getParameterMap() {
+			if (!isForm()) {
+				return super.getParameterMap();
+			}
+			if (formParameters == null) {
+				String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : "UTF-8";
+				Map<String, String[]> params = new LinkedHashMap<>();
+				try {
+					parseForm(getQueryString(), encoding, params);
+					parseForm(decode(encoding), encoding, params);
+				} catch (UnsupportedEncodingException e) {
+					throw new UncheckedIOException(e);
+				}
+				formParameters = Collections.unmodifiableMap(params);
+			}
+			return formParameters;
+		}
+
+		@Override
+		public String getParameter(String name) {
+			String[] values = getParameterMap().get(name);
+			return values != null && values.length > 0 ? values[0] : null;
+		}
+
+		@Override
+		public Enumeration<String> getParameterNames() {
+			return Collections.enumeration(getParameterMap().keySet());
+		}
+
+		@Override
+		public String[] getParameterValues(String name) {
+			String[] values = getParameterMap().get(name);
+			return values != null ? values.clone() : null;
+		}
+
+		private boolean isForm() {
+			ContentType contentType = getContentType() != null ? ContentType.parse(getContentType()) : null;
+			return contentType != null && FORM_URLENCODED.equals(contentType.getMediaType().toString());
+		}
+
+		private static void parseForm(String s, String encoding, Map<String, String[]> params)
+				throws UnsupportedEncodingException {
+			if (s == null || s.isEmpty()) {
+				return;
+			}
+			for (String pair : s.split("&")) {
+				if (pair.isEmpty()) {
+					continue;
+				}
+				int eq = pair.indexOf('=');
+				String key = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, encoding);
+				String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), encoding) : "";
+				String[] values = params.get(key);
+				if (values == null) {
+					params.put(key, new String[] { value });
+				} else {
+					String[] added = Arrays.copyOf(values, values.length + 1);
+					added[values.length] = value;
+					params.put(key, added);
+				}
+			}
 		}
 	}
 }
\ No newline at end of file
@@ -1,6 +1,12 @@
 package me.tyru.json.hyper.schema.request;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Arrays;
 import java.util.Objects;
@@ -17,21 +23,47 @@ public class SpringJSONRequest implements JSONRequest {
 		private final URI requestUri;
 		private final HttpHeaders headers;
 		private final String body;
+		private final byte[] bytes;
+		private final int length;
 
 		public static SpringJSONRequest of(
 				final String method, final URI requestUri,
 				final HttpHeaders headers, final String body)
 		{
-			return new SpringJSONRequest(method, requestUri, headers, body);
+			return new SpringJSONRequest(method, requestUri, headers, body, null, 0);
 		}
+
+		/**
+		 * The entity is decoded from bytes by the charset given to
+		 * {@link #getEntityWithKeepingStream(String)}.
+		 *
+		 * @param method
+		 * @param requestUri
+		 * @param headers
+		 * @param bytes
+		 *            the entity, or null if the request has no entity
+		 * @param length
+		 *            the length of the entity in bytes
+		 * @return SpringJSONRequest
+		 */
+		public static SpringJSONRequest of(
+				final String method, final URI requestUri,
+				final HttpHeaders headers, final byte[] bytes, final int length)
+		{
+			return new SpringJSONRequest(method, requestUri, headers, null, bytes, length);
+		}
+
 		private SpringJSONRequest(
 				final String method, final URI requestUri,
-				final HttpHeaders headers, final String body)
+				final HttpHeaders headers, final String body,
+				final byte[] bytes, final int length)
 		{
 			this.method = Objects.requireNonNull(method);
 			this.requestUri = Objects.requireNonNull(requestUri);
 			this.headers = Objects.requireNonNull(headers);
 			this.body = body;
+			this.bytes = bytes;
+			this.length = length;
 		}
 
 		@Override
@@ -46,14 +78,61 @@ public class SpringJSONRequest implements JSONRequest {
 
 		@Override
 		public String getEncType() {
+			return getMediaType().toString();
+		}
+
+		@Override
+		public me.tyru.json.hyper.schema.media.MediaType getMediaType() {
 			final MediaType contentType = headers.getContentType();
-			return contentType.getType() + "/" + contentType.getSubtype();
+			return me.tyru.json.hyper.schema.media.MediaType.of(contentType.getType(), contentType.getSubtype());
 		}
 
-		// TODO: Respect 'charset'.
+		@Override
+		public String getCharset() {
+			final MediaType contentType = headers.getContentType();
+			return contentType.getCharSet() != null ? contentType.getCharSet().name() : null;
+		}
+
+		/**
+		 * @throws UncheckedIOException
+		 */
 		@Override
 		public String getEntityWithKeepingStream(String charset) {
-			return body;
+			if (bytes == null) {
+				// TODO: Respect 'charset'.
+				return body;
+			}
+			try {
+				return new String(bytes, 0, length, charset);
+			} catch (UnsupportedEncodingException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * @return read-only buffer of the entity, or null if this was created
+		 *         of a String
+		 */
+		@Override
+		public ByteBuffer getEntityBytesWithKeepingStream() {
+			return bytes != null ? ByteBuffer.wrap(bytes, 0, length).asReadOnlyBuffer() : null;
+		}
+
+		/**
+		 * Decodes the entity bytes on demand.
+		 *
+		 * @throws UncheckedIOException
+		 */
+		@Override
+		public Reader getEntityReaderWithKeepingStream(String charset) {
+			if (bytes == null) {
+				return JSONRequest.super.getEntityReaderWithKeepingStream(charset);
+			}
+			try {
+				return new InputStreamReader(new ByteArrayInputStream(bytes, 0, length), charset);
+			} catch (UnsupportedEncodingException e) {
+				throw new UncheckedIOException(e);
+			}
 		}
 
 		@Override
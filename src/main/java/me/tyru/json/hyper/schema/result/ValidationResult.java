@@ -0,0 +1,230 @@
+package me.tyru.json.hyper.schema.result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+
+/**
+ * The result of {@link me.tyru.json.hyper.schema.HyperSchema#check}. Unlike
+ * {@link Schema#validate(Object)}, an invalid subject is reported without
+ * throwing an exception. Violations are recorded up to a limit, and their
+ * messages are rendered only when requested.
+ *
+ * A result of {@link me.tyru.json.hyper.schema.HyperSchema#validateAsync} may
+ * also tell that validation did not finish: it ran out of its time budget, or
+ * was rejected because too many validations were pending. Such a result is
+ * neither valid nor has violations.
+ *
+ * @author tyru
+ *
+ */
+public final class ValidationResult {
+
+	public enum Status {
+		/** No violations */
+		VALID,
+		/** One or more violations */
+		INVALID,
+		/** Validation did not finish within its time budget */
+		TIMED_OUT,
+		/** Validation was not started because of too many pending ones */
+		REJECTED
+	}
+
+	private static final ValidationResult VALID = new ValidationResult(Status.VALID, null, null,
+			Collections.emptyList(), false);
+	private static final ValidationResult REJECTED = new ValidationResult(Status.REJECTED,
+			"validation rejected: too many pending validations", null, Collections.emptyList(), false);
+
+	private final Status status;
+	/** Message of TIMED_OUT or REJECTED */
+	private final String message;
+	private final Schema schema;
+	private final List<Violation> violations;
+	private final boolean truncated;
+
+	private ValidationResult(Status status, String message, Schema schema, List<Violation> violations,
+			boolean truncated) {
+		this.status = status;
+		this.message = message;
+		this.schema = schema;
+		this.violations = violations;
+		this.truncated = truncated;
+	}
+
+	/**
+	 * @return the result without violations
+	 */
+	public static ValidationResult valid() {
+		return VALID;
+	}
+
+	/**
+	 * @param budgetMillis
+	 *            the time budget which validation ran out of
+	 * @return the result of validation which did not finish in time
+	 */
+	public static ValidationResult timedOut(long budgetMillis) {
+		return new ValidationResult(Status.TIMED_OUT, "validation timed out after " + budgetMillis + " ms", null,
+				Collections.emptyList(), false);
+	}
+
+	/**
+	 * @return the result of validation which was not started because of too
+	 *         many pending validations
+	 */
+	public static ValidationResult rejected() {
+		return REJECTED;
+	}
+
+	/**
+	 * @param schema
+	 *            the schema which was validated
+	 * @param maxErrors
+	 *            the maximum number of violations to record (1 means
+	 *            fail-fast)
+	 * @return Builder
+	 * @throws IllegalArgumentException
+	 *             if maxErrors is not positive
+	 */
+	public static Builder builder(Schema schema, int maxErrors) {
+		return new Builder(schema, maxErrors);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public boolean isValid() {
+		return status == Status.VALID;
+	}
+
+	/**
+	 * @return unmodifiable list of recorded violations
+	 */
+	public List<Violation> getViolations() {
+		return violations;
+	}
+
+	/**
+	 * @return true if validation stopped because the number of violations
+	 *         reached the limit, so more violations may exist
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return the message of the first violation, the reason why validation
+	 *         did not finish, or null if valid
+	 */
+	public String getMessage() {
+		return violations.isEmpty() ? message : violations.get(0).getMessage();
+	}
+
+	/**
+	 * Creates the exception which {@link Schema#validate(Object)} would throw
+	 * for recorded violations.
+	 *
+	 * @return ValidationException
+	 * @throws IllegalStateException
+	 *             if this result has no violations
+	 */
+	public ValidationException toException() {
+		if (violations.isEmpty()) {
+			throw new IllegalStateException("No violations");
+		}
+		if (violations.size() == 1) {
+			return violations.get(0).toException();
+		}
+		List<ValidationException> causes = new ArrayList<>(violations.size());
+		for (Violation violation : violations) {
+			causes.add(violation.toException());
+		}
+		try {
+			// Same exception as Schema#validate(Object) throws for several
+			// violations
+			ValidationException.throwFor(schema, causes);
+		} catch (ValidationException e) {
+			return e;
+		}
+		throw new IllegalStateException("Not thrown for " + causes.size() + " violations");
+	}
+
+	@Override
+	public String toString() {
+		if (violations.isEmpty()) {
+			return message != null ? message : "valid";
+		}
+		return violations.toString() + (truncated ? " ..." : "");
+	}
+
+	public static final class Builder {
+		private final Schema schema;
+		private final int maxErrors;
+		private final List<Violation> violations = new ArrayList<>(1);
+		private boolean truncated;
+
+		private Builder(Schema schema, int maxErrors) {
+			if (maxErrors <= 0) {
+				throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+			}
+			this.schema = Objects.requireNonNull(schema, "schema must not be null");
+			this.maxErrors = maxErrors;
+		}
+
+		/**
+		 * Records a violation unless the limit has been reached.
+		 *
+		 * @param violation
+		 * @return this
+		 */
+		public Builder add(Violation violation) {
+			if (violations.size() < maxErrors) {
+				violations.add(Objects.requireNonNull(violation, "violation must not be null"));
+			} else {
+				truncated = true;
+			}
+			return this;
+		}
+
+		/**
+		 * Records the violations of an exception which
+		 * {@link Schema#validate(Object)} has thrown, up to the limit.
+		 *
+		 * @param e
+		 * @return this
+		 */
+		public Builder addAll(ValidationException e) {
+			if (e.getKeyword() != null || e.getCausingExceptions().isEmpty()) {
+				// Causes of a keyword like anyOf are not violations by themselves
+				return add(Violation.of(e));
+			}
+			// "N schema violations found"
+			for (ValidationException cause : e.getCausingExceptions()) {
+				addAll(cause);
+			}
+			return this;
+		}
+
+		/**
+		 * @return true if no more violations are recorded. A validator
+		 *         should stop when this returns true.
+		 */
+		public boolean isFull() {
+			return violations.size() >= maxErrors;
+		}
+
+		public ValidationResult build() {
+			if (violations.isEmpty()) {
+				return VALID;
+			}
+			return new ValidationResult(Status.INVALID, null, schema, Collections.unmodifiableList(violations),
+					truncated || isFull());
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package me.tyru.json.hyper.schema.result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+
+/**
+ * A violation in {@link ValidationResult}. A violation is recorded without
+ * creating an exception nor a message. The message is rendered when it is
+ * requested for the first time.
+ *
+ * @author tyru
+ *
+ */
+public final class Violation {
+
+	private final List<String> path;
+	private final Schema schema;
+	private final Object subject;
+	private final String keyword;
+	private final String format;
+	private final Object[] args;
+	private String pointer;
+	private ValidationException rendered;
+
+	private Violation(List<String> path, Schema schema, Object subject, String keyword, String format,
+			Object[] args) {
+		this.path = Objects.requireNonNull(path, "path must not be null");
+		this.schema = Objects.requireNonNull(schema, "schema must not be null");
+		this.subject = subject;
+		this.keyword = keyword;
+		this.format = format;
+		this.args = args;
+	}
+
+	/**
+	 * A violation which is described by validating {@code subject} by
+	 * {@code schema} again when it is rendered.
+	 *
+	 * @param path
+	 *            fragments of JSON pointer to subject
+	 * @param schema
+	 *            the schema which subject violates
+	 * @param subject
+	 * @return Violation
+	 */
+	public static Violation of(List<String> path, Schema schema, Object subject) {
+		return new Violation(path, schema, subject, null, null, null);
+	}
+
+	/**
+	 * A violation of a keyword whose message is {@link String#format} of
+	 * {@code format} and {@code args}.
+	 *
+	 * @param path
+	 *            fragments of JSON pointer to the violating value
+	 * @param schema
+	 *            the schema which has the keyword
+	 * @param keyword
+	 * @param format
+	 * @param args
+	 * @return Violation
+	 */
+	public static Violation of(List<String> path, Schema schema, String keyword, String format, Object... args) {
+		Objects.requireNonNull(keyword, "keyword must not be null");
+		Objects.requireNonNull(format, "format must not be null");
+		return new Violation(path, schema, null, keyword, format, args);
+	}
+
+	/**
+	 * A violation which everit-org/json-schema has thrown.
+	 *
+	 * @param e
+	 *            exception of a single violation
+	 * @return Violation
+	 */
+	public static Violation of(ValidationException e) {
+		List<String> path = new ArrayList<>();
+		String pointer = e.getPointerToViolation();
+		int slash = pointer.indexOf('/');
+		if (slash >= 0) {
+			for (String fragment : pointer.substring(slash + 1).split("/", -1)) {
+				path.add(fragment.replace("~1", "/").replace("~0", "~"));
+			}
+		}
+		Violation violation = new Violation(path, e.getViolatedSchema(), null, e.getKeyword(), null, null);
+		// Relative to the violating value, as toException() prepends path
+		violation.rendered = new ValidationException(e.getViolatedSchema(), e.getErrorMessage(), e.getKeyword());
+		return violation;
+	}
+
+	/**
+	 * @return JSON pointer to the violating value like {@code #/items/0}
+	 */
+	public String getPointer() {
+		if (pointer == null) {
+			StringBuilder sb = new StringBuilder("#");
+			for (String fragment : path) {
+				sb.append('/').append(fragment.replace("~", "~0").replace("/", "~1"));
+			}
+			pointer = sb.toString();
+		}
+		return pointer;
+	}
+
+	/**
+	 * @return unmodifiable fragments of JSON pointer
+	 */
+	public List<String> getPath() {
+		return Collections.unmodifiableList(path);
+	}
+
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the violated keyword like "required", or null if unknown
+	 */
+	public String getKeyword() {
+		return keyword != null ? keyword : render().getKeyword();
+	}
+
+	/**
+	 * @return message without pointer
+	 */
+	public String getErrorMessage() {
+		return format != null ? String.format(format, args) : render().getErrorMessage();
+	}
+
+	/**
+	 * @return message with pointer, in the same form as
+	 *         {@link ValidationException#getMessage()}
+	 */
+	public String getMessage() {
+		return getPointer() + ": " + getErrorMessage();
+	}
+
+	/**
+	 * @return ValidationException which everit-org/json-schema would throw
+	 *         for this violation
+	 */
+	public ValidationException toException() {
+		ValidationException e = format != null ? new ValidationException(schema, getErrorMessage(), keyword)
+				: render();
+		for (int i = path.size() - 1; i >= 0; i--) {
+			e = e.prepend(path.get(i));
+		}
+		return e;
+	}
+
+	/**
+	 * @return exception of the violation relative to subject
+	 */
+	private ValidationException render() {
+		if (rendered == null) {
+			try {
+				schema.validate(subject);
+				// Unreachable unless the schema has changed
+				rendered = new ValidationException(schema, "violation was not reproduced", keyword);
+			} catch (ValidationException e) {
+				rendered = e;
+			}
+		}
+		return rendered;
+	}
+
+	@Override
+	public String toString() {
+		return getMessage();
+	}
+}
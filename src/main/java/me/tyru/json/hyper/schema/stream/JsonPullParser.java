@@ -0,0 +1,408 @@
+package me.tyru.json.hyper.schema.stream;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Pull tokenizer of JSON text (RFC 7159). This reads a {@link Reader} through
+ * a fixed-size buffer, so the memory used for parsing does not depend on the
+ * size of the document.
+ *
+ * Syntax errors are reported as {@link JSONException} like org.json does.
+ * Numbers are converted by {@link JSONObject#stringToValue(String)}, so a
+ * scalar value is the same object as org.json's parser creates.
+ *
+ * @author tyru
+ *
+ */
+public final class JsonPullParser {
+
+	public enum Token {
+		START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, STRING, NUMBER, TRUE, FALSE, NULL
+	}
+
+	/** Guard against stack overflow of recursive consumers */
+	public static final int MAX_DEPTH = 512;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Reader reader;
+	private final char[] buf = new char[BUFFER_SIZE];
+	private int pos;
+	private int limit;
+	private long consumed;
+
+	/** true: object, false: array */
+	private boolean[] containers = new boolean[16];
+	private int depth;
+	/** A value or a field name has been read in the current container */
+	private boolean afterValue;
+	private boolean afterFieldName;
+	private boolean finished;
+
+	private Token current;
+	private final StringBuilder text = new StringBuilder();
+
+	public JsonPullParser(Reader reader) {
+		this.reader = Objects.requireNonNull(reader, "reader must not be null");
+	}
+
+	/**
+	 * @return the current token, or null before the first {@link #next()} or
+	 *         after the end of the document
+	 */
+	public Token current() {
+		return current;
+	}
+
+	/**
+	 * @return the depth of nested containers at the current token
+	 */
+	public int depth() {
+		return depth;
+	}
+
+	/**
+	 * Advances to the next token.
+	 *
+	 * @return the next token, or null at the end of the document
+	 * @throws IOException
+	 * @throws JSONException
+	 *             if the text is not JSON
+	 */
+	public Token next() throws IOException {
+		int c = skipWhitespace();
+		if (depth == 0 && (afterValue || finished)) {
+			// The top-level value was already read. Trailing text is
+			// ignored like org.json does.
+			finished = true;
+			return current = null;
+		}
+		if (c < 0) {
+			if (depth > 0 || afterFieldName) {
+				throw syntaxError("Unexpected end of text");
+			}
+			finished = true;
+			return current = null;
+		}
+		boolean inObject = depth > 0 && containers[depth - 1];
+		if (c == '}' || c == ']') {
+			if (depth == 0 || inObject != (c == '}') || afterFieldName
+					|| !afterValue && current != Token.START_OBJECT && current != Token.START_ARRAY) {
+				throw syntaxError("Unexpected '" + (char) c + "'");
+			}
+			pos++;
+			depth--;
+			afterValue = true;
+			return current = c == '}' ? Token.END_OBJECT : Token.END_ARRAY;
+		}
+		if (afterValue) {
+			if (c != ',') {
+				throw syntaxError("Expected ',' or '" + (inObject ? '}' : ']') + "'");
+			}
+			pos++;
+			c = skipWhitespace();
+			afterValue = false;
+		}
+		if (inObject && !afterFieldName) {
+			if (c != '"') {
+				throw syntaxError("Expected a field name");
+			}
+			pos++;
+			readString();
+			if (skipWhitespace() != ':') {
+				throw syntaxError("Expected ':'");
+			}
+			pos++;
+			afterFieldName = true;
+			return current = Token.FIELD_NAME;
+		}
+		afterFieldName = false;
+		return current = readValueToken(c);
+	}
+
+	private Token readValueToken(int c) throws IOException {
+		switch (c) {
+		case '{':
+		case '[':
+			pos++;
+			push(c == '{');
+			afterValue = false;
+			return c == '{' ? Token.START_OBJECT : Token.START_ARRAY;
+		case '"':
+			pos++;
+			readString();
+			afterValue = true;
+			return Token.STRING;
+		case 't':
+			expectLiteral("true");
+			afterValue = true;
+			return Token.TRUE;
+		case 'f':
+			expectLiteral("false");
+			afterValue = true;
+			return Token.FALSE;
+		case 'n':
+			expectLiteral("null");
+			afterValue = true;
+			return Token.NULL;
+		default:
+			if (c == '-' || c >= '0' && c <= '9') {
+				readNumber();
+				afterValue = true;
+				return Token.NUMBER;
+			}
+			throw syntaxError(c < 0 ? "Unexpected end of text" : "Unexpected '" + (char) c + "'");
+		}
+	}
+
+	/**
+	 * @return field name, string value or the text of number
+	 */
+	public String getText() {
+		if (current != Token.FIELD_NAME && current != Token.STRING && current != Token.NUMBER) {
+			throw new IllegalStateException("Current token has no text: " + current);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @return the value of the current scalar token (String, Number, Boolean
+	 *         or {@link JSONObject#NULL})
+	 */
+	public Object getValue() {
+		switch (current) {
+		case STRING:
+			return text.toString();
+		case NUMBER:
+			return JSONObject.stringToValue(text.toString());
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case NULL:
+			return JSONObject.NULL;
+		default:
+			throw new IllegalStateException("Current token is not a scalar: " + current);
+		}
+	}
+
+	/**
+	 * If the current token is START_OBJECT or START_ARRAY, skips to the
+	 * matching END_OBJECT or END_ARRAY without creating values. Otherwise,
+	 * does nothing.
+	 *
+	 * @throws IOException
+	 */
+	public void skipChildren() throws IOException {
+		if (current != Token.START_OBJECT && current != Token.START_ARRAY) {
+			return;
+		}
+		int target = depth - 1;
+		while (depth > target) {
+			if (next() == null) {
+				throw syntaxError("Unexpected end of text");
+			}
+		}
+	}
+
+	/**
+	 * Creates the value of the current token. The parser is positioned at
+	 * the last token of the value after this returns.
+	 *
+	 * @return JSONObject, JSONArray or a scalar value (see
+	 *         {@link #getValue()})
+	 * @throws IOException
+	 */
+	public Object readValue() throws IOException {
+		if (current == Token.START_OBJECT) {
+			JSONObject obj = new JSONObject();
+			while (next() != Token.END_OBJECT) {
+				String key = getText();
+				next();
+				obj.putOnce(key, readValue());
+			}
+			return obj;
+		}
+		if (current == Token.START_ARRAY) {
+			JSONArray arr = new JSONArray();
+			while (next() != Token.END_ARRAY) {
+				arr.put(readValue());
+			}
+			return arr;
+		}
+		return getValue();
+	}
+
+	private void push(boolean object) {
+		if (depth >= MAX_DEPTH) {
+			throw syntaxError("Nesting too deep");
+		}
+		if (depth == containers.length) {
+			containers = Arrays.copyOf(containers, depth * 2);
+		}
+		containers[depth++] = object;
+	}
+
+	private void readString() throws IOException {
+		text.setLength(0);
+		while (true) {
+			if (pos == limit && !fill()) {
+				throw syntaxError("Unterminated string");
+			}
+			// Copy a run of plain characters at once
+			int start = pos;
+			while (pos < limit) {
+				char ch = buf[pos];
+				if (ch == '"' || ch == '\\' || ch < 0x20) {
+					break;
+				}
+				pos++;
+			}
+			text.append(buf, start, pos - start);
+			if (pos == limit) {
+				continue;
+			}
+			char ch = buf[pos++];
+			if (ch == '"') {
+				return;
+			}
+			if (ch < 0x20) {
+				throw syntaxError("Unescaped control character in string");
+			}
+			text.append(readEscape());
+		}
+	}
+
+	private char readEscape() throws IOException {
+		int ch = read();
+		switch (ch) {
+		case '"':
+		case '\\':
+		case '/':
+			return (char) ch;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int code = 0;
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(read(), 16);
+				if (digit < 0) {
+					throw syntaxError("Illegal unicode escape");
+				}
+				code = code * 16 + digit;
+			}
+			return (char) code;
+		default:
+			throw syntaxError("Illegal escape");
+		}
+	}
+
+	private void readNumber() throws IOException {
+		text.setLength(0);
+		int c = peek();
+		if (c == '-') {
+			text.append((char) read());
+			c = peek();
+		}
+		if (c == '0') {
+			text.append((char) read());
+		} else if (c >= '1' && c <= '9') {
+			readDigits();
+		} else {
+			throw syntaxError("Illegal number");
+		}
+		if (peek() == '.') {
+			text.append((char) read());
+			if (readDigits() == 0) {
+				throw syntaxError("Illegal number");
+			}
+		}
+		c = peek();
+		if (c == 'e' || c == 'E') {
+			text.append((char) read());
+			c = peek();
+			if (c == '+' || c == '-') {
+				text.append((char) read());
+			}
+			if (readDigits() == 0) {
+				throw syntaxError("Illegal number");
+			}
+		}
+	}
+
+	private int readDigits() throws IOException {
+		int n = 0;
+		int c;
+		while ((c = peek()) >= '0' && c <= '9') {
+			text.append((char) read());
+			n++;
+		}
+		return n;
+	}
+
+	private void expectLiteral(String literal) throws IOException {
+		for (int i = 0; i < literal.length(); i++) {
+			if (read() != literal.charAt(i)) {
+				throw syntaxError("Expected '" + literal + "'");
+			}
+		}
+	}
+
+	private int skipWhitespace() throws IOException {
+		while (true) {
+			int c = peek();
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return c;
+			}
+			pos++;
+		}
+	}
+
+	private int peek() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buf[pos];
+	}
+
+	private int read() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buf[pos++];
+	}
+
+	private boolean fill() throws IOException {
+		consumed += limit;
+		pos = 0;
+		limit = 0;
+		int n;
+		while ((n = reader.read(buf, 0, buf.length)) == 0) {
+			// Retry until data or EOF
+		}
+		if (n < 0) {
+			return false;
+		}
+		limit = n;
+		return true;
+	}
+
+	private JSONException syntaxError(String message) {
+		return new JSONException(message + " at character " + (consumed + pos));
+	}
+}
@@ -0,0 +1,291 @@
+package me.tyru.json.hyper.schema.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.everit.json.schema.ArraySchema;
+import org.everit.json.schema.BooleanSchema;
+import org.everit.json.schema.EmptySchema;
+import org.everit.json.schema.NullSchema;
+import org.everit.json.schema.NumberSchema;
+import org.everit.json.schema.ObjectSchema;
+import org.everit.json.schema.ReferenceSchema;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.StringSchema;
+import org.everit.json.schema.ValidationException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import me.tyru.json.hyper.schema.compile.CompiledSchema;
+import me.tyru.json.hyper.schema.stream.JsonPullParser.Token;
+
+/**
+ * Validates JSON text against a schema while it is parsed by
+ * {@link JsonPullParser}. The whole document is never built as
+ * {@link JSONObject}, so a large request entity is validated with memory
+ * proportional to its nesting depth.
+ *
+ * Objects and arrays are walked token by token. Keywords which need a whole
+ * value ({@code enum}, {@code allOf}/{@code anyOf}/{@code oneOf},
+ * {@code not}, {@code uniqueItems}, schema dependencies, or a property
+ * matched by several schemas) build only the value they apply to and
+ * delegate to {@link Schema#validate(Object)}.
+ *
+ * Unlike {@link Schema#validate(Object)}, this stops at the first violation.
+ * Messages, keywords and pointers of violations are the same as the ones of
+ * everit-org/json-schema.
+ *
+ * @author tyru
+ *
+ */
+public final class StreamingValidator {
+
+	private static final JSONObject EMPTY_OBJECT = new JSONObject();
+	private static final JSONArray EMPTY_ARRAY = new JSONArray();
+
+	private final JsonPullParser parser;
+
+	private StreamingValidator(JsonPullParser parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * Validates given JSON object text.
+	 *
+	 * @param schema
+	 * @param in
+	 * @param charset
+	 * @return false if in has no JSON text (empty or only whitespaces),
+	 *         otherwise true
+	 * @throws IOException
+	 * @throws JSONException
+	 *             if the text is not a JSON object
+	 * @throws ValidationException
+	 */
+	public static boolean validate(Schema schema, InputStream in, Charset charset) throws IOException {
+		Objects.requireNonNull(in, "in must not be null");
+		Objects.requireNonNull(charset, "charset must not be null");
+		return validate(schema, new InputStreamReader(in, charset));
+	}
+
+	/**
+	 * Validates given JSON object text.
+	 *
+	 * @param schema
+	 * @param reader
+	 * @return false if reader has no JSON text (empty or only whitespaces),
+	 *         otherwise true
+	 * @throws IOException
+	 * @throws JSONException
+	 *             if the text is not a JSON object
+	 * @throws ValidationException
+	 */
+	public static boolean validate(Schema schema, Reader reader) throws IOException {
+		Objects.requireNonNull(schema, "schema must not be null");
+		JsonPullParser parser = new JsonPullParser(reader);
+		Token token = parser.next();
+		if (token == null) {
+			return false;
+		}
+		if (token != Token.START_OBJECT) {
+			// Same as new JSONObject(String)
+			throw new JSONException("A JSONObject text must begin with '{'");
+		}
+		new StreamingValidator(parser).validateValue(schema);
+		return true;
+	}
+
+	/**
+	 * Validates the value which starts at the current token. The parser is
+	 * positioned at the last token of the value after this returns.
+	 */
+	private void validateValue(Schema schema) throws IOException {
+		if (schema instanceof CompiledSchema) {
+			// Walk the source schema so that sub-values are not built
+			validateValue(((CompiledSchema) schema).getSource());
+		} else if (schema instanceof EmptySchema) {
+			parser.skipChildren();
+		} else if (schema instanceof ReferenceSchema) {
+			Schema referred = ((ReferenceSchema) schema).getReferredSchema();
+			if (referred != null) {
+				validateValue(referred);
+			} else {
+				parser.skipChildren();
+			}
+		} else if (schema instanceof ObjectSchema) {
+			validateObject((ObjectSchema) schema);
+		} else if (schema instanceof ArraySchema) {
+			validateArray((ArraySchema) schema);
+		} else if (schema instanceof StringSchema || schema instanceof NumberSchema
+				|| schema instanceof BooleanSchema || schema instanceof NullSchema) {
+			validatePlaceholder(schema);
+		} else {
+			// EnumSchema, CombinedSchema, NotSchema, ...
+			schema.validate(parser.readValue());
+		}
+	}
+
+	/**
+	 * Validates a scalar value, or an empty container in place of an object
+	 * or an array. Schemas of scalar types only see the type of a container.
+	 */
+	private void validatePlaceholder(Schema schema) throws IOException {
+		Token token = parser.current();
+		if (token == Token.START_OBJECT) {
+			schema.validate(EMPTY_OBJECT);
+			parser.skipChildren();
+		} else if (token == Token.START_ARRAY) {
+			schema.validate(EMPTY_ARRAY);
+			parser.skipChildren();
+		} else {
+			schema.validate(parser.getValue());
+		}
+	}
+
+	private void validateObject(ObjectSchema schema) throws IOException {
+		if (parser.current() != Token.START_OBJECT) {
+			validatePlaceholder(schema);
+			return;
+		}
+		if (!schema.getSchemaDependencies().isEmpty()) {
+			schema.validate(parser.readValue());
+			return;
+		}
+		Map<String, Schema> propertySchemas = schema.getPropertySchemas();
+		Map<Pattern, Schema> patternProperties = schema.getPatternProperties();
+		Set<String> keys = new HashSet<>();
+		List<Schema> matched = new ArrayList<>(2);
+		while (parser.next() != Token.END_OBJECT) {
+			String key = parser.getText();
+			if (!keys.add(key)) {
+				throw new JSONException("Duplicate key \"" + key + "\"");
+			}
+			parser.next();
+			matched.clear();
+			Schema propertySchema = propertySchemas.get(key);
+			if (propertySchema != null) {
+				matched.add(propertySchema);
+			}
+			for (Map.Entry<Pattern, Schema> entry : patternProperties.entrySet()) {
+				if (entry.getKey().matcher(key).find()) {
+					matched.add(entry.getValue());
+				}
+			}
+			if (matched.isEmpty()) {
+				if (!schema.permitsAdditionalProperties()) {
+					throw new ValidationException(schema,
+							String.format("extraneous key [%s] is not permitted", key), "additionalProperties");
+				}
+				Schema additional = schema.getSchemaOfAdditionalProperties();
+				if (additional != null) {
+					validateChild(additional, key);
+				} else {
+					parser.skipChildren();
+				}
+			} else if (matched.size() == 1) {
+				validateChild(matched.get(0), key);
+			} else {
+				Object value = parser.readValue();
+				for (Schema s : matched) {
+					try {
+						s.validate(value);
+					} catch (ValidationException e) {
+						throw e.prepend(key);
+					}
+				}
+			}
+		}
+		for (String required : schema.getRequiredProperties()) {
+			if (!keys.contains(required)) {
+				throw new ValidationException(schema, String.format("required key [%s] not found", required),
+						"required");
+			}
+		}
+		Integer minProperties = schema.getMinProperties();
+		if (minProperties != null && keys.size() < minProperties) {
+			throw new ValidationException(schema,
+					String.format("minimum size: [%d], found: [%d]", minProperties, keys.size()), "minProperties");
+		}
+		Integer maxProperties = schema.getMaxProperties();
+		if (maxProperties != null && keys.size() > maxProperties) {
+			throw new ValidationException(schema,
+					String.format("maximum size: [%d], found: [%d]", maxProperties, keys.size()), "maxProperties");
+		}
+		for (Map.Entry<String, Set<String>> entry : schema.getPropertyDependencies().entrySet()) {
+			if (keys.contains(entry.getKey())) {
+				for (String dependency : entry.getValue()) {
+					if (!keys.contains(dependency)) {
+						throw new ValidationException(schema, String.format("property [%s] is required", dependency),
+								"dependencies");
+					}
+				}
+			}
+		}
+	}
+
+	private void validateArray(ArraySchema schema) throws IOException {
+		if (parser.current() != Token.START_ARRAY) {
+			validatePlaceholder(schema);
+			return;
+		}
+		if (schema.needsUniqueItems()) {
+			schema.validate(parser.readValue());
+			return;
+		}
+		Schema allItemSchema = schema.getAllItemSchema();
+		List<Schema> itemSchemas = schema.getItemSchemas();
+		int count = 0;
+		while (parser.next() != Token.END_ARRAY) {
+			Schema itemSchema;
+			if (allItemSchema != null) {
+				itemSchema = allItemSchema;
+			} else if (itemSchemas != null && count < itemSchemas.size()) {
+				itemSchema = itemSchemas.get(count);
+			} else if (itemSchemas != null) {
+				// Violation of additionalItems is reported after counting
+				itemSchema = schema.permitsAdditionalItems() ? schema.getSchemaOfAdditionalItems() : null;
+			} else {
+				itemSchema = null;
+			}
+			if (itemSchema != null) {
+				validateChild(itemSchema, String.valueOf(count));
+			} else {
+				parser.skipChildren();
+			}
+			count++;
+		}
+		if (itemSchemas != null && !schema.permitsAdditionalItems() && count > itemSchemas.size()) {
+			throw new ValidationException(schema,
+					String.format("expected: [%d] array items, found: [%d]", itemSchemas.size(), count), "items");
+		}
+		Integer minItems = schema.getMinItems();
+		if (minItems != null && count < minItems) {
+			throw new ValidationException(schema,
+					"expected minimum item count: " + minItems + ", found: " + count, "minItems");
+		}
+		Integer maxItems = schema.getMaxItems();
+		if (maxItems != null && count > maxItems) {
+			throw new ValidationException(schema,
+					"expected maximum item count: " + maxItems + ", found: " + count, "maxItems");
+		}
+	}
+
+	private void validateChild(Schema schema, String fragment) throws IOException {
+		try {
+			validateValue(schema);
+		} catch (ValidationException e) {
+			throw e.prepend(fragment);
+		}
+	}
+}
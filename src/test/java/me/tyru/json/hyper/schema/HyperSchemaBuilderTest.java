@@ -6,13 +6,34 @@ package me.tyru.json.hyper.schema;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.everit.json.schema.ObjectSchema;
 import org.everit.json.schema.Schema;
+import org.everit.json.schema.SchemaException;
 import org.json.JSONObject;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import me.tyru.json.hyper.schema.compile.CompiledSchema;
 import me.tyru.json.hyper.schema.exception.DuplicateLinkDefinitionException;
+import me.tyru.json.hyper.schema.result.ValidationResult;
 import mockit.Deencapsulation;
 
 /**
@@ -21,6 +42,9 @@ import mockit.Deencapsulation;
  */
 public class HyperSchemaBuilderTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	/**
 	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#hyperSchema(org.json.JSONObject)}
 	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#validateMediaType(boolean)}
@@ -138,14 +162,62 @@ public class HyperSchemaBuilderTest {
 		}
 	}
 
+	/**
+	 * Links which differ only in the names of template variables match the
+	 * same requests, so the later one would be unreachable.
+	 *
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#hyperSchema(org.json.JSONObject)}
+	 */
+	@Test
+	public void test_duplicate_template_variables() {
+		String json = "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"POST\", \"href\": \"/users/{id}\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"POST\", \"href\": \"/users/{userId}\", \"schema\": {}}"
+				+ "]}";
+		try {
+			HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+			fail("Must throw when duplicate definitions!");
+		} catch (DuplicateLinkDefinitionException e) {
+			assertThat(e.getMessage(), endsWith(" at /links/1, defined at /links/0"));
+		}
+
+		// Variables of different names still share the segment
+		json = "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}/orders\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{userId}/items\", \"schema\": {}}"
+				+ "]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+		assertThat(scm.route("GET", "/users/42/orders").get().getPathVariables(), hasEntry("id", "42"));
+		assertThat(scm.route("GET", "/users/42/items").get().getPathVariables(), hasEntry("userId", "42"));
+	}
+
 	/**
 	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#hyperSchema(org.json.JSONObject)}
 	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#validateMediaType(boolean)}
 	 */
 	@Test
 	public void test_link_definition_lookup_1() {
-		// TODO
-		fail("Not Implemented Yet");
+		String json = "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"PUT\", \"href\": \"/users/{id}\", \"schema\": {}},"
+				+ "{\"rel\": \"instances\", \"method\": \"GET\", \"href\": \"/users/{id}/orders\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/me/orders\", \"schema\": {}}"
+				+ "]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+
+		RouteMatch m = scm.route("GET", "/users/42/orders").get();
+		assertThat(m.getEndPoint(), is(EndPoint.of("GET", "/users/{id}/orders", "application/json")));
+		assertThat(m.getPathVariables(), hasEntry("id", "42"));
+		assertThat(m.getPathVariables().size(), is(1));
+
+		// A literal segment has priority over a templated one
+		m = scm.route("GET", "/users/me/orders").get();
+		assertThat(m.getEndPoint().getHref(), is("/users/me/orders"));
+		assertThat(m.getPathVariables().isEmpty(), is(true));
+
+		assertThat(scm.match("PUT", "/users/42").isPresent(), is(true));
+		assertThat(scm.match("PUT", "/users/").isPresent(), is(false));
+		assertThat(scm.match("PUT", "/users/42/orders").isPresent(), is(false));
+		assertThat(scm.match("DELETE", "/users/42").isPresent(), is(false));
 	}
 
 	/**
@@ -154,7 +226,251 @@ public class HyperSchemaBuilderTest {
 	 */
 	@Test
 	public void test_link_definition_lookup_2() {
-		// TODO
-		fail("Not Implemented Yet");
+		String json = "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/files/{name}.json{?q}\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/api/v{major}.{minor}/{(%23%2Fdefinitions%2Fid)}\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/items/{#/definitions/id}\", \"schema\": {}}"
+				+ "]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+
+		RouteMatch m = scm.route("GET", "/files/a.b.json").get();
+		assertThat(m.getPathVariables(), hasEntry("name", "a.b"));
+		assertThat(scm.route("GET", "/files/.json").isPresent(), is(false));
+
+		m = scm.route("GET", "/api/v1.20/x").get();
+		assertThat(m.getPathVariables(), hasEntry("major", "1"));
+		assertThat(m.getPathVariables(), hasEntry("minor", "20"));
+		assertThat(m.getPathVariables(), hasEntry("(%23%2Fdefinitions%2Fid)", "x"));
+
+		m = scm.route("GET", "/items/7").get();
+		assertThat(m.getPathVariables(), hasEntry("#/definitions/id", "7"));
+
+		try {
+			json = "{\"links\": [{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/a/{x}{y}\", \"schema\": {}}]}";
+			HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+			fail("Must throw when a segment is ambiguous!");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#responseSampleRate(double)}
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchema#sampleResponse(String, String)}
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchema#checkResponse(String, String, Object, int)}
+	 */
+	@Test
+	public void test_response_sampling() {
+		String json = "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}\","
+				+ "  \"targetSchema\": {\"type\": \"object\", \"required\": [\"id\"]}},"
+				+ "{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/users\", \"schema\": {}}"
+				+ "]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).responseSampleRate(0.25).build();
+
+		int sampled = 0;
+		for (int i = 0; i < 100; i++) {
+			if (scm.sampleResponse("GET", "/users/" + i)) {
+				sampled++;
+			}
+		}
+		assertThat(sampled, is(25));
+		assertThat(scm.sampleResponse("POST", "/users"), is(false));
+
+		assertThat(scm.checkResponse("GET", "/users/1", new JSONObject("{\"id\": 1}"), 1).isValid(), is(true));
+		assertThat(scm.checkResponse("GET", "/users/1", new JSONObject("{}"), 1).getMessage(),
+				is("#: required key [id] not found"));
+		assertThat(scm.checkResponse("POST", "/users", new JSONObject("{}"), 1).isValid(), is(true));
+
+		scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+		assertThat(scm.sampleResponse("GET", "/users/1"), is(false));
+		try {
+			HyperSchemaBuilder.hyperSchema(new JSONObject(json)).responseSampleRate(1.5);
+			fail("Must throw when the rate is out of range!");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#hyperSchemaDirectory(java.nio.file.Path)}
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#hyperSchemaFiles(java.util.Collection)}
+	 */
+	@Test
+	public void test_multiple_files() throws Exception {
+		Path users = write("users.json", "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/me\", \"schema\": {}},"
+				+ "{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/users\", \"schema\": {\"required\": [\"id\"]}}"
+				+ "]}");
+		Path items = write("sub/items.json", "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/items/{id}\", \"schema\": {}}"
+				+ "]}");
+		write("README.txt", "not a hyper schema");
+		HyperSchema scm = HyperSchemaBuilder.hyperSchemaDirectory(folder.getRoot().toPath()).compileSchemas(true)
+				.build();
+
+		@SuppressWarnings("unchecked")
+		Map<EndPoint, Schema> routes = (Map<EndPoint, Schema>)Deencapsulation.getField(scm, "routes");
+		// sub/items.json is sorted before users.json
+		assertThat(new ArrayList<>(routes.keySet()), is(Arrays.asList(
+				EndPoint.of("GET", "/users/{id}", "application/json"),
+				EndPoint.of("GET", "/items/{id}", "application/json"),
+				EndPoint.of("GET", "/users/me", "application/json"),
+				EndPoint.of("POST", "/users", "application/json"))));
+		assertThat(scm.route("GET", "/users/me").get().getEndPoint().getHref(), is("/users/me"));
+		assertThat(scm.check("POST", "/users", "application/json", new JSONObject()).isValid(), is(false));
+
+		Path duplicate = write("duplicate.json", "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/items/{id}\", \"schema\": {}}"
+				+ "]}");
+		try {
+			HyperSchemaBuilder.hyperSchemaFiles(Arrays.asList(users, items, duplicate)).build();
+			fail("Must throw when duplicate definitions across files!");
+		} catch (DuplicateLinkDefinitionException e) {
+			assertThat(e.getMessage(), endsWith(" at " + duplicate + "#/links/0, defined at " + items + "#/links/1"));
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#lazySchemas(boolean)}
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchema#precompile(java.util.concurrent.Executor)}
+	 */
+	@Test
+	public void test_lazy_schemas() throws Exception {
+		String json = "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}\", \"schema\": {\"type\": \"object\"}},"
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/broken\", \"schema\": {\"type\": \"no-such-type\"}}"
+				+ "]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).lazySchemas(true).compileSchemas(true)
+				.build();
+
+		@SuppressWarnings("unchecked")
+		Map<EndPoint, LinkSchema> routes = (Map<EndPoint, LinkSchema>)Deencapsulation.getField(scm, "routes");
+		LinkSchema users = routes.get(EndPoint.of("GET", "/users/{id}", "application/json"));
+		LinkSchema broken = routes.get(EndPoint.of("GET", "/broken", "application/json"));
+		assertThat(users.isLoaded(), is(false));
+		assertThat(broken.isLoaded(), is(false));
+
+		// Racing threads share the schema which is published first
+		List<Callable<Schema>> matches = Collections.nCopies(8, () -> scm.match("GET", "/users/1").get());
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			Schema schema = users.get();
+			for (Future<Schema> future : executor.invokeAll(matches)) {
+				assertThat(future.get(), is(sameInstance(schema)));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(users.get(), is(instanceOf(CompiledSchema.class)));
+		assertThat(broken.isLoaded(), is(false));
+
+		try {
+			scm.precompile(ForkJoinPool.commonPool()).get(10, TimeUnit.SECONDS);
+			fail("Must fail to load an invalid schema!");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), is(instanceOf(SchemaException.class)));
+		}
+		try {
+			scm.match("GET", "/broken");
+			fail("Must fail to load an invalid schema!");
+		} catch (SchemaException e) {
+		}
+		try {
+			HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+			fail("Must fail to load an invalid schema!");
+		} catch (SchemaException e) {
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.SchemaResolver}
+	 */
+	@Test
+	public void test_ref_resolution() throws Exception {
+		String user = "{\"properties\": {\"user\": {\"$ref\": \"#/definitions/user\"}}}";
+		String json = "{\"definitions\": {\"user\": {\"required\": [\"id\"]}}, \"links\": ["
+				+ "{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/users\", \"schema\": " + user + "},"
+				+ "{\"rel\": \"update\", \"method\": \"PUT\", \"href\": \"/users/{id}\", \"schema\": " + user + "},"
+				+ "{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/items\", \"schema\": "
+				+ "{\"definitions\": {\"item\": {\"required\": [\"name\"]}},"
+				+ " \"properties\": {\"item\": {\"$ref\": \"#/definitions/item\"}}}}"
+				+ "]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+		assertThat(scm.check("POST", "/users", "application/json", new JSONObject("{\"user\": {}}")).isValid(),
+				is(false));
+		assertThat(scm.check("PUT", "/users/1", "application/json", new JSONObject("{\"user\": {\"id\": 1}}"))
+				.isValid(), is(true));
+		// Links share the definition of the hyper schema
+		Schema created = ((ObjectSchema) linkSchemaOf(scm, "POST", "/users").get()).getPropertySchemas().get("user");
+		Schema updated = ((ObjectSchema) linkSchemaOf(scm, "PUT", "/users/{id}").get()).getPropertySchemas()
+				.get("user");
+		assertThat(created, is(sameInstance(updated)));
+		// A definition of the link schema itself
+		assertThat(scm.check("POST", "/items", "application/json", new JSONObject("{\"item\": {}}")).isValid(),
+				is(false));
+
+		// A definition in another file, which is not a source of the hyper schema
+		write("common.json", "{\"definitions\": {\"item\": {\"required\": [\"name\"]}}}");
+		Path file = write("schema.json", "{\"links\": ["
+				+ "{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/items\", \"schema\": "
+				+ "{\"properties\": {\"item\": {\"$ref\": \"common.json#/definitions/item\"}}}}"
+				+ "]}");
+		HyperSchema compiled = HyperSchemaBuilder.hyperSchemaFiles(Arrays.asList(file)).compileSchemas(true).build();
+		assertThat(compiled.check("POST", "/items", "application/json", new JSONObject("{\"item\": {}}")).isValid(),
+				is(false));
+		assertThat(compiled.check("POST", "/items", "application/json",
+				new JSONObject("{\"item\": {\"name\": \"a\"}}")).isValid(), is(true));
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchema#getDeduplicationStats()}
+	 */
+	@Test
+	public void test_deduplication() {
+		String address = "{\"type\": \"object\", \"required\": [\"city\"], \"properties\": {\"city\": {\"type\": \"string\"}}}";
+		String user = "{\"properties\": {\"name\": {\"type\": \"string\"}, \"address\": " + address + "}}";
+		// Keys in another order are the same in structure
+		String item = "{\"properties\": {\"address\": {\"properties\": {\"city\": {\"type\": \"string\"}},"
+				+ " \"required\": [\"city\"], \"type\": \"object\"}}, \"required\": [\"address\"]}";
+		String json = "{\"links\": ["
+				+ "{\"rel\": \"update\", \"method\": \"PUT\", \"href\": \"/users/{id}\", \"schema\": " + user + "},"
+				+ "{\"rel\": \"update\", \"method\": \"PATCH\", \"href\": \"/users/{id}\", \"schema\": " + user + "},"
+				+ "{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/items\", \"schema\": " + item + "}"
+				+ "]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+		assertThat(linkSchemaOf(scm, "PUT", "/users/{id}").get(),
+				is(sameInstance(linkSchemaOf(scm, "PATCH", "/users/{id}").get())));
+		Schema userAddress = ((ObjectSchema) linkSchemaOf(scm, "PUT", "/users/{id}").get()).getPropertySchemas()
+				.get("address");
+		Schema itemAddress = ((ObjectSchema) linkSchemaOf(scm, "POST", "/items").get()).getPropertySchemas()
+				.get("address");
+		assertThat(userAddress, is(sameInstance(itemAddress)));
+
+		DeduplicationStats stats = scm.getDeduplicationStats();
+		assertThat(stats.getSchemaCount(), is(3L));
+		assertThat(stats.getDistinctSchemaCount(), is(2L));
+		assertThat(stats.getSubSchemaCount(), is(2L));
+		assertThat(stats.getDistinctSubSchemaCount(), is(1L));
+		assertThat(stats.getDeduplicatedCount(), is(2L));
+
+		// Violations of shared sub-schemas are reported at their place
+		ValidationResult result = scm.check("PATCH", "/users/1", "application/json",
+				new JSONObject("{\"address\": {\"city\": 1}}"));
+		assertThat(result.isValid(), is(false));
+		assertThat(result.getViolations().get(0).getPointer(), is("#/address/city"));
+		assertThat(scm.check("POST", "/items", "application/json", new JSONObject("{\"address\": {}}")).isValid(),
+				is(false));
+	}
+
+	private static LinkSchema linkSchemaOf(HyperSchema scm, String method, String href) {
+		@SuppressWarnings("unchecked")
+		Map<EndPoint, LinkSchema> routes = (Map<EndPoint, LinkSchema>)Deencapsulation.getField(scm, "routes");
+		return routes.get(EndPoint.of(method, href, "application/json"));
+	}
+
+	private Path write(String name, String content) throws IOException {
+		Path path = folder.getRoot().toPath().resolve(name);
+		Files.createDirectories(path.getParent());
+		return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
 	}
 }
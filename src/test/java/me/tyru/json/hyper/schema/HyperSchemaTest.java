@@ -1,33 +1,299 @@
 package me.tyru.json.hyper.schema;
 
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.everit.json.schema.ValidationException;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.Test;
 
+import me.tyru.json.hyper.schema.concurrent.ValidationExecutor;
+import me.tyru.json.hyper.schema.metrics.ValidationListener;
+import me.tyru.json.hyper.schema.request.JSONRequest;
+import me.tyru.json.hyper.schema.result.ValidationResult.Status;
+
 /**
  * @author tyru
  *
  */
 public class HyperSchemaTest {
 
+	private static HyperSchema createHyperSchema() {
+		String json = "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/hello\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"POST\", \"href\": \"/hello\", \"encType\": \"text/plain\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"PURGE\", \"href\": \"/cache/{key}\", \"schema\": {}}"
+				+ "]}";
+		return HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+	}
+
 	/**
-	 * TODO: Mock
 	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#match(java.lang.String, java.lang.String)}
 	 */
 	@Test
 	public void testMatchStringString() {
-		// TODO
-		fail("Not Implemented Yet");
+		HyperSchema scm = createHyperSchema();
+		assertThat(scm.match("GET", "/hello").isPresent(), is(true));
+		assertThat(scm.match("GET", "/hello/").isPresent(), is(false));
+		assertThat(scm.match("get", "/hello").isPresent(), is(false));
+		assertThat(scm.match("POST", "/hello").isPresent(), is(false));
+		assertThat(scm.match("PURGE", "/cache/x").isPresent(), is(true));
 	}
 
 	/**
-	 * TODO: Mock
 	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#match(java.lang.String, java.lang.String, java.lang.String)}
 	 */
 	@Test
 	public void testMatchStringStringString() {
-		// TODO
-		fail("Not Implemented Yet");
+		HyperSchema scm = createHyperSchema();
+		assertThat(scm.match("POST", "/hello", "text/plain").isPresent(), is(true));
+		assertThat(scm.match("GET", "/hello", "text/plain").isPresent(), is(false));
+	}
+
+	/**
+	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#match(java.lang.String, java.lang.String, java.lang.String)}
+	 */
+	@Test
+	public void testMatchNegotiatesEncType() {
+		String json = "{\"links\": ["
+				+ "{\"rel\": \"self\", \"method\": \"POST\", \"href\": \"/a\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"POST\", \"href\": \"/a\", \"encType\": \"application/vnd.a+json\", \"schema\": {\"title\": \"vnd\"}},"
+				+ "{\"rel\": \"self\", \"method\": \"POST\", \"href\": \"/b/{id}\", \"encType\": \"application/*+json\", \"schema\": {}},"
+				+ "{\"rel\": \"self\", \"method\": \"POST\", \"href\": \"/c\", \"encType\": \"*/*\", \"schema\": {}}"
+				+ "]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+		assertThat(scm.match("POST", "/a", "application/vnd.a+json").get().getTitle(), is("vnd"));
+		assertThat(scm.match("POST", "/a", "application/vnd.b+json").get().getTitle(), is(nullValue()));
+		assertThat(scm.match("POST", "/a", "Application/JSON; charset=UTF-8").isPresent(), is(true));
+		assertThat(scm.match("POST", "/a", "text/plain").isPresent(), is(false));
+		assertThat(scm.match("POST", "/a", "no media type").isPresent(), is(false));
+		assertThat(scm.match("POST", "/b/1", "application/vnd.b+json").isPresent(), is(true));
+		assertThat(scm.match("POST", "/b/1", "application/xml").isPresent(), is(false));
+		assertThat(scm.match("POST", "/c", "text/csv").isPresent(), is(true));
+	}
+
+	/**
+	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#route(java.lang.String, java.lang.String)}
+	 * with {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#matchCacheSize(int)}
+	 */
+	@Test
+	public void testRouteWithMatchCache() {
+		String json = "{\"links\": [{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}\", \"schema\": {}}]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).matchCacheSize(16).build();
+		assertThat(scm.route("GET", "/users/1").get().getPathVariables(), hasEntry("id", "1"));
+		assertThat(scm.route("GET", "/users/1").get().getPathVariables(), hasEntry("id", "1"));
+		assertThat(scm.match("GET", "/users/1").isPresent(), is(true));
+		assertThat(scm.match("GET", "/nothing").isPresent(), is(false));
+		CacheStats stats = scm.getMatchCacheStats().get();
+		assertThat(stats.getHitCount(), is(2L));
+		assertThat(stats.getMissCount(), is(2L));
+		assertThat(stats.getSize(), is(1L));
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(scm.route("GET", "/users/" + i).get().getPathVariables(), hasEntry("id", "" + i));
+		}
+		stats = scm.getMatchCacheStats().get();
+		assertThat(stats.getSize(), is(16L));
+		assertThat(stats.getEvictionCount(), is(84L));
+
+		assertThat(createHyperSchema().getMatchCacheStats().isPresent(), is(false));
+	}
+
+	/**
+	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#check(me.tyru.json.hyper.schema.request.JSONRequest)}
+	 * with {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#resultCache(int, long, java.util.concurrent.TimeUnit)}
+	 */
+	@Test
+	public void testCheckWithResultCache() throws Exception {
+		String json = "{\"links\": [{\"rel\": \"self\", \"method\": \"PUT\", \"href\": \"/users/{id}\", \"schema\": {"
+				+ "\"required\": [\"name\"]}}]}";
+		int[] decodes = new int[1];
+		ValidationListener listener = new ValidationListener() {
+			@Override
+			public void onEntity(EndPoint endPoint, int length) {
+				decodes[0]++;
+			}
+		};
+		ReloadableHyperSchema reloadable = HyperSchemaBuilder.hyperSchema(new JSONObject(json))
+				.resultCache(16, 0, TimeUnit.SECONDS).validationListener(listener).buildReloadable();
+		HyperSchema scm = reloadable.get();
+		assertThat(scm.check(putRequest("/users/1", "{\"name\": \"a\"}")).isValid(), is(true));
+		assertThat(scm.check(putRequest("/users/1", "{\"name\": \"a\"}")).isValid(), is(true));
+		assertThat(scm.check(putRequest("/users/1", "{}")).isValid(), is(false));
+		assertThat(scm.check(putRequest("/users/1", "{}")).isValid(), is(false));
+		// Hits are not decoded
+		assertThat(decodes[0], is(2));
+		CacheStats stats = scm.getResultCacheStats().get();
+		assertThat(stats.getHitCount(), is(2L));
+		assertThat(stats.getMissCount(), is(2L));
+		assertThat(stats.getSize(), is(2L));
+
+		// A malformed entity is not cached
+		for (int i = 0; i < 2; i++) {
+			try {
+				scm.check(putRequest("/users/1", "{"));
+				fail("Must throw when the entity is malformed!");
+			} catch (JSONException e) {
+			}
+		}
+		assertThat(scm.getResultCacheStats().get().getSize(), is(2L));
+
+		// The cache is cleared when the schema changes
+		reloadable.addLink(new JSONObject("{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users\", \"schema\": {}}"));
+		assertThat(reloadable.get().getResultCacheStats().get().getSize(), is(0L));
+		decodes[0] = 0;
+		assertThat(reloadable.get().check(putRequest("/users/1", "{}")).isValid(), is(false));
+		assertThat(decodes[0], is(1));
+
+		// Expired results are evicted
+		HyperSchema expiring = HyperSchemaBuilder.hyperSchema(new JSONObject(json))
+				.resultCache(16, 1, TimeUnit.NANOSECONDS).build();
+		expiring.check(putRequest("/users/1", "{}"));
+		Thread.sleep(1);
+		expiring.check(putRequest("/users/1", "{}"));
+		stats = expiring.getResultCacheStats().get();
+		assertThat(stats.getHitCount(), is(0L));
+		assertThat(stats.getEvictionCount(), is(1L));
+
+		assertThat(createHyperSchema().getResultCacheStats().isPresent(), is(false));
+	}
+
+	/**
+	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#validateAsync(JSONRequest, int)}
+	 */
+	@Test
+	public void testValidateAsyncDoesNotCacheTimedOutResult() throws Exception {
+		String json = "{\"links\": [{\"rel\": \"self\", \"method\": \"PUT\", \"href\": \"/users/{id}\", \"schema\": {"
+				+ "\"required\": [\"name\"]}}]}";
+		ValidationExecutor executor = ValidationExecutor.createPlatform(1, 1);
+		try {
+			HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).resultCache(16, 0, TimeUnit.SECONDS)
+					.validationExecutor(executor).validationTimeout(50, TimeUnit.MILLISECONDS).build();
+			CountDownLatch timedOut = new CountDownLatch(1);
+			// Keeps running after the result is abandoned
+			JSONRequest slow = putRequest("/users/1", "{}", () -> {
+				try {
+					timedOut.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// Interrupted by the timeout, go on
+				}
+			});
+			assertThat(scm.validateAsync(slow).get(10, TimeUnit.SECONDS).getStatus(), is(Status.TIMED_OUT));
+			timedOut.countDown();
+			while (executor.getPending() > 0) {
+				Thread.sleep(1);
+			}
+			assertThat(scm.getResultCacheStats().get().getSize(), is(0L));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#validate(me.tyru.json.hyper.schema.request.JSONRequest)}
+	 * with {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#streamingValidation(boolean)}
+	 */
+	@Test
+	public void testValidateStreaming() {
+		String json = "{\"links\": [{\"rel\": \"self\", \"method\": \"PUT\", \"href\": \"/users/{id}\", \"schema\": {"
+				+ "\"required\": [\"name\"], \"properties\": {\"name\": {\"type\": \"string\"}}}}]}";
+		HyperSchema streaming = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).streamingValidation(true).build();
+		HyperSchema parsing = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+		streaming.validate(putRequest("/users/1", "{\"name\": \"a\", \"tags\": [1, {}]}"));
+
+		// Fails at the first violation, before the malformed rest is read
+		JSONRequest truncated = putRequest("/users/1", "{\"name\": 1, \"rest\": [");
+		try {
+			streaming.validate(truncated);
+			fail("Must throw when the entity is invalid!");
+		} catch (ValidationException e) {
+			assertThat(e.getMessage(), is("#/name: expected type: String, found: Integer"));
+		}
+		assertThat(streaming.check(truncated).getMessage(), is("#/name: expected type: String, found: Integer"));
+		try {
+			parsing.validate(truncated);
+			fail("Must throw when the entity is malformed!");
+		} catch (JSONException e) {
+		}
+
+		try {
+			streaming.validate(putRequest("/users/1", "{}"));
+			fail("Must throw when the entity is invalid!");
+		} catch (ValidationException e) {
+			assertThat(e.getMessage(), is("#: required key [name] not found"));
+		}
+	}
+
+	private static JSONRequest putRequest(String href, String entity) {
+		return putRequest(href, entity, () -> {
+		});
+	}
+
+	/**
+	 * @param onRead
+	 *            called when the raw entity is read
+	 */
+	private static JSONRequest putRequest(String href, String entity, Runnable onRead) {
+		byte[] bytes = entity.getBytes(StandardCharsets.UTF_8);
+		return new JSONRequest() {
+			@Override
+			public String getMethod() {
+				return "PUT";
+			}
+
+			@Override
+			public String getHref() {
+				return href;
+			}
+
+			@Override
+			public String getEncType() {
+				return HyperSchema.DEFAULT_ENC_TYPE;
+			}
+
+			@Override
+			public String getEntityWithKeepingStream(String charset) {
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			@Override
+			public ByteBuffer getEntityBytesWithKeepingStream() {
+				onRead.run();
+				return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+			}
+
+			@Override
+			public MultivaluedMap<String, String> getQueryParameters() {
+				return new MultivaluedHashMap<>();
+			}
+		};
+	}
+
+	/**
+	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#matchOrNull(java.lang.CharSequence, java.lang.CharSequence, int, int, java.lang.String)}
+	 */
+	@Test
+	public void testMatchOrNullRegion() {
+		HyperSchema scm = createHyperSchema();
+		StringBuilder line = new StringBuilder("GET /hello HTTP/1.1");
+		assertThat(scm.matchOrNull("GET", line, 4, 6, "application/json"), is(notNullValue()));
+		assertThat(scm.matchOrNull("GET", line, 4, 5, "application/json"), is(nullValue()));
+		assertThat(scm.matchOrNull(line.subSequence(0, 3), "/hello", "application/json"), is(notNullValue()));
+		assertThat(scm.matchOrNull("PURGE", "x/cache/k", 1, 8, "application/json"), is(notNullValue()));
+		try {
+			scm.matchOrNull("GET", line, 18, 6, "application/json");
+			fail("Must throw when the region is out of bounds!");
+		} catch (IndexOutOfBoundsException e) {
+		}
 	}
 
 	/**
@@ -70,4 +336,80 @@ public class HyperSchemaTest {
 		fail("Not Implemented Yet");
 	}
 
+	private static JSONRequest getRequest(String href, MultivaluedMap<String, String> query) {
+		return new JSONRequest() {
+			@Override
+			public String getMethod() {
+				return "GET";
+			}
+
+			@Override
+			public String getHref() {
+				return href;
+			}
+
+			@Override
+			public String getEncType() {
+				return HyperSchema.DEFAULT_ENC_TYPE;
+			}
+
+			@Override
+			public String getEntityWithKeepingStream(String charset) {
+				return null;
+			}
+
+			@Override
+			public MultivaluedMap<String, String> getQueryParameters() {
+				return query;
+			}
+		};
+	}
+
+	/**
+	 * The test method for {@link me.tyru.json.hyper.schema.HyperSchema#validate(me.tyru.json.hyper.schema.request.JSONRequest)}
+	 */
+	@Test
+	public void testValidateQueryParameters() {
+		String json = "{\"links\": [{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users\", \"schema\": {"
+				+ "\"properties\": {"
+				+ "  \"limit\": {\"type\": \"integer\", \"maximum\": 100},"
+				+ "  \"ratio\": {\"type\": \"number\"},"
+				+ "  \"active\": {\"type\": \"boolean\"},"
+				+ "  \"q\": {\"type\": \"string\"},"
+				+ "  \"ids\": {\"type\": \"array\", \"items\": {\"type\": \"integer\"}}"
+				+ "}}}]}";
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).build();
+		MultivaluedMap<String, String> query = new MultivaluedHashMap<>();
+		query.add("limit", "10");
+		query.add("ratio", "-1.5e2");
+		query.add("active", "true");
+		query.add("q", "123");
+		query.add("ids", "1");
+		query.add("ids", "2");
+		scm.validate(getRequest("/users", query));
+
+		String[][] invalid = { { "limit", "101" }, { "limit", "1.5" }, { "ratio", "NaN" }, { "active", "yes" },
+				{ "ids", "x" } };
+		for (String[] param : invalid) {
+			MultivaluedMap<String, String> q = new MultivaluedHashMap<>();
+			q.add(param[0], param[1]);
+			try {
+				scm.validate(getRequest("/users", q));
+				fail("Not thrown: " + param[0] + "=" + param[1]);
+			} catch (ValidationException e) {
+				assertThat(e.getPointerToViolation(), startsWith("#/" + param[0]));
+			}
+		}
+
+		// Repeated key of a scalar property
+		query = new MultivaluedHashMap<>();
+		query.add("q", "a");
+		query.add("q", "b");
+		try {
+			scm.validate(getRequest("/users", query));
+			fail("Not thrown");
+		} catch (ValidationException e) {
+			assertThat(e.getPointerToViolation(), is("#/q"));
+		}
+	}
 }
@@ -0,0 +1,99 @@
+package me.tyru.json.hyper.schema;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import me.tyru.json.hyper.schema.exception.DuplicateLinkDefinitionException;
+
+/**
+ * @author tyru
+ *
+ */
+public class ReloadableHyperSchemaTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.ReloadableHyperSchema#addLink(JSONObject)}
+	 *@see {@link me.tyru.json.hyper.schema.ReloadableHyperSchema#removeLink(String, String, String)}
+	 */
+	@Test
+	public void test_addLink_and_removeLink() {
+		String json = "{\"links\": [{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}\", \"schema\": {}}]}";
+		ReloadableHyperSchema reloadable = HyperSchemaBuilder.hyperSchema(new JSONObject(json)).matchCacheSize(16)
+				.buildReloadable();
+		HyperSchema before = reloadable.get();
+		assertThat(before.match("GET", "/users/1").isPresent(), is(true));
+
+		reloadable.addLink(new JSONObject("{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/users\","
+				+ "\"schema\": {\"required\": [\"id\"]}, \"targetSchema\": {\"required\": [\"id\"]}}"));
+		HyperSchema after = reloadable.get();
+		assertThat(after, is(not(sameInstance(before))));
+		// A HyperSchema in use does not change
+		assertThat(before.match("POST", "/users").isPresent(), is(false));
+		assertThat(after.check("POST", "/users", "application/json", new JSONObject()).isValid(), is(false));
+		assertThat(after.checkResponse("POST", "/users", new JSONObject(), 1).isValid(), is(false));
+		assertThat(after.match("GET", "/users/1").isPresent(), is(true));
+
+		try {
+			reloadable.addLink(new JSONObject("{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}\", \"schema\": {}}"));
+			fail("Must throw when duplicate definitions!");
+		} catch (DuplicateLinkDefinitionException e) {
+		}
+		assertThat(reloadable.get(), is(sameInstance(after)));
+
+		assertThat(reloadable.removeLink("POST", "/users", "Application/JSON"), is(true));
+		assertThat(reloadable.removeLink("POST", "/users", "application/json"), is(false));
+		assertThat(reloadable.get().match("POST", "/users").isPresent(), is(false));
+		assertThat(reloadable.get().checkResponse("POST", "/users", new JSONObject(), 1).isValid(), is(true));
+		assertThat(reloadable.get().match("GET", "/users/1").isPresent(), is(true));
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.ReloadableHyperSchema#watch()}
+	 *@see {@link me.tyru.json.hyper.schema.ReloadableHyperSchema#reload()}
+	 */
+	@Test
+	public void test_watch() throws Exception {
+		Path file = folder.newFile("schema.json").toPath();
+		write(file, "/users");
+		try (ReloadableHyperSchema reloadable = HyperSchemaBuilder.hyperSchemaFiles(Collections.singletonList(file))
+				.buildReloadable().watch()) {
+			assertThat(reloadable.get().match("GET", "/users").isPresent(), is(true));
+
+			write(file, "/items");
+			long deadline = System.currentTimeMillis() + 10000;
+			while (!reloadable.get().match("GET", "/items").isPresent() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			assertThat(reloadable.get().match("GET", "/items").isPresent(), is(true));
+			assertThat(reloadable.get().match("GET", "/users").isPresent(), is(false));
+
+			// A malformed file keeps the current route table
+			Files.write(file, "{\"links\": [".getBytes(StandardCharsets.UTF_8));
+			HyperSchema current = reloadable.get();
+			try {
+				reloadable.reload();
+				fail("Must throw when the file is malformed!");
+			} catch (IllegalArgumentException e) {
+			}
+			assertThat(reloadable.get(), is(sameInstance(current)));
+		}
+	}
+
+	private static void write(Path file, String href) throws Exception {
+		String json = "{\"links\": [{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"" + href + "\", \"schema\": {}}]}";
+		Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+	}
+}
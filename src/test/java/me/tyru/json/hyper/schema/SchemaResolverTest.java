@@ -0,0 +1,46 @@
+package me.tyru.json.hyper.schema;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.everit.json.schema.ArraySchema;
+import org.everit.json.schema.ObjectSchema;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @author tyru
+ *
+ */
+public class SchemaResolverTest {
+
+	/**
+	 * everit-org/json-schema looks up $ref in the pointerSchemas of its
+	 * loader, which resolves them against the documents of the hyper schema.
+	 * This fails if a new version of everit-org/json-schema stops doing so.
+	 *
+	 *@see {@link me.tyru.json.hyper.schema.SchemaResolver#load(JSONObject, java.net.URI)}
+	 */
+	@Test
+	public void test_load() {
+		SchemaResolver resolver = new SchemaResolver(false);
+		resolver.addDocument(SchemaResolver.ROOT,
+				new JSONObject("{\"definitions\": {\"user\": {\"required\": [\"id\"]}}}"));
+		// Neither of link schemas has the definition
+		Schema created = resolver.load(
+				new JSONObject("{\"properties\": {\"user\": {\"$ref\": \"#/definitions/user\"}}}"), SchemaResolver.ROOT);
+		Schema listed = resolver.load(new JSONObject("{\"items\": {\"$ref\": \"#/definitions/user\"}}"),
+				SchemaResolver.ROOT);
+		Schema user = ((ObjectSchema) created).getPropertySchemas().get("user");
+		assertThat(user, is(sameInstance(((ArraySchema) listed).getAllItemSchema())));
+		assertThat(resolver.getDefinitionCount(), is(1));
+		try {
+			created.validate(new JSONObject("{\"user\": {}}"));
+			fail("Must throw when the definition is violated!");
+		} catch (ValidationException e) {
+			assertThat(e.getMessage(), is("#/user: required key [id] not found"));
+		}
+	}
+}
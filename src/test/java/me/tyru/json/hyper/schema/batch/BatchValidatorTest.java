@@ -0,0 +1,83 @@
+package me.tyru.json.hyper.schema.batch;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+
+/**
+ * @author tyru
+ *
+ */
+public class BatchValidatorTest {
+
+	private static final HyperSchema SCHEMA = HyperSchemaBuilder.hyperSchema(new JSONObject("{\"links\": [{"
+			+ "\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/users\","
+			+ "\"schema\": {\"type\": \"object\", \"required\": [\"id\"], \"properties\": {\"id\": {\"type\": \"integer\"}}}"
+			+ "}]}")).build();
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.batch.BatchValidator#validate(Iterable)}
+	 */
+	@Test
+	public void test_validate() {
+		List<BatchRecord> records = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			JSONObject document = i % 3 == 0 ? new JSONObject() : new JSONObject().put("id", i);
+			records.add(BatchRecord.of("POST", "/users", document));
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<BatchResult> results = BatchValidator.of(SCHEMA).pool(pool).window(8).validate(records)
+					.collect(Collectors.toList());
+			assertThat(results.size(), is(1000));
+			for (int i = 0; i < 1000; i++) {
+				BatchResult result = results.get(i);
+				assertThat(result.getIndex(), is((long) i));
+				assertThat(result.getRecord(), is(sameInstance(records.get(i))));
+				assertThat(result.isValid(), is(i % 3 != 0));
+			}
+			assertThat(results.get(0).getResult().getMessage(), is("#: required key [id] not found"));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.batch.BatchValidator#validateNdjson(java.io.InputStream, java.nio.charset.Charset)}
+	 */
+	@Test
+	public void test_validateNdjson() {
+		String ndjson = "{\"method\": \"POST\", \"href\": \"/users\", \"document\": {\"id\": 1}}\n"
+				+ "\n"
+				+ "{\"method\": \"POST\", \"href\": \"/users\", \"document\": {\"id\": \"1\"}}\n"
+				+ "not json\n"
+				+ "{\"method\": \"GET\", \"href\": \"/unknown\", \"document\": {}}";
+		try (Stream<BatchResult> stream = BatchValidator.of(SCHEMA).validateNdjson(
+				new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)) {
+			List<BatchResult> results = stream.collect(Collectors.toList());
+			assertThat(results.size(), is(4));
+			assertThat(results.get(0).isValid(), is(true));
+			assertThat(results.get(1).getResult().getMessage(),
+					is("#/id: expected type: Number, found: String"));
+			assertThat(results.get(2).getIndex(), is(2L));
+			assertThat(results.get(2).getRecord(), is(nullValue()));
+			assertThat(results.get(2).getError(), is(instanceOf(JSONException.class)));
+			// No link matches
+			assertThat(results.get(3).isValid(), is(true));
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package me.tyru.json.hyper.schema.compile;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * @author tyru
+ *
+ */
+public class SchemaCompilerTest {
+
+	private static final JSONObject SCHEMA = new JSONObject("{"
+			+ "\"definitions\": {\"node\": {\"type\": \"object\", \"properties\": {"
+			+ "  \"children\": {\"type\": \"array\", \"items\": {\"$ref\": \"#/definitions/node\"}}"
+			+ "}}},"
+			+ "\"type\": \"object\","
+			+ "\"required\": [\"id\"],"
+			+ "\"additionalProperties\": false,"
+			+ "\"dependencies\": {\"from\": [\"to\"]},"
+			+ "\"patternProperties\": {\"^x-\": {\"type\": \"string\", \"format\": \"email\"}},"
+			+ "\"properties\": {"
+			+ "  \"id\": {\"type\": \"integer\", \"minimum\": 1, \"exclusiveMaximum\": true, \"maximum\": 100},"
+			+ "  \"name\": {\"type\": \"string\", \"minLength\": 1, \"maxLength\": 5, \"pattern\": \"^[a-z]+$\"},"
+			+ "  \"price\": {\"type\": \"number\", \"multipleOf\": 0.5},"
+			+ "  \"kind\": {\"enum\": [\"a\", \"b\"]},"
+			+ "  \"flag\": {\"type\": [\"boolean\", \"null\"]},"
+			+ "  \"from\": {}, \"to\": {},"
+			+ "  \"pair\": {\"type\": \"array\", \"items\": [{\"type\": \"string\"}, {\"type\": \"integer\"}],"
+			+ "    \"additionalItems\": false},"
+			+ "  \"tags\": {\"type\": \"array\", \"uniqueItems\": true, \"maxItems\": 2},"
+			+ "  \"one\": {\"oneOf\": [{\"type\": \"integer\"}, {\"minimum\": 10}]},"
+			+ "  \"tree\": {\"$ref\": \"#/definitions/node\"}"
+			+ "}}");
+
+	private static final String[] SUBJECTS = {
+			"{\"id\": 1}",
+			"{\"id\": 99, \"name\": \"abc\", \"price\": 1.5, \"kind\": \"a\", \"flag\": null, \"from\": 1, \"to\": 2}",
+			"{\"id\": 1, \"x-mail\": \"a@example.com\", \"pair\": [\"a\", 1], \"tags\": [1, 2], \"one\": 1}",
+			"{\"id\": 1, \"tree\": {\"children\": [{\"children\": []}, {}]}}",
+			"{}",
+			"{\"id\": 0}",
+			"{\"id\": 100}",
+			"{\"id\": 1.5}",
+			"{\"id\": \"1\"}",
+			"{\"id\": 1, \"name\": \"\"}",
+			"{\"id\": 1, \"name\": \"toolong\"}",
+			"{\"id\": 1, \"name\": \"ABC\"}",
+			"{\"id\": 1, \"price\": 1.2}",
+			"{\"id\": 1, \"kind\": \"c\"}",
+			"{\"id\": 1, \"flag\": 1}",
+			"{\"id\": 1, \"from\": 1}",
+			"{\"id\": 1, \"x-mail\": \"not an email\"}",
+			"{\"id\": 1, \"unknown\": 1}",
+			"{\"id\": 1, \"pair\": [\"a\", 1, 2]}",
+			"{\"id\": 1, \"pair\": [1]}",
+			"{\"id\": 1, \"tags\": [1, 1]}",
+			"{\"id\": 1, \"tags\": [1, 2, 3]}",
+			"{\"id\": 1, \"one\": 10}",
+			"{\"id\": 1, \"tree\": {\"children\": [{\"children\": 1}]}}",
+	};
+
+	/** Schema of a single keyword, followed by its subjects */
+	private static final String[][] KEYWORDS = {
+			{ "{\"type\": \"object\"}", "{}", "[]", "1", "null" },
+			{ "{\"type\": [\"string\", \"null\"]}", "\"a\"", "null", "1", "true" },
+			{ "{\"type\": \"integer\"}", "1", "1.5", "\"1\"" },
+			{ "{\"type\": \"boolean\"}", "true", "0" },
+			{ "{\"type\": \"null\"}", "null", "{}" },
+			{ "{\"minimum\": 1}", "1", "0", "\"0\"" },
+			{ "{\"minimum\": 1, \"exclusiveMinimum\": true}", "2", "1" },
+			{ "{\"maximum\": 1}", "1", "1.5" },
+			{ "{\"maximum\": 1, \"exclusiveMaximum\": true}", "0", "1" },
+			{ "{\"multipleOf\": 0.5}", "1.5", "1.2" },
+			{ "{\"minLength\": 2}", "\"ab\"", "\"a\"", "1" },
+			{ "{\"maxLength\": 2}", "\"ab\"", "\"abc\"" },
+			{ "{\"pattern\": \"^a\"}", "\"ab\"", "\"ba\"" },
+			{ "{\"format\": \"email\"}", "\"a@example.com\"", "\"a\"" },
+			{ "{\"enum\": [1, \"a\"]}", "1", "\"a\"", "2" },
+			{ "{\"required\": [\"a\", \"b\"]}", "{\"a\": 1, \"b\": 2}", "{\"a\": 1}", "{}" },
+			{ "{\"properties\": {\"a\": {\"type\": \"string\"}}}", "{\"a\": \"x\"}", "{}",
+					"{\"a\": 1}" },
+			{ "{\"additionalProperties\": false, \"properties\": {\"a\": {}}}", "{\"a\": 1}",
+					"{\"b\": 1}", "{\"b\": 1, \"c\": 2}" },
+			{ "{\"additionalProperties\": {\"type\": \"integer\"}}", "{\"a\": 1}", "{\"a\": \"x\"}" },
+			{ "{\"patternProperties\": {\"^x-\": {\"type\": \"integer\"}}}", "{\"x-a\": 1, \"b\": \"y\"}",
+					"{\"x-a\": \"y\"}" },
+			{ "{\"minProperties\": 1}", "{\"a\": 1}", "{}" },
+			{ "{\"maxProperties\": 1}", "{\"a\": 1}", "{\"a\": 1, \"b\": 2}" },
+			{ "{\"dependencies\": {\"a\": [\"b\"]}}", "{\"a\": 1, \"b\": 2}", "{\"b\": 2}", "{\"a\": 1}" },
+			{ "{\"dependencies\": {\"a\": {\"required\": [\"c\"]}}}", "{\"a\": 1, \"c\": 2}",
+					"{\"a\": 1}" },
+			{ "{\"items\": {\"type\": \"integer\"}}", "[1, 2]", "[]", "[1, \"a\"]" },
+			{ "{\"items\": [{\"type\": \"string\"}], \"additionalItems\": false}", "[\"a\"]", "[1]",
+					"[\"a\", 1]" },
+			{ "{\"items\": [{}], \"additionalItems\": {\"type\": \"string\"}}", "[1, \"a\"]", "[1, 2]" },
+			{ "{\"minItems\": 1}", "[1]", "[]" },
+			{ "{\"maxItems\": 1}", "[1]", "[1, 2]" },
+			{ "{\"uniqueItems\": true}", "[1, 2]", "[1, 1]" },
+			{ "{\"allOf\": [{\"type\": \"integer\"}, {\"minimum\": 2}]}", "2", "1", "\"a\"" },
+			{ "{\"anyOf\": [{\"type\": \"integer\"}, {\"type\": \"string\"}]}", "1", "\"a\"", "true" },
+			{ "{\"oneOf\": [{\"type\": \"integer\"}, {\"minimum\": 2}]}", "1", "2", "\"a\"" },
+			{ "{\"not\": {\"type\": \"string\"}}", "1", "\"a\"" },
+			{ "{\"definitions\": {\"a\": {\"type\": \"integer\"}}, \"$ref\": \"#/definitions/a\"}", "1",
+					"\"a\"" },
+	};
+
+	/**
+	 * Each keyword is checked the same by the compiled checks and by the
+	 * source schema.
+	 *
+	 *@see {@link me.tyru.json.hyper.schema.compile.CompiledSchema#test(Object)}
+	 */
+	@Test
+	public void test_keywords() {
+		for (String[] fixture : KEYWORDS) {
+			Schema schema = SchemaLoader.load(new JSONObject(fixture[0]));
+			CompiledSchema compiled = SchemaCompiler.compile(schema);
+			for (int i = 1; i < fixture.length; i++) {
+				String label = fixture[0] + " " + fixture[i];
+				Object subject = new JSONObject("{\"v\": " + fixture[i] + "}").get("v");
+				String expected = violation(schema, subject);
+				assertThat(label, compiled.test(subject), is(expected == null));
+				assertThat(label, violation(compiled, subject), is(expected));
+				assertThat(label, messages(compiled.check(subject, 100)), is(messages(sourceResult(schema, subject))));
+			}
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.compile.SchemaCompiler#compile(Schema)}
+	 */
+	@Test
+	public void test_compile() {
+		Schema schema = SchemaLoader.load(SCHEMA);
+		CompiledSchema compiled = SchemaCompiler.compile(schema);
+		assertThat(compiled.getSource(), is(sameInstance(schema)));
+		assertThat(SchemaCompiler.compile(compiled), is(sameInstance(compiled)));
+		for (String json : SUBJECTS) {
+			JSONObject subject = new JSONObject(json);
+			String expected = violation(schema, subject);
+			assertThat(json, compiled.test(subject), is(expected == null));
+			assertThat(json, violation(compiled, subject), is(expected));
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.compile.CompiledSchema#check(Object, int)}
+	 */
+	@Test
+	public void test_check() {
+		Schema schema = SchemaLoader.load(SCHEMA);
+		CompiledSchema compiled = SchemaCompiler.compile(schema);
+		for (String json : SUBJECTS) {
+			JSONObject subject = new JSONObject(json);
+			ValidationResult result = compiled.check(subject, 100);
+			assertThat(json, result.isValid(), is(violation(schema, subject) == null));
+			assertThat(json, result.isTruncated(), is(false));
+		}
+		assertThat(compiled.check(new JSONObject(SUBJECTS[0]), 1), is(sameInstance(ValidationResult.valid())));
+
+		JSONObject subject = new JSONObject("{\"name\": \"ABC\", \"unknown\": 1, \"tree\": {\"children\": [1]}}");
+		ValidationResult result = compiled.check(subject, 100);
+		assertThat(result.getViolations().size(), is(4));
+		assertThat(result.isTruncated(), is(false));
+		assertThat(result.toException().getViolationCount(), is(4));
+		assertThat(result.getViolations().stream().map(v -> v.getPointer()).sorted().toArray(),
+				is(new Object[] { "#", "#", "#/name", "#/tree/children/0" }));
+		assertThat(result.getViolations().stream().map(v -> v.getMessage()).sorted().toArray(),
+				is(new Object[] { "#/name: string [ABC] does not match pattern ^[a-z]+$",
+						"#/tree/children/0: expected type: JSONObject, found: Integer",
+						"#: extraneous key [unknown] is not permitted", "#: required key [id] not found" }));
+
+		result = compiled.check(subject, 1);
+		assertThat(result.getViolations().size(), is(1));
+		assertThat(result.isTruncated(), is(true));
+		ValidationException e = result.toException();
+		assertThat(e.getMessage(), is(result.getMessage()));
+	}
+
+	/**
+	 * @return the result of the violations which schema throws
+	 */
+	private static ValidationResult sourceResult(Schema schema, Object subject) {
+		try {
+			schema.validate(subject);
+			return ValidationResult.valid();
+		} catch (ValidationException e) {
+			return ValidationResult.builder(schema, 100).addAll(e).build();
+		}
+	}
+
+	private static List<String> messages(ValidationResult result) {
+		return result.getViolations().stream().map(v -> v.getMessage()).sorted().collect(Collectors.toList());
+	}
+
+	private static String violation(Schema schema, Object subject) {
+		try {
+			schema.validate(subject);
+			return null;
+		} catch (ValidationException e) {
+			return e.getMessage() + e.getCausingExceptions();
+		}
+	}
+}
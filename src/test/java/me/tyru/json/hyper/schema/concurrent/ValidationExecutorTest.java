@@ -0,0 +1,92 @@
+package me.tyru.json.hyper.schema.concurrent;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import me.tyru.json.hyper.schema.result.ValidationResult;
+import me.tyru.json.hyper.schema.result.ValidationResult.Status;
+
+/**
+ * @author tyru
+ *
+ */
+public class ValidationExecutorTest {
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.concurrent.ValidationExecutor#submit(java.util.function.Supplier, long)}
+	 */
+	@Test
+	public void test_submit() throws Exception {
+		ValidationExecutor executor = ValidationExecutor.create(1, 1);
+		try {
+			assertThat(executor.submit(ValidationResult::valid, 0).get(10, TimeUnit.SECONDS),
+					is(sameInstance(ValidationResult.valid())));
+
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			CompletableFuture<ValidationResult> running = executor.submit(() -> {
+				started.countDown();
+				await(release);
+				return ValidationResult.valid();
+			}, 0);
+			started.await(10, TimeUnit.SECONDS);
+			CompletableFuture<ValidationResult> waiting = executor.submit(ValidationResult::valid, 0);
+
+			// One running and one waiting, so the next one is shed
+			ValidationResult shed = executor.submit(ValidationResult::valid, 0).get(10, TimeUnit.SECONDS);
+			assertThat(shed.getStatus(), is(Status.REJECTED));
+			assertThat(shed.isValid(), is(false));
+			assertThat(executor.getPending(), is(2));
+
+			release.countDown();
+			assertThat(running.get(10, TimeUnit.SECONDS).isValid(), is(true));
+			assertThat(waiting.get(10, TimeUnit.SECONDS).isValid(), is(true));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.concurrent.ValidationExecutor#submit(java.util.function.Supplier, long)}
+	 */
+	@Test
+	public void test_submit_timeout() throws Exception {
+		ValidationExecutor executor = ValidationExecutor.createPlatform(1, 10);
+		try {
+			CountDownLatch release = new CountDownLatch(1);
+			CompletableFuture<ValidationResult> slow = executor.submit(() -> {
+				await(release);
+				return ValidationResult.valid();
+			}, 50);
+			ValidationResult result = slow.get(10, TimeUnit.SECONDS);
+			assertThat(result.getStatus(), is(Status.TIMED_OUT));
+			assertThat(result.getMessage(), is("validation timed out after 50 ms"));
+
+			CompletableFuture<ValidationResult> failed = executor.submit(() -> {
+				throw new IllegalStateException("failed");
+			}, 0);
+			try {
+				failed.join();
+				fail("Must complete exceptionally!");
+			} catch (RuntimeException e) {
+				assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package me.tyru.json.hyper.schema.filter;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * @author tyru
+ *
+ */
+public class AbstractJaxrsJSONResponseValidationFilterTest {
+
+	private static final JSONObject HYPER_SCHEMA = new JSONObject("{\"links\": ["
+			+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}\", \"targetSchema\": {"
+			+ "\"required\": [\"name\"], \"properties\": {\"name\": {\"type\": \"string\"}}}},"
+			+ "{\"rel\": \"instances\", \"method\": \"GET\", \"href\": \"/users\"}]}");
+
+	/** Tasks which are run by the test instead of the executor */
+	private final List<Runnable> tasks = new ArrayList<>();
+	private final List<String> reported = new ArrayList<>();
+	private final AbstractJaxrsJSONResponseValidationFilter filter = new AbstractJaxrsJSONResponseValidationFilter() {
+		@Override
+		protected Executor getExecutor() {
+			return tasks::add;
+		}
+
+		@Override
+		protected void onInvalidResponse(String method, String href, ValidationResult result) {
+			reported.add(method + " " + href + " " + result.getViolations().get(0).getMessage());
+		}
+	};
+
+	@Before
+	public void setUp() throws Exception {
+		setHyperSchema(HyperSchemaBuilder.hyperSchema(HYPER_SCHEMA).responseSampleRate(1).build());
+	}
+
+	/**
+	 * Only sampled responses of links with targetSchema are buffered.
+	 *
+	 * @see {@link me.tyru.json.hyper.schema.filter.AbstractJaxrsJSONResponseValidationFilter#filter(ContainerRequestContext, ContainerResponseContext)}
+	 */
+	@Test
+	public void test_filter_sampling() throws Exception {
+		MockExchange unknown = new MockExchange("/users", "[]");
+		unknown.filter(filter);
+		assertThat(unknown.properties.isEmpty(), is(true));
+		unknown.write(filter);
+		assertThat(unknown.client.toString("UTF-8"), is("[]"));
+		assertThat(unknown.replaced, is(false));
+
+		MockExchange empty = new MockExchange("/users/1", null);
+		empty.filter(filter);
+		assertThat(empty.properties.isEmpty(), is(true));
+
+		setHyperSchema(HyperSchemaBuilder.hyperSchema(HYPER_SCHEMA).build());
+		MockExchange unsampled = new MockExchange("/users/1", "{}");
+		unsampled.filter(filter);
+		assertThat(unsampled.properties.isEmpty(), is(true));
+		assertThat(tasks.size(), is(0));
+	}
+
+	/**
+	 * A sampled response is written to the client while it is buffered, and
+	 * violations are reported by the executor after it is written.
+	 *
+	 * @see {@link me.tyru.json.hyper.schema.filter.AbstractJaxrsJSONResponseValidationFilter#aroundWriteTo(WriterInterceptorContext)}
+	 */
+	@Test
+	public void test_aroundWriteTo() throws Exception {
+		MockExchange invalid = new MockExchange("/users/1", "{\"name\": 1}");
+		invalid.filter(filter);
+		invalid.write(filter);
+		assertThat(invalid.client.toString("UTF-8"), is("{\"name\": 1}"));
+		assertThat(invalid.replaced, is(true));
+		assertThat(invalid.properties.isEmpty(), is(true));
+		assertThat(reported.size(), is(0));
+
+		MockExchange valid = new MockExchange("/users/2", "{\"name\": \"\u3042\"}");
+		valid.mediaType = new MediaType("application", "json", "UTF-8");
+		valid.filter(filter);
+		valid.write(filter);
+
+		MockExchange malformed = new MockExchange("/users/3", "{");
+		malformed.filter(filter);
+		malformed.write(filter);
+
+		tasks.forEach(Runnable::run);
+		assertThat(reported, contains("GET /users/1 #/name: expected type: String, found: Integer"));
+	}
+
+	private void setHyperSchema(HyperSchema hyperSchema) throws Exception {
+		Field field = AbstractJaxrsJSONResponseValidationFilter.class.getDeclaredField("hyperSchema");
+		field.setAccessible(true);
+		field.set(filter, hyperSchema);
+	}
+
+	/**
+	 * A request and its response, whose entity is written by the interceptor
+	 * chain into {@link #client}.
+	 */
+	private static final class MockExchange {
+		final String href;
+		final byte[] entity;
+		final Map<String, Object> properties = new HashMap<>();
+		final ByteArrayOutputStream client = new ByteArrayOutputStream();
+		MediaType mediaType;
+		OutputStream out = client;
+		boolean replaced;
+
+		MockExchange(String href, String entity) {
+			this.href = href;
+			this.entity = entity != null ? entity.getBytes(StandardCharsets.UTF_8) : null;
+		}
+
+		void filter(AbstractJaxrsJSONResponseValidationFilter filter) throws Exception {
+			UriInfo uriInfo = proxy(UriInfo.class, (name, args) -> name.equals("getRequestUri")
+					? URI.create("http://localhost" + href) : null);
+			ContainerRequestContext request = proxy(ContainerRequestContext.class, (name, args) -> {
+				switch (name) {
+				case "getMethod":
+					return "GET";
+				case "getUriInfo":
+					return uriInfo;
+				case "setProperty":
+					properties.put((String) args[0], args[1]);
+					return null;
+				default:
+					return null;
+				}
+			});
+			ContainerResponseContext response = proxy(ContainerResponseContext.class,
+					(name, args) -> name.equals("hasEntity") ? entity != null : null);
+			filter.filter(request, response);
+		}
+
+		void write(AbstractJaxrsJSONResponseValidationFilter filter) throws Exception {
+			filter.aroundWriteTo(proxy(WriterInterceptorContext.class, (name, args) -> {
+				switch (name) {
+				case "getProperty":
+					return properties.get(args[0]);
+				case "removeProperty":
+					properties.remove(args[0]);
+					return null;
+				case "getOutputStream":
+					return out;
+				case "setOutputStream":
+					replaced |= args[0] != client;
+					out = (OutputStream) args[0];
+					return null;
+				case "getMediaType":
+					return mediaType;
+				case "proceed":
+					// The message body writer
+					out.write(entity);
+					return null;
+				default:
+					return null;
+				}
+			}));
+		}
+	}
+
+	private interface Handler {
+		Object invoke(String name, Object[] args) throws Throwable;
+	}
+
+	private static <T> T proxy(Class<T> type, Handler handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> handler.invoke(method.getName(), args)));
+	}
+}
@@ -0,0 +1,337 @@
+package me.tyru.json.hyper.schema.filter;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+
+/**
+ * @author tyru
+ *
+ */
+public class AbstractServletJSONValidationFilterTest {
+
+	private static final JSONObject HYPER_SCHEMA = new JSONObject("{\"links\": ["
+			+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users\", \"schema\": {"
+			+ "\"properties\": {\"limit\": {\"type\": \"integer\"}}}},"
+			+ "{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/users\", \"schema\": {"
+			+ "\"required\": [\"name\"], \"properties\": {\"name\": {\"type\": \"string\"}}}}]}");
+
+	private final AbstractServletJSONValidationFilter filter = filterOf(
+			HyperSchemaBuilder.hyperSchema(HYPER_SCHEMA).build());
+
+	/**
+	 * A bodiless GET has no Content-Type, and is validated synchronously.
+	 *
+	 * @see {@link me.tyru.json.hyper.schema.filter.AbstractServletJSONValidationFilter#doFilter(javax.servlet.ServletRequest, javax.servlet.ServletResponse, FilterChain)}
+	 */
+	@Test
+	public void test_doFilter_get() throws Exception {
+		MockExchange valid = new MockExchange("GET", null, null);
+		valid.filter(filter);
+		assertThat(valid.chained, is(notNullValue()));
+		assertThat(valid.asyncStarted, is(false));
+		assertThat(valid.status, is(0));
+
+		MockExchange invalid = new MockExchange("GET", null, null);
+		invalid.parameters.put("limit", new String[] { "many" });
+		invalid.filter(filter);
+		assertThat(invalid.chained, is(nullValue()));
+		assertThat(invalid.asyncStarted, is(false));
+		assertThat(invalid.status, is(HttpServletResponse.SC_BAD_REQUEST));
+	}
+
+	/**
+	 * @see {@link me.tyru.json.hyper.schema.filter.AbstractServletJSONValidationFilter#doFilter(javax.servlet.ServletRequest, javax.servlet.ServletResponse, FilterChain)}
+	 */
+	@Test
+	public void test_doFilter_async() throws Exception {
+		MockExchange valid = new MockExchange("POST", "application/json", "{\"name\": \"a\"}");
+		valid.filter(filter);
+		assertThat(valid.asyncStarted, is(true));
+		assertThat(valid.dispatched, is(true));
+		assertThat(valid.chained, is(nullValue()));
+
+		// Dispatched again with the buffered entity
+		valid.dispatcherType = DispatcherType.ASYNC;
+		valid.filter(filter);
+		assertThat(valid.chainedEntities, contains("{\"name\": \"a\"}", "{\"name\": \"a\"}"));
+		// Dispatched again by asynchronous processing of the downstream
+		valid.filter(filter);
+		assertThat(valid.chainedEntities.size(), is(4));
+		assertThat(valid.chainedEntities.get(3), is("{\"name\": \"a\"}"));
+		// The buffer is returned to the pool when the request completes
+		valid.completeAsync();
+		assertThat(read(valid.chained.getInputStream()), is(""));
+
+		MockExchange invalid = new MockExchange("POST", "application/json", "{}");
+		invalid.filter(filter);
+		assertThat(invalid.asyncStarted, is(true));
+		assertThat(invalid.completed, is(true));
+		assertThat(invalid.dispatched, is(false));
+		assertThat(invalid.status, is(HttpServletResponse.SC_BAD_REQUEST));
+	}
+
+	/**
+	 * @see {@link me.tyru.json.hyper.schema.filter.AbstractServletJSONValidationFilter#doFilter(javax.servlet.ServletRequest, javax.servlet.ServletResponse, FilterChain)}
+	 */
+	@Test
+	public void test_doFilter_contentLength() throws Exception {
+		MockExchange chunked = new MockExchange("POST", "application/json", "{\"name\": \"a\"}");
+		chunked.contentLength = -1;
+		chunked.transferEncoding = "chunked";
+		chunked.filter(filter);
+		assertThat(chunked.asyncStarted, is(true));
+
+		// No entity to read asynchronously
+		MockExchange empty = new MockExchange("POST", "application/json", "");
+		empty.filter(filter);
+		assertThat(empty.asyncStarted, is(false));
+		assertThat(empty.chained, is(notNullValue()));
+
+		// Blocking read if the filter is not mapped to support async
+		MockExchange blocking = new MockExchange("POST", "application/json", "{}");
+		blocking.asyncSupported = false;
+		blocking.filter(filter);
+		assertThat(blocking.asyncStarted, is(false));
+		assertThat(blocking.status, is(HttpServletResponse.SC_BAD_REQUEST));
+	}
+
+	/**
+	 * With streamingValidation, the entity is validated while it is read, so
+	 * the first violation is reported before the malformed rest is read.
+	 *
+	 * @see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#streamingValidation(boolean)}
+	 */
+	@Test
+	public void test_doFilter_streaming() throws Exception {
+		String entity = "{\"name\": 1, \"rest\": [";
+		MockExchange streamed = new MockExchange("POST", "application/json", entity);
+		streamed.filter(filterOf(HyperSchemaBuilder.hyperSchema(HYPER_SCHEMA).streamingValidation(true).build()));
+		assertThat(streamed.status, is(HttpServletResponse.SC_BAD_REQUEST));
+		assertThat(streamed.written.toString(), is("#/name: expected type: String, found: Integer"));
+
+		MockExchange parsed = new MockExchange("POST", "application/json", entity);
+		parsed.filter(filter);
+		assertThat(parsed.status, is(HttpServletResponse.SC_BAD_REQUEST));
+		assertThat(parsed.written.toString(), is(not(streamed.written.toString())));
+
+		MockExchange valid = new MockExchange("POST", "application/json", "{\"name\": \"a\"}");
+		valid.filter(filterOf(HyperSchemaBuilder.hyperSchema(HYPER_SCHEMA).streamingValidation(true).build()));
+		assertThat(valid.status, is(0));
+		valid.dispatcherType = DispatcherType.ASYNC;
+		valid.filter(filter);
+		assertThat(valid.chainedEntities, contains("{\"name\": \"a\"}", "{\"name\": \"a\"}"));
+	}
+
+	private static AbstractServletJSONValidationFilter filterOf(HyperSchema hyperSchema) {
+		return new AbstractServletJSONValidationFilter() {
+			@Override
+			protected HyperSchema getHyperSchema() {
+				return hyperSchema;
+			}
+		};
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buff = new byte[256];
+		for (int read; (read = in.read(buff)) >= 0;) {
+			out.write(buff, 0, read);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A request and a response, whose asynchronous processing is completed or
+	 * dispatched in the calling thread.
+	 */
+	private static final class MockExchange {
+		final String method;
+		final String contentType;
+		final byte[] body;
+		final Map<String, String[]> parameters = new HashMap<>();
+		final Map<String, Object> attributes = new HashMap<>();
+		final List<String> chainedEntities = new ArrayList<>();
+		final List<AsyncListener> listeners = new ArrayList<>();
+		final StringWriter written = new StringWriter();
+		long contentLength;
+		String transferEncoding;
+		boolean asyncSupported = true;
+		DispatcherType dispatcherType = DispatcherType.REQUEST;
+		boolean asyncStarted;
+		boolean dispatched;
+		boolean completed;
+		int status;
+		HttpServletRequest chained;
+
+		MockExchange(String method, String contentType, String body) {
+			this.method = method;
+			this.contentType = contentType;
+			this.body = body != null ? body.getBytes(StandardCharsets.UTF_8) : new byte[0];
+			this.contentLength = body != null ? this.body.length : -1;
+		}
+
+		void filter(AbstractServletJSONValidationFilter filter) throws Exception {
+			FilterChain chain = (request, response) -> {
+				chained = (HttpServletRequest) request;
+				chainedEntities.add(read(request.getInputStream()));
+				chainedEntities.add(read(request.getInputStream()));
+			};
+			filter.doFilter(request(), response(), chain);
+		}
+
+		final AsyncContext asyncContext = proxy(AsyncContext.class, (name, args) -> {
+			if (name.equals("dispatch")) {
+				dispatched = true;
+			} else if (name.equals("complete")) {
+				completed = true;
+			} else if (name.equals("addListener")) {
+				listeners.add((AsyncListener) args[0]);
+			}
+			return null;
+		});
+
+		/**
+		 * Notifies listeners that the asynchronous processing has completed.
+		 */
+		void completeAsync() throws IOException {
+			for (AsyncListener listener : listeners) {
+				listener.onComplete(new AsyncEvent(asyncContext));
+			}
+		}
+
+		private HttpServletRequest request() {
+			return proxy(HttpServletRequest.class, (name, args) -> {
+				switch (name) {
+				case "getMethod":
+					return method;
+				case "getRequestURI":
+					return "/users";
+				case "getContentType":
+					return contentType;
+				case "getContentLengthLong":
+					return contentLength;
+				case "getHeader":
+					return "Transfer-Encoding".equalsIgnoreCase((String) args[0]) ? transferEncoding : null;
+				case "getParameterMap":
+					return Collections.unmodifiableMap(parameters);
+				case "getInputStream":
+					return new MockInputStream(body);
+				case "getAttribute":
+					return attributes.get(args[0]);
+				case "setAttribute":
+					attributes.put((String) args[0], args[1]);
+					return null;
+				case "removeAttribute":
+					attributes.remove(args[0]);
+					return null;
+				case "isAsyncSupported":
+					return asyncSupported;
+				case "isAsyncStarted":
+					return false;
+				case "getDispatcherType":
+					return dispatcherType;
+				case "startAsync":
+					asyncStarted = true;
+					return asyncContext;
+				case "getAsyncContext":
+					return asyncContext;
+				default:
+					return null;
+				}
+			});
+		}
+
+		private HttpServletResponse response() {
+			PrintWriter writer = new PrintWriter(written, true);
+			return proxy(HttpServletResponse.class, (name, args) -> {
+				switch (name) {
+				case "setStatus":
+					status = (Integer) args[0];
+					return null;
+				case "isCommitted":
+					return false;
+				case "getWriter":
+					return writer;
+				default:
+					return null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Entity which arrives at once, so a read listener is notified of all
+	 * data when it is set.
+	 */
+	private static final class MockInputStream extends ServletInputStream {
+		private final ByteArrayInputStream in;
+
+		MockInputStream(byte[] body) {
+			this.in = new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public int read() {
+			return in.read();
+		}
+
+		@Override
+		public boolean isFinished() {
+			return in.available() == 0;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener listener) {
+			try {
+				listener.onDataAvailable();
+				listener.onAllDataRead();
+			} catch (IOException e) {
+				listener.onError(e);
+			}
+		}
+	}
+
+	private interface Handler {
+		Object invoke(String name, Object[] args) throws Throwable;
+	}
+
+	private static <T> T proxy(Class<T> type, Handler handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> handler.invoke(method.getName(), args)));
+	}
+}
@@ -0,0 +1,124 @@
+package me.tyru.json.hyper.schema.filter;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.result.ValidationResult;
+
+/**
+ * @author tyru
+ *
+ */
+public class AbstractSpringJSONResponseValidationFilterTest {
+
+	private static final JSONObject HYPER_SCHEMA = new JSONObject("{\"links\": ["
+			+ "{\"rel\": \"self\", \"method\": \"GET\", \"href\": \"/users/{id}\", \"targetSchema\": {"
+			+ "\"required\": [\"name\"], \"properties\": {\"name\": {\"type\": \"string\"}}}},"
+			+ "{\"rel\": \"instances\", \"method\": \"GET\", \"href\": \"/users\"}]}");
+
+	/** Tasks which are run by the test instead of the executor */
+	private final List<Runnable> tasks = new ArrayList<>();
+	private final List<String> reported = new ArrayList<>();
+	private final AbstractSpringJSONResponseValidationFilter advice = new AbstractSpringJSONResponseValidationFilter() {
+		@Override
+		protected Executor getExecutor() {
+			return tasks::add;
+		}
+
+		@Override
+		protected void onInvalidResponse(String method, String href, ValidationResult result) {
+			reported.add(method + " " + href + " " + result.getViolations().get(0).getMessage());
+		}
+	};
+
+	@Before
+	public void setUp() throws Exception {
+		setHyperSchema(HyperSchemaBuilder.hyperSchema(HYPER_SCHEMA).responseSampleRate(1).build());
+	}
+
+	/**
+	 * Only sampled responses of links with targetSchema are validated.
+	 *
+	 * @see {@link me.tyru.json.hyper.schema.filter.AbstractSpringJSONResponseValidationFilter#beforeBodyWrite(Object, MethodParameter, MediaType, Class, ServerHttpRequest, ServerHttpResponse)}
+	 */
+	@Test
+	public void test_beforeBodyWrite_sampling() throws Exception {
+		String body = "{}";
+		assertThat(beforeBodyWrite(body, "/users"), is(sameInstance(body)));
+		assertThat(beforeBodyWrite(null, "/users/1"), is(nullValue()));
+		assertThat(tasks.size(), is(0));
+
+		setHyperSchema(HyperSchemaBuilder.hyperSchema(HYPER_SCHEMA).build());
+		assertThat(beforeBodyWrite(body, "/users/1"), is(sameInstance(body)));
+		assertThat(tasks.size(), is(0));
+
+		// Malformed, so there is nothing to validate
+		setHyperSchema(HyperSchemaBuilder.hyperSchema(HYPER_SCHEMA).responseSampleRate(1).build());
+		assertThat(beforeBodyWrite("{", "/users/1"), is("{"));
+		assertThat(tasks.size(), is(0));
+	}
+
+	/**
+	 * The body is converted in the calling thread, and violations are reported
+	 * by the executor.
+	 *
+	 * @see {@link me.tyru.json.hyper.schema.filter.AbstractSpringJSONResponseValidationFilter#beforeBodyWrite(Object, MethodParameter, MediaType, Class, ServerHttpRequest, ServerHttpResponse)}
+	 */
+	@Test
+	public void test_beforeBodyWrite_async() throws Exception {
+		Map<String, Object> user = new LinkedHashMap<>();
+		user.put("name", 1);
+		assertThat(beforeBodyWrite(user, "/users/1"), is(sameInstance(user)));
+		JSONObject json = new JSONObject("{\"name\": \"a\"}");
+		beforeBodyWrite(json, "/users/2");
+		assertThat(reported.size(), is(0));
+
+		// Changed by the application after it is written
+		user.put("name", "a");
+		json.remove("name");
+		tasks.forEach(Runnable::run);
+		assertThat(reported, contains("GET /users/1 #/name: expected type: String, found: Integer"));
+	}
+
+	private Object beforeBodyWrite(Object body, String href) {
+		ServerHttpRequest request = (ServerHttpRequest) Proxy.newProxyInstance(
+				ServerHttpRequest.class.getClassLoader(), new Class<?>[] { ServerHttpRequest.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getMethod":
+						return HttpMethod.GET;
+					case "getURI":
+						return URI.create("http://localhost" + href);
+					default:
+						return null;
+					}
+				});
+		return advice.beforeBodyWrite(body, null, MediaType.APPLICATION_JSON, null, request, null);
+	}
+
+	private void setHyperSchema(HyperSchema hyperSchema) throws Exception {
+		Field field = AbstractSpringJSONResponseValidationFilter.class.getDeclaredField("hyperSchema");
+		field.setAccessible(true);
+		field.set(advice, hyperSchema);
+	}
+}
@@ -0,0 +1,171 @@
+package me.tyru.json.hyper.schema.filter;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.everit.json.schema.ValidationException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+
+/**
+ * @author tyru
+ *
+ */
+public class AbstractSpringJSONValidationFilterTest {
+
+	private final AbstractSpringJSONValidationFilter advice = new AbstractSpringJSONValidationFilter() {
+	};
+	private final Map<String, Object> attributes = new HashMap<>();
+	/** Each validation builds a request of the URI once */
+	private final int[] validations = new int[1];
+	private HttpServletRequest request;
+
+	@Before
+	public void setUp() throws Exception {
+		Field field = AbstractSpringJSONValidationFilter.class.getDeclaredField("hyperSchema");
+		field.setAccessible(true);
+		field.set(advice, HyperSchemaBuilder.hyperSchema(new JSONObject("{\"links\": [{\"rel\": \"create\", "
+				+ "\"method\": \"POST\", \"href\": \"/users\", \"schema\": {\"required\": [\"name\"]}}]}")).build());
+		request = (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getMethod":
+						return "POST";
+					case "getRequestURI":
+						validations[0]++;
+						return "/users";
+					case "getHeader":
+						return HttpHeaders.CONTENT_TYPE.equalsIgnoreCase((String) args[0]) ? "application/json"
+								: null;
+					case "getAttribute":
+						return attributes.get(args[0]);
+					case "setAttribute":
+						attributes.put((String) args[0], args[1]);
+						return null;
+					default:
+						return null;
+					}
+				});
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+	}
+
+	@After
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.filter.AbstractSpringJSONValidationFilter#beforeBodyRead(HttpInputMessage, org.springframework.core.MethodParameter, java.lang.reflect.Type, Class)}
+	 */
+	@Test
+	public void test_beforeBodyRead() throws Exception {
+		HttpInputMessage message = advice.beforeBodyRead(message("{\"name\": \"a\"}"), null, Object.class, null);
+		// The converter reads the same bytes, any number of times
+		assertThat(read(message.getBody()), is("{\"name\": \"a\"}"));
+		assertThat(read(message.getBody()), is("{\"name\": \"a\"}"));
+		assertThat(validations[0], is(1));
+
+		// The body was validated, so @InitBinder does not validate again
+		initBinder();
+		assertThat(validations[0], is(1));
+
+		try {
+			advice.beforeBodyRead(message("{}"), null, Object.class, null);
+			fail("Must throw when the body is invalid!");
+		} catch (ValidationException e) {
+			assertThat(e.getMessage(), is("#: required key [name] not found"));
+		}
+	}
+
+	/**
+	 * With streamingValidation, the body is validated while it is read, so
+	 * the first violation is reported before the malformed rest is read.
+	 *
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#streamingValidation(boolean)}
+	 */
+	@Test
+	public void test_beforeBodyRead_streaming() throws Exception {
+		Field field = AbstractSpringJSONValidationFilter.class.getDeclaredField("hyperSchema");
+		field.setAccessible(true);
+		field.set(advice, HyperSchemaBuilder.hyperSchema(new JSONObject("{\"links\": [{\"rel\": \"create\", "
+				+ "\"method\": \"POST\", \"href\": \"/users\", \"schema\": {\"required\": [\"name\"], "
+				+ "\"properties\": {\"name\": {\"type\": \"string\"}}}}]}")).streamingValidation(true).build());
+		HttpInputMessage message = advice.beforeBodyRead(message("{\"name\": \"a\"}"), null, Object.class, null);
+		assertThat(read(message.getBody()), is("{\"name\": \"a\"}"));
+
+		try {
+			advice.beforeBodyRead(message("{\"name\": 1, \"rest\": ["), null, Object.class, null);
+			fail("Must throw when the body is invalid!");
+		} catch (ValidationException e) {
+			assertThat(e.getMessage(), is("#/name: expected type: String, found: Integer"));
+		}
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.filter.AbstractSpringJSONValidationFilter#initBinder(WebDataBinder, ServletWebRequest)}
+	 */
+	@Test
+	public void test_initBinder() throws Exception {
+		// A request whose body is not read is validated once
+		initBinder();
+		initBinder();
+		assertThat(validations[0], is(1));
+	}
+
+	private void initBinder() throws Exception {
+		Method initBinder = AbstractSpringJSONValidationFilter.class.getDeclaredMethod("initBinder",
+				WebDataBinder.class, ServletWebRequest.class);
+		initBinder.setAccessible(true);
+		initBinder.invoke(advice, new WebDataBinder(null), new ServletWebRequest(request));
+	}
+
+	private static HttpInputMessage message(String body) {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+		headers.setContentLength(bytes.length);
+		return new HttpInputMessage() {
+			@Override
+			public InputStream getBody() {
+				return new ByteArrayInputStream(bytes);
+			}
+
+			@Override
+			public HttpHeaders getHeaders() {
+				return headers;
+			}
+		};
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buff = new byte[256];
+		for (int read; (read = in.read(buff)) >= 0;) {
+			out.write(buff, 0, read);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,61 @@
+package me.tyru.json.hyper.schema.media;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author tyru
+ *
+ */
+public class ContentTypeTest {
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.media.ContentType#parse(java.lang.String)}
+	 */
+	@Test
+	public void test_parse() {
+		ContentType ct = ContentType.parse("Application/JSON; charset=utf-8");
+		assertThat(ct.getMediaType(), is(sameInstance(MediaType.APPLICATION_JSON)));
+		assertThat(ct.getCharset(), is("utf-8"));
+
+		ct = ContentType.parse(" application/vnd.x+json ;foo=bar; Charset=\"ISO-8859-1\";");
+		assertThat(ct.getMediaType().toString(), is("application/vnd.x+json"));
+		assertThat(ct.getMediaType().getSuffix(), is("json"));
+		assertThat(ct.getMediaType().getStructuredSyntax(), is(sameInstance(MediaType.APPLICATION_JSON)));
+		assertThat(ct.getCharset(), is("ISO-8859-1"));
+
+		assertThat(ContentType.parse("text/plain").getCharset(), is(nullValue()));
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.media.ContentType#parse(java.lang.String)}
+	 */
+	@Test
+	public void test_parse_malformed() {
+		assertThat(ContentType.parse(""), is(nullValue()));
+		assertThat(ContentType.parse("application"), is(nullValue()));
+		assertThat(ContentType.parse("application/"), is(nullValue()));
+		assertThat(ContentType.parse("application/json charset=utf-8"), is(nullValue()));
+		assertThat(ContentType.parse("application/json; charset"), is(nullValue()));
+		assertThat(ContentType.parse("application/json; charset=\"utf-8"), is(nullValue()));
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.media.MediaType#includes(MediaType)}
+	 */
+	@Test
+	public void test_includes() {
+		MediaType vnd = MediaType.valueOf("application/vnd.x+json");
+		assertThat(MediaType.WILDCARD_TYPE.includes(vnd), is(true));
+		assertThat(MediaType.valueOf("application/*").includes(vnd), is(true));
+		assertThat(MediaType.valueOf("application/*+json").includes(vnd), is(true));
+		assertThat(MediaType.valueOf("application/*+json").includes(MediaType.APPLICATION_JSON), is(true));
+		assertThat(MediaType.valueOf("application/*+xml").includes(vnd), is(false));
+		assertThat(MediaType.valueOf("text/*").includes(vnd), is(false));
+		assertThat(MediaType.APPLICATION_JSON.includes(vnd), is(false));
+		assertThat(vnd.isJson(), is(true));
+		assertThat(MediaType.of("TEXT", "Plain"), is(sameInstance(MediaType.valueOf("text/plain"))));
+	}
+}
@@ -0,0 +1,136 @@
+package me.tyru.json.hyper.schema.metrics;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import me.tyru.json.hyper.schema.EndPoint;
+import me.tyru.json.hyper.schema.HyperSchema;
+import me.tyru.json.hyper.schema.HyperSchemaBuilder;
+import me.tyru.json.hyper.schema.request.JSONRequest;
+
+/**
+ * @author tyru
+ *
+ */
+public class ValidationMetricsTest {
+
+	private static final String JSON = "{\"links\": [{\"rel\": \"create\", \"method\": \"POST\", \"href\": \"/users\","
+			+ " \"schema\": {\"required\": [\"id\"]}}]}";
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.HyperSchemaBuilder#validationListener(ValidationListener)}
+	 */
+	@Test
+	public void test_metrics() {
+		ValidationMetrics metrics = new ValidationMetrics();
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(JSON)).validationListener(metrics).build();
+		assertThat(scm.check(getRequest("/users", "{\"id\": 1}")).isValid(), is(true));
+		assertThat(scm.check(getRequest("/users", "{}")).isValid(), is(false));
+		try {
+			scm.check(getRequest("/users", "{"));
+			fail("Must throw when the entity is malformed!");
+		} catch (JSONException e) {
+		}
+		assertThat(scm.check(getRequest("/items", "{}")).isValid(), is(true));
+
+		RouteMetrics route = metrics.get(EndPoint.of("POST", "/users", "application/json")).get();
+		assertThat(route.getRequestCount(), is(2L));
+		assertThat(route.getInvalidCount(), is(1L));
+		assertThat(route.getErrorCount(), is(1L));
+		assertThat(route.getEntityLength(), is(12L));
+		assertThat(route.getLatency(Phase.MATCH).getCount(), is(3L));
+		assertThat(route.getLatency(Phase.BUFFER).getCount(), is(3L));
+		assertThat(route.getLatency(Phase.PARSE).getCount(), is(2L));
+		assertThat(route.getLatency(Phase.VALIDATE).getCount(), is(2L));
+		LatencyHistogram validate = route.getLatency(Phase.VALIDATE);
+		assertThat(validate.getPercentileNanos(99), is(lessThanOrEqualTo(validate.getMaxNanos())));
+		assertThat(validate.getPercentileNanos(50), is(lessThanOrEqualTo(validate.getPercentileNanos(99))));
+		assertThat(metrics.getUnmatched().getLatency(Phase.MATCH).getCount(), is(1L));
+		assertThat(metrics.getRoutes().size(), is(1));
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.metrics.LatencyHistogram#getPercentileNanos(double)}
+	 */
+	@Test
+	public void test_percentile() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertThat(histogram.getPercentileNanos(99), is(0L));
+		for (int i = 0; i < 99; i++) {
+			histogram.record(1000);
+		}
+		histogram.record(1000000);
+		// Upper bound of the bucket from 512 to 1023
+		assertThat(histogram.getPercentileNanos(50), is(1023L));
+		assertThat(histogram.getPercentileNanos(99), is(1023L));
+		assertThat(histogram.getPercentileNanos(100), is(1000000L));
+		assertThat(histogram.getMaxNanos(), is(1000000L));
+		assertThat(histogram.getMeanNanos(), is(10990.0));
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.metrics.JmxExporter#register(ValidationMetrics, MBeanServer, String)}
+	 */
+	@Test
+	public void test_jmx() throws Exception {
+		MBeanServer server = MBeanServerFactory.newMBeanServer();
+		ValidationMetrics metrics = new ValidationMetrics();
+		HyperSchema scm = HyperSchemaBuilder.hyperSchema(new JSONObject(JSON)).validationListener(metrics).build();
+		ObjectName name;
+		ObjectName summary;
+		try (JmxExporter exporter = JmxExporter.register(metrics, server, "test")) {
+			name = exporter.nameOf(EndPoint.of("POST", "/users", "application/json"));
+			summary = exporter.nameOf(null);
+			assertThat(server.isRegistered(name), is(false));
+			scm.check(getRequest("/users", "{}"));
+			assertThat(server.isRegistered(name), is(true));
+			assertThat(server.getAttribute(name, "RequestCount"), is(1L));
+			assertThat(server.getAttribute(name, "InvalidCount"), is(1L));
+			assertThat(server.getAttribute(name, "ValidateCount"), is(1L));
+			assertThat(server.getAttribute(name, "ValidateP99Micros"), is(instanceOf(Double.class)));
+			assertThat(server.isRegistered(summary), is(true));
+		}
+		// Unregistered by close()
+		assertThat(server.isRegistered(name), is(false));
+		assertThat(server.isRegistered(summary), is(false));
+	}
+
+	private static JSONRequest getRequest(String href, String entity) {
+		return new JSONRequest() {
+			@Override
+			public String getMethod() {
+				return "POST";
+			}
+
+			@Override
+			public String getHref() {
+				return href;
+			}
+
+			@Override
+			public String getEncType() {
+				return HyperSchema.DEFAULT_ENC_TYPE;
+			}
+
+			@Override
+			public String getEntityWithKeepingStream(String charset) {
+				return entity;
+			}
+
+			@Override
+			public MultivaluedMap<String, String> getQueryParameters() {
+				return new MultivaluedHashMap<>();
+			}
+		};
+	}
+}
@@ -0,0 +1,41 @@
+package me.tyru.json.hyper.schema.request;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author tyru
+ *
+ */
+public class BodyBufferPoolTest {
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.request.BodyBufferPool#acquire(int)}
+	 */
+	@Test
+	public void test_acquire() {
+		assertThat(BodyBufferPool.acquire(100).length, is(greaterThanOrEqualTo(100)));
+		assertThat(BodyBufferPool.acquire(-1).length, is(greaterThanOrEqualTo(1024)));
+		// Content-Length is not trusted to presize
+		assertThat(BodyBufferPool.acquire(Integer.MAX_VALUE - 8).length, is(1024 * 1024));
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.request.BodyBufferPool#release(byte[])}
+	 */
+	@Test
+	public void test_release() {
+		// Empty the stripe of this thread
+		BodyBufferPool.acquire(BodyBufferPool.MAX_POOLED_SIZE);
+
+		byte[] buffer = BodyBufferPool.acquire(BodyBufferPool.MAX_POOLED_SIZE);
+		BodyBufferPool.release(buffer);
+		assertThat(BodyBufferPool.acquire(100), is(sameInstance(buffer)));
+
+		byte[] large = BodyBufferPool.acquire(BodyBufferPool.MAX_POOLED_SIZE + 1);
+		BodyBufferPool.release(large);
+		assertThat(BodyBufferPool.acquire(BodyBufferPool.MAX_POOLED_SIZE + 1), is(not(sameInstance(large))));
+	}
+}
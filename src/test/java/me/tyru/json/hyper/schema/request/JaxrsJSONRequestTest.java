@@ -0,0 +1,65 @@
+package me.tyru.json.hyper.schema.request;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Test;
+
+/**
+ * @author tyru
+ *
+ */
+public class JaxrsJSONRequestTest {
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.request.JaxrsJSONRequest#getEntityWithKeepingStream(String)}
+	 */
+	@Test
+	public void test_getEntityWithKeepingStream() throws Exception {
+		byte[] body = "{\"name\": \"café\"}".getBytes(StandardCharsets.ISO_8859_1);
+		InputStream[] entity = { new ByteArrayInputStream(body) };
+		ContainerRequestContext context = (ContainerRequestContext) Proxy.newProxyInstance(
+				ContainerRequestContext.class.getClassLoader(), new Class<?>[] { ContainerRequestContext.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getMediaType":
+						return new MediaType("application", "json",
+								Collections.singletonMap(MediaType.CHARSET_PARAMETER, "ISO-8859-1"));
+					case "getLength":
+						return body.length;
+					case "getEntityStream":
+						return entity[0];
+					case "setEntityStream":
+						entity[0] = (InputStream) args[0];
+						return null;
+					default:
+						return null;
+					}
+				});
+		JaxrsJSONRequest req = JaxrsJSONRequest.of(context);
+		assertThat(req.getCharset(), is("ISO-8859-1"));
+		assertThat(req.getEntityWithKeepingStream(req.getCharset()), is("{\"name\": \"café\"}"));
+		// The resource method reads the original bytes, not re-encoded ones
+		assertThat(read(entity[0]), is(body));
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buff = new byte[256];
+		for (int read; (read = in.read(buff)) >= 0;) {
+			out.write(buff, 0, read);
+		}
+		return out.toByteArray();
+	}
+}
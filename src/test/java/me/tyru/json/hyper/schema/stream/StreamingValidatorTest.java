@@ -0,0 +1,95 @@
+package me.tyru.json.hyper.schema.stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @author tyru
+ *
+ */
+public class StreamingValidatorTest {
+
+	private static final Schema SCHEMA = SchemaLoader.load(new JSONObject("{"
+			+ "\"type\": \"object\","
+			+ "\"required\": [\"id\", \"tags\"],"
+			+ "\"additionalProperties\": false,"
+			+ "\"properties\": {"
+			+ "  \"id\": {\"type\": \"integer\", \"minimum\": 1},"
+			+ "  \"name\": {\"type\": \"string\", \"maxLength\": 5},"
+			+ "  \"kind\": {\"enum\": [\"a\", \"b\"]},"
+			+ "  \"tags\": {\"type\": \"array\", \"maxItems\": 3, \"items\": {"
+			+ "    \"type\": \"object\", \"properties\": {\"v\": {\"type\": \"number\"}}"
+			+ "  }}"
+			+ "}}"));
+
+	private static ValidationException violation(String json) throws IOException {
+		try {
+			StreamingValidator.validate(SCHEMA, new StringReader(json));
+		} catch (ValidationException e) {
+			// Must be the same as the tree validator
+			try {
+				SCHEMA.validate(new JSONObject(json));
+				fail("everit accepts " + json);
+			} catch (ValidationException expected) {
+				assertThat(e.getKeyword(), is(expected.getKeyword()));
+			}
+			return e;
+		}
+		SCHEMA.validate(new JSONObject(json));
+		return null;
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.stream.StreamingValidator#validate(Schema, java.io.Reader)}
+	 */
+	@Test
+	public void test_validate() throws IOException {
+		assertThat(violation("{\"id\": 1, \"name\": \"x\\u0079\", \"kind\": \"a\", \"tags\": [{\"v\": 1.5e3}, {}]}"),
+				is(nullValue()));
+		assertThat(StreamingValidator.validate(SCHEMA, new StringReader(" \n")), is(false));
+
+		ValidationException e = violation("{\"id\": 1, \"tags\": [{\"v\": 1}, {\"v\": \"x\"}]}");
+		assertThat(e.getPointerToViolation(), is("#/tags/1/v"));
+		e = violation("{\"id\": 0, \"tags\": []}");
+		assertThat(e.getPointerToViolation(), is("#/id"));
+		e = violation("{\"id\": 1, \"name\": \"toolong\", \"tags\": []}");
+		assertThat(e.getPointerToViolation(), is("#/name"));
+		e = violation("{\"id\": 1, \"kind\": \"c\", \"tags\": []}");
+		assertThat(e.getPointerToViolation(), is("#/kind"));
+		e = violation("{\"id\": 1}");
+		assertThat(e.getMessage(), is("#: required key [tags] not found"));
+		e = violation("{\"id\": 1, \"tags\": [], \"extra\": {\"deep\": [1, 2]}}");
+		assertThat(e.getMessage(), is("#: extraneous key [extra] is not permitted"));
+		e = violation("{\"id\": 1, \"tags\": [{}, {}, {}, {}]}");
+		assertThat(e.getMessage(), is("#/tags: expected maximum item count: 3, found: 4"));
+		e = violation("{\"id\": 1, \"tags\": {}}");
+		assertThat(e.getPointerToViolation(), is("#/tags"));
+	}
+
+	/**
+	 *@see {@link me.tyru.json.hyper.schema.stream.JsonPullParser#next()}
+	 */
+	@Test
+	public void test_syntax_error() throws IOException {
+		String[] malformed = { "[]", "{", "{\"id\": }", "{\"id\": 1,}", "{\"id\" 1}", "{\"id\": -}", "{\"id\": tru}",
+				"{\"id\": 1, \"id\": 2}", "{\"tags\": [{} {}]}", "{\"name\": \"\n\"}" };
+		for (String json : malformed) {
+			try {
+				StreamingValidator.validate(SCHEMA, new StringReader(json));
+				fail("Not thrown: " + json);
+			} catch (JSONException e) {
+				// expected
+			}
+		}
+	}
+}